@@ -16,48 +16,176 @@ package build.buildfarm.actioncache;
 
 import static com.google.common.util.concurrent.Futures.catching;
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
-import static net.javacrumbs.futureconverter.java8guava.FutureConverter.toCompletableFuture;
 import static net.javacrumbs.futureconverter.java8guava.FutureConverter.toListenableFuture;
 
 import build.bazel.remote.execution.v2.ActionResult;
 import build.buildfarm.backplane.Backplane;
 import build.buildfarm.common.DigestUtil.ActionKey;
-import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
 import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import io.grpc.Status;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * A local cache of the backplane's action results, bounded by their serialized size.
+ *
+ * <p>Concurrent lookups of an action key share a single fetch. Fetches which are requested while
+ * the maximum number of fetches are in progress are combined into batches, which are retrieved from
+ * the backplane together.
+ */
 public class ShardActionCache implements ActionCache {
+  // accounts for the key and entry, so that empty action results are bounded
+  private static final int ENTRY_OVERHEAD_BYTES = 128;
+  private static final int MAX_LOAD_BATCH_SIZE = 128;
+  private static final int MAX_CONCURRENT_LOADS = 16;
+
+  private static final Counter localActionCacheRequests =
+      Counter.build()
+          .name("local_action_cache_requests")
+          .labelNames("result")
+          .help("Local action cache lookups by result.")
+          .register();
+  private static final Histogram localActionCacheLoadSeconds =
+      Histogram.build()
+          .name("local_action_cache_load_seconds")
+          .help("Time to fetch a batch of action results from the backplane.")
+          .register();
+  private static final Histogram localActionCacheLoadBatchSize =
+      Histogram.build()
+          .name("local_action_cache_load_batch_size")
+          .buckets(1, 2, 4, 8, 16, 32, 64, 128)
+          .help("Number of action results fetched from the backplane together.")
+          .register();
+
+  private record PendingLoad(ActionKey actionKey, CompletableFuture<ActionResult> future) {}
+
   private final Backplane backplane;
+  private final ListeningExecutorService service;
   private final AsyncLoadingCache<ActionKey, ActionResult> actionResultCache;
+  private final Queue<PendingLoad> pendingLoads = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger activeLoads = new AtomicInteger();
 
   public ShardActionCache(
-      int maxLocalCacheSize, Backplane backplane, ListeningExecutorService service) {
+      long maxLocalCacheBytes, Backplane backplane, ListeningExecutorService service) {
     this.backplane = backplane;
+    this.service = service;
+
+    actionResultCache =
+        Caffeine.newBuilder()
+            .maximumWeight(maxLocalCacheBytes)
+            .weigher(
+                (ActionKey actionKey, ActionResult actionResult) ->
+                    ENTRY_OVERHEAD_BYTES + actionResult.getSerializedSize())
+            .buildAsync((actionKey, executor) -> load(actionKey));
+  }
+
+  private CompletableFuture<ActionResult> load(ActionKey actionKey) {
+    CompletableFuture<ActionResult> future = new CompletableFuture<>();
+    pendingLoads.add(new PendingLoad(actionKey, future));
+    startLoads();
+    return future;
+  }
+
+  private void startLoads() {
+    // a loader only exits after it has found the queue empty and rechecked it here
+    while (!pendingLoads.isEmpty()) {
+      int active = activeLoads.get();
+      if (active >= MAX_CONCURRENT_LOADS) {
+        return;
+      }
+      if (activeLoads.compareAndSet(active, active + 1)) {
+        try {
+          service.execute(this::loadPending);
+        } catch (RejectedExecutionException e) {
+          activeLoads.decrementAndGet();
+          failPending(Status.UNAVAILABLE.withCause(e).asRuntimeException());
+        }
+        return;
+      }
+    }
+  }
+
+  private List<PendingLoad> pollBatch() {
+    List<PendingLoad> batch = new ArrayList<>();
+    PendingLoad pendingLoad;
+    while (batch.size() < MAX_LOAD_BATCH_SIZE && (pendingLoad = pendingLoads.poll()) != null) {
+      batch.add(pendingLoad);
+    }
+    return batch;
+  }
+
+  private void failPending(RuntimeException e) {
+    for (PendingLoad pendingLoad : pollBatch()) {
+      pendingLoad.future().completeExceptionally(e);
+    }
+  }
+
+  private void loadPending() {
+    try {
+      List<PendingLoad> batch;
+      while (!(batch = pollBatch()).isEmpty()) {
+        loadBatch(batch);
+      }
+    } finally {
+      activeLoads.decrementAndGet();
+    }
+    startLoads();
+  }
 
-    AsyncCacheLoader<ActionKey, ActionResult> loader =
-        (actionKey, executor) ->
-            toCompletableFuture(
-                catching(
-                    service.submit(() -> backplane.getActionResult(actionKey)),
-                    IOException.class,
-                    e -> {
-                      throw Status.fromThrowable(e).asRuntimeException();
-                    },
-                    executor));
-
-    actionResultCache = Caffeine.newBuilder().maximumSize(maxLocalCacheSize).buildAsync(loader);
+  private void loadBatch(List<PendingLoad> batch) {
+    localActionCacheLoadBatchSize.observe(batch.size());
+    Histogram.Timer timer = localActionCacheLoadSeconds.startTimer();
+    try {
+      if (batch.size() == 1) {
+        PendingLoad pendingLoad = batch.getFirst();
+        pendingLoad.future().complete(backplane.getActionResult(pendingLoad.actionKey()));
+      } else {
+        Map<ActionKey, ActionResult> actionResults =
+            backplane.getActionResults(Iterables.transform(batch, PendingLoad::actionKey));
+        for (PendingLoad pendingLoad : batch) {
+          pendingLoad.future().complete(actionResults.get(pendingLoad.actionKey()));
+        }
+      }
+    } catch (IOException e) {
+      RuntimeException status = Status.fromThrowable(e).asRuntimeException();
+      for (PendingLoad pendingLoad : batch) {
+        pendingLoad.future().completeExceptionally(status);
+      }
+    } catch (RuntimeException e) {
+      for (PendingLoad pendingLoad : batch) {
+        pendingLoad.future().completeExceptionally(e);
+      }
+    } finally {
+      timer.observeDuration();
+    }
   }
 
   @Override
   public ListenableFuture<ActionResult> get(ActionKey actionKey) {
+    // includes lookups which join a fetch in progress
+    CompletableFuture<ActionResult> actionResult = actionResultCache.getIfPresent(actionKey);
+    if (actionResult == null) {
+      localActionCacheRequests.labels("miss").inc();
+      actionResult = actionResultCache.get(actionKey);
+    } else {
+      localActionCacheRequests.labels("hit").inc();
+    }
     return catching(
-        toListenableFuture(actionResultCache.get(actionKey)),
+        toListenableFuture(actionResult),
         InvalidCacheLoadException.class,
         e -> null,
         directExecutor());
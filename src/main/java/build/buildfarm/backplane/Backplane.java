@@ -124,6 +124,9 @@ public interface Backplane {
   /** Returns the insert time epoch in seconds for the digest. */
   long getDigestInsertTime(Digest blobDigest) throws IOException;
 
+  /** Returns the insert time epoch in seconds for each of the digests. */
+  Map<Digest, Long> getDigestsInsertTimes(Iterable<Digest> blobDigests) throws IOException;
+
   /** Returns a set of the names of all active storage workers. */
   Set<String> getStorageWorkers() throws IOException;
 
@@ -136,6 +139,12 @@ public interface Backplane {
    */
   ActionResult getActionResult(ActionKey actionKey) throws IOException;
 
+  /**
+   * Retrieves the action results for several action keys at once. Keys without an action result
+   * are absent from the returned map.
+   */
+  Map<ActionKey, ActionResult> getActionResults(Iterable<ActionKey> actionKeys) throws IOException;
+
   /**
    * The AC stores full ActionResult objects in a hash map where the key is the digest of the action
    * result and the value is the actual ActionResult object.
@@ -173,6 +182,9 @@ public interface Backplane {
   void adjustBlobLocations(Digest blobDigest, Set<String> addWorkers, Set<String> removeWorkers)
       throws IOException;
 
+  /** Removes the given workers from the set of workers that store each blob. */
+  void removeBlobsLocations(Map<Digest, Set<String>> blobDigestsWorkers) throws IOException;
+
   /**
    * The CAS is represented as a map where the key is the digest of the blob that is being stored
    * and the value is a set of the names of the workers where that blob is stored.
@@ -215,6 +227,24 @@ public interface Backplane {
 
   Map<Digest, Set<String>> getBlobDigestsWorkers(Iterable<Digest> blobDigests) throws IOException;
 
+  /**
+   * Publishes a serialized filter of the blobs held by a storage worker, replacing any filter it
+   * previously published. The filter expires after expireSeconds if it is not republished.
+   */
+  void putBlobFilter(String workerName, byte[] filter, int expireSeconds) throws IOException;
+
+  /**
+   * Returns the serialized sizes of the most recently published blob filters of the named workers.
+   * Workers without an unexpired filter are absent from the result.
+   */
+  Map<String, Long> getBlobFilterSizes(Set<String> workerNames) throws IOException;
+
+  /**
+   * Returns the most recently published blob filters of the named workers. Workers without an
+   * unexpired filter are absent from the result.
+   */
+  Map<String, byte[]> getBlobFilters(Set<String> workerNames) throws IOException;
+
   /**
    * Executions are stored in a hash map where the key is the name of the execution and the value is
    * a longrunning Operation object.
@@ -276,6 +306,14 @@ public interface Backplane {
   ScanResult<DispatchedOperation> scanDispatchedOperations(String cursor, int count)
       throws IOException;
 
+  /**
+   * Page dispatched operations which are due to be requeued, as indexed by deadline. Each page may
+   * be empty without being the last, and operations returned remain due until they are requeued or
+   * extended.
+   */
+  ScanResult<DispatchedOperation> scanOverdueDispatchedOperations(String cursor, int count)
+      throws IOException;
+
   /** Requeue a dispatched execution */
   void requeueDispatchedExecution(QueueEntry queueEntry) throws IOException;
 
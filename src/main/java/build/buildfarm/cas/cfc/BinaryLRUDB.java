@@ -0,0 +1,335 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.cas.cfc;
+
+import static java.lang.String.format;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import build.bazel.remote.execution.v2.DigestFunction;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.v1test.Digest;
+import com.google.common.hash.HashCode;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32C;
+import javax.annotation.Nullable;
+
+/**
+ * Fixed width binary LRU snapshot, read through memory maps.
+ *
+ * <p>The file is a 32 byte header followed by one record per entry, in order from least to most
+ * recently accessed:
+ *
+ * <pre>
+ * header: magic(4) version(2) flags(2) hashWidth(4) recordSize(4) count(8) crc32c(8)
+ * record: digestFunction(1) flags(1) hashLength(1) hash(hashWidth) size(8) ordinal(8)
+ * </pre>
+ *
+ * <p>The checksum covers every record. A snapshot is rejected unless its header, length, checksum
+ * and strictly increasing ordinals are all consistent.
+ */
+class BinaryLRUDB implements LRUDB {
+  private static final int MAGIC = 0x42464c52; // BFLR
+  private static final short VERSION = 1;
+  private static final int HEADER_SIZE = 32;
+  private static final int FLAGS_OFFSET = 6;
+  private static final short FLAG_COMPLETE = 1;
+  private static final byte RECORD_EXECUTABLE = 1;
+  private static final byte RECORD_DIRECTORY = 2;
+  private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+  private record Record(DigestFunction.Value digestFunction, byte flags, byte[] hash, long size) {}
+
+  private static int recordSize(int hashWidth) {
+    return 3 + hashWidth + 16;
+  }
+
+  /** Returns null for keys which cannot be represented, which makes the snapshot incomplete. */
+  private static @Nullable Record encode(SizeEntry entry) {
+    String[] components = entry.key().split("_");
+    int end = components.length;
+    byte flags = 0;
+    if (end > 1 && components[end - 1].equals("exec")) {
+      flags = RECORD_EXECUTABLE;
+      end--;
+    } else if (end > 1 && components[end - 1].equals("dir")) {
+      flags = RECORD_DIRECTORY;
+      end--;
+    }
+    DigestUtil digestUtil;
+    if (end == 1) {
+      digestUtil = DigestUtil.parseHash(components[0]);
+    } else if (end == 2) {
+      digestUtil = DigestUtil.forHash(components[0]);
+    } else {
+      return null;
+    }
+    String hash = components[end - 1];
+    if (digestUtil == null) {
+      return null;
+    }
+    try {
+      // validates the hash for the digest function
+      digestUtil.build(hash, entry.size());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    return new Record(
+        digestUtil.getDigestFunction(), flags, HashCode.fromString(hash).asBytes(), entry.size());
+  }
+
+  private static String decodeKey(DigestFunction.Value digestFunction, byte flags, byte[] hash) {
+    Digest digest =
+        Digest.newBuilder()
+            .setHash(HashCode.fromBytes(hash).toString())
+            .setDigestFunction(digestFunction)
+            .build();
+    String filename = CASFileCache.digestFilename(digest);
+    if (flags == RECORD_DIRECTORY) {
+      return filename + "_dir";
+    }
+    return CASFileCache.getKey(digest, flags == RECORD_EXECUTABLE);
+  }
+
+  @Override
+  public void save(List<SizeEntry> entries, Path path, boolean complete) throws IOException {
+    List<Record> records = new ArrayList<>(entries.size());
+    int hashWidth = 0;
+    for (SizeEntry entry : entries) {
+      Record record = encode(entry);
+      if (record == null) {
+        complete = false;
+      } else {
+        records.add(record);
+        hashWidth = Math.max(hashWidth, record.hash().length);
+      }
+    }
+    int recordSize = recordSize(hashWidth);
+
+    Path tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+    CRC32C crc = new CRC32C();
+    try (FileChannel channel = FileChannel.open(tmpPath, CREATE, TRUNCATE_EXISTING, WRITE)) {
+      channel.position(HEADER_SIZE);
+      ByteBuffer buffer = ByteBuffer.allocate(Math.max(WRITE_BUFFER_SIZE, recordSize));
+      long ordinal = 0;
+      for (Record record : records) {
+        if (buffer.remaining() < recordSize) {
+          flush(buffer, channel, crc);
+        }
+        buffer.put((byte) record.digestFunction().getNumber());
+        buffer.put(record.flags());
+        buffer.put((byte) record.hash().length);
+        buffer.put(record.hash());
+        for (int i = record.hash().length; i < hashWidth; i++) {
+          buffer.put((byte) 0);
+        }
+        buffer.putLong(record.size());
+        buffer.putLong(ordinal++);
+      }
+      flush(buffer, channel, crc);
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC);
+      header.putShort(VERSION);
+      header.putShort(complete ? FLAG_COMPLETE : 0);
+      header.putInt(hashWidth);
+      header.putInt(recordSize);
+      header.putLong(records.size());
+      header.putLong(crc.getValue());
+      header.flip();
+      writeFully(channel, header, 0);
+      channel.force(/* metaData= */ true);
+    }
+    Files.move(tmpPath, path, ATOMIC_MOVE, REPLACE_EXISTING);
+  }
+
+  private static void flush(ByteBuffer buffer, FileChannel channel, CRC32C crc)
+      throws IOException {
+    buffer.flip();
+    crc.update(buffer.duplicate());
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  @Override
+  public void invalidate(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, WRITE)) {
+      ByteBuffer flags = ByteBuffer.allocate(2);
+      flags.putShort((short) 0);
+      flags.flip();
+      writeFully(channel, flags, FLAGS_OFFSET);
+      channel.force(/* metaData= */ false);
+    }
+  }
+
+  @Override
+  public Snapshot open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      while (header.hasRemaining()) {
+        if (channel.read(header, header.position()) < 0) {
+          throw new IOException(format("lru snapshot %s is truncated", path));
+        }
+      }
+      header.flip();
+      if (header.getInt() != MAGIC) {
+        throw new IOException(format("lru snapshot %s has an invalid magic", path));
+      }
+      short version = header.getShort();
+      if (version != VERSION) {
+        throw new IOException(format("lru snapshot %s has unknown version %d", path, version));
+      }
+      boolean complete = (header.getShort() & FLAG_COMPLETE) != 0;
+      int hashWidth = header.getInt();
+      int recordSize = header.getInt();
+      long count = header.getLong();
+      long checksum = header.getLong();
+      if (hashWidth < 0 || recordSize != recordSize(hashWidth) || count < 0) {
+        throw new IOException(format("lru snapshot %s has an invalid header", path));
+      }
+      if (channel.size() != HEADER_SIZE + count * recordSize) {
+        throw new IOException(
+            format(
+                "lru snapshot %s is %d bytes, expected %d records of %d bytes",
+                path, channel.size(), count, recordSize));
+      }
+
+      List<MappedByteBuffer> regions = map(channel, recordSize, count);
+      validate(path, regions, recordSize, checksum);
+      return new MappedSnapshot(regions, hashWidth, recordSize, complete);
+    }
+  }
+
+  // each region holds a whole number of records within the 2GiB mapping limit
+  private static List<MappedByteBuffer> map(FileChannel channel, int recordSize, long count)
+      throws IOException {
+    long recordsPerRegion = Integer.MAX_VALUE / recordSize;
+    List<MappedByteBuffer> regions = new ArrayList<>();
+    for (long index = 0; index < count; index += recordsPerRegion) {
+      long records = Math.min(recordsPerRegion, count - index);
+      regions.add(
+          channel.map(
+              FileChannel.MapMode.READ_ONLY,
+              HEADER_SIZE + index * recordSize,
+              records * recordSize));
+    }
+    return regions;
+  }
+
+  private static void validate(
+      Path path, List<MappedByteBuffer> regions, int recordSize, long checksum)
+      throws IOException {
+    CRC32C crc = new CRC32C();
+    long lastOrdinal = -1;
+    for (MappedByteBuffer region : regions) {
+      crc.update(region.duplicate());
+      for (int offset = recordSize - 8; offset < region.limit(); offset += recordSize) {
+        long ordinal = region.getLong(offset);
+        if (ordinal <= lastOrdinal) {
+          throw new IOException(format("lru snapshot %s has out of order records", path));
+        }
+        lastOrdinal = ordinal;
+      }
+    }
+    if (crc.getValue() != checksum) {
+      throw new IOException(format("lru snapshot %s failed checksum validation", path));
+    }
+  }
+
+  private static class MappedSnapshot implements Snapshot {
+    private final List<MappedByteBuffer> regions;
+    private final int hashWidth;
+    private final int recordSize;
+    private final boolean complete;
+
+    MappedSnapshot(
+        List<MappedByteBuffer> regions, int hashWidth, int recordSize, boolean complete) {
+      this.regions = regions;
+      this.hashWidth = hashWidth;
+      this.recordSize = recordSize;
+      this.complete = complete;
+    }
+
+    @Override
+    public boolean isComplete() {
+      return complete;
+    }
+
+    @Override
+    public Iterator<SizeEntry> iterator() {
+      return new Iterator<>() {
+        final Iterator<MappedByteBuffer> regionIterator = regions.iterator();
+        ByteBuffer region = null;
+
+        @Override
+        public boolean hasNext() {
+          while (region == null || !region.hasRemaining()) {
+            if (!regionIterator.hasNext()) {
+              return false;
+            }
+            region = regionIterator.next().duplicate();
+          }
+          return true;
+        }
+
+        @Override
+        public SizeEntry next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          int start = region.position();
+          DigestFunction.Value digestFunction = DigestFunction.Value.forNumber(region.get());
+          byte flags = region.get();
+          int hashLength = Byte.toUnsignedInt(region.get());
+          if (digestFunction == null || hashLength > hashWidth) {
+            throw new IllegalStateException("invalid lru snapshot record");
+          }
+          byte[] hash = new byte[hashLength];
+          region.get(hash);
+          region.position(start + 3 + hashWidth);
+          long size = region.getLong();
+          region.position(start + recordSize);
+          return new SizeEntry(decodeKey(digestFunction, flags, hash), size);
+        }
+      };
+    }
+
+    // mappings are released when the buffers are collected
+    @Override
+    public void close() {}
+  }
+}
@@ -35,6 +35,8 @@ import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static java.nio.file.StandardOpenOption.APPEND;
 import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
 import static java.util.concurrent.TimeUnit.HOURS;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
@@ -51,6 +53,7 @@ import build.bazel.remote.execution.v2.SymlinkNode;
 import build.buildfarm.cas.ContentAddressableStorage;
 import build.buildfarm.cas.DigestMismatchException;
 import build.buildfarm.cas.cfc.LRUDB.SizeEntry;
+import build.buildfarm.common.BlobFilter;
 import build.buildfarm.common.BuildfarmExecutors;
 import build.buildfarm.common.DigestUtil;
 import build.buildfarm.common.DigestUtil.HashFunction;
@@ -64,6 +67,8 @@ import build.buildfarm.common.Write.CompleteWrite;
 import build.buildfarm.common.ZstdCompressingInputStream;
 import build.buildfarm.common.ZstdDecompressingOutputStream;
 import build.buildfarm.common.ZstdDecompressingOutputStream.FixedBufferPool;
+import build.buildfarm.common.ZstdStoredBlob;
+import build.buildfarm.common.function.IOFunction;
 import build.buildfarm.common.grpc.Retrier;
 import build.buildfarm.common.grpc.Retrier.Backoff;
 import build.buildfarm.common.io.CountingOutputStream;
@@ -73,6 +78,7 @@ import build.buildfarm.common.io.FileStatus;
 import build.buildfarm.v1test.BlobWriteKey;
 import build.buildfarm.v1test.Digest;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Throwables;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
@@ -81,6 +87,7 @@ import com.google.common.cache.RemovalListener;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.hash.HashingOutputStream;
 import com.google.common.io.ByteStreams;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -88,6 +95,7 @@ import com.google.common.util.concurrent.SettableFuture;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.gson.Gson;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import io.grpc.Deadline;
 import io.grpc.StatusException;
 import io.grpc.StatusRuntimeException;
@@ -96,15 +104,16 @@ import io.netty.handler.codec.http.QueryStringDecoder;
 import io.prometheus.client.Counter;
 import io.prometheus.client.Gauge;
 import io.prometheus.client.Histogram;
-import java.io.BufferedReader;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileStore;
 import java.nio.file.Files;
@@ -125,9 +134,12 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BooleanSupplier;
@@ -165,6 +177,23 @@ public abstract class CASFileCache implements ContentAddressableStorage {
   private static final Counter readIOErrors =
       Counter.build().name("read_io_errors").help("Number of IO errors on read.").register();
 
+  // startup progress by phase: "list" counts buckets, "scan" files and "compute" directories
+  protected static final Counter loadProgress =
+      Counter.build()
+          .name("cas_load_progress")
+          .labelNames("phase")
+          .help("Number of items processed by each phase of the CAS startup load.")
+          .register();
+  private static final Gauge loadPhaseTime =
+      Gauge.build()
+          .name("cas_load_phase_time_ms")
+          .labelNames("phase")
+          .help("Duration of the most recent run of each CAS startup load phase in ms.")
+          .register();
+
+  // files are scanned in batches, to amortize task overhead over large buckets
+  private static final int SCAN_BATCH_SIZE = 1024;
+
   @Getter private final Path root;
   protected final EntryPathStrategy entryPathStrategy;
   protected final long maxSizeInBytes;
@@ -174,9 +203,13 @@ public abstract class CASFileCache implements ContentAddressableStorage {
   private final Consumer<Iterable<Digest>> onExpire;
   private final Executor accessRecorder;
   private final ExecutorService expireService;
-  private final LRUDB db = new TextLRUDB();
+  private final LRUDB db = new BinaryLRUDB();
   private volatile Deadline saveLRUAfter = Deadline.after(10, MINUTES);
   private final Path lru;
+  private final Path textLru; // read once to migrate from the text format
+  private final boolean trustLruSnapshot;
+  // entries are stored in the ZstdStoredBlob format, and sized by their uncompressed content
+  @Getter private final boolean compressAtRest;
 
   private final FixedBufferPool zstdBufferPool;
   @Nullable private final ContentAddressableStorage delegate;
@@ -220,9 +253,10 @@ public abstract class CASFileCache implements ContentAddressableStorage {
               });
 
   protected FileStore fileStore; // bound to root
-  protected transient long sizeInBytes = 0;
-  protected final transient Entry header = new SentinelEntry();
-  protected volatile long unreferencedEntryCount = 0;
+  protected final AtomicLong sizeInBytes = new AtomicLong();
+  protected final SegmentedLRU lruSegments;
+  // waiters for entries to become unreferenced, or for size to be discharged
+  private final AtomicInteger expireWaiters = new AtomicInteger();
 
   enum State {
     STOPPED,
@@ -234,16 +268,14 @@ public abstract class CASFileCache implements ContentAddressableStorage {
   @GuardedBy("this")
   private State state = State.STOPPED;
 
-  @GuardedBy("this")
-  private long removedEntrySize = 0;
+  private final AtomicLong removedEntrySize = new AtomicLong();
 
-  @GuardedBy("this")
-  private int removedEntryCount = 0;
+  private final AtomicInteger removedEntryCount = new AtomicInteger();
 
   private Thread prometheusMetricsThread;
 
-  public synchronized long size() {
-    return sizeInBytes;
+  public long size() {
+    return sizeInBytes.get();
   }
 
   public long maxSize() {
@@ -255,23 +287,19 @@ public abstract class CASFileCache implements ContentAddressableStorage {
   }
 
   public long unreferencedEntryCount() {
-    return unreferencedEntryCount;
+    return lruSegments.unreferencedCount();
   }
 
   public long directoryStorageCount() {
     return 0;
   }
 
-  public synchronized int getEvictedCount() {
-    int count = removedEntryCount;
-    removedEntryCount = 0;
-    return count;
+  public int getEvictedCount() {
+    return removedEntryCount.getAndSet(0);
   }
 
-  public synchronized long getEvictedSize() {
-    long size = removedEntrySize;
-    removedEntrySize = 0;
-    return size;
+  public long getEvictedSize() {
+    return removedEntrySize.getAndSet(0);
   }
 
   public record CacheScanResults(
@@ -295,6 +323,9 @@ public abstract class CASFileCache implements ContentAddressableStorage {
       long maxSizeInBytes,
       long maxEntrySizeInBytes,
       int hexBucketLevels,
+      int lruSegmentCount,
+      boolean trustLruSnapshot,
+      boolean compressAtRest,
       ExecutorService expireService,
       Executor accessRecorder,
       ConcurrentMap<String, Entry> storage,
@@ -318,8 +349,11 @@ public abstract class CASFileCache implements ContentAddressableStorage {
         new EmptyInputStreamFactory(
             new FailoverInputStreamFactory(this::newTransparentInput, externalInputStreamFactory));
     this.zstdBufferPool = zstdBufferPool;
+    this.trustLruSnapshot = trustLruSnapshot;
+    this.compressAtRest = compressAtRest;
 
-    lru = root.resolve("lru.txt");
+    lru = root.resolve("lru.bin");
+    textLru = root.resolve("lru.txt");
 
     writes =
         CacheBuilder.newBuilder()
@@ -337,8 +371,7 @@ public abstract class CASFileCache implements ContentAddressableStorage {
                 });
 
     entryPathStrategy = new HexBucketEntryPathStrategy(root, hexBucketLevels);
-
-    header.before = header.after = header;
+    lruSegments = new SegmentedLRU(lruSegmentCount);
   }
 
   protected static Digest keyToDigest(String key, long size, DigestUtil digestUtil)
@@ -414,7 +447,7 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     Entry entry = getEntry(key);
     if (entry != null && entry.referenceCount < 0) {
       try {
-        entry = new Entry(key, Files.size(getPath(key)), null);
+        entry = new Entry(key, storedSize(getPath(key)), null);
       } catch (IOException e) {
         return false;
       }
@@ -429,11 +462,10 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     return false;
   }
 
-  private void saveLRU() {
-    List<SizeEntry> list = lruSizeEntryList();
+  private void saveLRU(List<SizeEntry> list, boolean complete) {
     try {
       synchronized (lru) {
-        db.save(list.iterator(), lru);
+        db.save(list, lru, complete);
       }
     } catch (Exception e) {
       log.log(Level.SEVERE, "error saving lru state", e);
@@ -449,7 +481,7 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     expireService.execute(
         () -> {
           try {
-            saveLRU();
+            saveLRU(lruSizeEntryList(), /* complete= */ false);
           } finally {
             saveLRUAfter = Deadline.after(10, MINUTES);
           }
@@ -469,11 +501,11 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     }
   }
 
-  private synchronized void recordAccess(Iterable<String> keys) {
+  private void recordAccess(Iterable<String> keys) {
     for (String key : keys) {
       Entry e = storage.get(key);
       if (e != null) {
-        e.recordAccess(header);
+        lruSegments.recordAccess(e);
       }
     }
   }
@@ -530,6 +562,31 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     return CasFallbackDelegate.findMissingBlobs(delegate, missingDigests, digestFunction);
   }
 
+  /**
+   * Create a filter of the blobs currently held by this cache, for use in negative lookups.
+   *
+   * <p>Blobs held by a delegate are not represented, and a cache with a delegate returns null.
+   */
+  public @Nullable BlobFilter newBlobFilter(double falsePositiveRate) {
+    if (delegate != null) {
+      return null;
+    }
+    // leave room for blobs added before the filter is next replaced
+    long expectedBlobs = storage.size() + storage.size() / 8 + 1024;
+    BlobFilter filter = BlobFilter.create(expectedBlobs, falsePositiveRate);
+    for (String key : storage.keySet()) {
+      if (key.endsWith("_dir")) {
+        continue;
+      }
+      if (key.endsWith("_exec")) {
+        key = key.substring(0, key.length() - "_exec".length());
+      }
+      // the hash follows any digest function prefix
+      filter.put(key.substring(key.lastIndexOf('_') + 1));
+    }
+    return filter;
+  }
+
   @Override
   public boolean contains(Digest digest, build.bazel.remote.execution.v2.Digest.Builder result) {
     return containsLocal(digest, result, (key) -> accessed(ImmutableList.of(key)))
@@ -561,6 +618,49 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     return new ZstdCompressingInputStream(identity);
   }
 
+  private InputStream newEntryInput(Compressor.Value compressor, Path path) throws IOException {
+    if (compressAtRest && compressor == Compressor.Value.ZSTD) {
+      // the stored form is served without recompression
+      return Files.newInputStream(path);
+    }
+    return compressorInputStream(compressor, newIdentityInput(path));
+  }
+
+  /** Returns a stream of the uncompressed content of the entry at path. */
+  protected InputStream newIdentityInput(Path path) throws IOException {
+    InputStream in = Files.newInputStream(path);
+    if (compressAtRest) {
+      return ZstdStoredBlob.newInput(in, zstdBufferPool);
+    }
+    return in;
+  }
+
+  /**
+   * Copy the content of the entry at entryPath to a new file at path. Entries stored compressed are
+   * decompressed, and cannot be hardlinked in place of a copy.
+   */
+  public void copyEntry(Path path, Path entryPath, boolean isExecutable) throws IOException {
+    if (!compressAtRest) {
+      Files.copy(entryPath, path);
+      return;
+    }
+    try (InputStream in = newIdentityInput(entryPath);
+        OutputStream out = Files.newOutputStream(path, CREATE_NEW)) {
+      ByteStreams.copy(in, out);
+    }
+    setReadOnlyPerms(path, isExecutable, fileStore);
+  }
+
+  // the size of the entry at path, as accounted in storage
+  private long storedSize(Path path) throws IOException {
+    if (!compressAtRest) {
+      return Files.size(path);
+    }
+    try (InputStream in = Files.newInputStream(path)) {
+      return ZstdStoredBlob.readSize(in);
+    }
+  }
+
   private Entry getEntry(String key) {
     Entry entry = storage.get(key);
     if (entry != null) {
@@ -574,20 +674,49 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     return null;
   }
 
-  @SuppressWarnings({"ResultOfMethodCallIgnored", "PMD.CompareObjectsWithEquals"})
+  @SuppressWarnings("ResultOfMethodCallIgnored")
   InputStream newLocalInput(Compressor.Value compressor, Digest digest, long offset)
       throws IOException {
     // branch here or above for STARTING
     log.log(Level.FINER, format("getting input stream for %s", DigestUtil.toString(digest)));
+    return openLocal(
+        digest,
+        offset,
+        path -> {
+          InputStream input = newEntryInput(compressor, path);
+          input.skip(offset);
+          return input;
+        });
+  }
+
+  /** Open a channel over the local uncompressed content of digest, positioned at offset. */
+  private FileChannel newLocalChannel(Digest digest, long offset) throws IOException {
+    checkState(!compressAtRest);
+    return openLocal(
+        digest,
+        offset,
+        path -> {
+          FileChannel channel = FileChannel.open(path, READ);
+          try {
+            return channel.position(offset);
+          } catch (IOException e) {
+            channel.close();
+            throw e;
+          }
+        });
+  }
+
+  @SuppressWarnings("PMD.CompareObjectsWithEquals")
+  private <T> T openLocal(Digest digest, long offset, IOFunction<Path, T> open)
+      throws IOException {
     boolean isExecutable = false;
     do {
       String key = getKey(digest, isExecutable);
       Entry e = getEntry(key);
       if (e != null) {
-        InputStream input = null;
+        T input = null;
         try {
-          input = compressorInputStream(compressor, Files.newInputStream(getPath(key)));
-          input.skip(offset);
+          input = open.apply(getPath(key));
         } catch (IOException ioEx) {
           if (!(ioEx instanceof NoSuchFileException)) {
             readIOErrors.inc();
@@ -680,7 +809,8 @@ public abstract class CASFileCache implements ContentAddressableStorage {
       ServerCallStreamObserver<ByteString> blobObserver,
       RequestMetadata requestMetadata) {
     boolean readThrough = shouldReadThrough(requestMetadata);
-    InputStream in;
+    long limit = count;
+    InputStream source;
     try {
       if (readThrough && !contains(digest, /* result= */ null)) {
         // really need to be able to reuse/restart the same write over
@@ -691,20 +821,36 @@ public abstract class CASFileCache implements ContentAddressableStorage {
         // if possible.
         Write write = getWrite(compressor, digest, UUID.randomUUID(), requestMetadata);
         blobObserver.setOnCancelHandler(write::reset);
-        in =
+        // the read through is not limited, so that it completes the write
+        limit = 0;
+        source =
             new ReadThroughInputStream(
                 newExternalInput(compressor, digest, 0),
                 localOffset -> newTransparentInput(compressor, digest, localOffset),
                 digest.getSize(),
                 offset,
                 write);
+      } else if (compressor == Compressor.Value.IDENTITY && !compressAtRest) {
+        FileChannel channel;
+        try {
+          channel = newLocalChannel(digest, offset);
+        } catch (NoSuchFileException e) {
+          channel = null;
+        }
+        if (channel != null) {
+          getFromChannel(channel, count, blobObserver);
+          return;
+        }
+        source = newInput(compressor, digest, offset);
       } else {
-        in = newInput(compressor, digest, offset);
+        source = newInput(compressor, digest, offset);
       }
     } catch (IOException e) {
       blobObserver.onError(e);
       return;
     }
+    // count limits the bytes of the stream, which are compressed for ZSTD
+    InputStream in = limit > 0 ? ByteStreams.limit(source, limit) : source;
 
     blobObserver.setOnCancelHandler(
         () -> {
@@ -714,10 +860,10 @@ public abstract class CASFileCache implements ContentAddressableStorage {
             log.log(Level.SEVERE, "error closing input stream on cancel", e);
           }
         });
-    byte[] buffer = new byte[CHUNK_SIZE];
+    byte[] initialBuffer = new byte[CHUNK_SIZE];
     int initialLength;
     try {
-      initialLength = in.read(buffer);
+      initialLength = in.read(initialBuffer);
     } catch (IOException e) {
       try {
         in.close();
@@ -750,9 +896,15 @@ public abstract class CASFileCache implements ContentAddressableStorage {
         }
       }
 
+      private byte[] buffer = initialBuffer;
+
       void sendBuffer() throws IOException {
         while (len >= 0 && wasReady) {
-          if (len != 0) {
+          if (len == buffer.length) {
+            // a full buffer is handed off rather than copied
+            blobObserver.onNext(UnsafeByteOperations.unsafeWrap(buffer));
+            buffer = new byte[CHUNK_SIZE];
+          } else if (len != 0) {
             blobObserver.onNext(ByteString.copyFrom(buffer, 0, len));
           }
           len = in.read(buffer);
@@ -769,6 +921,75 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     blobObserver.setOnReadyHandler(new ReadOnReadyHandler());
   }
 
+  private static void closeOnError(FileChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      log.log(Level.SEVERE, "error closing file channel", e);
+    }
+  }
+
+  /**
+   * Send count bytes, or the remainder of the file if count is not positive, from channel.
+   *
+   * <p>Each chunk is read into a new array which is handed to the observer without the copy into a
+   * ByteString of the stream path. The read itself still copies through the JDK's temporary direct
+   * buffer, and the marshaller copies each message into its frames. Chunks are kept at CHUNK_SIZE:
+   * larger reads measured slower, since each one allocates and fills a larger array and direct
+   * buffer per thread.
+   */
+  private void getFromChannel(
+      FileChannel channel, long count, ServerCallStreamObserver<ByteString> blobObserver) {
+    blobObserver.setOnCancelHandler(() -> closeOnError(channel));
+    final class ChannelReadOnReadyHandler implements Runnable {
+      private long remaining = count > 0 ? count : Long.MAX_VALUE;
+      private boolean complete = false;
+
+      @Override
+      public void run() {
+        if (complete) {
+          return;
+        }
+        try {
+          while (!complete && blobObserver.isReady()) {
+            sendChunk();
+          }
+          if (complete) {
+            channel.close();
+            blobObserver.onCompleted();
+          }
+        } catch (IOException e) {
+          complete = true;
+          log.log(Level.SEVERE, "error reading from file channel", e);
+          closeOnError(channel);
+          blobObserver.onError(e);
+        }
+      }
+
+      private void sendChunk() throws IOException {
+        byte[] chunk = new byte[(int) Math.min(CHUNK_SIZE, remaining)];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer) < 0) {
+            complete = true;
+            break;
+          }
+        }
+        int length = buffer.position();
+        remaining -= length;
+        if (remaining == 0) {
+          complete = true;
+        }
+        if (length == chunk.length) {
+          blobObserver.onNext(UnsafeByteOperations.unsafeWrap(chunk));
+        } else if (length != 0) {
+          blobObserver.onNext(UnsafeByteOperations.unsafeWrap(chunk, 0, length));
+        }
+      }
+    }
+    blobObserver.setOnReadyHandler(new ChannelReadOnReadyHandler());
+  }
+
   boolean completeWrite(Digest digest) {
     // this should be traded for an event emission
     try {
@@ -1299,16 +1520,34 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     fileStore = Files.getFileStore(root);
   }
 
-  @SuppressWarnings({"PMD.CompareObjectsWithEquals"})
-  private synchronized List<SizeEntry> lruSizeEntryList() {
+  private List<SizeEntry> lruSizeEntryList() {
     /**
      * Steps the entries in order from oldest to newest access The order is used here to insert into
      * the lru on load
      */
+    return lruSegments.sizeEntries();
+  }
+
+  /**
+   * Every entry in storage, with referenced entries retained as the most recently accessed. The
+   * list is complete only if it accounts for every entry in storage once it has been assembled.
+   */
+  private List<SizeEntry> completeSizeEntryList() {
+    List<SizeEntry> referenced = new ArrayList<>();
+    Set<String> referencedKeys = new HashSet<>();
+    for (Entry e : storage.values()) {
+      if (e.referenceCount > 0) {
+        referenced.add(new SizeEntry(e.key, e.size));
+        referencedKeys.add(e.key);
+      }
+    }
     List<SizeEntry> list = new ArrayList<>(storage.size());
-    for (Entry current = header.after; current != header; current = checkNotNull(current.after)) {
-      list.add(new SizeEntry(current.key, current.size));
+    for (SizeEntry entry : lruSizeEntryList()) {
+      if (!referencedKeys.contains(entry.key())) {
+        list.add(entry);
+      }
     }
+    list.addAll(referenced);
     return list;
   }
 
@@ -1319,7 +1558,8 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     }
     // lock ordering, [this] -> [lru]
     // path used as lock due to isolation by filename
-    saveLRU();
+    List<SizeEntry> list = completeSizeEntryList();
+    saveLRU(list, /* complete= */ list.size() == storage.size());
     state = State.STOPPED;
   }
 
@@ -1410,15 +1650,66 @@ public abstract class CASFileCache implements ContentAddressableStorage {
   protected CacheLoadResults loadCache(
       Consumer<Digest> onStartPut, ExecutorService removeDirectoryService)
       throws IOException, InterruptedException {
+    try (LRUDB.Snapshot snapshot = openSnapshot()) {
+      return loadCache(snapshot, onStartPut, removeDirectoryService);
+    }
+  }
+
+  private @Nullable LRUDB.Snapshot openSnapshot() {
+    LRUDB.Snapshot snapshot = null;
+    try {
+      snapshot = db.open(lru);
+      // the cache will diverge from the snapshot once started
+      db.invalidate(lru);
+    } catch (NoSuchFileException e) {
+      try {
+        snapshot = new TextLRUDB().open(textLru);
+      } catch (NoSuchFileException textEx) {
+        // ignore
+      } catch (IOException textEx) {
+        log.log(Level.SEVERE, "error reading text lru state", textEx);
+      }
+    } catch (IOException e) {
+      log.log(Level.SEVERE, "error reading lru state, scanning cache root", e);
+    }
+    return snapshot;
+  }
+
+  /**
+   * Whether the contents of the cache can be restored entirely from a complete lru snapshot,
+   * without a scan of the cache root.
+   */
+  protected boolean isSnapshotLoadable() {
+    return true;
+  }
+
+  private CacheLoadResults loadCache(
+      @Nullable LRUDB.Snapshot snapshot,
+      Consumer<Digest> onStartPut,
+      ExecutorService removeDirectoryService)
+      throws IOException, InterruptedException {
+    if (snapshot != null
+        && snapshot.isComplete()
+        && trustLruSnapshot
+        && isSnapshotLoadable()
+        && loadSnapshot(snapshot, onStartPut)) {
+      return new CacheLoadResults(
+          false,
+          new CacheScanResults(ImmutableList.of(), ImmutableList.of(), null),
+          ImmutableList.of());
+    }
+
     // Phase 1: Scan
     // build scan cache results by analyzing each file on the root.
-    CacheScanResults scan = scanRoot(onStartPut);
+    CacheScanResults scan = scanRoot(snapshot, onStartPut);
     logCacheScanResults(scan);
     deleteInvalidFileContent(scan.deleteFiles, removeDirectoryService);
 
     // Phase 2: Compute
     // recursively construct all directory structures.
+    Stopwatch stopwatch = Stopwatch.createStarted();
     List<Path> invalidDirectories = computeDirectories(scan);
+    loadPhaseTime.labels("compute").set(stopwatch.elapsed(MILLISECONDS));
     logComputeDirectoriesResults(invalidDirectories);
     deleteInvalidFileContent(invalidDirectories, removeDirectoryService);
 
@@ -1458,7 +1749,49 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     return !name.matches("[0-9a-f]{2}");
   }
 
-  private CacheScanResults scanRoot(Consumer<Digest> onStartPut)
+  /**
+   * Load entries from a complete snapshot in place of a scan of the cache root. Entries are
+   * inserted with an expired existence deadline, so that their files are checked on first
+   * reference.
+   *
+   * @return false if the snapshot does not fit the cache, with no entries loaded
+   */
+  private boolean loadSnapshot(LRUDB.Snapshot snapshot, Consumer<Digest> onStartPut) {
+    long snapshotSize = 0;
+    for (SizeEntry entry : snapshot) {
+      if (entry.size() > maxEntrySizeInBytes || entry.size() == 0) {
+        log.log(Level.INFO, format("lru snapshot entry %s does not fit, scanning", entry.key()));
+        return false;
+      }
+      snapshotSize += entry.size();
+    }
+    if (snapshotSize > maxSizeInBytes) {
+      log.log(
+          Level.INFO,
+          format(
+              "lru snapshot size %d exceeds %d bytes, scanning", snapshotSize, maxSizeInBytes));
+      return false;
+    }
+
+    long count = 0;
+    for (SizeEntry entry : snapshot) {
+      String key = entry.key();
+      Entry e = new Entry(key, entry.size(), Deadline.after(0, SECONDS));
+      checkState(storage.put(key, e) == null, key);
+      if (!key.endsWith("_dir")) {
+        FileEntryKey fileEntryKey = checkNotNull(parseFileEntryKey(key, entry.size()), key);
+        onStartPut.accept(fileEntryKey.digest());
+      }
+      lruSegments.dereference(e);
+      sizeInBytes.addAndGet(entry.size());
+      count++;
+    }
+    log.log(Level.INFO, format("loaded %d entries from lru snapshot", count));
+    return true;
+  }
+
+  private CacheScanResults scanRoot(
+      @Nullable LRUDB.Snapshot snapshot, Consumer<Digest> onStartPut)
       throws IOException, InterruptedException {
     // create thread pool
     ExecutorService pool = BuildfarmExecutors.getScanCachePool();
@@ -1468,10 +1801,10 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     ImmutableList.Builder<Path> deleteFilesBuilder = new ImmutableList.Builder<>();
 
     // TODO invalidate mismatched hash prefix
-    Set<Path> files = new HashSet<>();
-    for (Path path : entryPathStrategy) {
-      files.addAll(listDir(path));
-    }
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    Set<Path> files = listBuckets(pool);
+    loadPhaseTime.labels("list").set(stopwatch.elapsed(MILLISECONDS));
+    stopwatch.reset().start();
 
     for (Path branchDir : entryPathStrategy.branchDirectories()) {
       for (Path file : listDir(branchDir)) {
@@ -1484,43 +1817,84 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     }
 
     // TODO test for hex bins
-    try (BufferedReader br = Files.newBufferedReader(lru)) {
-      for (SizeEntry entry : db.entries(br)) {
+    // snapshot entries are processed in order to restore their recency
+    if (snapshot != null) {
+      for (SizeEntry entry : snapshot) {
         // ignore files in the lru that are not present in the directories
         Path path = entryPathStrategy.getPath(entry.key());
         if (files.remove(path)) {
           processRootFile(onStartPut, path, entry, computeDirsBuilder, deleteFilesBuilder);
+          loadProgress.labels("scan").inc();
         }
       }
-      // prevent the lru db from being processed -> removed in the purge below
-      files.remove(lru);
-    } catch (NoSuchFileException e) {
-      // ignore
     }
-    for (Path file : files) {
-      String basename = file.getFileName().toString();
+    // prevent the lru db from being processed -> removed in the purge below
+    files.remove(lru);
+    for (List<Path> batch : Lists.partition(new ArrayList<>(files), SCAN_BATCH_SIZE)) {
       pool.execute(
           () -> {
-            try {
-              FileStatus stat = stat(file, false, fileStore);
-              processRootFile(
-                  onStartPut,
-                  file,
-                  new SizeEntry(basename, stat.getSize()),
-                  computeDirsBuilder,
-                  deleteFilesBuilder);
-            } catch (Exception e) {
-              log.log(Level.SEVERE, "error reading file " + file.toString(), e);
+            for (Path file : batch) {
+              try {
+                String name = file.getFileName().toString();
+                long size;
+                if (compressAtRest && !name.endsWith("_dir")) {
+                  // files not in the stored format are sized as empty, and deleted
+                  size = Math.max(storedSize(file), 0);
+                } else {
+                  FileStatus stat = stat(file, false, fileStore);
+                  size = stat.getSize();
+                }
+                processRootFile(
+                    onStartPut,
+                    file,
+                    new SizeEntry(name, size),
+                    computeDirsBuilder,
+                    deleteFilesBuilder);
+              } catch (Exception e) {
+                log.log(Level.SEVERE, "error reading file " + file.toString(), e);
+              }
             }
+            loadProgress.labels("scan").inc(batch.size());
           });
     }
 
     joinThreads(pool, "Scanning Cache Root...");
+    loadPhaseTime.labels("scan").set(stopwatch.elapsed(MILLISECONDS));
 
     // log information from scanning cache root.
     return new CacheScanResults(computeDirsBuilder.build(), deleteFilesBuilder.build(), null);
   }
 
+  /** List the files of every bucket concurrently on pool. */
+  private Set<Path> listBuckets(ExecutorService pool) throws IOException, InterruptedException {
+    List<Future<List<Path>>> listings = new ArrayList<>();
+    for (Path path : entryPathStrategy) {
+      listings.add(
+          pool.submit(
+              () -> {
+                List<Path> listing = listDir(path);
+                loadProgress.labels("list").inc();
+                return listing;
+              }));
+    }
+    Set<Path> files = new HashSet<>();
+    try {
+      for (Future<List<Path>> listing : listings) {
+        files.addAll(listing.get());
+      }
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new UncheckedExecutionException(e.getCause());
+    } finally {
+      // remaining listings are abandoned on failure
+      for (Future<List<Path>> listing : listings) {
+        listing.cancel(true);
+      }
+    }
+    return files;
+  }
+
   @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
   private void processRootFile(
       Consumer<Digest> onStartPut,
@@ -1539,7 +1913,7 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     } else {
       // if cas is full or entry is oversized or empty, mark file for later deletion.
       long size = entry.size();
-      if (sizeInBytes + size > maxSizeInBytes || size > maxEntrySizeInBytes || size == 0) {
+      if (sizeInBytes.get() + size > maxSizeInBytes || size > maxEntrySizeInBytes || size == 0) {
         synchronized (deleteFiles) {
           deleteFiles.add(path);
         }
@@ -1558,12 +1932,8 @@ public abstract class CASFileCache implements ContentAddressableStorage {
           Entry e = new Entry(key, size, Deadline.after(10, SECONDS));
           checkState(storage.put(e.key, e) == null, key);
           onStartPut.accept(fileEntryKey.digest());
-          synchronized (this) {
-            if (e.decrementReference(header)) {
-              unreferencedEntryCount++;
-            }
-          }
-          sizeInBytes += size;
+          lruSegments.dereference(e);
+          sizeInBytes.addAndGet(size);
         }
       }
     }
@@ -1598,9 +1968,9 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     return digestFilename(digest) + (isExecutable ? "_exec" : "");
   }
 
-  public synchronized void decrementReference(String inputFile) throws IOException {
+  public void decrementReference(String inputFile) throws IOException {
     if (decrementInputReferences(ImmutableList.of(inputFile)) > 0) {
-      notify();
+      notifyExpireWaiters();
     }
   }
 
@@ -1610,7 +1980,6 @@ public abstract class CASFileCache implements ContentAddressableStorage {
       DigestFunction.Value digestFunction)
       throws IOException, InterruptedException;
 
-  @SuppressWarnings("NonAtomicOperationOnVolatileField")
   protected int decrementInputReferences(Iterable<String> inputFiles) {
     int entriesDereferenced = 0;
     for (String input : inputFiles) {
@@ -1622,9 +1991,8 @@ public abstract class CASFileCache implements ContentAddressableStorage {
       if (!e.key.equals(input)) {
         throw new RuntimeException("ERROR: entry retrieved: " + e.key + " != " + input);
       }
-      if (e.decrementReference(header)) {
+      if (lruSegments.dereference(e)) {
         entriesDereferenced++;
-        unreferencedEntryCount++;
       }
     }
     return entriesDereferenced;
@@ -1638,15 +2006,27 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     return entryPathStrategy.getPath(filename + "_removed");
   }
 
-  private synchronized void dischargeAndNotify(String key, long size) {
+  /**
+   * Wake a thread waiting in expiration for an entry to become unreferenced or for size to be
+   * discharged. The monitor is only acquired if there are waiters.
+   */
+  protected void notifyExpireWaiters() {
+    if (expireWaiters.get() > 0) {
+      synchronized (this) {
+        notify();
+      }
+    }
+  }
+
+  private void dischargeAndNotify(String key, long size) {
     discharge(key, size);
-    notify();
+    notifyExpireWaiters();
   }
 
-  protected synchronized void discharge(String key, long size) {
-    sizeInBytes -= size;
-    removedEntryCount++;
-    removedEntrySize += size;
+  protected void discharge(String key, long size) {
+    sizeInBytes.addAndGet(-size);
+    removedEntryCount.incrementAndGet();
+    removedEntrySize.addAndGet(size);
   }
 
   @GuardedBy("this")
@@ -1670,66 +2050,61 @@ public abstract class CASFileCache implements ContentAddressableStorage {
   }
 
   @GuardedBy("this")
-  @SuppressWarnings("PMD.CompareObjectsWithEquals")
   private Entry waitForLastUnreferencedEntry(long blobSizeInBytes) throws InterruptedException {
-    while (header.after == header) { // Intentional reference comparison
-      int references = 0;
-      int keys = 0;
-      int min = -1;
-      int max = 0;
-      String minkey = null;
-      String maxkey = null;
-      log.log(
-          Level.INFO,
-          format(
-              "CASFileCache::expireEntry(%d) header(%s): { after: %s, before: %s }",
-              blobSizeInBytes,
-              header.hashCode(),
-              header.after.hashCode(),
-              header.before.hashCode()));
-      // this should be incorporated in the listenable future construction...
-      for (Map.Entry<String, Entry> pe : storage.entrySet()) {
-        String key = pe.getKey();
-        Entry e = pe.getValue();
-        if (e.referenceCount > max) {
-          max = e.referenceCount;
-          maxkey = key;
+    expireWaiters.incrementAndGet();
+    try {
+      Entry oldest = lruSegments.claimOldest();
+      while (oldest == null) {
+        if (sizeInBytes.get() <= maxSizeInBytes) {
+          return null;
         }
-        if (min == -1 || e.referenceCount < min) {
-          min = e.referenceCount;
-          minkey = key;
+        int references = 0;
+        int keys = 0;
+        int min = -1;
+        int max = 0;
+        String minkey = null;
+        String maxkey = null;
+        // this should be incorporated in the listenable future construction...
+        for (Map.Entry<String, Entry> pe : storage.entrySet()) {
+          String key = pe.getKey();
+          Entry e = pe.getValue();
+          if (e.referenceCount > max) {
+            max = e.referenceCount;
+            maxkey = key;
+          }
+          if (min == -1 || e.referenceCount < min) {
+            min = e.referenceCount;
+            minkey = key;
+          }
+          references += e.referenceCount;
+          keys++;
         }
-        if (e.referenceCount == 0) {
-          log.log(
-              Level.INFO,
-              format(
-                  "CASFileCache::expireEntry(%d) unreferenced entry(%s): { after: %s, before: %s }",
-                  blobSizeInBytes,
-                  e.hashCode(),
-                  e.after == null ? null : e.after.hashCode(),
-                  e.before == null ? null : e.before.hashCode()));
+        if (keys == 0) {
+          throw new IllegalStateException(
+              "CASFileCache::expireEntry("
+                  + blobSizeInBytes
+                  + ") there are no keys to wait for expiration on");
         }
-        references += e.referenceCount;
-        keys++;
-      }
-      if (keys == 0) {
-        throw new IllegalStateException(
-            "CASFileCache::expireEntry("
-                + blobSizeInBytes
-                + ") there are no keys to wait for expiration on");
-      }
-      log.log(
-          Level.INFO,
-          format(
-              "CASFileCache::expireEntry(%d) unreferenced list is empty, %d bytes, %d keys with %d"
-                  + " references, min(%d, %s), max(%d, %s)",
-              blobSizeInBytes, sizeInBytes, keys, references, min, minkey, max, maxkey));
-      wait();
-      if (sizeInBytes <= maxSizeInBytes) {
-        return null;
-      }
+        log.log(
+            Level.INFO,
+            format(
+                "CASFileCache::expireEntry(%d) unreferenced list is empty, %d bytes, %d keys with"
+                    + " %d references, min(%d, %s), max(%d, %s)",
+                blobSizeInBytes,
+                sizeInBytes.get(),
+                keys,
+                references,
+                min,
+                minkey,
+                max,
+                maxkey));
+        wait();
+        oldest = lruSegments.claimOldest();
+      }
+      return oldest;
+    } finally {
+      expireWaiters.decrementAndGet();
     }
-    return header.after;
   }
 
   protected abstract List<ListenableFuture<Void>> unlinkAndExpireDirectories(
@@ -1869,7 +2244,7 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     return entry;
   }
 
-  @SuppressWarnings({"NonAtomicOperationOnVolatileField", "PMD.CompareObjectsWithEquals"})
+  @SuppressWarnings("PMD.CompareObjectsWithEquals")
   @GuardedBy("this")
   private ListenableFuture<Entry> expireEntry(long blobSizeInBytes, ExecutorService service)
       throws IOException, InterruptedException {
@@ -1909,18 +2284,8 @@ public abstract class CASFileCache implements ContentAddressableStorage {
         return entryFuture;
       }
       if (removedEntry == null) {
+        // claimed entries are no longer linked, and will not appear again
         log.log(Level.SEVERE, format("entry %s was already removed during expiration", e.key));
-        if (e.isLinked()) {
-          log.log(Level.SEVERE, format("removing spuriously non-existent entry %s", e.key));
-          e.unlink();
-          unreferencedEntryCount--;
-        } else {
-          log.log(
-              Level.SEVERE,
-              format(
-                  "spuriously non-existent entry %s was somehow unlinked, should not appear again",
-                  e.key));
-        }
       } else {
         log.log(
             Level.SEVERE,
@@ -2308,24 +2673,37 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     }
   }
 
-  protected synchronized boolean referenceIfExists(String key) throws IOException {
+  // replaces the verified content at writePath with its stored compressed form
+  private static Path storeCompressed(Path writePath, long size) throws IOException {
+    Path storePath = writePath.resolveSibling(writePath.getFileName() + ".zst");
+    try (InputStream in = Files.newInputStream(writePath);
+        OutputStream out = ZstdStoredBlob.newOutput(Files.newOutputStream(storePath), size)) {
+      ByteStreams.copy(in, out);
+    } catch (IOException e) {
+      Files.deleteIfExists(storePath);
+      throw e;
+    }
+    Files.delete(writePath);
+    return storePath;
+  }
+
+  protected boolean referenceIfExists(String key) throws IOException {
     Entry e = storage.get(key);
     if (e == null) {
       return false;
     }
 
     if (!entryExists(e)) {
-      Entry removedEntry = storage.remove(key);
-      if (removedEntry != null) {
-        unlinkEntry(removedEntry);
+      synchronized (this) {
+        if (storage.remove(key, e)) {
+          unlinkEntry(e);
+        }
       }
       return false;
     }
 
-    if (e.incrementReference()) {
-      unreferencedEntryCount--;
-    }
-    return true;
+    // entries claimed for expiration are rejected here
+    return lruSegments.reference(e);
   }
 
   private CancellableOutputStream putOrReference(
@@ -2379,18 +2757,28 @@ public abstract class CASFileCache implements ContentAddressableStorage {
   @SuppressWarnings({"ConstantConditions", "ResultOfMethodCallIgnored"})
   protected boolean charge(String key, long blobSizeInBytes, AtomicBoolean requiresDischarge)
       throws IOException, InterruptedException {
+    if (referenceIfExists(key)) {
+      return false;
+    }
+    if (storage.containsKey(key)) {
+      // the entry is being expired, its removal from storage completes under the monitor
+      synchronized (this) {
+        if (referenceIfExists(key)) {
+          return false;
+        }
+      }
+    }
+    requiresDischarge.set(true);
+    if (sizeInBytes.addAndGet(blobSizeInBytes) <= maxSizeInBytes) {
+      return true;
+    }
+
     boolean interrupted = false;
     Iterable<ListenableFuture<Digest>> expiredDigestsFutures;
     synchronized (this) {
-      if (referenceIfExists(key)) {
-        return false;
-      }
-      sizeInBytes += blobSizeInBytes;
-      requiresDischarge.set(true);
-
       ImmutableList.Builder<ListenableFuture<Digest>> builder = ImmutableList.builder();
       try {
-        while (!interrupted && sizeInBytes > maxSizeInBytes) {
+        while (!interrupted && sizeInBytes.get() > maxSizeInBytes) {
           ListenableFuture<Entry> expiredFuture = expireEntry(blobSizeInBytes, expireService);
           interrupted = Thread.interrupted();
           if (expiredFuture != null) {
@@ -2588,8 +2976,12 @@ public abstract class CASFileCache implements ContentAddressableStorage {
           dischargeAndNotify(writeKey, blobSizeInBytes);
           throw new DigestMismatchException(actual, expectedDigest);
         }
+        Path storePath = writePath;
         try {
-          setReadOnlyPerms(writePath, isExecutable, fileStore);
+          if (compressAtRest) {
+            storePath = storeCompressed(writePath, blobSizeInBytes);
+          }
+          setReadOnlyPerms(storePath, isExecutable, fileStore);
         } catch (IOException e) {
           dischargeAndNotify(writeKey, blobSizeInBytes);
           throw e;
@@ -2601,13 +2993,13 @@ public abstract class CASFileCache implements ContentAddressableStorage {
         boolean inserted = false;
         try {
           // acquire the key lock
-          Files.createLink(CASFileCache.this.getPath(key), writePath);
+          Files.createLink(CASFileCache.this.getPath(key), storePath);
           existingEntry = safeStorageInsertion(key, entry);
           inserted = existingEntry == null;
         } catch (FileAlreadyExistsException e) {
           log.log(Level.FINER, "file already exists for " + key + ", nonexistent entry will fail");
         } finally {
-          Files.delete(writePath);
+          Files.delete(storePath);
           if (!inserted) {
             dischargeAndNotify(writeKey, blobSizeInBytes);
           }
@@ -2657,6 +3049,7 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     final long size;
     int referenceCount;
     Deadline existsDeadline;
+    long accessed; // guarded by the SegmentedLRU segment lock
 
     private Entry() {
       key = null;
@@ -2711,39 +3104,9 @@ public abstract class CASFileCache implements ContentAddressableStorage {
       }
       return referenceCount++ == 0;
     }
-
-    // return true iff the entry's state is changed from referenced to unreferenced
-    public boolean decrementReference(Entry header) {
-      if (referenceCount == 0) {
-        throw new IllegalStateException(
-            "entry " + key + " has 0 references and is being decremented...");
-      }
-      if (--referenceCount == 0) {
-        addBefore(header);
-        return true;
-      }
-      return false;
-    }
-
-    public void recordAccess(Entry header) {
-      if (referenceCount == 0) {
-        if (!isLinked()) {
-          throw new IllegalStateException(
-              "entry "
-                  + key
-                  + " has a broken link ("
-                  + before
-                  + ", "
-                  + after
-                  + ") and is being recorded");
-        }
-        unlink();
-        addBefore(header);
-      }
-    }
   }
 
-  private static final class SentinelEntry extends Entry {
+  static final class SentinelEntry extends Entry {
     @Override
     public void unlink() {
       throw new UnsupportedOperationException("sentinal cannot be unlinked");
@@ -2758,16 +3121,6 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     public boolean incrementReference() {
       throw new UnsupportedOperationException("sentinal cannot be referenced");
     }
-
-    @Override
-    public boolean decrementReference(Entry header) {
-      throw new UnsupportedOperationException("sentinal cannot be referenced");
-    }
-
-    @Override
-    public void recordAccess(Entry header) {
-      throw new UnsupportedOperationException("sentinal cannot be accessed");
-    }
   }
 
   private InputStream newExternalInput(Compressor.Value compressor, Digest digest, long offset)
@@ -2815,7 +3168,7 @@ public abstract class CASFileCache implements ContentAddressableStorage {
 
   private void performCopy(Write write, String key) throws IOException {
     try (OutputStream out = write.getOutput(1, MINUTES, () -> {});
-        InputStream in = Files.newInputStream(getPath(key))) {
+        InputStream in = newIdentityInput(getPath(key))) {
       ByteStreams.copy(in, out);
     } catch (IOException ioEx) {
       boolean interrupted = causedByInterrupted(ioEx);
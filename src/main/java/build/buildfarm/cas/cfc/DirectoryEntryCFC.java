@@ -73,6 +73,9 @@ public class DirectoryEntryCFC extends CASFileCache {
       long maxSizeInBytes,
       long maxEntrySizeInBytes,
       int hexBucketLevels,
+      int lruSegmentCount,
+      boolean trustLruSnapshot,
+      boolean compressAtRest,
       ExecutorService expireService,
       Executor accessRecorder,
       ConcurrentMap<String, Entry> storage,
@@ -87,6 +90,9 @@ public class DirectoryEntryCFC extends CASFileCache {
         maxSizeInBytes,
         maxEntrySizeInBytes,
         hexBucketLevels,
+        lruSegmentCount,
+        trustLruSnapshot,
+        compressAtRest,
         expireService,
         accessRecorder,
         storage,
@@ -115,18 +121,16 @@ public class DirectoryEntryCFC extends CASFileCache {
           });
       Entry e = new Entry(key, blobSizeInBytes.get(), Deadline.after(10, HOURS));
       // this is now a little gross
-      if (sizeInBytes + e.size > maxSizeInBytes || e.size > maxEntrySizeInBytes || e.size == 0) {
+      if (sizeInBytes.get() + e.size > maxSizeInBytes
+          || e.size > maxEntrySizeInBytes
+          || e.size == 0) {
         synchronized (invalidDirectories) {
           invalidDirectories.add(path);
         }
       } else {
         storage.put(key, e);
-        synchronized (this) {
-          if (e.decrementReference(header)) {
-            unreferencedEntryCount++;
-          }
-        }
-        sizeInBytes += e.size;
+        lruSegments.dereference(e);
+        sizeInBytes.addAndGet(e.size);
       }
     } catch (Exception e) {
       log.log(Level.SEVERE, "error processing directory " + path.toString(), e);
@@ -145,7 +149,11 @@ public class DirectoryEntryCFC extends CASFileCache {
     ImmutableList.Builder<Path> invalidDirectories = new ImmutableList.Builder<>();
 
     for (Path path : cacheScanResults.computeDirs()) {
-      pool.execute(() -> computeDirectory(path, invalidDirectories));
+      pool.execute(
+          () -> {
+            computeDirectory(path, invalidDirectories);
+            loadProgress.labels("compute").inc();
+          });
     }
 
     joinThreads(pool, "Populating Directories...");
@@ -167,7 +175,7 @@ public class DirectoryEntryCFC extends CASFileCache {
   private void copyLocalFileAndDereference(Path dst, Path src, boolean isExecutable)
       throws IOException {
     // consider charging here, maybe we deserve a digest size...
-    try (InputStream in = Files.newInputStream(src)) {
+    try (InputStream in = newIdentityInput(src)) {
       try (OutputStream out = Files.newOutputStream(dst)) {
         ByteStreams.copy(in, out);
       }
@@ -357,7 +365,7 @@ public class DirectoryEntryCFC extends CASFileCache {
   }
 
   @Override
-  public synchronized void decrementReferences(
+  public void decrementReferences(
       Iterable<String> inputFiles,
       Iterable<build.bazel.remote.execution.v2.Digest> inputDirectories,
       DigestFunction.Value digestFunction)
@@ -370,17 +378,15 @@ public class DirectoryEntryCFC extends CASFileCache {
     // insert after the last 0-reference count entry in list
     inputFiles = Iterables.concat(inputFiles, directoryDigests);
     if (decrementInputReferences(inputFiles) > 0) {
-      notify();
+      notifyExpireWaiters();
     }
     // this is very funky as is, it smells like something we should elevate to parent
-    // even funkier with the synchronized requirement
   }
 
   @Override
   protected synchronized List<ListenableFuture<Void>> unlinkAndExpireDirectories(
       Entry entry, ExecutorService service) {
-    entry.unlink();
-    unreferencedEntryCount--;
+    lruSegments.remove(entry);
     if (entry.referenceCount != 0) {
       log.log(Level.SEVERE, "removed referenced entry " + entry.key);
     }
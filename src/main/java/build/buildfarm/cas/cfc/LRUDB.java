@@ -1,14 +1,26 @@
 package build.buildfarm.cas.cfc;
 
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.Iterator;
+import java.util.List;
 
 interface LRUDB {
   record SizeEntry(String key, long size) {}
 
-  Iterable<SizeEntry> entries(BufferedReader br) throws IOException;
+  /** Entries in order from least to most recently accessed. */
+  interface Snapshot extends Iterable<SizeEntry>, Closeable {
+    /**
+     * A complete snapshot was saved with every entry in the cache on shutdown, and may be loaded in
+     * place of a scan of the cache root.
+     */
+    boolean isComplete();
+  }
 
-  void save(Iterator<SizeEntry> head, Path path) throws IOException;
+  Snapshot open(Path path) throws IOException;
+
+  void save(List<SizeEntry> entries, Path path, boolean complete) throws IOException;
+
+  /** Mark a snapshot as incomplete, once the cache has started and may diverge from it. */
+  void invalidate(Path path) throws IOException;
 }
@@ -95,6 +95,9 @@ public class LegacyDirectoryCFC extends CASFileCache {
       long maxSizeInBytes,
       long maxEntrySizeInBytes,
       int hexBucketLevels,
+      int lruSegmentCount,
+      boolean trustLruSnapshot,
+      boolean compressAtRest,
       boolean storeFileDirsIndexInMemory,
       boolean execRootFallback,
       ExecutorService expireService,
@@ -112,6 +115,9 @@ public class LegacyDirectoryCFC extends CASFileCache {
         maxSizeInBytes,
         maxEntrySizeInBytes,
         hexBucketLevels,
+        lruSegmentCount,
+        trustLruSnapshot,
+        compressAtRest,
         expireService,
         accessRecorder,
         storage,
@@ -225,6 +231,12 @@ public class LegacyDirectoryCFC extends CASFileCache {
     return loadResults;
   }
 
+  // directories and their index are only reconstructed by a scan of the cache root
+  @Override
+  protected boolean isSnapshotLoadable() {
+    return false;
+  }
+
   @Override
   protected boolean shouldDeleteBranchFile(Path branchDir, String name) {
     boolean isRoot = branchDir.equals(getRoot());
@@ -269,6 +281,7 @@ public class LegacyDirectoryCFC extends CASFileCache {
             } catch (Exception e) {
               log.log(Level.SEVERE, "error processing directory " + path.toString(), e);
             }
+            loadProgress.labels("compute").inc();
           });
     }
 
@@ -393,7 +406,6 @@ public class LegacyDirectoryCFC extends CASFileCache {
     }
   }
 
-  @SuppressWarnings("NonAtomicOperationOnVolatileField")
   @Override
   protected synchronized List<ListenableFuture<Void>> unlinkAndExpireDirectories(
       Entry entry, ExecutorService service) {
@@ -411,8 +423,7 @@ public class LegacyDirectoryCFC extends CASFileCache {
 
     // candidate for parent-only method
 
-    entry.unlink();
-    unreferencedEntryCount--;
+    lruSegments.remove(entry);
     if (entry.referenceCount != 0) {
       log.severe("removed referenced entry " + entry.key);
     }
@@ -431,7 +442,13 @@ public class LegacyDirectoryCFC extends CASFileCache {
     return Directories.remove(getDirectoryPath(digest), fileStore, service);
   }
 
-  private void linkCachedFile(Path filePath, Path cacheFilePath) throws IOException {
+  private void linkCachedFile(Path filePath, Path cacheFilePath, boolean isExecutable)
+      throws IOException {
+    if (isCompressAtRest()) {
+      copyEntry(filePath, cacheFilePath, isExecutable);
+      return;
+    }
+
     // = Hardlink Limitations =
     // Creating hardlinks is fast and saves space within the CAS.
     // However, some filesystems such as ext4 have a total hardlink limit of 65k for individual
@@ -562,7 +579,7 @@ public class LegacyDirectoryCFC extends CASFileCache {
         // this seems to be a point that would be great to not be synchronized on...
         for (String input : directoriesIndex.directoryEntries(digest)) {
           Entry fileEntry = storage.get(input);
-          if (fileEntry == null) {
+          if (fileEntry == null || !lruSegments.reference(fileEntry)) {
             log.severe(
                 format(
                     "CASFileCache::putDirectory(%s) exists, but input %s does not, purging it with"
@@ -571,9 +588,6 @@ public class LegacyDirectoryCFC extends CASFileCache {
             e = null;
             break;
           }
-          if (fileEntry.incrementReference()) {
-            unreferencedEntryCount--;
-          }
           checkNotNull(input);
           inputsBuilder.add(input);
         }
@@ -623,7 +637,7 @@ public class LegacyDirectoryCFC extends CASFileCache {
                   digest,
                   directoriesByDigest,
                   (dst, src, size, isExecutable) -> {
-                    linkCachedFile(dst, src);
+                    linkCachedFile(dst, src, isExecutable);
                     // we saw null entries in the built immutable list without synchronization
                     synchronized (inputsBuilder) {
                       inputsBuilder.add(src.getFileName().toString());
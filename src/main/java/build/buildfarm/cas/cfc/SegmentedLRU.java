@@ -0,0 +1,211 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.cas.cfc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import build.buildfarm.cas.cfc.CASFileCache.Entry;
+import build.buildfarm.cas.cfc.LRUDB.SizeEntry;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Reference counting and recency ordering for CASFileCache entries, partitioned by key hash into
+ * independently locked segments.
+ *
+ * <p>Each segment maintains its own list of unreferenced entries, ordered from least to most
+ * recently accessed. Entries are stamped from a shared clock as they are linked, so that the oldest
+ * unreferenced entry across all segments can be selected for expiration without a lock over the
+ * entire cache.
+ */
+class SegmentedLRU {
+  private static final class Segment {
+    private final Entry header = new CASFileCache.SentinelEntry();
+
+    @GuardedBy("this")
+    private long unreferencedCount = 0;
+
+    Segment() {
+      header.before = header.after = header;
+    }
+  }
+
+  private final Segment[] segments;
+  private final AtomicLong clock = new AtomicLong();
+
+  SegmentedLRU(int segmentCount) {
+    checkArgument(segmentCount > 0, "segmentCount must be positive");
+    segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment();
+    }
+  }
+
+  private Segment segmentFor(Entry e) {
+    // spread the key hash, entry keys share long common suffixes
+    int h = e.key.hashCode();
+    h ^= h >>> 16;
+    return segments[Math.floorMod(h, segments.length)];
+  }
+
+  @GuardedBy("segment")
+  private void link(Segment segment, Entry e) {
+    e.accessed = clock.incrementAndGet();
+    e.addBefore(segment.header);
+  }
+
+  /**
+   * Add a reference to the entry, removing it from its segment's unreferenced list if it was
+   * unreferenced.
+   *
+   * @return false iff the entry has been claimed for expiration, and must not be referenced
+   */
+  boolean reference(Entry e) {
+    Segment segment = segmentFor(e);
+    synchronized (segment) {
+      if (e.referenceCount == 0 && !e.isLinked()) {
+        return false;
+      }
+      if (e.incrementReference()) {
+        segment.unreferencedCount--;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Remove a reference from the entry, inserting it as the most recently accessed entry in its
+   * segment if it is no longer referenced.
+   *
+   * @return true iff the entry has become unreferenced
+   */
+  boolean dereference(Entry e) {
+    Segment segment = segmentFor(e);
+    synchronized (segment) {
+      if (e.referenceCount == 0) {
+        throw new IllegalStateException(
+            "entry " + e.key + " has 0 references and is being decremented...");
+      }
+      if (--e.referenceCount == 0) {
+        link(segment, e);
+        segment.unreferencedCount++;
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /** Move an unreferenced entry to the most recently accessed position in its segment. */
+  void recordAccess(Entry e) {
+    Segment segment = segmentFor(e);
+    synchronized (segment) {
+      // referenced entries are not ordered, and unlinked unreferenced entries are expiring
+      if (e.referenceCount == 0 && e.isLinked()) {
+        e.unlink();
+        link(segment, e);
+      }
+    }
+  }
+
+  /** Remove the entry from its segment's unreferenced list, if present. */
+  void remove(Entry e) {
+    Segment segment = segmentFor(e);
+    synchronized (segment) {
+      if (e.isLinked()) {
+        e.unlink();
+        segment.unreferencedCount--;
+      }
+    }
+  }
+
+  /**
+   * Claim the least recently accessed unreferenced entry across all segments for expiration.
+   *
+   * <p>The claimed entry is removed from its segment and cannot be referenced again. The selection
+   * is made without holding every segment lock at once, so under concurrent access the claimed
+   * entry may be slightly more recent than the true global minimum.
+   *
+   * @return the claimed entry, or null if there are no unreferenced entries
+   */
+  @SuppressWarnings("PMD.CompareObjectsWithEquals")
+  @Nullable
+  Entry claimOldest() {
+    for (; ; ) {
+      Segment oldestSegment = null;
+      Entry oldest = null;
+      long oldestAccessed = 0;
+      for (Segment segment : segments) {
+        synchronized (segment) {
+          Entry head = segment.header.after;
+          if (head != segment.header && (oldest == null || head.accessed < oldestAccessed)) {
+            oldestSegment = segment;
+            oldest = head;
+            oldestAccessed = head.accessed;
+          }
+        }
+      }
+      if (oldest == null) {
+        return null;
+      }
+      synchronized (oldestSegment) {
+        // retry if the head was referenced or accessed since it was observed
+        if (oldestSegment.header.after == oldest) {
+          oldest.unlink();
+          oldestSegment.unreferencedCount--;
+          return oldest;
+        }
+      }
+    }
+  }
+
+  long unreferencedCount() {
+    long count = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        count += segment.unreferencedCount;
+      }
+    }
+    return count;
+  }
+
+  /** Unreferenced entries ordered from least to most recently accessed. */
+  @SuppressWarnings("PMD.CompareObjectsWithEquals")
+  List<SizeEntry> sizeEntries() {
+    List<AccessedEntry> entries = new ArrayList<>();
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        for (Entry current = segment.header.after;
+            current != segment.header;
+            current = checkNotNull(current.after)) {
+          entries.add(
+              new AccessedEntry(current.accessed, new SizeEntry(current.key, current.size)));
+        }
+      }
+    }
+    entries.sort(Comparator.comparingLong(AccessedEntry::accessed));
+    List<SizeEntry> list = new ArrayList<>(entries.size());
+    for (AccessedEntry entry : entries) {
+      list.add(entry.sizeEntry());
+    }
+    return list;
+  }
+
+  private record AccessedEntry(long accessed, SizeEntry sizeEntry) {}
+}
@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 class TextLRUDB implements LRUDB {
@@ -50,22 +51,36 @@ class TextLRUDB implements LRUDB {
   }
 
   @Override
-  public Iterable<SizeEntry> entries(BufferedReader br) throws IOException {
-    return new Iterable<>() {
+  public Snapshot open(Path path) throws IOException {
+    BufferedReader br = Files.newBufferedReader(path);
+    return new Snapshot() {
       @Override
       public Iterator<SizeEntry> iterator() {
         return new EntriesIterator(br);
       }
+
+      // the text format does not record completeness
+      @Override
+      public boolean isComplete() {
+        return false;
+      }
+
+      @Override
+      public void close() throws IOException {
+        br.close();
+      }
     };
   }
 
   @Override
-  public void save(Iterator<SizeEntry> entries, Path path) throws IOException {
+  public void save(List<SizeEntry> entries, Path path, boolean complete) throws IOException {
     try (BufferedWriter writer = Files.newBufferedWriter(path)) {
-      while (entries.hasNext()) {
-        SizeEntry entry = entries.next();
+      for (SizeEntry entry : entries) {
         writer.write(format("%s,%d\n", entry.key(), entry.size()));
       }
     }
   }
+
+  @Override
+  public void invalidate(Path path) {}
 }
@@ -0,0 +1,141 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.common;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A compact, serializable filter over blob hashes held by a storage worker.
+ *
+ * <p>The filter may report that a hash is present when it is not, but never that a hash which was
+ * put is absent. Only the hash is considered, so a blob is matched regardless of its digest
+ * function, size, or whether it is stored as executable.
+ *
+ * <p>The filter is a bloom filter with the serialized form and the murmur3 128 bit probe strategy
+ * of Guava's BloomFilter, so that filters written by either may be read by the other. A hash is
+ * reduced to a {@link Key} once, which may then be tested against any number of filters without
+ * hashing it again.
+ */
+public final class BlobFilter {
+  // the ordinal of BloomFilterStrategies.MURMUR128_MITZ_64
+  private static final byte STRATEGY = 1;
+
+  /** The murmur3 hash of a blob hash, from which the bits it sets in any filter are derived. */
+  public record Key(long hash1, long hash2) {}
+
+  private final long[] data;
+  private final long bitSize;
+  private final int numHashFunctions;
+
+  private BlobFilter(long[] data, int numHashFunctions) {
+    this.data = data;
+    this.bitSize = (long) data.length * Long.SIZE;
+    this.numHashFunctions = numHashFunctions;
+  }
+
+  public static BlobFilter create(long expectedBlobs, double falsePositiveRate) {
+    long n = Math.max(expectedBlobs, 1);
+    double p = falsePositiveRate == 0 ? Double.MIN_VALUE : falsePositiveRate;
+    long numBits = Math.max((long) (-n * Math.log(p) / (Math.log(2) * Math.log(2))), 1);
+    int numHashFunctions = Math.max(1, (int) Math.round((double) numBits / n * Math.log(2)));
+    long[] data = new long[Math.toIntExact((numBits + Long.SIZE - 1) / Long.SIZE)];
+    return new BlobFilter(data, numHashFunctions);
+  }
+
+  public static BlobFilter parseFrom(byte[] bytes) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    byte strategy = in.readByte();
+    int numHashFunctions = in.readUnsignedByte();
+    int dataLength = in.readInt();
+    if (strategy != STRATEGY || numHashFunctions == 0 || dataLength <= 0) {
+      throw new IOException(
+          String.format(
+              "invalid blob filter: strategy %d, %d hash functions, %d longs",
+              strategy, numHashFunctions, dataLength));
+    }
+    // after the strategy, hash function count and length
+    if (bytes.length - 6 < (long) dataLength * Long.BYTES) {
+      throw new IOException(
+          String.format(
+              "invalid blob filter: %d bytes is too short for %d longs",
+              bytes.length, dataLength));
+    }
+    long[] data = new long[dataLength];
+    for (int i = 0; i < dataLength; i++) {
+      data[i] = in.readLong();
+    }
+    return new BlobFilter(data, numHashFunctions);
+  }
+
+  public static Key key(String hash) {
+    ByteBuffer bytes =
+        ByteBuffer.wrap(Hashing.murmur3_128().hashString(hash, US_ASCII).asBytes())
+            .order(ByteOrder.LITTLE_ENDIAN);
+    return new Key(bytes.getLong(0), bytes.getLong(Long.BYTES));
+  }
+
+  public void put(String hash) {
+    Key key = key(hash);
+    long combinedHash = key.hash1();
+    for (int i = 0; i < numHashFunctions; i++) {
+      long index = (combinedHash & Long.MAX_VALUE) % bitSize;
+      data[(int) (index >>> 6)] |= 1L << index;
+      combinedHash += key.hash2();
+    }
+  }
+
+  public boolean mightContain(String hash) {
+    return mightContain(key(hash));
+  }
+
+  public boolean mightContain(Key key) {
+    long combinedHash = key.hash1();
+    for (int i = 0; i < numHashFunctions; i++) {
+      long index = (combinedHash & Long.MAX_VALUE) % bitSize;
+      if ((data[(int) (index >>> 6)] & (1L << index)) == 0) {
+        return false;
+      }
+      combinedHash += key.hash2();
+    }
+    return true;
+  }
+
+  public byte[] toByteArray() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(6 + data.length * Long.BYTES);
+    DataOutputStream dout = new DataOutputStream(out);
+    try {
+      dout.writeByte(STRATEGY);
+      dout.writeByte(numHashFunctions);
+      dout.writeInt(data.length);
+      for (long value : data) {
+        dout.writeLong(value);
+      }
+    } catch (IOException e) {
+      // not possible with an in-memory stream
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+}
@@ -16,10 +16,14 @@ package build.buildfarm.common;
 
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
 
+import build.buildfarm.common.config.BuildfarmConfigs;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @class BuildfarmExecutors
@@ -31,18 +35,36 @@ import java.util.concurrent.Executors;
  *     single per-process pool.
  */
 public class BuildfarmExecutors {
+  private static int getCacheLoadParallelism() {
+    int nThreads = BuildfarmConfigs.getInstance().getWorker().getCacheLoadParallelism();
+    return nThreads > 0 ? nThreads : SystemProcessors.get();
+  }
+
+  // as Executors.newWorkStealingPool, with threads named by threadNameFormat
+  private static ExecutorService newWorkStealingPool(int nThreads, String threadNameFormat) {
+    AtomicInteger threadIndex = new AtomicInteger();
+    return new ForkJoinPool(
+        nThreads,
+        pool -> {
+          ForkJoinWorkerThread thread =
+              ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+          thread.setName(String.format(threadNameFormat, threadIndex.getAndIncrement()));
+          return thread;
+        },
+        /* handler= */ null,
+        /* asyncMode= */ true);
+  }
+
   public static ExecutorService getScanCachePool() {
-    int nThreads = SystemProcessors.get();
+    int nThreads = getCacheLoadParallelism();
     String threadNameFormat = "scan-cache-pool-%d";
-    return Executors.newFixedThreadPool(
-        nThreads, new ThreadFactoryBuilder().setNameFormat(threadNameFormat).build());
+    return newWorkStealingPool(nThreads, threadNameFormat);
   }
 
   public static ExecutorService getComputeCachePool() {
-    int nThreads = SystemProcessors.get();
+    int nThreads = getCacheLoadParallelism();
     String threadNameFormat = "compute-cache-pool-%d";
-    return Executors.newFixedThreadPool(
-        nThreads, new ThreadFactoryBuilder().setNameFormat(threadNameFormat).build());
+    return newWorkStealingPool(nThreads, threadNameFormat);
   }
 
   public static ExecutorService getRemoveDirectoryPool() {
@@ -90,6 +112,30 @@ public class BuildfarmExecutors {
     return listeningDecorator(pool);
   }
 
+  public static ListeningExecutorService getFindMissingBlobsPool() {
+    int nThreads = 8;
+    String threadNameFormat = "find-missing-blobs-pool-%d";
+    ExecutorService pool =
+        Executors.newFixedThreadPool(
+            nThreads, new ThreadFactoryBuilder().setNameFormat(threadNameFormat).build());
+    return listeningDecorator(pool);
+  }
+
+  public static ListeningExecutorService getOutputUploadPool(int nThreads) {
+    String threadNameFormat = "output-upload-pool-%d";
+    ExecutorService pool =
+        Executors.newFixedThreadPool(
+            nThreads,
+            new ThreadFactoryBuilder().setNameFormat(threadNameFormat).setDaemon(true).build());
+    return listeningDecorator(pool);
+  }
+
+  public static ExecutorService getPeerFetchPool() {
+    String threadNameFormat = "peer-fetch-pool-%d";
+    return Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat(threadNameFormat).setDaemon(true).build());
+  }
+
   public static ExecutorService getFetchServicePool() {
     int nThreads = 128;
     return Executors.newWorkStealingPool(nThreads);
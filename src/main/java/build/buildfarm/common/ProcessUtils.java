@@ -15,6 +15,7 @@
 package build.buildfarm.common;
 
 import java.io.IOException;
+import java.util.Locale;
 
 /**
  * @class ProcessUtils
@@ -45,4 +46,34 @@ public class ProcessUtils {
   public static synchronized Process threadSafeStart(ProcessBuilder builder) throws IOException {
     return builder.start();
   }
+
+  // The JDK launches processes with posix_spawn on Linux and macOS unless configured otherwise,
+  // which does not copy the address space of the JVM, and its launch helper closes every inherited
+  // file descriptor before it executes the program. That shrinks the window above to the start of
+  // the helper, which is brief enough to forgo the lock when starts are a bottleneck.
+  private static final boolean POSIX_SPAWN_LAUNCH = isPosixSpawnLaunch();
+
+  private static boolean isPosixSpawnLaunch() {
+    String osName = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+    if (!osName.contains("linux") && !osName.contains("mac")) {
+      return false;
+    }
+    String launchMechanism = System.getProperty("jdk.lang.Process.launchMechanism");
+    return launchMechanism == null || launchMechanism.equalsIgnoreCase("POSIX_SPAWN");
+  }
+
+  /**
+   * @brief Start a process, concurrently with other starts if requested and supported.
+   * @details Starts are serialized with threadSafeStart unless concurrent is set and processes are
+   *     launched with posix_spawn.
+   * @param builder The process to start.
+   * @param concurrent Whether the start may proceed concurrently with others.
+   * @return The started process.
+   */
+  public static Process start(ProcessBuilder builder, boolean concurrent) throws IOException {
+    if (concurrent && POSIX_SPAWN_LAUNCH) {
+      return builder.start();
+    }
+    return threadSafeStart(builder);
+  }
 }
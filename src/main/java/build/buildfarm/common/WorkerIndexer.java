@@ -14,12 +14,21 @@
 
 package build.buildfarm.common;
 
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
 import io.prometheus.client.Gauge;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.java.Log;
+import redis.clients.jedis.AbstractPipeline;
 import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.UnifiedJedis;
 import redis.clients.jedis.params.ScanParams;
 import redis.clients.jedis.resps.ScanResult;
@@ -28,7 +37,8 @@ import redis.clients.jedis.resps.ScanResult;
  * @class WorkerIndexer
  * @brief Handle the reindexing the CAS entries based on a departing worker.
  * @details When workers leave the cluster, the CAS keys must be updated to inform other workers
- *     that they can no longer obtain CAS data from the missing worker.
+ *     that they can no longer obtain CAS data from the missing worker. Every worker which is not
+ *     active is removed in the same pass, so many departures are handled at once.
  */
 @Log
 public class WorkerIndexer {
@@ -44,11 +54,23 @@ public class WorkerIndexer {
           .labelNames("node")
           .help("Indexer results - Number of hosts removed")
           .register();
+  private static final Gauge indexerKeysScannedGauge =
+      Gauge.build()
+          .name("cas_indexer_scanned_keys")
+          .labelNames("node")
+          .help("Indexer progress - Number of keys scanned by the current or last reindex")
+          .register();
+  private static final Gauge indexerKeysPerSecondGauge =
+      Gauge.build()
+          .name("cas_indexer_keys_per_second")
+          .labelNames("node")
+          .help("Indexer throughput - Keys scanned per second by the current or last reindex")
+          .register();
 
   /**
    * @brief Handle the reindexing the CAS entries based on a departing worker.
    * @details This is intended to be called by a service endpoint as part of gracefully shutting
-   *     down a worker.
+   *     down a worker. The nodes of a cluster are scanned concurrently.
    * @param cluster An established redis cluster.
    * @param settings Settings on how to traverse the CAS and which worker to remove.
    * @return Results from re-indexing the worker in the CAS.
@@ -57,45 +79,77 @@ public class WorkerIndexer {
   public static CasIndexResults removeWorkerIndexesFromCas(
       UnifiedJedis jedis, CasIndexSettings settings) {
     CasIndexResults results = new CasIndexResults();
+    Set<String> activeWorkers = jedis.hkeys("Workers");
 
     if (jedis instanceof JedisCluster cluster) {
       // JedisCluster only supports SCAN commands with MATCH patterns containing hash-tags.
       // This prevents us from using the cluster's SCAN to traverse all of the CAS.
       // That's why we choose to scan each of the jedisNode's individually.
-      cluster
-          .getClusterNodes()
-          .values()
-          .forEach(
-              pool -> {
-                try (UnifiedJedis node = new UnifiedJedis(pool.getResource())) {
-                  reindexNode(cluster, node, settings, results);
-                }
-              });
+      List<Future<CasIndexResults>> nodeResults = new ArrayList<>();
+      try (ExecutorService service = Executors.newVirtualThreadPerTaskExecutor()) {
+        cluster
+            .getClusterNodes()
+            .forEach(
+                (nodeName, pool) ->
+                    nodeResults.add(
+                        service.submit(
+                            () -> {
+                              try (UnifiedJedis node = new UnifiedJedis(pool.getResource())) {
+                                return reindexNode(
+                                    cluster, node, nodeName, activeWorkers, settings);
+                              }
+                            })));
+      }
+      for (Future<CasIndexResults> nodeResult : nodeResults) {
+        try {
+          add(results, nodeResult.get());
+        } catch (ExecutionException e) {
+          throw new IllegalStateException("error reindexing cas", e.getCause());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("interrupted reindexing cas", e);
+        }
+      }
     } else {
-      reindexNode(jedis, jedis, settings, results);
+      add(results, reindexNode(jedis, jedis, jedis.toString(), activeWorkers, settings));
     }
     return results;
   }
 
+  private static void add(CasIndexResults results, CasIndexResults nodeResults) {
+    results.totalKeys += nodeResults.totalKeys;
+    results.removedKeys += nodeResults.removedKeys;
+    results.removedHosts += nodeResults.removedHosts;
+  }
+
   /**
-   * @brief Scan all CAS entires on existing Jedis node and remove particular worker indices.
-   * @details Results are accumulated onto.
+   * @brief Scan all CAS entires on existing Jedis node and remove inactive worker indices.
+   * @details Each page of the scan is read and updated with one pipeline each. Inactive workers are
+   *     removed from entries rather than active ones rewritten, so that workers which register
+   *     locations during the scan keep them.
    * @param cluster An established redis cluster.
    * @param node A node of the cluster.
+   * @param nodeName The name of the node for metrics.
+   * @param activeWorkers The workers which remain in the cluster.
    * @param settings Settings on how to traverse the CAS and which worker to remove.
-   * @param results Accumulating results from performing reindexing.
+   * @return Results from re-indexing the node.
    */
-  @SuppressWarnings({"unchecked", "rawtypes"})
-  private static void reindexNode(
-      UnifiedJedis cluster, UnifiedJedis node, CasIndexSettings settings, CasIndexResults results) {
-    Long totalKeys = 0L;
-    Long removedKeys = 0L;
-    Long removedHosts = 0L;
-    Set<String> activeWorkers = cluster.hkeys("Workers");
+  private static CasIndexResults reindexNode(
+      UnifiedJedis cluster,
+      UnifiedJedis node,
+      String nodeName,
+      Set<String> activeWorkers,
+      CasIndexSettings settings) {
+    CasIndexResults results = new CasIndexResults();
     log.info(
         String.format(
             "Initializing CAS Indexer for Node %s with %d active workers.",
-            node.toString(), activeWorkers.size()));
+            nodeName, activeWorkers.size()));
+    Gauge.Child keysScanned = indexerKeysScannedGauge.labels(nodeName);
+    Gauge.Child keysPerSecond = indexerKeysPerSecondGauge.labels(nodeName);
+    keysScanned.set(0);
+    keysPerSecond.set(0);
+    Stopwatch stopwatch = Stopwatch.createStarted();
 
     // iterate over all CAS entries via scanning
     // and remove worker from the CAS keys.
@@ -104,35 +158,57 @@ public class WorkerIndexer {
     params.match(settings.casQuery);
     params.count(settings.scanAmount);
 
-    String cursor = "0";
-    ScanResult scanResult;
+    String cursor = ScanParams.SCAN_POINTER_START;
     do {
-      scanResult = node.scan(cursor, params);
-      if (scanResult != null) {
-        List<String> casKeys = scanResult.getResult();
-        for (String casKey : casKeys) {
-          totalKeys += casKeys.size();
-          Set<String> intersectSource = cluster.smembers(casKey);
-          Set<String> intersectResult =
-              intersectSource.stream()
-                  .distinct()
-                  .filter(activeWorkers::contains)
-                  .collect(Collectors.toSet());
-          removedHosts += (intersectSource.size() - intersectResult.size());
-          if (intersectResult.isEmpty()) {
-            removedKeys++;
-            cluster.del(casKey);
-          } else {
-            cluster.sadd(casKey, intersectResult.toArray(new String[0]));
+      ScanResult<String> scanResult = node.scan(cursor, params);
+      List<String> casKeys = scanResult.getResult();
+      if (!casKeys.isEmpty()) {
+        reindexKeys(cluster, casKeys, activeWorkers, results);
+        results.totalKeys += casKeys.size();
+        keysScanned.set(results.totalKeys);
+        long elapsedMicros = stopwatch.elapsed(TimeUnit.MICROSECONDS);
+        if (elapsedMicros > 0) {
+          keysPerSecond.set(results.totalKeys * 1e6 / elapsedMicros);
+        }
+      }
+      cursor = scanResult.getCursor();
+    } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+    indexerHostsRemovedGauge.labels(nodeName).set(results.removedHosts);
+    indexerKeysRemovedGauge.labels(nodeName).set(results.removedKeys);
+    log.info(
+        String.format(
+            "CAS Indexer for Node %s scanned %d keys in %s.",
+            nodeName, results.totalKeys, stopwatch));
+    return results;
+  }
+
+  private static void reindexKeys(
+      UnifiedJedis cluster,
+      List<String> casKeys,
+      Set<String> activeWorkers,
+      CasIndexResults results) {
+    List<Response<Set<String>>> members = new ArrayList<>(casKeys.size());
+    try (AbstractPipeline pipeline = cluster.pipelined()) {
+      for (String casKey : casKeys) {
+        members.add(pipeline.smembers(casKey));
+      }
+    }
+    try (AbstractPipeline pipeline = cluster.pipelined()) {
+      for (int i = 0; i < casKeys.size(); i++) {
+        Set<String> workers = members.get(i).get();
+        List<String> inactiveWorkers =
+            workers.stream()
+                .filter(worker -> !activeWorkers.contains(worker))
+                .collect(ImmutableList.toImmutableList());
+        if (!inactiveWorkers.isEmpty()) {
+          // a set is deleted along with its last member
+          pipeline.srem(casKeys.get(i), inactiveWorkers.toArray(new String[0]));
+          results.removedHosts += inactiveWorkers.size();
+          if (inactiveWorkers.size() == workers.size()) {
+            results.removedKeys++;
           }
         }
-        cursor = scanResult.getCursor();
       }
-    } while (!cursor.equals("0"));
-    results.totalKeys += totalKeys;
-    results.removedKeys += removedKeys;
-    results.removedHosts += removedHosts;
-    indexerHostsRemovedGauge.labels(node.toString()).set(removedHosts);
-    indexerKeysRemovedGauge.labels(node.toString()).set(removedKeys);
+    }
   }
 }
@@ -0,0 +1,84 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.common;
+
+import build.buildfarm.common.ZstdDecompressingOutputStream.FixedBufferPool;
+import build.buildfarm.common.ZstdDecompressingOutputStream.ZstdFixedBufferPool;
+import com.github.luben.zstd.ZstdInputStreamNoFinalizer;
+import com.github.luben.zstd.ZstdOutputStreamNoFinalizer;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import javax.annotation.Nullable;
+
+/**
+ * The format of blobs which are stored zstd compressed.
+ *
+ * <p>A stored blob is a zstd skippable frame carrying the uncompressed size of the blob, followed
+ * by the compressed blob. Decoders ignore skippable frames, so the stored form may be served as is
+ * to any client which requested zstd compression, while the uncompressed size remains available
+ * without decompressing the blob.
+ */
+public final class ZstdStoredBlob {
+  // any of the 16 skippable frame magic numbers is valid, this one is ours
+  private static final int SIZE_FRAME_MAGIC = 0x184D2A5B;
+  private static final int SIZE_FRAME_CONTENT_LENGTH = 8;
+  public static final int SIZE_FRAME_LENGTH = 8 + SIZE_FRAME_CONTENT_LENGTH;
+
+  private ZstdStoredBlob() {}
+
+  /** Returns a stream which stores the blob of size written to it into out. */
+  public static OutputStream newOutput(OutputStream out, long size) throws IOException {
+    out.write(
+        ByteBuffer.allocate(SIZE_FRAME_LENGTH)
+            .order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(SIZE_FRAME_MAGIC)
+            .putInt(SIZE_FRAME_CONTENT_LENGTH)
+            .putLong(size)
+            .array());
+    return new ZstdOutputStreamNoFinalizer(out);
+  }
+
+  /**
+   * Returns a stream of the uncompressed blob stored in in. Decoder buffers are borrowed from pool
+   * if one is provided.
+   */
+  public static InputStream newInput(InputStream in, @Nullable FixedBufferPool pool)
+      throws IOException {
+    if (pool == null) {
+      return new ZstdInputStreamNoFinalizer(in);
+    }
+    return new ZstdInputStreamNoFinalizer(in, new ZstdFixedBufferPool(pool));
+  }
+
+  /**
+   * Reads the uncompressed size of the blob stored in in, consuming the size frame. Returns -1 if
+   * in does not begin with a size frame.
+   */
+  public static long readSize(InputStream in) throws IOException {
+    byte[] frame = new byte[SIZE_FRAME_LENGTH];
+    if (ByteStreams.read(in, frame, 0, frame.length) != frame.length) {
+      return -1;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(frame).order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.getInt() != SIZE_FRAME_MAGIC || buffer.getInt() != SIZE_FRAME_CONTENT_LENGTH) {
+      return -1;
+    }
+    return buffer.getLong();
+  }
+}
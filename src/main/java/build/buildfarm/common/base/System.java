@@ -19,6 +19,10 @@ public final class System {
     return java.lang.System.getProperty("os.name").equals("Mac OS X");
   }
 
+  public static boolean isLinux() {
+    return java.lang.System.getProperty("os.name").equals("Linux");
+  }
+
   public static boolean isWindows() {
     return java.lang.System.getProperty("os.name").startsWith("Windows");
   }
@@ -16,6 +16,11 @@ public class Backplane {
     SHARD
   }
 
+  public enum QUEUE_ENTRY_ENCODING {
+    JSON,
+    BINARY
+  }
+
   private BACKPLANE_TYPE type = BACKPLANE_TYPE.SHARD;
   private String redisUri;
   private int jedisPoolMaxTotal = 200;
@@ -25,6 +30,8 @@ public class Backplane {
   private boolean connectionValidatedOnBorrow = false;
   private String workersHashName = "Workers";
   private String workerChannel = "WorkerChannel";
+  private String queueChannel = "QueueChannel";
+  private boolean queueNotifications = false;
   private String actionCachePrefix = "ActionCache";
   private int actionCacheExpire = 2419200; // 4 Weeks
   private String actionBlacklistPrefix = "ActionBlacklist";
@@ -42,9 +49,29 @@ public class Backplane {
   private String dispatchingPrefix = "Dispatching";
   private int dispatchingTimeoutMillis = 10000;
   private String dispatchedOperationsHashName = "DispatchedOperations";
+  private String dispatchedDeadlinesPrefix = "DispatchedDeadlines";
+
+  /**
+   * Number of slices of a sorted set index of dispatched operations by requeue deadline, which the
+   * dispatched monitors of servers divide between them. 0 disables the index, and each monitor
+   * scans every dispatched operation instead.
+   */
+  private int dispatchedDeadlineSlices = 0;
+
+  /**
+   * Number of dispatched monitor intervals between scans of every dispatched operation into the
+   * index by one of the servers, which finds operations dispatched by a server without the index.
+   * 0 disables the scan, and the index must then be enabled for every server before any monitor
+   * uses it.
+   */
+  private int dispatchedDeadlinesScanIntervals = 60;
+
   private String operationChannelPrefix = "OperationChannel";
   private String casPrefix = "ContentAddressableStorage";
   private int casExpire = 604800; // 1 Week
+  private String blobFilterPrefix = "BlobFilter";
+  private long casLocationBatchWindowMillis = 0;
+  private int casLocationMaxPendingUpdates = 100000;
   private String correlatedInvocationsIndexPrefix = "CorrelatedInvocationsIndex";
   private int maxCorrelatedInvocationsIndexTimeout = 3 * 24 * 60 * 60; // 3 Days
   private String correlatedInvocationsPrefix = "CorrelatedInvocations";
@@ -61,6 +88,22 @@ public class Backplane {
   private int maxQueueDepth = 100000;
   private int maxPreQueueDepth = 1000000;
   private boolean priorityQueue = false;
+
+  /**
+   * Encoding used for entries written to the execution queue. Entries in either encoding are always
+   * accepted on dequeue, so BINARY should only be selected once every server and worker in the
+   * cluster is capable of reading it.
+   */
+  private QUEUE_ENTRY_ENCODING queueEntryEncoding = QUEUE_ENTRY_ENCODING.JSON;
+
+  /**
+   * Dispatch execution queue entries with a single lua script which pops the entry and records it
+   * as dispatched. Only used with a non-cluster redis and without priority queues, and only for
+   * JSON encoded entries. This is a no-op for redis clusters, where the keys of the script do not
+   * share a slot.
+   */
+  private boolean scriptedDispatch = false;
+
   private Queue[] queues = {};
   private String redisCredentialFile;
   private String redisUsername;
@@ -21,6 +21,10 @@ public class Cas {
   // MEMORY/FILESYSTEM
   private String path = "cache";
   private int hexBucketLevels = 0;
+  private int lruSegments = 16;
+  private boolean trustLruSnapshot = false;
+  // store entries zstd compressed, serving zstd reads without recompression
+  private boolean compressAtRest = false;
   private long maxSizeBytes = 0;
   private boolean fileDirectoriesIndexInMemory = false;
   private boolean skipLoad = false;
@@ -28,6 +32,10 @@ public class Cas {
   // if creating a hardlink fails, copy the file instead
   private boolean execRootCopyFallback = false;
 
+  // FUSE
+  // the blocks of blobs read through fuse are cached on the heap
+  private long fuseBlockCacheSizeBytes = 128L * 1024 * 1024;
+
   // GRPC
   private String target;
   private boolean readonly = false;
@@ -46,6 +46,14 @@ public class Server {
   private int maxInboundMetadataSize = 0;
   private ServerCacheConfigs caches = new ServerCacheConfigs();
   private boolean findMissingBlobsViaBackplane = false;
+  private int blobFilterRefreshIntervalSeconds = 0;
+  private long blobFilterMaxBytes = 256 * 1024 * 1024;
+
+  /**
+   * Queued operations up to this serialized size are carried in their queue entry instead of being
+   * written to the CAS. Only enable once every worker is capable of reading them. 0 disables.
+   */
+  private int inlineQueuedOperationMaxBytes = 0;
   private int gracefulShutdownSeconds = 0;
   private Set<String> correlatedInvocationsIndexScopes = ImmutableSet.of("host", "username");
 
@@ -52,4 +52,20 @@ public class ServerCacheConfigs {
    * @details This will not dictate the max memory used.
    */
   private long recentServedExecutionsCacheMaxEntries = 64 * 1024;
+
+  /**
+   * @field treeCacheMaxBytes
+   * @brief The max serialized size of input trees that the tree cache will hold.
+   * @details Trees are cached by root digest once every directory has been found, and serve every
+   *     page of GetTree for them. A first page of GetTree waits for its whole tree when enabled. 0
+   *     disables.
+   */
+  private long treeCacheMaxBytes = 0;
+
+  /**
+   * @field actionResultCacheMaxBytes
+   * @brief The max serialized size of action results that the local action cache will hold.
+   * @details Results which are frequently used are preferred over large ones when full.
+   */
+  private long actionResultCacheMaxBytes = 256 * 1024 * 1024;
 }
@@ -45,15 +45,25 @@ public class Worker {
   private int executeStageWidthOffset = 0;
   private int inputFetchStageWidth = 0;
   private int inputFetchDeadline = 60;
+  private int inputPrefetchDepth = 0;
+  private long inputPrefetchMaxBytes = 1024L * 1024 * 1024;
+  private long inputPrefetchBytesPerSecond = 0;
+  private int peerFetchChunkSize = 0;
+  private int peerFetchMaxSources = 4;
   private int reportResultStageWidth = 1;
+  private int outputUploadConcurrency = 0;
+  private long outputUploadInMemoryLimit = 4 * 1024 * 1024;
   private boolean linkExecFileSystem = true;
   private boolean linkInputDirectories = true;
   private List<String> linkedInputDirectories = Arrays.asList("^(?!external$).*$");
+  // pooled exec dirs hold references to their input files, which cannot be expired from the cache
+  private int execDirPoolSize = 0;
   private String execOwner;
   private List<String> execOwners = new ArrayList<>();
   private int defaultMaxCores = 0;
   private boolean limitGlobalExecution = false;
   private boolean onlyMulticoreTests = false;
+  private boolean concurrentProcessStarts = false;
   private boolean allowBringYourOwnContainer = false;
   private boolean errorOperationRemainingResources = false;
   private int gracefulShutdownSeconds = 0;
@@ -69,6 +79,9 @@ public class Worker {
 
   private boolean errorOperationOutputSizeExceeded = false;
   private boolean legacyDirectoryFileCache = false;
+  private int cacheLoadParallelism = 0;
+  private int blobFilterPublishIntervalSeconds = 0;
+  private double blobFilterFalsePositiveRate = 0.01;
   private boolean absolutizeCommandProgram = isWindows();
 
   public List<ExecutionPolicy> getExecutionPolicies() {
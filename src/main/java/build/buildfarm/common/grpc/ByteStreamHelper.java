@@ -54,8 +54,35 @@ public final class ByteStreamHelper {
       Predicate<Status> isRetriable,
       @Nullable ListeningScheduledExecutorService retryService)
       throws IOException {
+    return newInput(
+        resourceName,
+        offset,
+        /* limit= */ 0,
+        endpoint,
+        bsStubSupplier,
+        backoffSupplier,
+        isRetriable,
+        retryService);
+  }
+
+  /** Read at most limit bytes of the resource from offset, with a limit of 0 reading to the end. */
+  @SuppressWarnings("Guava")
+  public static InputStream newInput(
+      String resourceName,
+      long offset,
+      long limit,
+      String endpoint,
+      Supplier<ByteStreamStub> bsStubSupplier,
+      Supplier<Backoff> backoffSupplier,
+      Predicate<Status> isRetriable,
+      @Nullable ListeningScheduledExecutorService retryService)
+      throws IOException {
     ReadRequest request =
-        ReadRequest.newBuilder().setResourceName(resourceName).setReadOffset(offset).build();
+        ReadRequest.newBuilder()
+            .setResourceName(resourceName)
+            .setReadOffset(offset)
+            .setReadLimit(limit)
+            .build();
     BlockingQueue<ByteString> queue = new ArrayBlockingQueue<>(1);
     ByteStringQueueInputStream inputStream = new ByteStringQueueInputStream(queue);
     // this interface needs to operate similar to open, where it
@@ -84,9 +111,11 @@ public final class ByteStreamHelper {
 
           private void retryRequest() {
             requestOffset = currentOffset;
-            bsStubSupplier
-                .get()
-                .read(request.toBuilder().setReadOffset(requestOffset).build(), this);
+            ReadRequest.Builder retry = request.toBuilder().setReadOffset(requestOffset);
+            if (limit != 0) {
+              retry.setReadLimit(limit - (requestOffset - offset));
+            }
+            bsStubSupplier.get().read(retry.build(), this);
           }
 
           @Override
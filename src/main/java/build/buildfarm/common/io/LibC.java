@@ -29,4 +29,12 @@ public interface LibC {
   int closedir(Pointer dir);
 
   Pointer readdir(Pointer d);
+
+  int open(String path, int flags, int mode);
+
+  int close(int fd);
+
+  int ioctl(int fd, long request, int arg);
+
+  int unlink(String path);
 }
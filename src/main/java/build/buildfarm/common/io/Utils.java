@@ -15,6 +15,7 @@
 package build.buildfarm.common.io;
 
 import static build.buildfarm.common.base.System.isDarwin;
+import static build.buildfarm.common.base.System.isLinux;
 
 import com.google.common.base.Strings;
 import com.google.common.base.Supplier;
@@ -28,6 +29,7 @@ import java.lang.reflect.Field;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileStore;
 import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
@@ -43,6 +45,7 @@ import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import javax.annotation.Nullable;
+import jnr.constants.platform.Errno;
 import jnr.constants.platform.OpenFlags;
 import jnr.ffi.LibraryLoader;
 import jnr.ffi.Pointer;
@@ -421,6 +424,64 @@ public final class Utils {
     return fd > 0;
   }
 
+  // _IOW(0x94, 9, int) from linux/fs.h
+  private static final long FICLONE = 0x40049409L;
+
+  private static IOException lastError(String operation, Path path) {
+    return new IOException(
+        String.format("%s %s: %s", operation, path, Errno.valueOf(runtime().getLastError())));
+  }
+
+  /**
+   * Clone source to a new file at target, sharing its extents copy-on-write. The clone is a
+   * separate inode, so that a write to either file is not seen through the other.
+   *
+   * @return false, leaving no file at target, if the file system of source does not support
+   *     reflinks or target is on another file system.
+   */
+  @SuppressWarnings("OctalInteger")
+  public static boolean reflink(Path source, Path target) throws IOException {
+    FileSystem defaultFileSystem = FileSystems.getDefault();
+    if (!isLinux()
+        || source.getFileSystem() != defaultFileSystem
+        || target.getFileSystem() != defaultFileSystem) {
+      return false;
+    }
+    LibC libc = Utils.libc.get();
+    int sourceFd = libc.open(source.toString(), OpenFlags.O_RDONLY.intValue(), 0);
+    if (sourceFd < 0) {
+      throw lastError("open", source);
+    }
+    try {
+      int targetFd =
+          libc.open(
+              target.toString(),
+              OpenFlags.O_WRONLY.intValue()
+                  | OpenFlags.O_CREAT.intValue()
+                  | OpenFlags.O_EXCL.intValue(),
+              0600);
+      if (targetFd < 0) {
+        throw lastError("open", target);
+      }
+      int result = libc.ioctl(targetFd, FICLONE, sourceFd);
+      int errno = runtime().getLastError();
+      libc.close(targetFd);
+      if (result == 0) {
+        return true;
+      }
+      libc.unlink(target.toString());
+      if (errno == Errno.EXDEV.intValue()
+          || errno == Errno.EOPNOTSUPP.intValue()
+          || errno == Errno.EINVAL.intValue()) {
+        return false;
+      }
+      throw new IOException(
+          String.format("reflink %s to %s: %s", source, target, Errno.valueOf(errno)));
+    } finally {
+      libc.close(sourceFd);
+    }
+  }
+
   public static <T> T getInterruptiblyOrIOException(ListenableFuture<T> future)
       throws IOException, InterruptedException {
     try {
@@ -32,6 +32,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
@@ -42,6 +43,7 @@ import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisCluster;
 import redis.clients.jedis.JedisPooled;
 import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
 import redis.clients.jedis.resps.ScanResult;
 import redis.clients.jedis.util.JedisClusterCRC16;
 
@@ -61,6 +63,8 @@ public class BalancedRedisQueue {
 
   public record BalancedQueueEntry(String queue, String value) {}
 
+  public record BalancedScriptResult(String queue, Object result) {}
+
   private static Visitor<String> createBalancedQueueVisitor(
       String queue, Visitor<BalancedQueueEntry> visitor) {
     return new Visitor<>() {
@@ -355,6 +359,47 @@ public class BalancedRedisQueue {
     return null;
   }
 
+  /**
+   * @brief Evaluate a script against each internal queue until one produces a result.
+   * @details Round-robins over the internal queues like pollAny, evaluating the script with the
+   *     keys produced for each queue. The script is called by its sha, and only sent in full to a
+   *     node which has not yet cached it. A nil result from the script indicates that nothing was
+   *     popped from the queue.
+   * @param script The lua script to evaluate.
+   * @param scriptSha The sha1 hex digest of the script.
+   * @param keys Produces the keys for the script from the name of an internal queue.
+   * @param args The arguments for the script.
+   * @return The internal queue and the result of the script. null if no script produced one.
+   * @note Suggested return identifier: scriptResult.
+   */
+  public @Nullable BalancedScriptResult evalAny(
+      UnifiedJedis unified,
+      String script,
+      String scriptSha,
+      Function<String, List<String>> keys,
+      List<String> args) {
+    int startIndex = currentPopQueue;
+    int currentIndex = roundRobinPopIndex();
+    do {
+      String queueName = queues.get(currentIndex);
+      try (Jedis jedis = getJedisFromKey(unified, queueName)) {
+        List<String> queueKeys = keys.apply(queueName);
+        Object result;
+        try {
+          result = jedis.evalsha(scriptSha, queueKeys, args);
+        } catch (JedisNoScriptException e) {
+          // caches the script on the node for later calls
+          result = jedis.eval(script, queueKeys, args);
+        }
+        if (result != null) {
+          return new BalancedScriptResult(queueName, result);
+        }
+      }
+      currentIndex = roundRobinPopIndex();
+    } while (currentIndex != startIndex);
+    return null;
+  }
+
   /**
    * @brief Get the current pop queue.
    * @details Get the queue that the balanced queue intends to pop from next.
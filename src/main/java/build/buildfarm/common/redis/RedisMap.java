@@ -14,6 +14,7 @@
 
 package build.buildfarm.common.redis;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static redis.clients.jedis.params.ScanParams.SCAN_POINTER_START;
 
 import com.google.common.collect.Iterables;
@@ -122,6 +123,19 @@ public class RedisMap {
     jedis.set(createKeyName(key), value, setParams);
   }
 
+  /**
+   * @brief Set key to hold the binary value and set key to timeout after a given number of seconds.
+   * @details If the key already exists, then the value is replaced.
+   * @param jedis Jedis cluster client.
+   * @param key The name of the key.
+   * @param value The binary value for the key.
+   * @param timeout_s Timeout to expire the entry. (units: seconds (s))
+   * @note Overloaded.
+   */
+  public void insert(UnifiedJedis jedis, String key, byte[] value, long timeout_s) {
+    jedis.setex(createKeyName(key).getBytes(UTF_8), timeout_s, value);
+  }
+
   public boolean putIfAbsent(UnifiedJedis jedis, String key, String value) {
     SetParams setParams = SetParams.setParams().nx().ex(expiration_s);
     return "OK".equals(jedis.set(createKeyName(key), value, setParams));
@@ -184,6 +198,34 @@ public class RedisMap {
     return jedis.getEx(createKeyName(key), params);
   }
 
+  /**
+   * @brief Get the values of the keys and update their expiration.
+   * @details Done via pipeline. If a key does not exist, null is returned as its value.
+   * @param jedis Jedis cluster client.
+   * @param keys The name of the keys.
+   * @param timeout_s Timeout to expire the entries.
+   * @return The values of the keys. null if key does not exist.
+   * @note Overloaded.
+   * @note Suggested return identifier: values.
+   */
+  public Iterable<Map.Entry<String, String>> getex(
+      UnifiedJedis jedis, Iterable<String> keys, long timeout_s) {
+    GetExParams params = GetExParams.getExParams().ex(timeout_s);
+    try (AbstractPipeline p = jedis.pipelined()) {
+      List<Map.Entry<String, Response<String>>> values = new ArrayList<>();
+      for (String key : keys) {
+        values.add(new AbstractMap.SimpleEntry<>(key, p.getEx(createKeyName(key), params)));
+      }
+      p.sync();
+
+      List<Map.Entry<String, String>> resolved = new ArrayList<>();
+      for (Map.Entry<String, Response<String>> val : values) {
+        resolved.add(new AbstractMap.SimpleEntry<>(val.getKey(), val.getValue().get()));
+      }
+      return resolved;
+    }
+  }
+
   /**
    * @brief Get the values of the keys.
    * @details If the key does not exist, null is returned.
@@ -210,6 +252,54 @@ public class RedisMap {
     }
   }
 
+  /**
+   * @brief Get the binary values of the keys.
+   * @details If the key does not exist, null is returned as its value.
+   * @param jedis Jedis cluster client.
+   * @param keys The name of the keys.
+   * @return The binary values of the keys. null if key does not exist.
+   * @note Suggested return identifier: values.
+   */
+  public Iterable<Map.Entry<String, byte[]>> getBytes(UnifiedJedis jedis, Iterable<String> keys) {
+    try (AbstractPipeline p = jedis.pipelined()) {
+      List<Map.Entry<String, Response<byte[]>>> values = new ArrayList<>();
+      for (String key : keys) {
+        values.add(new AbstractMap.SimpleEntry<>(key, p.get(createKeyName(key).getBytes(UTF_8))));
+      }
+      p.sync();
+
+      List<Map.Entry<String, byte[]>> resolved = new ArrayList<>();
+      for (Map.Entry<String, Response<byte[]>> val : values) {
+        resolved.add(new AbstractMap.SimpleEntry<>(val.getKey(), val.getValue().get()));
+      }
+      return resolved;
+    }
+  }
+
+  /**
+   * @brief Get the lengths of the values of the keys.
+   * @details Done via pipeline. If the key does not exist, 0 is returned as its length.
+   * @param jedis Jedis cluster client.
+   * @param keys The name of the keys.
+   * @return The lengths of the values of the keys.
+   * @note Suggested return identifier: lengths.
+   */
+  public Iterable<Map.Entry<String, Long>> getLengths(UnifiedJedis jedis, Iterable<String> keys) {
+    try (AbstractPipeline p = jedis.pipelined()) {
+      List<Map.Entry<String, Response<Long>>> lengths = new ArrayList<>();
+      for (String key : keys) {
+        lengths.add(new AbstractMap.SimpleEntry<>(key, p.strlen(createKeyName(key))));
+      }
+      p.sync();
+
+      List<Map.Entry<String, Long>> resolved = new ArrayList<>();
+      for (Map.Entry<String, Response<Long>> length : lengths) {
+        resolved.add(new AbstractMap.SimpleEntry<>(length.getKey(), length.getValue().get()));
+      }
+      return resolved;
+    }
+  }
+
   /**
    * @brief whether the key exists
    * @details True if key exists. False if key does not exist.
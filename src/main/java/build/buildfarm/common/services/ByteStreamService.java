@@ -50,6 +50,7 @@ import com.google.bytestream.ByteStreamProto.WriteRequest;
 import com.google.bytestream.ByteStreamProto.WriteResponse;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import io.grpc.Status;
 import io.grpc.Status.Code;
 import io.grpc.stub.CallStreamObserver;
@@ -98,7 +99,7 @@ public class ByteStreamService extends ByteStreamImplBase {
 
   void readFrom(InputStream in, long limit, CallStreamObserver<ReadResponse> target) {
     final class ReadFromOnReadyHandler implements Runnable {
-      private final byte[] buf = new byte[CHUNK_SIZE];
+      private byte[] buf = new byte[CHUNK_SIZE];
       private final boolean unlimited = limit == 0;
       private long remaining = limit;
       private boolean complete = false;
@@ -121,7 +122,15 @@ public class ByteStreamService extends ByteStreamImplBase {
         }
         remaining -= readBytes;
         complete = remaining == 0;
-        return ReadResponse.newBuilder().setData(ByteString.copyFrom(buf, 0, readBytes)).build();
+        ByteString data;
+        if (readBytes == buf.length) {
+          // a full buffer is handed off rather than copied
+          data = UnsafeByteOperations.unsafeWrap(buf);
+          buf = new byte[CHUNK_SIZE];
+        } else {
+          data = ByteString.copyFrom(buf, 0, readBytes);
+        }
+        return ReadResponse.newBuilder().setData(data).build();
       }
 
       @Override
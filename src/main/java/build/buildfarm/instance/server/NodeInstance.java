@@ -158,6 +158,10 @@ public abstract class NodeInstance extends InstanceBase {
   protected final OperationsMap completedOperations;
   protected final Map<Digest, ByteString> activeBlobWrites;
   protected final boolean ensureOutputsPresent;
+  private final ValidatedDirectories validatedDirectories;
+
+  // files and directories retained for validated input directories
+  private static final long VALIDATED_DIRECTORIES_MAX_ENTRIES = 1024 * 1024;
 
   public static final String ACTION_INPUT_ROOT_DIRECTORY_PATH = "";
 
@@ -249,6 +253,7 @@ public abstract class NodeInstance extends InstanceBase {
     this.completedOperations = completedOperations;
     this.activeBlobWrites = activeBlobWrites;
     this.ensureOutputsPresent = ensureOutputsPresent;
+    validatedDirectories = new ValidatedDirectories(VALIDATED_DIRECTORIES_MAX_ENTRIES);
   }
 
   @Override
@@ -823,6 +828,7 @@ public abstract class NodeInstance extends InstanceBase {
       Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex,
       Consumer<String> onInputFile,
       Consumer<String> onInputDirectory,
+      Consumer<build.bazel.remote.execution.v2.Digest> onInputDigest,
       PreconditionFailure.Builder preconditionFailure) {
     Stack<DirectoryNode> directoriesStack = new Stack<>();
     directoriesStack.addAll(directory.getDirectoriesList());
@@ -854,6 +860,8 @@ public abstract class NodeInstance extends InstanceBase {
         for (FileNode fileNode : subDirectory.getFilesList()) {
           String fileName = fileNode.getName();
           String filePath = subDirectoryPath + "/" + fileName;
+          // already visited, but enumerated in full for a subtree which may be validated
+          onInputDigest.accept(fileNode.getDigest());
           onInputFile.accept(filePath);
         }
 
@@ -883,6 +891,34 @@ public abstract class NodeInstance extends InstanceBase {
       Consumer<String> onInputDirectory,
       Consumer<build.bazel.remote.execution.v2.Digest> onInputDigest,
       PreconditionFailure.Builder preconditionFailure) {
+    validateActionInputDirectory(
+        digestFunction,
+        directoryPath,
+        directory,
+        pathDigests,
+        visited,
+        directoriesIndex,
+        allowSymlinkTargetAbsolute,
+        /* validatedDirectories= */ null,
+        onInputFile,
+        onInputDirectory,
+        onInputDigest,
+        preconditionFailure);
+  }
+
+  private static void validateActionInputDirectory(
+      DigestFunction.Value digestFunction,
+      String directoryPath,
+      Directory directory,
+      Stack<build.bazel.remote.execution.v2.Digest> pathDigests,
+      Set<build.bazel.remote.execution.v2.Digest> visited,
+      Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex,
+      boolean allowSymlinkTargetAbsolute,
+      @Nullable ValidatedDirectories validatedDirectories,
+      Consumer<String> onInputFile,
+      Consumer<String> onInputDirectory,
+      Consumer<build.bazel.remote.execution.v2.Digest> onInputDigest,
+      PreconditionFailure.Builder preconditionFailure) {
     Set<String> entryNames = new HashSet<>();
 
     String lastFileName = "";
@@ -997,6 +1033,7 @@ public abstract class NodeInstance extends InstanceBase {
               directoriesIndex,
               onInputFile,
               onInputDirectory,
+              onInputDigest,
               preconditionFailure);
         } else {
           validateActionInputDirectoryDigest(
@@ -1006,6 +1043,7 @@ public abstract class NodeInstance extends InstanceBase {
               visited,
               directoriesIndex,
               allowSymlinkTargetAbsolute,
+              validatedDirectories,
               onInputFile,
               onInputDirectory,
               onInputDigest,
@@ -1023,11 +1061,23 @@ public abstract class NodeInstance extends InstanceBase {
       Set<build.bazel.remote.execution.v2.Digest> visited,
       Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex,
       boolean allowSymlinkTargetAbsolute,
+      @Nullable ValidatedDirectories validatedDirectories,
       Consumer<String> onInputFile,
       Consumer<String> onInputDirectory,
       Consumer<build.bazel.remote.execution.v2.Digest> onInputDigest,
       PreconditionFailure.Builder preconditionFailure) {
     build.bazel.remote.execution.v2.Digest digest = DigestUtil.toDigest(directoryDigest);
+    ValidatedDirectories.Key key =
+        new ValidatedDirectories.Key(directoryDigest, allowSymlinkTargetAbsolute);
+    // the input root is rarely shared between actions, and is not cached
+    boolean cached =
+        validatedDirectories != null && !directoryPath.equals(ACTION_INPUT_ROOT_DIRECTORY_PATH);
+    if (cached
+        && validatedDirectories.splice(
+            key, directoryPath, directoriesIndex, onInputFile, onInputDirectory, onInputDigest)) {
+      visited.add(digest);
+      return;
+    }
     pathDigests.push(digest);
     final Directory directory;
     if (digest.getSizeBytes() == 0) {
@@ -1042,6 +1092,8 @@ public abstract class NodeInstance extends InstanceBase {
           .setSubject("blobs/" + DigestUtil.toString(directoryDigest))
           .setDescription("The directory `/" + directoryPath + "` was not found in the CAS.");
     } else {
+      long startNanos = System.nanoTime();
+      int violationsCount = preconditionFailure.getViolationsCount();
       validateActionInputDirectory(
           directoryDigest.getDigestFunction(),
           directoryPath,
@@ -1050,10 +1102,14 @@ public abstract class NodeInstance extends InstanceBase {
           visited,
           directoriesIndex,
           allowSymlinkTargetAbsolute,
+          validatedDirectories,
           onInputFile,
           onInputDirectory,
           onInputDigest,
           preconditionFailure);
+      if (cached && preconditionFailure.getViolationsCount() == violationsCount) {
+        validatedDirectories.put(key, directory, System.nanoTime() - startNanos);
+      }
     }
     pathDigests.pop();
     if (directory != null) {
@@ -1348,6 +1404,7 @@ public abstract class NodeInstance extends InstanceBase {
         new HashSet<>(),
         directoriesIndex,
         allowSymlinkTargetAbsolute,
+        validatedDirectories,
         inputFilesBuilder::add,
         inputDirectoriesBuilder::add,
         onInputDigest,
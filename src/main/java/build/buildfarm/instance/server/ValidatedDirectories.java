@@ -0,0 +1,187 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.server;
+
+import build.bazel.remote.execution.v2.Directory;
+import build.bazel.remote.execution.v2.DirectoryNode;
+import build.bazel.remote.execution.v2.FileNode;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.v1test.Digest;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.ImmutableList;
+import io.prometheus.client.Counter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A bounded cache of input directories which have been validated without violations, keyed by
+ * digest and the options of validation.
+ *
+ * <p>Directories are content addressed, so a subtree which was valid once is valid in every input
+ * root which contains it, and its enumeration may be spliced in below the path at which it appears
+ * rather than walked again. Each directory is retained with its own files and the keys of its
+ * child directories, and a subtree is spliced only while every directory within it is retained.
+ * Subtrees with violations are never cached, so that their violations are reported in full each
+ * time.
+ *
+ * <p>A subtree is only spliced while each of its directories is present in the index of the
+ * request, so that a directory which has since left the CAS is validated again and reported
+ * missing.
+ *
+ * <p>Admission is by frequency, so that directories seen once, as beneath a single input root, do
+ * not displace shared ones such as those of toolchains.
+ */
+final class ValidatedDirectories {
+  private static final Counter hits =
+      Counter.build()
+          .name("validated_directories_hits")
+          .help("Input directories found already validated.")
+          .register();
+  private static final Counter misses =
+      Counter.build()
+          .name("validated_directories_misses")
+          .help("Input directories not found already validated.")
+          .register();
+  private static final Counter savedSeconds =
+      Counter.build()
+          .name("validated_directories_saved_seconds")
+          .help("Time spent originally validating input directories which were found validated.")
+          .register();
+
+  record Key(Digest directoryDigest, boolean allowSymlinkTargetAbsolute) {}
+
+  private record Entry(
+      ImmutableList<FileNode> files,
+      ImmutableList<String> directoryNames,
+      ImmutableList<Key> directoryKeys,
+      long validationNanos) {
+    int weight() {
+      return 1 + files.size() + directoryNames.size();
+    }
+  }
+
+  private final Cache<Key, Entry> entries;
+
+  /**
+   * @param maxEntries The number of files and directories to retain across all cached directories.
+   */
+  ValidatedDirectories(long maxEntries) {
+    entries =
+        Caffeine.newBuilder()
+            .maximumWeight(maxEntries)
+            .weigher((Key key, Entry entry) -> entry.weight())
+            .build();
+  }
+
+  /**
+   * Cache a directory which was validated without violations. The directories beneath it are cached
+   * by their own validation, and it is spliced only while they remain cached.
+   *
+   * @param validationNanos The time spent validating the directory and those beneath it.
+   */
+  void put(Key key, Directory directory, long validationNanos) {
+    Digest directoryDigest = key.directoryDigest();
+    ImmutableList.Builder<String> directoryNames = ImmutableList.builder();
+    ImmutableList.Builder<Key> directoryKeys = ImmutableList.builder();
+    for (DirectoryNode directoryNode : directory.getDirectoriesList()) {
+      directoryNames.add(directoryNode.getName());
+      directoryKeys.add(
+          new Key(
+              DigestUtil.fromDigest(directoryNode.getDigest(), directoryDigest.getDigestFunction()),
+              key.allowSymlinkTargetAbsolute()));
+    }
+    entries.put(
+        key,
+        new Entry(
+            ImmutableList.copyOf(directory.getFilesList()),
+            directoryNames.build(),
+            directoryKeys.build(),
+            validationNanos));
+  }
+
+  /**
+   * Enumerate a validated directory below directoryPath.
+   *
+   * @return true if the directory and each directory beneath it was validated and is in the
+   *     index, false if it must be validated.
+   */
+  boolean splice(
+      Key key,
+      String directoryPath,
+      Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex,
+      Consumer<String> onInputFile,
+      Consumer<String> onInputDirectory,
+      Consumer<build.bazel.remote.execution.v2.Digest> onInputDigest) {
+    // every directory is found before any is enumerated
+    Map<Key, Entry> subtree = new HashMap<>();
+    Deque<Key> keys = new ArrayDeque<>();
+    keys.push(key);
+    while (!keys.isEmpty()) {
+      Key directoryKey = keys.pop();
+      if (subtree.containsKey(directoryKey)) {
+        continue;
+      }
+      Entry entry = entries.getIfPresent(directoryKey);
+      Digest directoryDigest = directoryKey.directoryDigest();
+      if (entry == null) {
+        misses.inc();
+        return false;
+      }
+      if (directoryDigest.getSize() != 0
+          && !directoriesIndex.containsKey(DigestUtil.toDigest(directoryDigest))) {
+        // validated again to report the directories which are missing
+        entries.invalidate(directoryKey);
+        misses.inc();
+        return false;
+      }
+      subtree.put(directoryKey, entry);
+      entry.directoryKeys().forEach(keys::push);
+    }
+    Entry entry = subtree.get(key);
+    hits.inc();
+    savedSeconds.inc(entry.validationNanos() / 1e9);
+    enumerate(entry, directoryPath, subtree, onInputFile, onInputDirectory, onInputDigest);
+    return true;
+  }
+
+  private static void enumerate(
+      Entry entry,
+      String directoryPath,
+      Map<Key, Entry> subtree,
+      Consumer<String> onInputFile,
+      Consumer<String> onInputDirectory,
+      Consumer<build.bazel.remote.execution.v2.Digest> onInputDigest) {
+    String prefix = directoryPath.isEmpty() ? "" : directoryPath + "/";
+    for (FileNode fileNode : entry.files()) {
+      onInputDigest.accept(fileNode.getDigest());
+      onInputFile.accept(prefix + fileNode.getName());
+    }
+    for (int i = 0; i < entry.directoryNames().size(); i++) {
+      String subDirectoryPath = prefix + entry.directoryNames().get(i);
+      onInputDirectory.accept(subDirectoryPath);
+      enumerate(
+          subtree.get(entry.directoryKeys().get(i)),
+          subDirectoryPath,
+          subtree,
+          onInputFile,
+          onInputDirectory,
+          onInputDigest);
+    }
+  }
+}
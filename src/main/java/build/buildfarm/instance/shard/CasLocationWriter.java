@@ -0,0 +1,216 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import build.buildfarm.instance.shard.CasWorkerMap.Adjustment;
+import build.buildfarm.v1test.Digest;
+import com.google.common.base.Stopwatch;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.logging.Level;
+import javax.annotation.concurrent.GuardedBy;
+import lombok.extern.java.Log;
+
+/**
+ * Write-behind buffer for blob location changes to a CasWorkerMap.
+ *
+ * <p>Adds and removes are coalesced by blob and worker, with the latest change for a pair
+ * superseding any earlier one, and written as a single pipelined adjustment at most once per
+ * window. A caller which finds the buffer full writes it out directly before its own changes are
+ * buffered, and fails without buffering them if that write fails, so buffered memory is bounded
+ * while the backplane is unavailable. Once buffered, a change is not failed back to its caller.
+ * Location changes become visible to readers after up to one window.
+ *
+ * <p>A batch which fails to be written is retried with the next, up to the limit of the buffer,
+ * and the remainder of it is dropped.
+ */
+@Log
+class CasLocationWriter {
+  private static final Histogram batchSize =
+      Histogram.build()
+          .name("cas_location_batch_size")
+          .buckets(1, 10, 100, 1000, 10000, 100000)
+          .help("Blob location changes written per batch.")
+          .register();
+  private static final Histogram flushTime =
+      Histogram.build()
+          .name("cas_location_flush_time_ms")
+          .help("Blob location batch write time in ms.")
+          .register();
+  private static final Counter droppedChanges =
+      Counter.build()
+          .name("cas_location_dropped_changes")
+          .help("Blob location changes dropped after a failed write.")
+          .register();
+
+  @FunctionalInterface
+  interface Flusher {
+    void flush(Map<Digest, Adjustment> adjustments) throws IOException;
+  }
+
+  private final Flusher flusher;
+  private final long windowMillis;
+  private final int maxPending;
+  private final Object flushLock = new Object();
+  private ScheduledExecutorService flushService;
+
+  // value is true for an add and false for a remove of the worker
+  @GuardedBy("this")
+  private Map<Digest, Map<String, Boolean>> pending = new HashMap<>();
+
+  @GuardedBy("this")
+  private int pendingCount = 0;
+
+  CasLocationWriter(Flusher flusher, long windowMillis, int maxPending) {
+    this.flusher = flusher;
+    this.windowMillis = windowMillis;
+    this.maxPending = maxPending;
+  }
+
+  void start() {
+    flushService = newSingleThreadScheduledExecutor();
+    flushService.scheduleWithFixedDelay(
+        this::flushQuietly, windowMillis, windowMillis, MILLISECONDS);
+  }
+
+  /** Stop the periodic writer, and write out any buffered changes. */
+  void stop() throws InterruptedException {
+    if (flushService != null) {
+      flushService.shutdown();
+      if (!flushService.awaitTermination(10, SECONDS)) {
+        log.log(Level.WARNING, "cas location flush service has not stopped");
+      }
+      flushService = null;
+    }
+    flushQuietly();
+  }
+
+  void add(Iterable<Digest> blobDigests, String workerName) throws IOException {
+    record(blobDigests, workerName, true);
+  }
+
+  void remove(Iterable<Digest> blobDigests, String workerName) throws IOException {
+    record(blobDigests, workerName, false);
+  }
+
+  private void record(Iterable<Digest> blobDigests, String workerName, boolean add)
+      throws IOException {
+    boolean full;
+    synchronized (this) {
+      full = pendingCount >= maxPending;
+    }
+    if (full) {
+      // the changes of this caller are not accepted if this fails
+      flush();
+    }
+    synchronized (this) {
+      for (Digest blobDigest : blobDigests) {
+        if (pending.computeIfAbsent(blobDigest, d -> new HashMap<>()).put(workerName, add)
+            == null) {
+          pendingCount++;
+        }
+      }
+    }
+  }
+
+  private synchronized Map<Digest, Map<String, Boolean>> takePending() {
+    Map<Digest, Map<String, Boolean>> taken = pending;
+    pending = new HashMap<>();
+    pendingCount = 0;
+    return taken;
+  }
+
+  // A failed batch is retried with the next, without overriding any change made since. Changes
+  // which do not fit in the buffer are dropped, so that it does not grow while writes fail.
+  private synchronized void restorePending(Map<Digest, Map<String, Boolean>> failed) {
+    int dropped = 0;
+    for (Map.Entry<Digest, Map<String, Boolean>> entry : failed.entrySet()) {
+      for (Map.Entry<String, Boolean> worker : entry.getValue().entrySet()) {
+        Map<String, Boolean> workers = pending.get(entry.getKey());
+        if (workers != null && workers.containsKey(worker.getKey())) {
+          continue;
+        }
+        if (pendingCount >= maxPending) {
+          dropped++;
+          continue;
+        }
+        if (workers == null) {
+          workers = new HashMap<>();
+          pending.put(entry.getKey(), workers);
+        }
+        workers.put(worker.getKey(), worker.getValue());
+        pendingCount++;
+      }
+    }
+    if (dropped > 0) {
+      droppedChanges.inc(dropped);
+      log.log(Level.SEVERE, String.format("dropped %d cas location changes", dropped));
+    }
+  }
+
+  /** Write out all buffered changes. */
+  void flush() throws IOException {
+    // serialized so that batches are applied in the order they were taken
+    synchronized (flushLock) {
+      Map<Digest, Map<String, Boolean>> taken = takePending();
+      if (taken.isEmpty()) {
+        return;
+      }
+      Map<Digest, Adjustment> adjustments = new HashMap<>(taken.size());
+      int changes = 0;
+      for (Map.Entry<Digest, Map<String, Boolean>> entry : taken.entrySet()) {
+        Set<String> addWorkers = new HashSet<>();
+        Set<String> removeWorkers = new HashSet<>();
+        for (Map.Entry<String, Boolean> worker : entry.getValue().entrySet()) {
+          if (worker.getValue()) {
+            addWorkers.add(worker.getKey());
+          } else {
+            removeWorkers.add(worker.getKey());
+          }
+          changes++;
+        }
+        adjustments.put(entry.getKey(), new Adjustment(addWorkers, removeWorkers));
+      }
+      batchSize.observe(changes);
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      try {
+        flusher.flush(adjustments);
+      } catch (IOException | RuntimeException e) {
+        restorePending(taken);
+        throw e;
+      }
+      flushTime.observe(stopwatch.elapsed(MICROSECONDS) / 1000.0);
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (Exception e) {
+      log.log(Level.WARNING, "could not write cas location changes", e);
+    }
+  }
+}
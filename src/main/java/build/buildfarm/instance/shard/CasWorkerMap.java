@@ -19,6 +19,9 @@ import java.util.Map;
 import java.util.Set;
 
 public interface CasWorkerMap {
+  /** Workers to add to and remove from the location set of a blob. */
+  record Adjustment(Set<String> addWorkers, Set<String> removeWorkers) {}
+
   /**
    * @brief Adjust blob mappings based on worker changes.
    * @details Adjustments are made based on added and removed workers. Expirations are refreshed.
@@ -28,6 +31,13 @@ public interface CasWorkerMap {
    */
   void adjust(Digest blobDigest, Set<String> addWorkers, Set<String> removeWorkers);
 
+  /**
+   * @brief Adjust the mappings of many blobs at once.
+   * @details Expirations are refreshed for blobs which have workers added.
+   * @param adjustments The workers to add and remove for each blob digest.
+   */
+  void adjustAll(Map<Digest, Adjustment> adjustments);
+
   /**
    * @brief Update the blob entry for the worker.
    * @details This may add a new key if the blob did not previously exist, or it will adjust the
@@ -88,6 +98,13 @@ public interface CasWorkerMap {
    */
   long insertTime(Digest blobDigest);
 
+  /**
+   * @brief Get insert times for many digests.
+   * @param blobDigests The blob digests to lookup for insert time.
+   * @return insert time of each of the digests.
+   */
+  Map<Digest, Long> insertTimes(Iterable<Digest> blobDigests);
+
   /**
    * @brief Get all of the key values as a map from the digests given.
    * @details If there are no workers for the digest, the key is left out of the returned map.
@@ -0,0 +1,377 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import lombok.extern.java.Log;
+
+/**
+ * An input stream of a range of a blob which is fetched in fixed size chunks, concurrently from
+ * several sources.
+ *
+ * <p>Each source fetches the next chunk which has not been requested, within a window ahead of the
+ * reader. A source with nothing left to request steals the earliest incomplete chunk from the
+ * source fetching it, and the first of them to complete the chunk supplies it, closing the input
+ * of the other so that it moves on. A source which fails is not used again, and its chunk is
+ * fetched by another. The stream fails only when every source has failed.
+ */
+@Log
+final class ChunkedBlobInputStream extends InputStream {
+  interface RangeReader {
+    InputStream newInput(String source, long offset, long limit) throws IOException;
+  }
+
+  private static final class Chunk {
+    final int index;
+    final long offset;
+    final int size;
+    final Set<String> sources = new HashSet<>();
+    // the inputs open for the chunk, by source
+    final Map<String, InputStream> inputs = new HashMap<>();
+    @Nullable byte[] data = null;
+
+    Chunk(int index, long offset, int size) {
+      this.index = index;
+      this.offset = offset;
+      this.size = size;
+    }
+  }
+
+  private final RangeReader reader;
+  private final long offset;
+  private final long size;
+  private final int chunkSize;
+  private final int chunkCount;
+  private final int window;
+
+  // chunks which have been requested and not yet read
+  @GuardedBy("this")
+  private final TreeMap<Integer, Chunk> chunks = new TreeMap<>();
+
+  // chunks which have been requested, but are no longer being fetched by any source
+  @GuardedBy("this")
+  private final PriorityQueue<Integer> orphaned = new PriorityQueue<>();
+
+  @GuardedBy("this")
+  private int nextChunk = 0;
+
+  @GuardedBy("this")
+  private int readChunk = 0;
+
+  @GuardedBy("this")
+  private int completedChunks = 0;
+
+  @GuardedBy("this")
+  private int activeSources;
+
+  @GuardedBy("this")
+  private @Nullable IOException failure = null;
+
+  @GuardedBy("this")
+  private boolean closed = false;
+
+  // only accessed by the reader
+  private @Nullable Chunk current = null;
+  private int position = 0;
+
+  /**
+   * Start fetching size bytes from offset with a task for each of sources on executor, holding at
+   * most window chunks which have been requested and not yet read.
+   */
+  ChunkedBlobInputStream(
+      RangeReader reader,
+      Iterable<String> sources,
+      long offset,
+      long size,
+      int chunkSize,
+      int window,
+      Executor executor) {
+    checkArgument(chunkSize > 0, "chunkSize must be positive");
+    checkArgument(window > 0, "window must be positive");
+    this.reader = reader;
+    this.offset = offset;
+    this.size = size;
+    this.chunkSize = chunkSize;
+    this.window = window;
+    long count = (size + chunkSize - 1) / chunkSize;
+    checkArgument(count <= Integer.MAX_VALUE, "too many chunks");
+    chunkCount = (int) count;
+    List<String> sourceList = new ArrayList<>();
+    sources.forEach(sourceList::add);
+    checkArgument(!sourceList.isEmpty(), "sources must not be empty");
+    activeSources = sourceList.size();
+    for (String source : sourceList) {
+      executor.execute(() -> fetch(source));
+    }
+  }
+
+  private synchronized @Nullable Chunk nextChunk(String source) throws InterruptedException {
+    for (; ; ) {
+      if (closed || failure != null || completedChunks == chunkCount) {
+        return null;
+      }
+      Chunk chunk = null;
+      Integer orphan = orphaned.poll();
+      if (orphan != null) {
+        chunk = chunks.get(orphan);
+      } else if (nextChunk < chunkCount && nextChunk < readChunk + window) {
+        long chunkOffset = (long) nextChunk * chunkSize;
+        int chunkLength = (int) Math.min(chunkSize, size - chunkOffset);
+        chunk = new Chunk(nextChunk++, offset + chunkOffset, chunkLength);
+        chunks.put(chunk.index, chunk);
+      } else {
+        // steal the earliest chunk being fetched by only one other source
+        for (Chunk inFlight : chunks.values()) {
+          if (inFlight.data == null && inFlight.sources.size() == 1) {
+            chunk = inFlight;
+            break;
+          }
+        }
+      }
+      if (chunk != null && !chunk.sources.contains(source)) {
+        chunk.sources.add(source);
+        return chunk;
+      }
+      wait();
+    }
+  }
+
+  private synchronized boolean register(String source, Chunk chunk, InputStream input) {
+    if (isAbandoned(chunk)) {
+      return false;
+    }
+    chunk.inputs.put(source, input);
+    return true;
+  }
+
+  private synchronized void unregister(String source, Chunk chunk) {
+    chunk.inputs.remove(source);
+  }
+
+  private synchronized boolean isAbandoned() {
+    return closed || failure != null;
+  }
+
+  private synchronized boolean isAbandoned(Chunk chunk) {
+    return isAbandoned() || chunk.data != null;
+  }
+
+  /**
+   * Release a chunk which source was fetching when it has been completed by another source, so that
+   * the failure of its closed input does not count against source.
+   */
+  private synchronized boolean release(String source, Chunk chunk) {
+    if (isAbandoned() || chunk.data == null) {
+      return false;
+    }
+    chunk.sources.remove(source);
+    return true;
+  }
+
+  private byte[] fetchChunk(String source, Chunk chunk) throws IOException {
+    byte[] data = new byte[chunk.size];
+    try (InputStream input = reader.newInput(source, chunk.offset, chunk.size)) {
+      if (!register(source, chunk, input)) {
+        throw new IOException("chunk is no longer needed");
+      }
+      try {
+        int length = 0;
+        while (length < data.length) {
+          if (isAbandoned(chunk)) {
+            throw new IOException("chunk is no longer needed");
+          }
+          int n = input.read(data, length, data.length - length);
+          if (n == -1) {
+            throw new EOFException(
+                String.format(
+                    "%s ended %d bytes into chunk at %d", source, length, chunk.offset));
+          }
+          length += n;
+        }
+      } finally {
+        unregister(source, chunk);
+      }
+    }
+    return data;
+  }
+
+  private void complete(String source, Chunk chunk, byte[] data) {
+    List<InputStream> slowerInputs;
+    synchronized (this) {
+      chunk.sources.remove(source);
+      // the first source to complete a stolen chunk supplies it
+      if (chunk.data != null) {
+        return;
+      }
+      chunk.data = data;
+      completedChunks++;
+      slowerInputs = new ArrayList<>(chunk.inputs.values());
+      notifyAll();
+    }
+    // interrupt the other fetches of the chunk, which release it when their reads fail
+    for (InputStream input : slowerInputs) {
+      try {
+        input.close();
+      } catch (IOException e) {
+        log.log(Level.WARNING, "error closing slower input of chunk at " + chunk.offset, e);
+      }
+    }
+  }
+
+  private synchronized void fail(String source, @Nullable Chunk chunk, Throwable t) {
+    activeSources--;
+    if (chunk != null) {
+      chunk.sources.remove(source);
+      if (chunk.data == null && chunk.sources.isEmpty()) {
+        orphaned.add(chunk.index);
+      }
+    }
+    if (activeSources == 0 && failure == null && !closed && completedChunks != chunkCount) {
+      failure =
+          t instanceof IOException ioException
+              ? ioException
+              : new IOException("every source failed", t);
+    }
+    notifyAll();
+  }
+
+  private void fetch(String source) {
+    Chunk chunk = null;
+    try {
+      while ((chunk = nextChunk(source)) != null) {
+        byte[] data;
+        try {
+          data = fetchChunk(source, chunk);
+        } catch (IOException | RuntimeException e) {
+          if (!release(source, chunk)) {
+            throw e;
+          }
+          continue;
+        }
+        complete(source, chunk, data);
+      }
+    } catch (InterruptedException e) {
+      fail(source, chunk, new InterruptedIOException());
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      if (!isAbandoned()) {
+        log.log(Level.WARNING, String.format("error fetching chunk from %s", source), e);
+      }
+      fail(source, chunk, e);
+    }
+  }
+
+  private synchronized Chunk takeChunk() throws IOException {
+    for (; ; ) {
+      if (closed) {
+        throw new IOException("stream is closed");
+      }
+      Chunk chunk = chunks.get(readChunk);
+      if (chunk != null && chunk.data != null) {
+        chunks.remove(readChunk++);
+        // a window slot is available
+        notifyAll();
+        return chunk;
+      }
+      if (failure != null) {
+        throw new IOException(failure);
+      }
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+  }
+
+  private boolean advance() throws IOException {
+    while (current == null || position == current.data.length) {
+      synchronized (this) {
+        if (readChunk == chunkCount) {
+          return false;
+        }
+      }
+      current = takeChunk();
+      position = 0;
+    }
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!advance()) {
+      return -1;
+    }
+    return current.data[position++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!advance()) {
+      return -1;
+    }
+    int n = Math.min(len, current.data.length - position);
+    System.arraycopy(current.data, position, b, off, n);
+    position += n;
+    return n;
+  }
+
+  @Override
+  public int available() {
+    return current == null ? 0 : current.data.length - position;
+  }
+
+  @Override
+  public void close() throws IOException {
+    List<InputStream> openInputs;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      openInputs = new ArrayList<>();
+      for (Chunk chunk : chunks.values()) {
+        openInputs.addAll(chunk.inputs.values());
+      }
+      chunks.clear();
+      notifyAll();
+    }
+    current = null;
+    for (InputStream input : openInputs) {
+      input.close();
+    }
+  }
+}
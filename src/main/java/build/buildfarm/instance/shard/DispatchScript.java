@@ -0,0 +1,174 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import build.buildfarm.common.redis.BalancedRedisQueue;
+import build.buildfarm.common.redis.BalancedRedisQueue.BalancedQueueEntry;
+import build.buildfarm.common.redis.BalancedRedisQueue.BalancedScriptResult;
+import build.buildfarm.common.redis.RedisHashMap;
+import build.buildfarm.common.redis.RedisQueue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import redis.clients.jedis.UnifiedJedis;
+
+/**
+ * @class DispatchScript
+ * @brief Dispatch of execution queue entries in a single redis call.
+ * @details Pops an entry from an internal execution queue, records it as dispatched, removes its
+ *     dispatching flag and publishes a reset for its watchers atomically, replacing the move of the
+ *     entry into the queue's dequeue and the pipeline which follows it. The script can only read
+ *     JSON encoded entries, it moves entries in other encodings into the dequeue for the caller to
+ *     dispatch as usual. Every key it touches must be served by one node, so the script cannot be
+ *     used with a redis cluster, or with priority queues.
+ */
+final class DispatchScript {
+  // a JSON string in the reset message which is replaced with the name of the execution
+  static final String EXECUTION_NAME_PLACEHOLDER = "${executionName}";
+
+  // KEYS: queue, dequeue, dispatched executions hash
+  // ARGV: requeueAt, dispatching key prefix, execution channel prefix, reset message, placeholder,
+  //     deadline slice prefix or empty, deadline slice count
+  @VisibleForTesting
+  static final String SCRIPT =
+      String.join(
+          "\n",
+          "local value = redis.call('RPOP', KEYS[1])",
+          "if not value then",
+          "  return false",
+          "end",
+          "local ok, entry = pcall(cjson.decode, value)",
+          "local name = nil",
+          "if ok and type(entry) == 'table' and type(entry.executeEntry) == 'table' then",
+          "  name = entry.executeEntry.operationName",
+          "end",
+          "if type(name) ~= 'string' or name == '' then",
+          "  redis.call('LPUSH', KEYS[2], value)",
+          "  return {value, ''}",
+          "end",
+          "redis.call('HSETNX', KEYS[3], name,",
+          "    '{\"queueEntry\":' .. value .. ',\"requeueAt\":\"' .. ARGV[1] .. '\"}')",
+          "redis.call('DEL', ARGV[2] .. name)",
+          "if ARGV[6] ~= '' then",
+          "  local sum = 0",
+          "  for i = 1, #name do",
+          "    sum = sum + string.byte(name, i)",
+          "  end",
+          "  redis.call('ZADD', ARGV[6] .. (sum % tonumber(ARGV[7])), 'LT', ARGV[1], name)",
+          "end",
+          "local s, e = string.find(ARGV[4], ARGV[5], 1, true)",
+          "if s then",
+          "  local message = string.sub(ARGV[4], 1, s - 1) .. cjson.encode(name)",
+          "      .. string.sub(ARGV[4], e + 1)",
+          "  redis.call('PUBLISH', ARGV[3] .. name, message)",
+          "end",
+          "return {value, name}");
+
+  private static final String SCRIPT_SHA = Hashing.sha1().hashString(SCRIPT, UTF_8).toString();
+
+  /**
+   * @brief An entry popped by the script.
+   * @details The execution name is present if the entry was dispatched, otherwise the entry was
+   *     moved into the dequeue of its queue.
+   */
+  record Result(BalancedQueueEntry balancedQueueEntry, @Nullable String executionName) {}
+
+  private final RedisHashMap dispatchedExecutions;
+  private final String dispatchedExecutionsName;
+  private final String dispatchingKeyPrefix;
+  private final String executionChannelPrefix;
+  private final LongSupplier requeueAt;
+  private final Supplier<String> resetMessage;
+  private final @Nullable DispatchedDeadlines dispatchedDeadlines;
+
+  /**
+   * @brief Constructor.
+   * @param requeueAt Supplies the requeue time in milliseconds for an execution dispatched now.
+   * @param resetMessage Supplies the message published to the channel of an execution dispatched
+   *     now, with its name as EXECUTION_NAME_PLACEHOLDER.
+   * @param dispatchedDeadlines The index to add dispatched executions to, if any.
+   */
+  DispatchScript(
+      RedisHashMap dispatchedExecutions,
+      String dispatchedExecutionsName,
+      String dispatchingKeyPrefix,
+      String executionChannelPrefix,
+      LongSupplier requeueAt,
+      Supplier<String> resetMessage,
+      @Nullable DispatchedDeadlines dispatchedDeadlines) {
+    this.dispatchedExecutions = dispatchedExecutions;
+    this.dispatchedExecutionsName = dispatchedExecutionsName;
+    this.dispatchingKeyPrefix = dispatchingKeyPrefix;
+    this.executionChannelPrefix = executionChannelPrefix;
+    this.requeueAt = requeueAt;
+    this.resetMessage = resetMessage;
+    this.dispatchedDeadlines = dispatchedDeadlines;
+  }
+
+  @VisibleForTesting
+  List<String> keys(String queueName) {
+    return ImmutableList.of(
+        queueName,
+        new RedisQueue(/* jedis= */ null, queueName).getDequeueName(),
+        dispatchedExecutionsName);
+  }
+
+  @VisibleForTesting
+  List<String> args() {
+    return ImmutableList.of(
+        Long.toString(requeueAt.getAsLong()),
+        dispatchingKeyPrefix,
+        executionChannelPrefix,
+        resetMessage.get(),
+        "\"" + EXECUTION_NAME_PLACEHOLDER + "\"",
+        dispatchedDeadlines == null ? "" : dispatchedDeadlines.getSlicePrefix(),
+        dispatchedDeadlines == null ? "0" : Integer.toString(dispatchedDeadlines.getSlices()));
+  }
+
+  /**
+   * @brief Pop an entry from one of the internal queues of queue without blocking.
+   * @return The popped entry. null if every internal queue was empty.
+   * @note Suggested return identifier: result.
+   */
+  @Nullable
+  Result pollAny(UnifiedJedis jedis, BalancedRedisQueue queue) {
+    // the args are the same for every internal queue
+    BalancedScriptResult scriptResult =
+        queue.evalAny(jedis, SCRIPT, SCRIPT_SHA, this::keys, args());
+    if (scriptResult == null) {
+      return null;
+    }
+    List<?> result = (List<?>) scriptResult.result();
+    String value = (String) result.get(0);
+    String executionName = (String) result.get(1);
+    return new Result(
+        new BalancedQueueEntry(scriptResult.queue(), value),
+        executionName.isEmpty() ? null : executionName);
+  }
+
+  /**
+   * @brief Remove the dispatched record of an execution which the script dispatched.
+   * @details For entries which could not be decoded after they were dispatched.
+   */
+  void undispatch(UnifiedJedis jedis, String executionName) {
+    dispatchedExecutions.remove(jedis, executionName);
+  }
+}
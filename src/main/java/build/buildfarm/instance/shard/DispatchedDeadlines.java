@@ -0,0 +1,162 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import javax.annotation.Nullable;
+import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.params.SetParams;
+import redis.clients.jedis.params.ZAddParams;
+import redis.clients.jedis.resps.Tuple;
+
+/**
+ * @class DispatchedDeadlines
+ * @brief An index of dispatched executions by requeue deadline.
+ * @details Dispatched executions are held in sorted sets, split into slices by execution name and
+ *     scored by the time at which they should be requeued, so that overdue executions can be found
+ *     with a range query rather than a scan of every dispatched execution. Each slice may be
+ *     claimed by one monitor at a time.
+ *
+ *     <p>Only dispatch adds to the index. Completed, requeued and polled executions keep their
+ *     entries until they become due, when a monitor removes or rescores them against the dispatched
+ *     executions hash, so the index never holds a deadline later than that of its execution.
+ */
+final class DispatchedDeadlines {
+  // KEYS: slice
+  // ARGV: execution name, expected score, new score or empty to remove
+  private static final String UPDATE_SCRIPT =
+      String.join(
+          "\n",
+          "local score = redis.call('ZSCORE', KEYS[1], ARGV[1])",
+          "if not score or tonumber(score) ~= tonumber(ARGV[2]) then",
+          "  return 0",
+          "end",
+          "if ARGV[3] == '' then",
+          "  return redis.call('ZREM', KEYS[1], ARGV[1])",
+          "end",
+          "return redis.call('ZADD', KEYS[1], ARGV[3], ARGV[1])");
+
+  private final String name;
+  private final int slices;
+
+  /**
+   * @brief Constructor.
+   * @param name The prefix of the names of the slices.
+   * @param slices The number of slices.
+   */
+  DispatchedDeadlines(String name, int slices) {
+    checkArgument(slices > 0, "slices must be positive");
+    this.name = name;
+    this.slices = slices;
+  }
+
+  int getSlices() {
+    return slices;
+  }
+
+  /** The prefix of the name of each slice, followed by its index. */
+  String getSlicePrefix() {
+    return name + ":";
+  }
+
+  /**
+   * @brief The slice of an execution.
+   * @details The sum of the bytes of its name, which DispatchScript computes in the same way.
+   */
+  int slice(String executionName) {
+    int sum = 0;
+    for (byte b : executionName.getBytes(UTF_8)) {
+      sum += b & 0xff;
+    }
+    return sum % slices;
+  }
+
+  private String sliceName(int slice) {
+    return getSlicePrefix() + slice;
+  }
+
+  private String claimName(int slice) {
+    return sliceName(slice) + ":claim";
+  }
+
+  private String scanClaimName() {
+    return name + ":scan";
+  }
+
+  /**
+   * @brief Index a dispatched execution by its requeue deadline.
+   * @details An entry which is already indexed keeps an earlier deadline, to be rescored by the
+   *     monitor which finds it.
+   */
+  void add(AbstractPipeline pipeline, String executionName, long requeueAt) {
+    pipeline.zadd(
+        sliceName(slice(executionName)), requeueAt, executionName, ZAddParams.zAddParams().lt());
+  }
+
+  void add(UnifiedJedis jedis, String executionName, long requeueAt) {
+    jedis.zadd(
+        sliceName(slice(executionName)), requeueAt, executionName, ZAddParams.zAddParams().lt());
+  }
+
+  /** Index a dispatched execution unless it is already indexed. */
+  void addIfMissing(AbstractPipeline pipeline, String executionName, long requeueAt) {
+    pipeline.zadd(
+        sliceName(slice(executionName)), requeueAt, executionName, ZAddParams.zAddParams().nx());
+  }
+
+  /**
+   * @brief Claim a slice for a period.
+   * @return Whether the slice is claimed by owner, which may already have claimed it.
+   */
+  boolean claim(UnifiedJedis jedis, int slice, String owner, long millis) {
+    String claimName = claimName(slice);
+    return jedis.set(claimName, owner, SetParams.setParams().nx().px(millis)) != null
+        || owner.equals(jedis.get(claimName));
+  }
+
+  /**
+   * @brief Claim a scan of the dispatched executions into the index.
+   * @return Whether owner claimed the scan, which no other owner may claim for millis.
+   */
+  boolean claimScan(UnifiedJedis jedis, String owner, long millis) {
+    return jedis.set(scanClaimName(), owner, SetParams.setParams().nx().px(millis)) != null;
+  }
+
+  /** Get the earliest entries of a slice with a deadline of now or earlier. */
+  List<Tuple> overdue(UnifiedJedis jedis, int slice, long now, int count) {
+    return jedis.zrangeByScoreWithScores(sliceName(slice), Double.NEGATIVE_INFINITY, now, 0, count);
+  }
+
+  /**
+   * @brief Rescore or remove an entry found by overdue.
+   * @details The entry is unchanged if its score is no longer the one found, as when its
+   *     execution has been dispatched again since.
+   * @param requeueAt The new deadline of the entry, or null to remove it.
+   */
+  void update(AbstractPipeline pipeline, int slice, Tuple entry, @Nullable Long requeueAt) {
+    pipeline.eval(
+        UPDATE_SCRIPT,
+        ImmutableList.of(sliceName(slice)),
+        ImmutableList.of(
+            entry.getElement(),
+            Long.toString((long) entry.getScore()),
+            requeueAt == null ? "" : Long.toString(requeueAt)));
+  }
+}
@@ -18,6 +18,7 @@ import build.buildfarm.common.redis.BalancedRedisQueue;
 import build.buildfarm.common.redis.RedisHashMap;
 import build.buildfarm.common.redis.RedisMap;
 import build.buildfarm.common.redis.RedisSetMap;
+import javax.annotation.Nullable;
 
 /**
  * @class DistributedState
@@ -103,6 +104,14 @@ public class DistributedState {
    */
   public RedisHashMap dispatchedExecutions;
 
+  /**
+   * @field dispatchedDeadlines
+   * @brief An index of dispatched executions by requeue deadline.
+   * @details Used by dispatched monitors to find overdue executions without scanning every
+   *     dispatched execution. Null if the index is disabled.
+   */
+  @Nullable DispatchedDeadlines dispatchedDeadlines;
+
   /**
    * @field blockedInvocations
    * @brief Invocations that the cluster has decided it no longer wants to execute in the future.
@@ -121,6 +130,14 @@ public class DistributedState {
    */
   public RedisMap blockedActions;
 
+  /**
+   * @field blobFilters
+   * @brief Filters of the blobs held by each storage worker.
+   * @details Workers periodically publish a filter of their CAS keys here, which allows lookups to
+   *     skip workers that cannot hold a blob.
+   */
+  public RedisMap blobFilters;
+
   public RedisSetMap toolInvocations;
 
   public RedisSetMap correlatedInvocations;
@@ -45,6 +45,7 @@ public class DistributedStateCreator {
     state.executionQueue = createExecutionQueue(jedis);
     state.blockedActions = new RedisMap(configs.getBackplane().getActionBlacklistPrefix());
     state.blockedInvocations = new RedisMap(configs.getBackplane().getInvocationBlacklistPrefix());
+    state.blobFilters = new RedisMap(configs.getBackplane().getBlobFilterPrefix());
     state.toolInvocations =
         new RedisSetMap(
             configs.getBackplane().getToolInvocationsPrefix(),
@@ -62,6 +63,12 @@ public class DistributedStateCreator {
     state.dispatchedExecutions =
         new RedisHashMap(
             configs.getBackplane().getDispatchedOperationsHashName()); // FIXME change to Executions
+    int dispatchedDeadlineSlices = configs.getBackplane().getDispatchedDeadlineSlices();
+    if (dispatchedDeadlineSlices > 0) {
+      state.dispatchedDeadlines =
+          new DispatchedDeadlines(
+              configs.getBackplane().getDispatchedDeadlinesPrefix(), dispatchedDeadlineSlices);
+    }
     state.executeWorkers =
         new RedisHashMap(configs.getBackplane().getWorkersHashName() + "_execute");
     state.storageWorkers =
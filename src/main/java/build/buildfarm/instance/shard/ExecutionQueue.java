@@ -32,7 +32,6 @@ import build.buildfarm.worker.resources.LocalResourceSetUtils;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.SetMultimap;
 import com.google.protobuf.InvalidProtocolBufferException;
-import com.google.protobuf.util.JsonFormat;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -41,6 +40,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import lombok.extern.java.Log;
 import redis.clients.jedis.AbstractPipeline;
 import redis.clients.jedis.UnifiedJedis;
@@ -58,8 +58,21 @@ public class ExecutionQueue {
 
   private static final Duration MAX_TIMEOUT = Duration.ofSeconds(8);
 
+  /**
+   * @brief An entry taken from the queue.
+   * @details A dispatched entry was recorded as dispatched when it was taken, and is not held in
+   *     the dequeue of its queue.
+   */
   public record ExecutionQueueEntry(
-      BalancedRedisQueue queue, BalancedQueueEntry balancedQueueEntry, QueueEntry queueEntry) {}
+      BalancedRedisQueue queue,
+      BalancedQueueEntry balancedQueueEntry,
+      QueueEntry queueEntry,
+      boolean dispatched) {
+    public ExecutionQueueEntry(
+        BalancedRedisQueue queue, BalancedQueueEntry balancedQueueEntry, QueueEntry queueEntry) {
+      this(queue, balancedQueueEntry, queueEntry, /* dispatched= */ false);
+    }
+  }
 
   /**
    * @field maxQueueSize
@@ -111,12 +124,11 @@ public class ExecutionQueue {
       @Override
       public void visit(BalancedQueueEntry balancedQueueEntry) {
         String entry = balancedQueueEntry.value();
-        QueueEntry.Builder queueEntry = QueueEntry.newBuilder();
         try {
-          JsonFormat.parser().merge(entry, queueEntry);
-          visitor.visit(new ExecutionQueueEntry(queue, balancedQueueEntry, queueEntry.build()));
+          QueueEntry queueEntry = QueueEntryCodec.decode(entry);
+          visitor.visit(new ExecutionQueueEntry(queue, balancedQueueEntry, queueEntry));
         } catch (InvalidProtocolBufferException e) {
-          log.log(Level.SEVERE, "invalid QueueEntry json: " + entry, e);
+          log.log(Level.SEVERE, "invalid QueueEntry: " + entry, e);
           queue.removeFromDequeue(jedis, balancedQueueEntry);
         }
       }
@@ -246,6 +258,38 @@ public class ExecutionQueue {
       LocalResourceSet resourceSet,
       ExecutorService service)
       throws InterruptedException {
+    return take(jedis, queues, resourceSet, service, /* notifications= */ null);
+  }
+
+  /**
+   * @brief Take an entry from one of the queues, blocking until one is available.
+   * @details When notifications are provided, idle rounds wait for a queue to be announced as
+   *     pushed instead of blocking on a redis connection, polling again at least once per timeout
+   *     in case an announcement was lost. Without notifications, idle rounds use blocking takes.
+   */
+  ExecutionQueueEntry take(
+      UnifiedJedis jedis,
+      List<ProvisionedRedisQueue> queues,
+      LocalResourceSet resourceSet,
+      ExecutorService service,
+      @Nullable QueueNotifications notifications)
+      throws InterruptedException {
+    return take(jedis, queues, resourceSet, service, notifications, /* dispatchScript= */ null);
+  }
+
+  /**
+   * @brief Take an entry from one of the queues, blocking until one is available.
+   * @details As above, dispatching entries with the script when it is provided, for all but
+   *     blocking takes.
+   */
+  ExecutionQueueEntry take(
+      UnifiedJedis jedis,
+      List<ProvisionedRedisQueue> queues,
+      LocalResourceSet resourceSet,
+      ExecutorService service,
+      @Nullable QueueNotifications notifications,
+      @Nullable DispatchScript dispatchScript)
+      throws InterruptedException {
     // The conditions of this algorithm are as followed:
     // - from a client's perspective we want to block indefinitely.
     //   (so this function should not return null under any normal circumstances.)
@@ -268,14 +312,25 @@ public class ExecutionQueue {
     boolean blocking = false;
     // try each of the internal queues with exponential backoff
     Duration currentTimeout = START_TIMEOUT;
+    List<String> queueNames =
+        queues.stream().map(q -> q.queue().getName()).collect(Collectors.toList());
+    // observed before each round, so that pushes announced during the round are not missed
+    long generation = notifications == null ? 0 : notifications.generation(queueNames);
     while (true) {
       BalancedQueueEntry balancedQueueEntry = null;
+      String dispatchedName = null;
       int index = roundRobinPopIndex(queues);
       ProvisionedRedisQueue provisionedQueue = queues.get(index);
       BalancedRedisQueue queue = provisionedQueue.queue();
       if (!provisionedQueue.isExhausted(LocalResourceSetUtils.exhausted(resourceSet))) {
-        if (blocking) {
+        if (blocking && notifications == null) {
           balancedQueueEntry = queue.takeAny(jedis, currentTimeout, service);
+        } else if (dispatchScript != null) {
+          DispatchScript.Result result = dispatchScript.pollAny(jedis, queue);
+          if (result != null) {
+            balancedQueueEntry = result.balancedQueueEntry();
+            dispatchedName = result.executionName();
+          }
         } else {
           balancedQueueEntry = queue.pollAny(jedis);
         }
@@ -285,13 +340,16 @@ public class ExecutionQueue {
       // return if found
       if (balancedQueueEntry != null) {
         try {
-          QueueEntry.Builder queueEntryBuilder = QueueEntry.newBuilder();
-          JsonFormat.parser().merge(balancedQueueEntry.value(), queueEntryBuilder);
-          QueueEntry queueEntry = queueEntryBuilder.build();
+          QueueEntry queueEntry = QueueEntryCodec.decode(balancedQueueEntry.value());
 
-          return new ExecutionQueueEntry(queue, balancedQueueEntry, queueEntry);
+          return new ExecutionQueueEntry(
+              queue, balancedQueueEntry, queueEntry, dispatchedName != null);
         } catch (InvalidProtocolBufferException e) {
-          queue.removeFromDequeue(jedis, balancedQueueEntry);
+          if (dispatchedName != null) {
+            dispatchScript.undispatch(jedis, dispatchedName);
+          } else {
+            queue.removeFromDequeue(jedis, balancedQueueEntry);
+          }
           log.log(Level.SEVERE, "error parsing queue entry", e);
         }
       }
@@ -311,6 +369,10 @@ public class ExecutionQueue {
         } else {
           blocking = true;
         }
+        if (notifications != null) {
+          notifications.await(queueNames, generation, currentTimeout);
+          generation = notifications.generation(queueNames);
+        }
       }
     }
   }
@@ -331,12 +393,42 @@ public class ExecutionQueue {
       LocalResourceSet resourceSet,
       ExecutorService service)
       throws InterruptedException {
+    return dequeue(jedis, provisions, resourceSet, service, /* notifications= */ null);
+  }
+
+  /**
+   * @brief Pop element into internal dequeue and return value.
+   * @details As above, waiting on notifications for idle queues when they are provided.
+   */
+  ExecutionQueueEntry dequeue(
+      UnifiedJedis jedis,
+      List<Platform.Property> provisions,
+      LocalResourceSet resourceSet,
+      ExecutorService service,
+      @Nullable QueueNotifications notifications)
+      throws InterruptedException {
+    return dequeue(
+        jedis, provisions, resourceSet, service, notifications, /* dispatchScript= */ null);
+  }
+
+  /**
+   * @brief Pop element into internal dequeue and return value.
+   * @details As above, dispatching entries with the script when it is provided.
+   */
+  ExecutionQueueEntry dequeue(
+      UnifiedJedis jedis,
+      List<Platform.Property> provisions,
+      LocalResourceSet resourceSet,
+      ExecutorService service,
+      @Nullable QueueNotifications notifications,
+      @Nullable DispatchScript dispatchScript)
+      throws InterruptedException {
     // Select all matched queues, and attempt dequeuing via round-robin.
     List<ProvisionedRedisQueue> queues = chooseEligibleQueues(provisions);
     checkState(!queues.isEmpty());
     // Keep iterating over matched queues until we find one that is non-empty and provides a
     // dequeued value.
-    return take(jedis, queues, resourceSet, service);
+    return take(jedis, queues, resourceSet, service, notifications, dispatchScript);
   }
 
   /**
@@ -501,14 +593,13 @@ public class ExecutionQueue {
     return set;
   }
 
-  private static QueueEntry parse(String json) {
-    QueueEntry.Builder queueEntry = QueueEntry.newBuilder();
+  private static QueueEntry parse(String value) {
     try {
-      JsonFormat.parser().merge(json, queueEntry);
+      return QueueEntryCodec.decode(value);
     } catch (InvalidProtocolBufferException e) {
-      log.log(Level.SEVERE, "invalid QueueEntry json: " + json, e);
+      log.log(Level.SEVERE, "invalid QueueEntry: " + value, e);
     }
-    return queueEntry.build();
+    return QueueEntry.getDefaultInstance();
   }
 
   public ScanResult<ExecutionQueueEntry> scan(
@@ -19,10 +19,15 @@ import build.buildfarm.common.redis.ScanCount;
 import build.buildfarm.v1test.Digest;
 import com.google.common.collect.ImmutableMap;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.util.JedisClusterCRC16;
 
 /**
  * @class JedisCasWorkerMap
@@ -83,6 +88,35 @@ public class JedisCasWorkerMap implements CasWorkerMap {
     jedis.expire(key, keyExpiration_s);
   }
 
+  /**
+   * @brief Adjust the mappings of many blobs at once.
+   * @details Commands are issued in a single pipeline, ordered by cluster slot so that the commands
+   *     for each node are contiguous. Expirations are refreshed for blobs which have workers added.
+   * @param adjustments The workers to add and remove for each blob digest.
+   */
+  @Override
+  public void adjustAll(Map<Digest, Adjustment> adjustments) {
+    List<Map.Entry<String, Adjustment>> keyedAdjustments = new ArrayList<>(adjustments.size());
+    for (Map.Entry<Digest, Adjustment> entry : adjustments.entrySet()) {
+      keyedAdjustments.add(Map.entry(redisCasKey(entry.getKey()), entry.getValue()));
+    }
+    keyedAdjustments.sort(
+        Comparator.comparingInt(entry -> JedisClusterCRC16.getSlot(entry.getKey())));
+    try (AbstractPipeline p = jedis.pipelined()) {
+      for (Map.Entry<String, Adjustment> entry : keyedAdjustments) {
+        String key = entry.getKey();
+        Adjustment adjustment = entry.getValue();
+        if (!adjustment.addWorkers().isEmpty()) {
+          p.sadd(key, adjustment.addWorkers().toArray(new String[0]));
+          p.expire(key, keyExpiration_s);
+        }
+        if (!adjustment.removeWorkers().isEmpty()) {
+          p.srem(key, adjustment.removeWorkers().toArray(new String[0]));
+        }
+      }
+    }
+  }
+
   /**
    * @brief Update the blob entry for the worker.
    * @details This may add a new key if the blob did not previously exist, or it will adjust the
@@ -184,9 +218,35 @@ public class JedisCasWorkerMap implements CasWorkerMap {
     return Instant.now().getEpochSecond() - keyExpiration_s + jedis.ttl(key);
   }
 
+  /**
+   * @brief Get the insert times of many blobs at once.
+   * @details Commands are issued in a single pipeline, ordered by cluster slot.
+   * @param blobDigests The blob digests to lookup for insert time.
+   * @return The insert time of each digest.
+   * @note Suggested return identifier: insertTimes.
+   */
+  @Override
+  public Map<Digest, Long> insertTimes(Iterable<Digest> blobDigests) {
+    List<Map.Entry<Digest, String>> keys = slotOrderedKeys(blobDigests);
+    List<Response<Long>> ttls = new ArrayList<>(keys.size());
+    try (AbstractPipeline p = jedis.pipelined()) {
+      for (Map.Entry<Digest, String> entry : keys) {
+        ttls.add(p.ttl(entry.getValue()));
+      }
+    }
+    long insertedAtExpiration = Instant.now().getEpochSecond() - keyExpiration_s;
+    ImmutableMap.Builder<Digest, Long> insertTimes =
+        ImmutableMap.builderWithExpectedSize(keys.size());
+    for (int i = 0; i < keys.size(); i++) {
+      insertTimes.put(keys.get(i).getKey(), insertedAtExpiration + ttls.get(i).get());
+    }
+    return insertTimes.buildKeepingLast();
+  }
+
   /**
    * @brief Get all of the key values as a map from the digests given.
    * @details If there are no workers for the digest, the key is left out of the returned map.
+   *     Commands are issued in a single pipeline, ordered by cluster slot.
    * @param client Client used for interacting with redis when not using cacheMap.
    * @param blobDigests The blob digests to get the key/values for.
    * @return The key/value map for digests to workers.
@@ -194,17 +254,23 @@ public class JedisCasWorkerMap implements CasWorkerMap {
    */
   @Override
   public Map<Digest, Set<String>> getMap(Iterable<Digest> blobDigests) {
+    List<Map.Entry<Digest, String>> keys = slotOrderedKeys(blobDigests);
+    List<Response<Set<String>>> members = new ArrayList<>(keys.size());
+    try (AbstractPipeline p = jedis.pipelined()) {
+      for (Map.Entry<Digest, String> entry : keys) {
+        members.add(p.smembers(entry.getValue()));
+      }
+    }
     ImmutableMap.Builder<Digest, Set<String>> blobDigestsWorkers = new ImmutableMap.Builder<>();
-    for (Digest blobDigest : blobDigests) {
-      String key = redisCasKey(blobDigest);
-      Set<String> workers = jedis.smembers(key);
+    for (int i = 0; i < keys.size(); i++) {
+      Set<String> workers = members.get(i).get();
 
       if (workers.isEmpty()) {
         continue;
       }
-      blobDigestsWorkers.put(blobDigest, workers);
+      blobDigestsWorkers.put(keys.get(i).getKey(), workers);
     }
-    return blobDigestsWorkers.build();
+    return blobDigestsWorkers.buildKeepingLast();
   }
 
   /**
@@ -220,10 +286,27 @@ public class JedisCasWorkerMap implements CasWorkerMap {
 
   @Override
   public void setExpire(Iterable<Digest> blobDigests) {
+    try (AbstractPipeline p = jedis.pipelined()) {
+      for (Map.Entry<Digest, String> entry : slotOrderedKeys(blobDigests)) {
+        p.expire(entry.getValue(), keyExpiration_s);
+      }
+    }
+  }
+
+  /**
+   * @brief Get the redis key names of many blobs.
+   * @details Ordered by cluster slot, so that pipelined commands for each node are contiguous.
+   * @param blobDigests The blob digests to be made part of the keys.
+   * @return Each digest with the name of its key.
+   * @note Suggested return identifier: keys.
+   */
+  private List<Map.Entry<Digest, String>> slotOrderedKeys(Iterable<Digest> blobDigests) {
+    List<Map.Entry<Digest, String>> keys = new ArrayList<>();
     for (Digest blobDigest : blobDigests) {
-      String key = redisCasKey(blobDigest);
-      jedis.expire(key, keyExpiration_s);
+      keys.add(Map.entry(blobDigest, redisCasKey(blobDigest)));
     }
+    keys.sort(Comparator.comparingInt(entry -> JedisClusterCRC16.getSlot(entry.getValue())));
+    return keys;
   }
 
   /**
@@ -0,0 +1,74 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import build.buildfarm.common.config.Backplane.QUEUE_ENTRY_ENCODING;
+import build.buildfarm.v1test.QueueEntry;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.util.JsonFormat;
+import java.util.Base64;
+
+/**
+ * @class QueueEntryCodec
+ * @brief Encoding of QueueEntries as execution queue values.
+ * @details Values are written either as JSON, or as a versioned binary protobuf. Redis queue values
+ *     are handled as strings throughout the backplane, so the binary form is base64 encoded behind
+ *     a version prefix. Decoding accepts both forms regardless of the configured encoding, to
+ *     provide a compatibility window in which entries written by either may be dequeued.
+ */
+public final class QueueEntryCodec {
+  // JSON values always begin with '{', and ':' is outside of the base64 alphabet
+  static final String BINARY_V1_PREFIX = "1:";
+
+  private QueueEntryCodec() {}
+
+  /**
+   * @brief Encode a queue entry.
+   * @details Produces a value suitable for an execution queue in the requested encoding.
+   * @param queueEntry The entry to encode.
+   * @param encoding The encoding to produce.
+   * @return The encoded entry.
+   * @note Suggested return identifier: value.
+   */
+  public static String encode(QueueEntry queueEntry, QUEUE_ENTRY_ENCODING encoding)
+      throws InvalidProtocolBufferException {
+    if (encoding == QUEUE_ENTRY_ENCODING.BINARY) {
+      return BINARY_V1_PREFIX + Base64.getEncoder().encodeToString(queueEntry.toByteArray());
+    }
+    return JsonFormat.printer().print(queueEntry);
+  }
+
+  /**
+   * @brief Decode a queue entry.
+   * @details Accepts values in any known encoding.
+   * @param value The value retrieved from an execution queue.
+   * @return The decoded entry.
+   * @note Suggested return identifier: queueEntry.
+   */
+  public static QueueEntry decode(String value) throws InvalidProtocolBufferException {
+    if (value.startsWith(BINARY_V1_PREFIX)) {
+      byte[] bytes;
+      try {
+        bytes = Base64.getDecoder().decode(value.substring(BINARY_V1_PREFIX.length()));
+      } catch (IllegalArgumentException e) {
+        throw new InvalidProtocolBufferException(e.getMessage());
+      }
+      return QueueEntry.parseFrom(bytes);
+    }
+    QueueEntry.Builder queueEntry = QueueEntry.newBuilder();
+    JsonFormat.parser().merge(value, queueEntry);
+    return queueEntry.build();
+  }
+}
@@ -0,0 +1,65 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Announcements that execution queues have had entries pushed, for dequeuers waiting on them.
+ *
+ * <p>Announcements are delivered over pubsub and may be lost, so waits are bounded and must be
+ * followed by polling the queues.
+ */
+class QueueNotifications {
+  @GuardedBy("this")
+  private final Map<String, Long> generations = new HashMap<>();
+
+  synchronized void signal(String queueName) {
+    generations.merge(queueName, 1L, Long::sum);
+    notifyAll();
+  }
+
+  /** Returns a value which changes whenever any of the queues is signalled. */
+  synchronized long generation(Iterable<String> queueNames) {
+    long generation = 0;
+    for (String queueName : queueNames) {
+      generation += generations.getOrDefault(queueName, 0L);
+    }
+    return generation;
+  }
+
+  /**
+   * Wait for any of the queues to be signalled since generation was observed.
+   *
+   * @return true if a queue was signalled, false if the timeout elapsed.
+   */
+  synchronized boolean await(Iterable<String> queueNames, long generation, Duration timeout)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + timeout.toNanos();
+    while (generation(queueNames) == generation) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return false;
+      }
+      NANOSECONDS.timedWait(this, remaining);
+    }
+    return true;
+  }
+}
@@ -65,6 +65,8 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -95,6 +97,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -105,7 +108,9 @@ import javax.annotation.Nullable;
 import javax.naming.ConfigurationException;
 import lombok.extern.java.Log;
 import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.JedisCluster;
 import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.resps.Tuple;
 
 @Log
 public class RedisShardBackplane implements Backplane {
@@ -150,6 +155,11 @@ public class RedisShardBackplane implements Backplane {
   private ExecutorService subscriberService = null;
   private ExecutorService dequeueService = null;
   private ExecutorService pipelineExecutor = null;
+  private @Nullable CasLocationWriter casLocationWriter = null;
+  private @Nullable QueueNotifications queueNotifications = null;
+  private @Nullable DispatchScript dispatchScript = null;
+  private volatile boolean dispatchedDeadlinesIndexed = false;
+  private final int dispatchedDeadlineSliceOffset = ThreadLocalRandom.current().nextInt(1 << 16);
   private @Nullable RedisClient client = null;
 
   private Deadline storageWorkersDeadline = null;
@@ -480,6 +490,13 @@ public class RedisShardBackplane implements Backplane {
         Multimaps.synchronizedListMultimap(
             MultimapBuilder.linkedHashKeys().arrayListValues().build());
     subscriberService = BuildfarmExecutors.getSubscriberPool();
+    String queueChannel = null;
+    Consumer<String> onQueuePushed = queueName -> {};
+    if (configs.getBackplane().isQueueNotifications()) {
+      queueChannel = configs.getBackplane().getQueueChannel();
+      queueNotifications = new QueueNotifications();
+      onQueuePushed = queueNotifications::signal;
+    }
     subscriber =
         new RedisShardSubscriber(
             watchers,
@@ -487,7 +504,9 @@ public class RedisShardBackplane implements Backplane {
             WorkerType.STORAGE.getNumber(),
             configs.getBackplane().getWorkerChannel(),
             onWorkerRemoved,
-            subscriberService);
+            subscriberService,
+            queueChannel,
+            onQueuePushed);
 
     operationSubscription =
         new RedisShardSubscription(
@@ -561,6 +580,24 @@ public class RedisShardBackplane implements Backplane {
       startFailsafeOperationThread();
     }
     pipelineExecutor = BuildfarmExecutors.getPipelinePool();
+    long casLocationBatchWindowMillis = configs.getBackplane().getCasLocationBatchWindowMillis();
+    if (casLocationBatchWindowMillis > 0) {
+      casLocationWriter =
+          new CasLocationWriter(
+              adjustments -> client.run(jedis -> createCasWorkerMap(jedis).adjustAll(adjustments)),
+              casLocationBatchWindowMillis,
+              configs.getBackplane().getCasLocationMaxPendingUpdates());
+      casLocationWriter.start();
+    }
+    if (configs.getBackplane().isScriptedDispatch() && !configs.getBackplane().isPriorityQueue()) {
+      // the dispatched hash, flags and channel are on other slots than the queue in a cluster, so
+      // the script may only run against a single node
+      if (client.call(jedis -> jedis instanceof JedisCluster)) {
+        log.log(Level.WARNING, "scriptedDispatch is ignored for redis clusters");
+      } else {
+        dispatchScript = createDispatchScript();
+      }
+    }
 
     // Record client start time
     client.call(
@@ -606,6 +643,12 @@ public class RedisShardBackplane implements Backplane {
         log.log(Level.WARNING, "subscriberService has not stopped");
       }
     }
+    if (casLocationWriter != null) {
+      // buffered location changes must be written before the client is closed
+      casLocationWriter.stop();
+      casLocationWriter = null;
+      log.log(Level.FINER, "casLocationWriter has been stopped");
+    }
     if (client != null) {
       client.close();
       client = null;
@@ -807,6 +850,12 @@ public class RedisShardBackplane implements Backplane {
     return client.call(jedis -> createCasWorkerMap(jedis).insertTime(blobDigest));
   }
 
+  @Override
+  public Map<Digest, Long> getDigestsInsertTimes(Iterable<Digest> blobDigests)
+      throws IOException {
+    return client.call(jedis -> createCasWorkerMap(jedis).insertTimes(blobDigests));
+  }
+
   private synchronized Set<String> getExecuteWorkers() throws IOException {
     try {
       return recentExecuteWorkers.get();
@@ -932,6 +981,40 @@ public class RedisShardBackplane implements Backplane {
     return actionResult;
   }
 
+  @SuppressWarnings("ConstantConditions")
+  @Override
+  public Map<ActionKey, ActionResult> getActionResults(Iterable<ActionKey> actionKeys)
+      throws IOException {
+    Map<String, ActionKey> keysByName = new HashMap<>();
+    for (ActionKey actionKey : actionKeys) {
+      keysByName.put(actionKey.toString(), actionKey);
+    }
+    Iterable<Map.Entry<String, String>> jsons =
+        client.call(
+            jedis ->
+                state.actionCache.getex(
+                    jedis, keysByName.keySet(), configs.getBackplane().getActionCacheExpire()));
+
+    ImmutableMap.Builder<ActionKey, ActionResult> actionResults = ImmutableMap.builder();
+    List<ActionKey> invalidActionKeys = new ArrayList<>();
+    for (Map.Entry<String, String> entry : jsons) {
+      if (entry.getValue() == null) {
+        continue;
+      }
+      ActionKey actionKey = keysByName.get(entry.getKey());
+      ActionResult actionResult = parseActionResult(entry.getValue());
+      if (actionResult == null) {
+        invalidActionKeys.add(actionKey);
+      } else {
+        actionResults.put(actionKey, actionResult);
+      }
+    }
+    if (!invalidActionKeys.isEmpty()) {
+      removeActionResults(invalidActionKeys);
+    }
+    return actionResults.buildOrThrow();
+  }
+
   // we do this by action hash only, so that we can use RequestMetadata to filter
   @SuppressWarnings("ConstantConditions")
   @Override
@@ -1013,24 +1096,49 @@ public class RedisShardBackplane implements Backplane {
     client.run(jedis -> createCasWorkerMap(jedis).adjust(blobDigest, addWorkers, removeWorkers));
   }
 
+  @Override
+  public void removeBlobsLocations(Map<Digest, Set<String>> blobDigestsWorkers)
+      throws IOException {
+    Map<Digest, CasWorkerMap.Adjustment> adjustments =
+        Maps.transformValues(
+            blobDigestsWorkers, workers -> new CasWorkerMap.Adjustment(ImmutableSet.of(), workers));
+    client.run(jedis -> createCasWorkerMap(jedis).adjustAll(adjustments));
+  }
+
   @Override
   public void addBlobLocation(Digest blobDigest, String workerName) throws IOException {
+    if (casLocationWriter != null) {
+      casLocationWriter.add(ImmutableList.of(blobDigest), workerName);
+      return;
+    }
     client.run(jedis -> createCasWorkerMap(jedis).add(blobDigest, workerName));
   }
 
   @Override
   public void addBlobsLocation(Iterable<Digest> blobDigests, String workerName) throws IOException {
+    if (casLocationWriter != null) {
+      casLocationWriter.add(blobDigests, workerName);
+      return;
+    }
     client.run(jedis -> createCasWorkerMap(jedis).addAll(blobDigests, workerName));
   }
 
   @Override
   public void removeBlobLocation(Digest blobDigest, String workerName) throws IOException {
+    if (casLocationWriter != null) {
+      casLocationWriter.remove(ImmutableList.of(blobDigest), workerName);
+      return;
+    }
     client.run(jedis -> createCasWorkerMap(jedis).remove(blobDigest, workerName));
   }
 
   @Override
   public void removeBlobsLocation(Iterable<Digest> blobDigests, String workerName)
       throws IOException {
+    if (casLocationWriter != null) {
+      casLocationWriter.remove(blobDigests, workerName);
+      return;
+    }
     client.run(jedis -> createCasWorkerMap(jedis).removeAll(blobDigests, workerName));
   }
 
@@ -1050,6 +1158,37 @@ public class RedisShardBackplane implements Backplane {
     return client.call(jedis -> createCasWorkerMap(jedis).getMap(blobDigests));
   }
 
+  @Override
+  public void putBlobFilter(String workerName, byte[] filter, int expireSeconds)
+      throws IOException {
+    client.run(jedis -> state.blobFilters.insert(jedis, workerName, filter, expireSeconds));
+  }
+
+  @Override
+  public Map<String, Long> getBlobFilterSizes(Set<String> workerNames) throws IOException {
+    Map<String, Long> sizes = new HashMap<>();
+    for (Map.Entry<String, Long> entry :
+        client.call(jedis -> state.blobFilters.getLengths(jedis, workerNames))) {
+      // nonexistent keys have a length of 0
+      if (entry.getValue() > 0) {
+        sizes.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return sizes;
+  }
+
+  @Override
+  public Map<String, byte[]> getBlobFilters(Set<String> workerNames) throws IOException {
+    Map<String, byte[]> filters = new HashMap<>();
+    for (Map.Entry<String, byte[]> entry :
+        client.call(jedis -> state.blobFilters.getBytes(jedis, workerNames))) {
+      if (entry.getValue() != null) {
+        filters.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return filters;
+  }
+
   public static WorkerChange parseWorkerChange(String workerChangeJson)
       throws InvalidProtocolBufferException {
     WorkerChange.Builder workerChange = WorkerChange.newBuilder();
@@ -1114,12 +1253,25 @@ public class RedisShardBackplane implements Backplane {
       UnifiedJedis jedis,
       String executionName,
       List<Platform.Property> provisions,
-      String queueEntryJson,
+      String queueEntryValue,
       int priority) {
     if (state.dispatchedExecutions.remove(jedis, executionName)) {
       log.log(Level.WARNING, format("removed dispatched execution %s", executionName));
     }
-    state.executionQueue.push(jedis, provisions, queueEntryJson, priority);
+    pushExecution(jedis, provisions, queueEntryValue, priority);
+  }
+
+  private void pushExecution(
+      UnifiedJedis jedis,
+      List<Platform.Property> provisions,
+      String queueEntryValue,
+      int priority) {
+    state.executionQueue.push(jedis, provisions, queueEntryValue, priority);
+    if (configs.getBackplane().isQueueNotifications()) {
+      // wakes dequeuers waiting on the queue, which will otherwise poll it after a timeout
+      jedis.publish(
+          configs.getBackplane().getQueueChannel(), state.executionQueue.getName(provisions));
+    }
   }
 
   @SuppressWarnings("ConstantConditions")
@@ -1127,7 +1279,7 @@ public class RedisShardBackplane implements Backplane {
   public void queue(QueueEntry queueEntry, Operation operation) throws IOException {
     String executionName = operation.getName();
     String operationJson = executionPrinter.print(operation);
-    String queueEntryJson = JsonFormat.printer().print(queueEntry);
+    String queueEntryValue = printQueueEntry(queueEntry);
     Operation publishOperation = onPublish.apply(operation);
     int priority = queueEntry.getExecuteEntry().getExecutionPolicy().getPriority();
     client.run(
@@ -1137,7 +1289,7 @@ public class RedisShardBackplane implements Backplane {
               jedis,
               operation.getName(),
               queueEntry.getPlatform().getPropertiesList(),
-              queueEntryJson,
+              queueEntryValue,
               priority);
           publishReset(jedis, publishOperation);
         });
@@ -1173,6 +1325,18 @@ public class RedisShardBackplane implements Backplane {
     return new ScanResult<>(tokenFromRedisCursor(scanResult.getCursor()), scanResult.getResult());
   }
 
+  private static @Nullable DispatchedOperation parseDispatchedOperation(
+      String executionName, String dispatchedOperationJson) {
+    try {
+      DispatchedOperation.Builder dispatchedOperationBuilder = DispatchedOperation.newBuilder();
+      JsonFormat.parser().merge(dispatchedOperationJson, dispatchedOperationBuilder);
+      return dispatchedOperationBuilder.build();
+    } catch (InvalidProtocolBufferException e) {
+      log.log(Level.SEVERE, format("invalid dispatched operation %s", executionName), e);
+      return null;
+    }
+  }
+
   @Override
   public ScanResult<DispatchedOperation> scanDispatchedOperations(String cursor, int count)
       throws IOException {
@@ -1181,17 +1345,120 @@ public class RedisShardBackplane implements Backplane {
         client.call(jedis -> state.dispatchedExecutions.scan(jedis, cursor, count));
     // executor work queue?
     for (Map.Entry<String, String> entry : scanResult.getResult()) {
-      try {
-        DispatchedOperation.Builder dispatchedOperationBuilder = DispatchedOperation.newBuilder();
-        JsonFormat.parser().merge(entry.getValue(), dispatchedOperationBuilder);
-        builder.add(dispatchedOperationBuilder.build());
-      } catch (InvalidProtocolBufferException e) {
-        log.log(Level.SEVERE, format("invalid dispatched operation %s", entry.getKey()), e);
+      DispatchedOperation dispatchedOperation =
+          parseDispatchedOperation(entry.getKey(), entry.getValue());
+      if (dispatchedOperation != null) {
+        builder.add(dispatchedOperation);
       }
     }
     return new ScanResult(tokenFromRedisCursor(scanResult.getCursor()), builder.build());
   }
 
+  @Override
+  public ScanResult<DispatchedOperation> scanOverdueDispatchedOperations(String cursor, int count)
+      throws IOException {
+    DispatchedDeadlines dispatchedDeadlines = state.dispatchedDeadlines;
+    if (dispatchedDeadlines == null) {
+      throw new IllegalStateException("dispatched deadlines are not indexed");
+    }
+    // positions of slices are 1-based, so that none is the sentinel
+    boolean start = cursor.equals(SENTINEL_PAGE_TOKEN);
+    int position = start ? 1 : Integer.parseInt(cursor);
+    return client.call(
+        jedis -> {
+          if (!dispatchedDeadlinesIndexed
+              || (start && shouldScanDispatchedExecutions(jedis, dispatchedDeadlines))) {
+            indexDispatchedExecutions(jedis, dispatchedDeadlines);
+          }
+          return scanOverdueDispatchedOperations(jedis, dispatchedDeadlines, position, count);
+        });
+  }
+
+  // executions dispatched by servers without the index are only found by a scan, which one server
+  // repeats every dispatchedDeadlinesScanIntervals monitor intervals
+  private boolean shouldScanDispatchedExecutions(
+      UnifiedJedis jedis, DispatchedDeadlines dispatchedDeadlines) {
+    int scanIntervals = configs.getBackplane().getDispatchedDeadlinesScanIntervals();
+    if (scanIntervals <= 0) {
+      return false;
+    }
+    long intervalMillis =
+        Math.max(1, configs.getServer().getDispatchedMonitorIntervalSeconds()) * 1000L;
+    return dispatchedDeadlines.claimScan(jedis, source, scanIntervals * intervalMillis);
+  }
+
+  // executions dispatched before the index was enabled are only found by a scan
+  private void indexDispatchedExecutions(
+      UnifiedJedis jedis, DispatchedDeadlines dispatchedDeadlines) {
+    String cursor = SCAN_POINTER_START;
+    do {
+      redis.clients.jedis.resps.ScanResult<Map.Entry<String, String>> scanResult =
+          state.dispatchedExecutions.scan(jedis, cursor, 100);
+      try (AbstractPipeline pipeline = jedis.pipelined()) {
+        for (Map.Entry<String, String> entry : scanResult.getResult()) {
+          DispatchedOperation dispatchedOperation =
+              parseDispatchedOperation(entry.getKey(), entry.getValue());
+          if (dispatchedOperation != null) {
+            dispatchedDeadlines.addIfMissing(
+                pipeline, entry.getKey(), dispatchedOperation.getRequeueAt());
+          }
+        }
+      }
+      cursor = scanResult.getCursor();
+    } while (!cursor.equals(SCAN_POINTER_START));
+    dispatchedDeadlinesIndexed = true;
+  }
+
+  private ScanResult<DispatchedOperation> scanOverdueDispatchedOperations(
+      UnifiedJedis jedis, DispatchedDeadlines dispatchedDeadlines, int position, int count) {
+    int slices = dispatchedDeadlines.getSlices();
+    // monitors start from different slices so that they rarely contend for a claim
+    int slice = (dispatchedDeadlineSliceOffset + position - 1) % slices;
+    // a claim lasts for an interval of the monitor, so that other monitors skip the slice
+    long claimMillis =
+        Math.max(1, configs.getServer().getDispatchedMonitorIntervalSeconds()) * 1000L;
+    List<Tuple> entries = ImmutableList.of();
+    ImmutableList.Builder<DispatchedOperation> overdue = ImmutableList.builder();
+    if (dispatchedDeadlines.claim(jedis, slice, source, claimMillis)) {
+      long now = System.currentTimeMillis();
+      entries = dispatchedDeadlines.overdue(jedis, slice, now, count);
+      if (!entries.isEmpty()) {
+        List<String> values =
+            state.dispatchedExecutions.mget(jedis, Lists.transform(entries, Tuple::getElement));
+        try (AbstractPipeline pipeline = jedis.pipelined()) {
+          for (int i = 0; i < entries.size(); i++) {
+            Tuple entry = entries.get(i);
+            String value = values.get(i);
+            DispatchedOperation dispatchedOperation =
+                value == null ? null : parseDispatchedOperation(entry.getElement(), value);
+            if (dispatchedOperation == null) {
+              // completed or requeued
+              dispatchedDeadlines.update(pipeline, slice, entry, null);
+            } else if (dispatchedOperation.getRequeueAt() > now) {
+              // extended by its worker
+              dispatchedDeadlines.update(
+                  pipeline, slice, entry, dispatchedOperation.getRequeueAt());
+            } else {
+              // examined again by the next claim of the slice if it is still dispatched
+              overdue.add(dispatchedOperation);
+              dispatchedDeadlines.update(pipeline, slice, entry, now + claimMillis);
+            }
+          }
+        }
+      }
+    }
+    String token;
+    if (entries.size() == count) {
+      // the slice may have more overdue entries
+      token = Integer.toString(position);
+    } else if (position < slices) {
+      token = Integer.toString(position + 1);
+    } else {
+      token = SENTINEL_PAGE_TOKEN;
+    }
+    return new ScanResult<>(token, overdue.build());
+  }
+
   @Override
   public ScanResult<Map.Entry<String, QueueEntry>> scanQueuedOperations(String cursor, int count)
       throws IOException {
@@ -1270,12 +1537,47 @@ public class RedisShardBackplane implements Backplane {
   private @Nullable QueueEntry dispatchOperation(
       UnifiedJedis jedis, List<Platform.Property> provisions, LocalResourceSet resourceSet)
       throws InterruptedException {
-    ExecutionQueueEntry executionQueueEntry =
-        state.executionQueue.dequeue(jedis, provisions, resourceSet, dequeueService);
+    ExecutionQueueEntry executionQueueEntry;
+    if (dispatchScript == null) {
+      executionQueueEntry =
+          state.executionQueue.dequeue(
+              jedis, provisions, resourceSet, dequeueService, queueNotifications);
+    } else {
+      executionQueueEntry =
+          state.executionQueue.dequeue(
+              jedis, provisions, resourceSet, dequeueService, queueNotifications, dispatchScript);
+    }
     if (executionQueueEntry == null) {
       return null;
     }
 
+    QueueEntry queueEntry = executionQueueEntry.queueEntry();
+    if (!executionQueueEntry.dispatched()) {
+      dispatchQueueEntry(jedis, executionQueueEntry);
+    }
+
+    // Return an entry so that if it needs re-queued, it will have the correct "requeue attempts".
+    return queueEntry.toBuilder().setRequeueAttempts(queueEntry.getRequeueAttempts() + 1).build();
+  }
+
+  private DispatchScript createDispatchScript() {
+    String placeholder = DispatchScript.EXECUTION_NAME_PLACEHOLDER;
+    return new DispatchScript(
+        state.dispatchedExecutions,
+        configs.getBackplane().getDispatchedOperationsHashName(),
+        configs.getBackplane().getDispatchingPrefix() + ":",
+        executionChannel(""),
+        () -> System.currentTimeMillis() + configs.getBackplane().getDispatchingTimeoutMillis(),
+        () -> {
+          // printed for each dispatch so that the reset expires relative to it
+          AtomicReference<String> resetMessage = new AtomicReference<>();
+          publishReset(resetMessage::set, keepaliveExecution(placeholder));
+          return resetMessage.get();
+        },
+        state.dispatchedDeadlines);
+  }
+
+  private void dispatchQueueEntry(UnifiedJedis jedis, ExecutionQueueEntry executionQueueEntry) {
     QueueEntry queueEntry = executionQueueEntry.queueEntry();
     String executionName = queueEntry.getExecuteEntry().getOperationName();
     Operation operation = keepaliveExecution(executionName);
@@ -1295,6 +1597,9 @@ public class RedisShardBackplane implements Backplane {
 
         state.dispatchedExecutions.insertIfMissing(
             pipeline, executionName, dispatchedOperationJson);
+        if (state.dispatchedDeadlines != null) {
+          state.dispatchedDeadlines.add(pipeline, executionName, requeueAt);
+        }
       } catch (InvalidProtocolBufferException e) {
         log.log(Level.SEVERE, "error printing dispatched operation", e);
         // very unlikely, printer would have to fail
@@ -1303,9 +1608,6 @@ public class RedisShardBackplane implements Backplane {
       state.executionQueue.removeFromDequeue(pipeline, executionQueueEntry);
       state.dispatchingExecutions.remove(pipeline, executionName);
     }
-
-    // Return an entry so that if it needs re-queued, it will have the correct "requeue attempts".
-    return queueEntry.toBuilder().setRequeueAttempts(queueEntry.getRequeueAttempts() + 1).build();
   }
 
   @SuppressWarnings("ConstantConditions")
@@ -1316,6 +1618,11 @@ public class RedisShardBackplane implements Backplane {
     return client.blockingCall(jedis -> dispatchOperation(jedis, provisions, resourceSet));
   }
 
+  private static String printQueueEntry(QueueEntry queueEntry)
+      throws InvalidProtocolBufferException {
+    return QueueEntryCodec.encode(queueEntry, configs.getBackplane().getQueueEntryEncoding());
+  }
+
   String printPollOperation(QueueEntry queueEntry, long requeueAt)
       throws InvalidProtocolBufferException {
     DispatchedOperation o =
@@ -1327,21 +1634,24 @@ public class RedisShardBackplane implements Backplane {
   @Override
   public void rejectOperation(QueueEntry queueEntry) throws IOException {
     String executionName = queueEntry.getExecuteEntry().getOperationName();
-    String queueEntryJson = JsonFormat.printer().print(queueEntry);
+    String queueEntryValue = printQueueEntry(queueEntry);
     String dispatchedEntryJson = printPollOperation(queueEntry, 0);
     client.run(
         jedis -> {
           if (isBlacklisted(jedis, queueEntry.getExecuteEntry().getRequestMetadata())) {
             pollExecution(
                 jedis, executionName, dispatchedEntryJson); // complete our lease to error operation
+            if (state.dispatchedDeadlines != null) {
+              state.dispatchedDeadlines.add(jedis, executionName, 0);
+            }
           } else {
             Operation operation = getExecution(jedis, executionName);
             boolean requeue =
                 operation != null && !operation.getDone(); // operation removed or completed somehow
             if (state.dispatchedExecutions.remove(jedis, executionName) && requeue) {
               int priority = queueEntry.getExecuteEntry().getExecutionPolicy().getPriority();
-              state.executionQueue.push(
-                  jedis, queueEntry.getPlatform().getPropertiesList(), queueEntryJson, priority);
+              pushExecution(
+                  jedis, queueEntry.getPlatform().getPropertiesList(), queueEntryValue, priority);
             }
           }
         });
@@ -1428,7 +1738,7 @@ public class RedisShardBackplane implements Backplane {
   @SuppressWarnings("ConstantConditions")
   @Override
   public void requeueDispatchedExecution(QueueEntry queueEntry) throws IOException {
-    String queueEntryJson = JsonFormat.printer().print(queueEntry);
+    String queueEntryValue = printQueueEntry(queueEntry);
     String executionName = queueEntry.getExecuteEntry().getOperationName();
     Operation publishOperation = keepaliveExecution(executionName);
     int priority = queueEntry.getExecuteEntry().getExecutionPolicy().getPriority();
@@ -1438,7 +1748,7 @@ public class RedisShardBackplane implements Backplane {
               jedis,
               executionName,
               queueEntry.getPlatform().getPropertiesList(),
-              queueEntryJson,
+              queueEntryValue,
               priority);
           publishReset(jedis, publishOperation);
         });
@@ -70,6 +70,8 @@ class RedisShardSubscriber extends JedisPubSub {
   private final String workerChannel;
   private final Consumer<String> onWorkerRemoved;
   private final Executor executor;
+  private final @Nullable String queueChannel;
+  private final Consumer<String> onQueuePushed;
   private SettableFuture<Void> subscribeFuture = null;
 
   RedisShardSubscriber(
@@ -79,12 +81,34 @@ class RedisShardSubscriber extends JedisPubSub {
       String workerChannel,
       Consumer<String> onWorkerRemoved,
       Executor executor) {
+    this(
+        watchers,
+        workers,
+        workerChangeTypeMask,
+        workerChannel,
+        onWorkerRemoved,
+        executor,
+        /* queueChannel= */ null,
+        queueName -> {});
+  }
+
+  RedisShardSubscriber(
+      ListMultimap<String, TimedWatchFuture> watchers,
+      Map<String, ShardWorker> workers,
+      int workerChangeTypeMask,
+      String workerChannel,
+      Consumer<String> onWorkerRemoved,
+      Executor executor,
+      @Nullable String queueChannel,
+      Consumer<String> onQueuePushed) {
     this.watchers = watchers;
     this.workers = workers;
     this.workerChangeTypeMask = workerChangeTypeMask;
     this.workerChannel = workerChannel;
     this.onWorkerRemoved = onWorkerRemoved;
     this.executor = executor;
+    this.queueChannel = queueChannel;
+    this.onQueuePushed = onQueuePushed;
   }
 
   public List<String> watchedOperationChannels() {
@@ -98,7 +122,11 @@ class RedisShardSubscriber extends JedisPubSub {
     synchronized (watchers) {
       channels.addAll(watchers.keySet());
     }
-    return channels.add(workerChannel).build();
+    channels.add(workerChannel);
+    if (queueChannel != null) {
+      channels.add(queueChannel);
+    }
+    return channels.build();
   }
 
   public List<String> expiredWatchedOperationChannels(Instant now) {
@@ -211,6 +239,9 @@ class RedisShardSubscriber extends JedisPubSub {
   public void onMessage(String channel, String message) {
     if (channel.equals(workerChannel)) {
       onWorkerMessage(message);
+    } else if (channel.equals(queueChannel)) {
+      // the message is the name of the queue which was pushed
+      onQueuePushed.accept(message);
     } else {
       onOperationMessage(channel, message);
     }
@@ -16,6 +16,7 @@ package build.buildfarm.instance.shard;
 
 import static build.buildfarm.instance.shard.Util.SHARD_IS_RETRIABLE;
 import static build.buildfarm.instance.shard.Util.correctMissingBlob;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.util.concurrent.Futures.addCallback;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static com.google.common.util.concurrent.Futures.transform;
@@ -46,11 +47,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import javax.annotation.Nullable;
@@ -67,6 +70,9 @@ public class RemoteInputStreamFactory implements InputStreamFactory {
   private final Random rand;
   private final LoadingCache<String, StubInstance> workerStubs;
   private final UnavailableConsumer onUnavailable;
+  private final int chunkSize;
+  private final int maxChunkSources;
+  private final @Nullable ExecutorService chunkExecutor;
 
   RemoteInputStreamFactory(
       Backplane backplane,
@@ -83,14 +89,51 @@ public class RemoteInputStreamFactory implements InputStreamFactory {
       Random rand,
       LoadingCache<String, StubInstance> workerStubs,
       UnavailableConsumer onUnavailable) {
+    this(
+        publicName,
+        backplane,
+        rand,
+        workerStubs,
+        onUnavailable,
+        /* chunkSize= */ 0,
+        /* maxChunkSources= */ 0,
+        /* chunkExecutor= */ null);
+  }
+
+  /**
+   * Blobs larger than chunkSize with several locations are fetched in chunks from up to
+   * maxChunkSources of them concurrently, with a task for each on chunkExecutor, which is shut
+   * down by stop. A chunkSize of 0 fetches every blob from a single location.
+   */
+  @SuppressWarnings("NullableProblems")
+  public RemoteInputStreamFactory(
+      String publicName,
+      Backplane backplane,
+      Random rand,
+      LoadingCache<String, StubInstance> workerStubs,
+      UnavailableConsumer onUnavailable,
+      int chunkSize,
+      int maxChunkSources,
+      @Nullable ExecutorService chunkExecutor) {
+    checkArgument(chunkSize == 0 || chunkExecutor != null, "chunked fetch requires an executor");
     this.publicName = publicName;
     this.backplane = backplane;
     this.rand = rand;
     this.workerStubs = workerStubs;
     this.onUnavailable = onUnavailable;
+    this.chunkSize = chunkSize;
+    this.maxChunkSources = maxChunkSources;
+    this.chunkExecutor = chunkExecutor;
+  }
+
+  /** Stop the chunked fetches of the factory, failing their streams. */
+  public void stop() {
+    if (chunkExecutor != null) {
+      chunkExecutor.shutdownNow();
+    }
   }
 
-  private Instance workerStub(String worker) {
+  private StubInstance workerStub(String worker) {
     try {
       StubInstance stubInstance = workerStubs.get(worker);
       stubInstance.setOnStopped(() -> workerStubs.invalidate(worker));
@@ -147,6 +190,51 @@ public class RemoteInputStreamFactory implements InputStreamFactory {
     throw new NoSuchFileException(DigestUtil.toString(blobDigest));
   }
 
+  private InputStream fetchBlobRangeFromRemoteWorker(
+      Digest blobDigest,
+      String worker,
+      long offset,
+      long limit,
+      RequestMetadata requestMetadata)
+      throws IOException {
+    try {
+      return workerStub(worker)
+          .newBlobRangeInput(Compressor.Value.IDENTITY, blobDigest, offset, limit, requestMetadata);
+    } catch (IOException | StatusRuntimeException e) {
+      Code code = Status.fromThrowable(e).getCode();
+      if (code == Code.UNAVAILABLE || code == Code.UNIMPLEMENTED) {
+        onUnavailable.accept(worker, e, "getBlob(" + DigestUtil.toString(blobDigest) + ")");
+      }
+      throw e;
+    }
+  }
+
+  private boolean shouldFetchChunked(
+      Compressor.Value compressor, Digest blobDigest, long offset, int locations) {
+    return chunkSize > 0
+        && maxChunkSources > 1
+        && locations > 1
+        && compressor == Compressor.Value.IDENTITY
+        && blobDigest.getSize() - offset > chunkSize;
+  }
+
+  private InputStream newChunkedInput(
+      Digest blobDigest, long offset, List<String> workers, RequestMetadata requestMetadata) {
+    List<String> sources = new ArrayList<>(workers);
+    Collections.shuffle(sources, rand);
+    sources = sources.subList(0, Math.min(sources.size(), maxChunkSources));
+    return new ChunkedBlobInputStream(
+        (worker, rangeOffset, limit) ->
+            fetchBlobRangeFromRemoteWorker(
+                blobDigest, worker, rangeOffset, limit, requestMetadata),
+        sources,
+        offset,
+        blobDigest.getSize() - offset,
+        chunkSize,
+        /* window= */ sources.size() * 2,
+        chunkExecutor);
+  }
+
   @Override
   public InputStream newInput(Compressor.Value compressor, Digest blobDigest, long offset)
       throws IOException {
@@ -180,6 +268,9 @@ public class RemoteInputStreamFactory implements InputStreamFactory {
       backplane.removeBlobLocation(blobDigest, publicName);
     }
     List<String> workersList = new ArrayList<>(locationSet);
+    if (shouldFetchChunked(compressor, blobDigest, offset, workersList.size())) {
+      return newChunkedInput(blobDigest, offset, workersList, requestMetadata);
+    }
     boolean emptyWorkerList = workersList.isEmpty();
     final ListenableFuture<List<String>> populatedWorkerListFuture;
     if (emptyWorkerList) {
@@ -32,11 +32,13 @@ import static com.google.common.util.concurrent.Futures.catching;
 import static com.google.common.util.concurrent.Futures.catchingAsync;
 import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.Futures.nonCancellationPropagating;
 import static com.google.common.util.concurrent.Futures.transform;
 import static com.google.common.util.concurrent.Futures.transformAsync;
 import static com.google.common.util.concurrent.Futures.whenAllComplete;
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
 import static java.lang.String.format;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.concurrent.Executors.newSingleThreadExecutor;
@@ -70,6 +72,7 @@ import build.bazel.remote.execution.v2.ToolDetails;
 import build.buildfarm.actioncache.ActionCache;
 import build.buildfarm.actioncache.ShardActionCache;
 import build.buildfarm.backplane.Backplane;
+import build.buildfarm.common.BlobFilter;
 import build.buildfarm.common.BuildfarmExecutors;
 import build.buildfarm.common.CasIndexResults;
 import build.buildfarm.common.DigestUtil;
@@ -114,6 +117,8 @@ import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.FutureCallback;
@@ -149,35 +154,36 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.time.Instant;
-import java.util.AbstractMap;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import javax.naming.ConfigurationException;
 import lombok.extern.java.Log;
@@ -189,10 +195,14 @@ public class ServerInstance extends NodeInstance {
   private static final String TIMEOUT_OUT_OF_BOUNDS =
       "A timeout specified is out of bounds with a configured range";
 
-  private static final int DEFAULT_MAX_LOCAL_ACTION_CACHE_SIZE = 1000000;
-
   private static final int TRANSFORM_TOKENS = 256;
 
+  private static final int FIND_MISSING_BLOBS_BATCH_SIZE = 10000;
+  // directories of a tree level fetched at once
+  private static final int TREE_FETCH_PARALLELISM = 256;
+  // bounds a fetch shared by every caller for a tree, which is failed and evicted when exceeded
+  private static final long TREE_FETCH_TIMEOUT_SECONDS = 300;
+
   // Prometheus metrics
   private static final Counter executionSuccess =
       Counter.build().name("execution_success").help("Execution success.").register();
@@ -261,6 +271,7 @@ public class ServerInstance extends NodeInstance {
   private final Thread dispatchedMonitor;
   private final Duration maxActionTimeout;
   private AsyncCache<build.buildfarm.v1test.Digest, Directory> directoryCache;
+  private @Nullable AsyncCache<build.buildfarm.v1test.Digest, Tree> treeCache;
   private AsyncCache<build.buildfarm.v1test.Digest, Command> commandCache;
   private AsyncCache<build.buildfarm.v1test.Digest, Action> digestToActionCache;
   private Cache<RequestMetadata, Boolean> recentCacheServedExecutions;
@@ -273,6 +284,8 @@ public class ServerInstance extends NodeInstance {
   private final ListeningExecutorService operationTransformService =
       BuildfarmExecutors.getTransformServicePool();
   private final ListeningExecutorService actionCacheFetchService;
+  private final ListeningExecutorService findMissingBlobsService =
+      BuildfarmExecutors.getFindMissingBlobsPool();
   private final ScheduledExecutorService contextDeadlineScheduler =
       newSingleThreadScheduledExecutor();
   private final ExecutorService operationDeletionService = newSingleThreadExecutor();
@@ -292,6 +305,8 @@ public class ServerInstance extends NodeInstance {
   private boolean stopping = false;
   private boolean stopped = true;
   private final Thread prometheusMetricsThread;
+  private final @Nullable WorkerBlobFilters blobFilters;
+  private final @Nullable Thread blobFilterRefresher;
 
   private static BuildfarmConfigs configs = BuildfarmConfigs.getInstance();
 
@@ -329,7 +344,9 @@ public class ServerInstance extends NodeInstance {
         name,
         backplane,
         new ShardActionCache(
-            DEFAULT_MAX_LOCAL_ACTION_CACHE_SIZE, backplane, actionCacheFetchService),
+            configs.getServer().getCaches().getActionResultCacheMaxBytes(),
+            backplane,
+            actionCacheFetchService),
         configs.getServer().isRunDispatchedMonitor(),
         configs.getServer().getDispatchedMonitorIntervalSeconds(),
         configs.getServer().isRunOperationQueuer(),
@@ -351,6 +368,15 @@ public class ServerInstance extends NodeInstance {
         Caffeine.newBuilder()
             .maximumSize(configs.getServer().getCaches().getDirectoryCacheMaxEntries())
             .buildAsync();
+    long treeCacheMaxBytes = configs.getServer().getCaches().getTreeCacheMaxBytes();
+    treeCache =
+        treeCacheMaxBytes > 0
+            ? Caffeine.newBuilder()
+                .maximumWeight(treeCacheMaxBytes)
+                .weigher(
+                    (build.buildfarm.v1test.Digest digest, Tree tree) -> tree.getSerializedSize())
+                .buildAsync()
+            : null;
     commandCache =
         Caffeine.newBuilder()
             .maximumSize(configs.getServer().getCaches().getCommandCacheMaxEntries())
@@ -529,13 +555,41 @@ public class ServerInstance extends NodeInstance {
           new Thread(
               new DispatchedMonitor(
                   backplane::isStopped,
-                  dispatchedOperations,
+                  configs.getBackplane().getDispatchedDeadlineSlices() > 0
+                      ? overdueDispatchedOperations()
+                      : dispatchedOperations,
                   this::requeueOperation,
                   dispatchedMonitorIntervalSeconds));
     } else {
       dispatchedMonitor = null;
     }
 
+    int blobFilterRefreshIntervalSeconds =
+        configs.getServer().getBlobFilterRefreshIntervalSeconds();
+    if (blobFilterRefreshIntervalSeconds > 0) {
+      blobFilters = new WorkerBlobFilters(backplane, configs.getServer().getBlobFilterMaxBytes());
+      blobFilterRefresher =
+          new Thread(
+              () -> {
+                try {
+                  while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                      refreshBlobFilters();
+                    } catch (Exception e) {
+                      log.log(Level.SEVERE, "Could not refresh worker blob filters", e);
+                    }
+                    TimeUnit.SECONDS.sleep(blobFilterRefreshIntervalSeconds);
+                  }
+                } catch (InterruptedException e) {
+                  // ignore
+                }
+              },
+              "Worker Blob Filter Refresher");
+    } else {
+      blobFilters = null;
+      blobFilterRefresher = null;
+    }
+
     if (runOperationQueuer) {
       transformPollerExecutor = newFixedThreadPool(TRANSFORM_TOKENS);
 
@@ -749,6 +803,10 @@ public class ServerInstance extends NodeInstance {
     if (prometheusMetricsThread != null) {
       prometheusMetricsThread.start();
     }
+
+    if (blobFilterRefresher != null) {
+      blobFilterRefresher.start();
+    }
   }
 
   @Override
@@ -770,10 +828,14 @@ public class ServerInstance extends NodeInstance {
     if (prometheusMetricsThread != null) {
       prometheusMetricsThread.interrupt();
     }
+    if (blobFilterRefresher != null) {
+      blobFilterRefresher.interrupt();
+    }
     contextDeadlineScheduler.shutdown();
     operationDeletionService.shutdown();
     operationTransformService.shutdown();
     actionCacheFetchService.shutdown();
+    findMissingBlobsService.shutdown();
     onStop.run();
     backplane.stop();
     if (!contextDeadlineScheduler.awaitTermination(10, SECONDS)) {
@@ -799,6 +861,10 @@ public class ServerInstance extends NodeInstance {
       }
     }
     actionCacheFetchService.shutdownNow();
+    if (!findMissingBlobsService.awaitTermination(10, SECONDS)) {
+      log.log(Level.SEVERE, "Could not shut down find missing blobs service");
+    }
+    findMissingBlobsService.shutdownNow();
     workerStubs.invalidateAll();
     log.log(Level.FINER, format("Instance %s has been stopped", getName()));
     stopping = false;
@@ -887,17 +953,24 @@ public class ServerInstance extends NodeInstance {
       Iterable<Digest> nonEmptyDigests,
       DigestFunction.Value digestFunction,
       RequestMetadata requestMetadata) {
-    Deque<String> workers;
+    Set<String> storageWorkers;
     try {
-      List<String> workersList = new ArrayList<>(backplane.getStorageWorkers());
-      Collections.shuffle(workersList, rand);
-      workers = new ArrayDeque<>(workersList);
+      storageWorkers = backplane.getStorageWorkers();
+      if (blobFilters != null && !storageWorkers.isEmpty()) {
+        return findMissingBlobsOnFilteredWorkers(
+            filterLookup(nonEmptyDigests, digestFunction, storageWorkers),
+            digestFunction,
+            requestMetadata);
+      }
     } catch (IOException e) {
       return immediateFailedFuture(Status.fromThrowable(e).asException());
     }
-    if (workers.isEmpty()) {
+    if (storageWorkers.isEmpty()) {
       return immediateFuture(nonEmptyDigests);
     }
+    List<String> workersList = new ArrayList<>(storageWorkers);
+    Collections.shuffle(workersList, rand);
+    Deque<String> workers = new ArrayDeque<>(workersList);
 
     // Search through all of the workers to decide which CAS blobs are missing.
     SettableFuture<Iterable<Digest>> missingDigestsFuture = SettableFuture.create();
@@ -914,6 +987,152 @@ public class ServerInstance extends NodeInstance {
     return missingDigestsFuture;
   }
 
+  @VisibleForTesting
+  void refreshBlobFilters() throws IOException {
+    if (blobFilters != null) {
+      blobFilters.refresh();
+    }
+  }
+
+  private record FilteredLookup(
+      List<Digest> digests, Map<String, List<Digest>> workerDigests, List<Digest> missingDigests) {}
+
+  // Workers which have published a blob filter are only asked for the blobs that their filter
+  // admits. Blobs that no filter admits may have arrived after the filters were published, and
+  // are reported missing only if the backplane does not record a location for them either.
+  // Locations are recorded after up to backplane.casLocationBatchWindowMillis, so a blob which
+  // arrived within that window of the request may be reported missing and uploaded again.
+  private FilteredLookup filterLookup(
+      Iterable<Digest> digests, DigestFunction.Value digestFunction, Set<String> storageWorkers)
+      throws IOException {
+    List<Digest> admittedDigests = new ArrayList<>();
+    List<Digest> unadmittedDigests = new ArrayList<>();
+    Map<String, List<Digest>> workerDigests = new HashMap<>();
+    // workers without a filter are asked about every digest
+    List<String> filteredWorkers = new ArrayList<>();
+    List<BlobFilter> filters = new ArrayList<>();
+    List<String> unfilteredWorkers = new ArrayList<>();
+    for (String worker : storageWorkers) {
+      BlobFilter filter = blobFilters.get(worker);
+      if (filter == null) {
+        unfilteredWorkers.add(worker);
+      } else {
+        filteredWorkers.add(worker);
+        filters.add(filter);
+      }
+    }
+    for (Digest digest : digests) {
+      boolean admitted = false;
+      for (String worker : unfilteredWorkers) {
+        workerDigests.computeIfAbsent(worker, w -> new ArrayList<>()).add(digest);
+        admitted = true;
+      }
+      // hashed once for every filter
+      BlobFilter.Key key = BlobFilter.key(digest.getHash());
+      for (int i = 0; i < filters.size(); i++) {
+        if (filters.get(i).mightContain(key)) {
+          workerDigests.computeIfAbsent(filteredWorkers.get(i), w -> new ArrayList<>()).add(digest);
+          admitted = true;
+        }
+      }
+      if (admitted) {
+        admittedDigests.add(digest);
+      } else {
+        unadmittedDigests.add(digest);
+      }
+    }
+    List<Digest> missingDigests = new ArrayList<>();
+    if (!unadmittedDigests.isEmpty()) {
+      Map<build.buildfarm.v1test.Digest, Set<String>> locations =
+          backplane.getBlobDigestsWorkers(
+              Iterables.transform(
+                  unadmittedDigests, digest -> DigestUtil.fromDigest(digest, digestFunction)));
+      for (Digest digest : unadmittedDigests) {
+        Set<String> locatedWorkers =
+            Sets.intersection(
+                locations.getOrDefault(
+                    DigestUtil.fromDigest(digest, digestFunction), ImmutableSet.of()),
+                storageWorkers);
+        if (locatedWorkers.isEmpty()) {
+          missingDigests.add(digest);
+        } else {
+          admittedDigests.add(digest);
+          for (String worker : locatedWorkers) {
+            workerDigests.computeIfAbsent(worker, w -> new ArrayList<>()).add(digest);
+          }
+        }
+      }
+    }
+    return new FilteredLookup(admittedDigests, workerDigests, missingDigests);
+  }
+
+  // Each worker is asked only about the blobs admitted for it, concurrently with the others. A
+  // blob is missing if no worker asked about it reports holding it. A worker which fails is not
+  // retried, and is considered not to hold the blobs it was asked about.
+  private ListenableFuture<Iterable<Digest>> findMissingBlobsOnFilteredWorkers(
+      FilteredLookup lookup, DigestFunction.Value digestFunction, RequestMetadata requestMetadata) {
+    if (lookup.workerDigests().isEmpty()) {
+      return immediateFuture(lookup.missingDigests());
+    }
+    String requestId = UUID.randomUUID().toString();
+    Executor executor = Context.current().fixedContextExecutor(directExecutor());
+    Set<Digest> foundDigests = ConcurrentHashMap.newKeySet();
+    List<ListenableFuture<Void>> workerFutures = new ArrayList<>();
+    for (Map.Entry<String, List<Digest>> entry : lookup.workerDigests().entrySet()) {
+      String worker = entry.getKey();
+      List<Digest> digests = entry.getValue();
+      ListenableFuture<Void> workerFuture =
+          transform(
+              workerStub(worker).findMissingBlobs(digests, digestFunction, requestMetadata),
+              workerMissingDigests -> {
+                Set<Digest> workerMissing = ImmutableSet.copyOf(workerMissingDigests);
+                for (Digest digest : digests) {
+                  if (!workerMissing.contains(digest)) {
+                    foundDigests.add(digest);
+                  }
+                }
+                return null;
+              },
+              executor);
+      workerFutures.add(
+          catchingAsync(
+              workerFuture,
+              Throwable.class,
+              t -> {
+                Status status = Status.fromThrowable(t);
+                if (status.getCode() == Code.UNAVAILABLE
+                    || status.getCode() == Code.UNIMPLEMENTED) {
+                  removeMalfunctioningWorker(worker, t, "findMissingBlobs(" + requestId + ")");
+                } else if (status.getCode() == Code.DEADLINE_EXCEEDED
+                    || status.getCode() == Code.CANCELLED
+                    || Context.current().isCancelled()
+                    || !SHARD_IS_RETRIABLE.test(status)) {
+                  return immediateFailedFuture(status.asException());
+                } else {
+                  log.log(
+                      Level.WARNING,
+                      format("findMissingBlobs(%s) %s: %s", requestId, worker, status),
+                      t);
+                }
+                return immediateFuture(null);
+              },
+              executor));
+    }
+    return transform(
+        allAsList(workerFutures),
+        results -> {
+          ImmutableList.Builder<Digest> missingDigests = ImmutableList.builder();
+          missingDigests.addAll(lookup.missingDigests());
+          for (Digest digest : lookup.digests()) {
+            if (!foundDigests.contains(digest)) {
+              missingDigests.add(digest);
+            }
+          }
+          return missingDigests.build();
+        },
+        directExecutor());
+  }
+
   // This is a faster strategy to check missing blobs which does not require querying the CAS.
   // With hundreds of worker machines, it may be too expensive to query all of them for "find
   // missing blobs".
@@ -932,118 +1151,158 @@ public class ServerInstance extends NodeInstance {
       DigestFunction.Value digestFunction,
       RequestMetadata requestMetadata) {
     try {
-      Set<Digest> uniqueDigests = new HashSet<>();
-      nonEmptyDigests.forEach(uniqueDigests::add);
-      // convert in, convert out?
-      Map<build.buildfarm.v1test.Digest, Set<String>> foundBlobs =
-          backplane.getBlobDigestsWorkers(
-              Iterables.transform(uniqueDigests, d -> DigestUtil.fromDigest(d, digestFunction)));
+      // each digest is converted once, and duplicates are dropped in request order
+      Map<build.buildfarm.v1test.Digest, Digest> uniqueDigests = new LinkedHashMap<>();
+      for (Digest digest : nonEmptyDigests) {
+        uniqueDigests.putIfAbsent(DigestUtil.fromDigest(digest, digestFunction), digest);
+      }
       Set<String> workerSet = backplane.getStorageWorkers();
       Map<String, Long> workersStartTime = backplane.getWorkersStartTimeInEpochSecs(workerSet);
-      Map<Digest, Set<String>> digestAndWorkersMap =
-          uniqueDigests.stream()
-              .map(
-                  digest -> {
-                    Set<String> initialWorkers =
-                        foundBlobs.getOrDefault(
-                            DigestUtil.fromDigest(digest, digestFunction), Collections.emptySet());
-                    return new AbstractMap.SimpleEntry<>(
-                        digest,
-                        filterAndAdjustWorkersForDigest(
-                            DigestUtil.fromDigest(digest, digestFunction),
-                            initialWorkers,
-                            workerSet,
-                            workersStartTime));
-                  })
-              .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
-      ListenableFuture<Iterable<Digest>> missingDigestFuture =
-          immediateFuture(
-              digestAndWorkersMap.entrySet().stream()
-                  .filter(entry -> entry.getValue().isEmpty())
-                  .map(Map.Entry::getKey)
-                  .collect(Collectors.toList()));
-      return transformAsync(
-          missingDigestFuture,
-          (missingDigest) -> {
-            extendLeaseForDigests(digestAndWorkersMap, digestFunction, requestMetadata);
-            return immediateFuture(missingDigest);
+
+      // large requests are looked up in batches concurrently, so that no single pipeline holds
+      // every digest of the request
+      ListeningExecutorService lookupService =
+          uniqueDigests.size() > FIND_MISSING_BLOBS_BATCH_SIZE
+              ? findMissingBlobsService
+              : newDirectExecutorService();
+      List<ListenableFuture<BackplaneLookup>> lookups = new ArrayList<>();
+      for (List<build.buildfarm.v1test.Digest> batch :
+          Iterables.partition(uniqueDigests.keySet(), FIND_MISSING_BLOBS_BATCH_SIZE)) {
+        lookups.add(
+            lookupService.submit(
+                () -> lookupViaBackplane(batch, uniqueDigests, workerSet, workersStartTime)));
+      }
+      ListenableFuture<Iterable<Digest>> missingDigestsFuture =
+          transformAsync(
+              allAsList(lookups),
+              batchLookups -> {
+                ImmutableList.Builder<Digest> missingDigests = ImmutableList.builder();
+                Map<Digest, Set<String>> digestsWorkers = new HashMap<>();
+                for (BackplaneLookup lookup : batchLookups) {
+                  missingDigests.addAll(lookup.missingDigests());
+                  digestsWorkers.putAll(lookup.digestsWorkers());
+                }
+                extendLeaseForDigests(
+                    digestsWorkers, uniqueDigests.keySet(), digestFunction, requestMetadata);
+                return immediateFuture(missingDigests.build());
+              },
+              // Propagate context values but don't cascade its cancellation for downstream calls.
+              Context.current().fork().fixedContextExecutor(directExecutor()));
+      return catchingAsync(
+          missingDigestsFuture,
+          Exception.class,
+          e -> {
+            log.log(Level.SEVERE, "find missing blob via backplane failed", e);
+            return immediateFailedFuture(Status.fromThrowable(e).asException());
           },
-          // Propagate context values but don't cascade its cancellation for downstream calls.
-          Context.current().fork().fixedContextExecutor(directExecutor()));
+          directExecutor());
     } catch (Exception e) {
       log.log(Level.SEVERE, "find missing blob via backplane failed", e);
       return immediateFailedFuture(Status.fromThrowable(e).asException());
     }
   }
 
-  private Set<String> filterAndAdjustWorkersForDigest(
-      build.buildfarm.v1test.Digest digest,
-      Set<String> originalWorkerSetWithDigest,
+  private record BackplaneLookup(
+      List<Digest> missingDigests, Map<Digest, Set<String>> digestsWorkers) {}
+
+  // Workers are only trusted to hold a blob if they are active and started before it was
+  // inserted. The others are removed from the locations of the blob, and a blob without any
+  // trusted worker is missing.
+  private BackplaneLookup lookupViaBackplane(
+      List<build.buildfarm.v1test.Digest> digests,
+      Map<build.buildfarm.v1test.Digest, Digest> uniqueDigests,
       Set<String> activeWorkers,
-      Map<String, Long> workersStartTime) {
-    long insertTime;
-    try {
-      insertTime = backplane.getDigestInsertTime(digest);
-    } catch (IOException e) {
-      log.log(
-          Level.WARNING,
-          format("failed to get digest (%s) insertion time", DigestUtil.toString(digest)));
-      return Collections.emptySet();
-    }
-    Set<String> activeWorkersWithDigest =
-        Sets.intersection(originalWorkerSetWithDigest, activeWorkers);
-    Set<String> workersStartedBeforeDigestInsertion =
-        activeWorkersWithDigest.stream()
-            .filter(
-                worker ->
-                    workersStartTime.getOrDefault(worker, Instant.now().getEpochSecond())
-                        < insertTime)
-            .collect(Collectors.toSet());
-    Set<String> workersToBeRemoved =
-        Sets.difference(originalWorkerSetWithDigest, workersStartedBeforeDigestInsertion)
-            .immutableCopy();
-    if (!workersToBeRemoved.isEmpty()) {
+      Map<String, Long> workersStartTime)
+      throws IOException {
+    Map<build.buildfarm.v1test.Digest, Set<String>> foundBlobs =
+        backplane.getBlobDigestsWorkers(digests);
+    List<build.buildfarm.v1test.Digest> foundDigests = new ArrayList<>();
+    for (build.buildfarm.v1test.Digest digest : digests) {
+      if (foundBlobs.containsKey(digest)) {
+        foundDigests.add(digest);
+      }
+    }
+    Map<build.buildfarm.v1test.Digest, Long> insertTimes = ImmutableMap.of();
+    if (!foundDigests.isEmpty()) {
       try {
+        insertTimes = backplane.getDigestsInsertTimes(foundDigests);
+      } catch (IOException e) {
         log.log(
-            Level.FINE,
-            format("adjusting locations for the digest %s", DigestUtil.toString(digest)));
-        backplane.adjustBlobLocations(digest, Collections.emptySet(), workersToBeRemoved);
+            Level.WARNING,
+            format("failed to get insertion time for %d digests", foundDigests.size()),
+            e);
+      }
+    }
+
+    List<Digest> missingDigests = new ArrayList<>();
+    Map<Digest, Set<String>> digestsWorkers = new HashMap<>();
+    Map<build.buildfarm.v1test.Digest, Set<String>> removedWorkers = new HashMap<>();
+    long now = Instant.now().getEpochSecond();
+    for (build.buildfarm.v1test.Digest digest : digests) {
+      Set<String> workers = foundBlobs.getOrDefault(digest, ImmutableSet.of());
+      Long insertTime = insertTimes.get(digest);
+      if (workers.isEmpty() || insertTime == null) {
+        missingDigests.add(uniqueDigests.get(digest));
+        continue;
+      }
+      Set<String> validWorkers = new HashSet<>();
+      Set<String> staleWorkers = new HashSet<>();
+      for (String worker : workers) {
+        if (activeWorkers.contains(worker)
+            && workersStartTime.getOrDefault(worker, now) < insertTime) {
+          validWorkers.add(worker);
+        } else {
+          staleWorkers.add(worker);
+        }
+      }
+      if (!staleWorkers.isEmpty()) {
+        removedWorkers.put(digest, staleWorkers);
+      }
+      if (validWorkers.isEmpty()) {
+        missingDigests.add(uniqueDigests.get(digest));
+      } else {
+        digestsWorkers.put(uniqueDigests.get(digest), validWorkers);
+      }
+    }
+    if (!removedWorkers.isEmpty()) {
+      try {
+        log.log(Level.FINE, format("adjusting locations for %d digests", removedWorkers.size()));
+        backplane.removeBlobsLocations(removedWorkers);
       } catch (IOException e) {
         log.log(
             Level.WARNING,
-            format("error adjusting blob location for %s", DigestUtil.toString(digest)),
+            format("error adjusting blob locations for %d digests", removedWorkers.size()),
             e);
       }
     }
-    return workersStartedBeforeDigestInsertion;
+    return new BackplaneLookup(missingDigests, digestsWorkers);
   }
 
   private void extendLeaseForDigests(
-      Map<Digest, Set<String>> digestAndWorkersMap,
+      Map<Digest, Set<String>> digestsWorkers,
+      Collection<build.buildfarm.v1test.Digest> digests,
       DigestFunction.Value digestFunction,
       RequestMetadata requestMetadata) {
-    Map<String, Set<Digest>> workerAndDigestMap = new HashMap<>();
-    digestAndWorkersMap.forEach(
+    Map<String, List<Digest>> workerAndDigestMap = new HashMap<>();
+    digestsWorkers.forEach(
         (digest, workers) ->
             workers.forEach(
                 worker ->
-                    workerAndDigestMap.computeIfAbsent(worker, w -> new HashSet<>()).add(digest)));
+                    workerAndDigestMap
+                        .computeIfAbsent(worker, w -> new ArrayList<>())
+                        .add(digest)));
 
     workerAndDigestMap.forEach(
-        (worker, digests) ->
-            workerStub(worker).findMissingBlobs(digests, digestFunction, requestMetadata));
+        (worker, workerDigests) ->
+            workerStub(worker).findMissingBlobs(workerDigests, digestFunction, requestMetadata));
 
     try {
-      backplane.updateDigestsExpiry(
-          Iterables.transform(
-              digestAndWorkersMap.keySet(), d -> DigestUtil.fromDigest(d, digestFunction)));
+      backplane.updateDigestsExpiry(digests);
     } catch (IOException e) {
       log.log(
           Level.WARNING,
-          format(
-              "Failed to update expiry duration for digests (%s) insertion time",
-              digestAndWorkersMap.keySet()));
+          format("Failed to update expiry duration for %d digests", digests.size()),
+          e);
     }
   }
 
@@ -1536,112 +1795,268 @@ public class ServerInstance extends NodeInstance {
 
   protected TokenizableIterator<DirectoryEntry> createTreeIterator(
       String reason, build.buildfarm.v1test.Digest rootDigest, String pageToken) {
+    // A first page waits for the whole tree so that it may be cached, and later pages are served
+    // from the cache if it retained the tree. Any other page is streamed from the CAS, so that a
+    // tree too large to be cached is not fetched in full for each page.
+    ListenableFuture<Tree> treeFuture = null;
+    if (treeCache != null) {
+      CompletableFuture<Tree> cachedTreeFuture = treeCache.getIfPresent(rootDigest);
+      if (cachedTreeFuture != null) {
+        treeFuture = nonCancellationPropagating(toListenableFuture(cachedTreeFuture));
+      } else if (pageToken.equals(Instance.SENTINEL_PAGE_TOKEN)) {
+        treeFuture =
+            getTreeFuture(
+                reason,
+                rootDigest,
+                newDirectExecutorService(),
+                RequestMetadata.getDefaultInstance());
+      }
+    }
+    if (treeFuture != null) {
+      Map<String, Directory> directories = awaitTree(treeFuture).getDirectoriesMap();
+      return new TreeIterator(
+          directoryBlobDigest -> {
+            Directory directory = directories.get(directoryBlobDigest.getHash());
+            if (directory == null) {
+              return fetchTreeDirectory(reason, directoryBlobDigest);
+            }
+            return directory;
+          },
+          rootDigest,
+          pageToken);
+    }
     return new TreeIterator(
-        directoryBlobDigest -> {
-          try {
-            return catching(
-                    expectDirectory(
-                        reason, directoryBlobDigest, RequestMetadata.getDefaultInstance()),
-                    Exception.class,
-                    e -> {
-                      log.log(
-                          Level.SEVERE,
-                          format(
-                              "transformQueuedOperation(%s): error fetching directory %s",
-                              reason, DigestUtil.toString(directoryBlobDigest)),
-                          e);
-                      return null;
-                    },
-                    directExecutor())
-                .get();
-          } catch (ExecutionException e) {
-            Throwable cause = e.getCause();
-            throwIfUnchecked(cause);
-            throw new UncheckedExecutionException(cause);
-          } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            return null;
-          }
-        },
+        directoryBlobDigest -> fetchTreeDirectory(reason, directoryBlobDigest),
         rootDigest,
         pageToken);
   }
 
-  abstract static class TreeCallback implements FutureCallback<DirectoryEntry> {
-    private final SettableFuture<Void> future;
-
-    TreeCallback(SettableFuture<Void> future) {
-      this.future = future;
+  private static Tree awaitTree(ListenableFuture<Tree> treeFuture) {
+    try {
+      return treeFuture.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throwIfUnchecked(cause);
+      throw new UncheckedExecutionException(cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UncheckedExecutionException(e);
     }
+  }
 
-    protected abstract void onDirectory(Digest digest, Directory directory);
+  private @Nullable Directory fetchTreeDirectory(
+      String reason, build.buildfarm.v1test.Digest directoryBlobDigest) {
+    try {
+      return catching(
+              expectDirectory(reason, directoryBlobDigest, RequestMetadata.getDefaultInstance()),
+              Exception.class,
+              e -> {
+                log.log(
+                    Level.SEVERE,
+                    format(
+                        "transformQueuedOperation(%s): error fetching directory %s",
+                        reason, DigestUtil.toString(directoryBlobDigest)),
+                    e);
+                return null;
+              },
+              directExecutor())
+          .get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throwIfUnchecked(cause);
+      throw new UncheckedExecutionException(cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
 
-    abstract boolean next();
+  @Override
+  protected ListenableFuture<Tree> getTreeFuture(
+      String reason,
+      build.buildfarm.v1test.Digest inputRoot,
+      ExecutorService service,
+      RequestMetadata requestMetadata) {
+    if (treeCache == null) {
+      return buildTree(reason, inputRoot, Context.current(), service, requestMetadata);
+    }
+    // The fetch is shared by every caller for the tree, so it is detached from the context and
+    // metadata of the one which starts it, and a caller which cancels does not cancel it.
+    CompletableFuture<Tree> treeFuture =
+        treeCache.get(
+            inputRoot, (digest, executor) -> toCompletableFuture(fetchTree(reason, inputRoot)));
+    return transform(
+        nonCancellationPropagating(toListenableFuture(treeFuture)),
+        tree -> {
+          // missing directories may be uploaded later, and must be refetched
+          if (!isComplete(tree)) {
+            treeCache.asMap().remove(inputRoot, treeFuture);
+          }
+          return tree;
+        },
+        directExecutor());
+  }
 
-    @Override
-    public void onSuccess(DirectoryEntry entry) {
-      if (entry.getDirectory() != null) {
-        onDirectory(entry.getDigest(), entry.getDirectory());
-      }
-      if (!next()) {
-        future.set(null);
-      }
+  // A fetch which exceeds its deadline fails, so that the cache evicts it rather than hold it for
+  // every later caller. Its directory requests are cancelled with its context.
+  private ListenableFuture<Tree> fetchTree(String reason, build.buildfarm.v1test.Digest inputRoot) {
+    Context.CancellableContext ctx =
+        Context.ROOT.withDeadlineAfter(
+            TREE_FETCH_TIMEOUT_SECONDS, SECONDS, contextDeadlineScheduler);
+    ListenableFuture<Tree> treeFuture =
+        Futures.withTimeout(
+            nonCancellationPropagating(
+                buildTree(
+                    reason,
+                    inputRoot,
+                    ctx,
+                    operationTransformService,
+                    RequestMetadata.getDefaultInstance())),
+            TREE_FETCH_TIMEOUT_SECONDS,
+            SECONDS,
+            contextDeadlineScheduler);
+    treeFuture.addListener(() -> ctx.cancel(null), directExecutor());
+    return treeFuture;
+  }
+
+  private static boolean isComplete(Tree tree) {
+    Map<String, Directory> directories = tree.getDirectoriesMap();
+    if (!directories.containsKey(tree.getRootDigest().getHash())) {
+      return false;
     }
-
-    @Override
-    public void onFailure(Throwable t) {
-      future.setException(t);
+    for (Directory directory : directories.values()) {
+      for (DirectoryNode childNode : directory.getDirectoriesList()) {
+        if (!directories.containsKey(childNode.getDigest().getHash())) {
+          return false;
+        }
+      }
     }
+    return true;
   }
 
-  @Override
-  protected ListenableFuture<Tree> getTreeFuture(
+  /**
+   * Fetch the tree under inputRoot, one level at a time. The directories of each level are fetched
+   * in parallel, and directories which cannot be found are omitted from the tree.
+   */
+  private ListenableFuture<Tree> buildTree(
       String reason,
       build.buildfarm.v1test.Digest inputRoot,
+      Context ctx,
       ExecutorService service,
       RequestMetadata requestMetadata) {
-    SettableFuture<Void> future = SettableFuture.create();
     Tree.Builder tree = Tree.newBuilder().setRootDigest(inputRoot);
-    Set<Digest> digests = Sets.newConcurrentHashSet();
-    Queue<Digest> remaining = new ConcurrentLinkedQueue<>();
-    remaining.offer(DigestUtil.toDigest(inputRoot));
-    Context ctx = Context.current();
-    TreeCallback callback =
-        new TreeCallback(future) {
-          @Override
-          protected void onDirectory(Digest digest, Directory directory) {
-            tree.putDirectories(digest.getHash(), directory);
-            for (DirectoryNode childNode : directory.getDirectoriesList()) {
-              Digest child = childNode.getDigest();
-              if (digests.add(child)) {
-                remaining.offer(child);
+    Digest rootDigest = DigestUtil.toDigest(inputRoot);
+    Set<Digest> digests = new HashSet<>();
+    digests.add(rootDigest);
+    return transform(
+        fetchTreeLevel(
+            reason,
+            inputRoot.getDigestFunction(),
+            ImmutableList.of(rootDigest),
+            digests,
+            tree,
+            ctx,
+            service,
+            requestMetadata),
+        result -> tree.build(),
+        service);
+  }
+
+  private ListenableFuture<Void> fetchTreeLevel(
+      String reason,
+      DigestFunction.Value digestFunction,
+      List<Digest> level,
+      Set<Digest> digests,
+      Tree.Builder tree,
+      Context ctx,
+      ExecutorService service,
+      RequestMetadata requestMetadata) {
+    if (level.isEmpty()) {
+      return immediateFuture(null);
+    }
+    AtomicReferenceArray<Directory> directories = new AtomicReferenceArray<>(level.size());
+    AtomicInteger nextIndex = new AtomicInteger();
+    List<ListenableFuture<Void>> fetches = new ArrayList<>();
+    for (int i = 0; i < Math.min(level.size(), TREE_FETCH_PARALLELISM); i++) {
+      fetches.add(
+          fetchTreeDirectories(
+              reason,
+              digestFunction,
+              level,
+              nextIndex,
+              directories,
+              ctx,
+              service,
+              requestMetadata));
+    }
+    // levels are processed sequentially, so the builder and digests need no synchronization
+    return transformAsync(
+        allAsList(fetches),
+        result -> {
+          List<Digest> nextLevel = new ArrayList<>();
+          for (int i = 0; i < level.size(); i++) {
+            Directory directory = directories.get(i);
+            if (directory != null) {
+              tree.putDirectories(level.get(i).getHash(), directory);
+              for (DirectoryNode childNode : directory.getDirectoriesList()) {
+                Digest child = childNode.getDigest();
+                if (digests.add(child)) {
+                  nextLevel.add(child);
+                }
               }
             }
           }
+          return fetchTreeLevel(
+              reason,
+              digestFunction,
+              nextLevel,
+              digests,
+              tree,
+              ctx,
+              service,
+              requestMetadata);
+        },
+        service);
+  }
 
-          @Override
-          boolean next() {
-            Digest nextDigest = remaining.poll();
-            if (!future.isDone() && nextDigest != null) {
-              ctx.run(
-                  () ->
-                      addCallback(
-                          transform(
-                              expectDirectory(
-                                  reason,
-                                  DigestUtil.fromDigest(nextDigest, inputRoot.getDigestFunction()),
-                                  requestMetadata),
-                              directory -> new DirectoryEntry(nextDigest, directory),
-                              service),
-                          this,
-                          service));
-              return true;
-            }
-            return false;
-          }
-        };
-    callback.next();
-    return transform(future, (result) -> tree.build(), service);
+  // Fetch the directories of a level from nextIndex on, one at a time, until none remain.
+  private ListenableFuture<Void> fetchTreeDirectories(
+      String reason,
+      DigestFunction.Value digestFunction,
+      List<Digest> level,
+      AtomicInteger nextIndex,
+      AtomicReferenceArray<Directory> directories,
+      Context ctx,
+      ExecutorService service,
+      RequestMetadata requestMetadata) {
+    int index = nextIndex.getAndIncrement();
+    if (index >= level.size()) {
+      return immediateFuture(null);
+    }
+    ListenableFuture<Directory> directoryFuture;
+    Context previousContext = ctx.attach();
+    try {
+      directoryFuture =
+          expectDirectory(
+              reason, DigestUtil.fromDigest(level.get(index), digestFunction), requestMetadata);
+    } finally {
+      ctx.detach(previousContext);
+    }
+    return transformAsync(
+        directoryFuture,
+        directory -> {
+          directories.set(index, directory);
+          return fetchTreeDirectories(
+              reason,
+              digestFunction,
+              level,
+              nextIndex,
+              directories,
+              ctx,
+              service,
+              requestMetadata);
+        },
+        service);
   }
 
   private static <V> ListenableFuture<V> notFoundNull(ListenableFuture<V> value) {
@@ -1856,12 +2271,16 @@ public class ServerInstance extends NodeInstance {
                 executeOperationMetadata(executeEntry, ExecutionStage.Value.QUEUED))
             .setQueuedOperationDigest(queuedOperationDigest)
             .build();
-    QueueEntry entry =
+    QueueEntry.Builder entryBuilder =
         QueueEntry.newBuilder()
             .setExecuteEntry(executeEntry)
             .setQueuedOperationDigest(queuedOperationDigest)
-            .setPlatform(queuedOperation.getCommand().getPlatform())
-            .build();
+            .setPlatform(queuedOperation.getCommand().getPlatform());
+    if (isInlined(queuedOperationDigest)) {
+      QueueEntry entry = entryBuilder.setQueuedOperation(queuedOperation).build();
+      return immediateFuture(new QueuedOperationResult(entry, metadata));
+    }
+    QueueEntry entry = entryBuilder.build();
     return transform(
         retryWriteBlobFuture(
             queuedOperationDigest,
@@ -1873,6 +2292,12 @@ public class ServerInstance extends NodeInstance {
         service);
   }
 
+  /** Whether a queued operation is carried in its queue entry instead of the CAS. */
+  private static boolean isInlined(build.buildfarm.v1test.Digest queuedOperationDigest) {
+    int maxBytes = configs.getServer().getInlineQueuedOperationMaxBytes();
+    return maxBytes > 0 && queuedOperationDigest.getSize() <= maxBytes;
+  }
+
   private ListenableFuture<Long> retryWriteBlobFuture(
       build.buildfarm.v1test.Digest digest,
       ByteString content,
@@ -2049,11 +2474,13 @@ public class ServerInstance extends NodeInstance {
     checkState(operationName.equals(operation.getName()));
     RequestMetadata requestMetadata = executeEntry.getRequestMetadata();
     ListenableFuture<QueuedOperation> fetchQueuedOperationFuture =
-        expect(
-            queueEntry.getQueuedOperationDigest(),
-            QueuedOperation.parser(),
-            operationTransformService,
-            requestMetadata);
+        queueEntry.hasQueuedOperation()
+            ? immediateFuture(queueEntry.getQueuedOperation())
+            : expect(
+                queueEntry.getQueuedOperationDigest(),
+                QueuedOperation.parser(),
+                operationTransformService,
+                requestMetadata);
     build.buildfarm.v1test.Digest actionDigest = executeEntry.getActionDigest();
     ListenableFuture<QueuedOperation> queuedOperationFuture =
         catchingAsync(
@@ -2830,10 +3257,15 @@ public class ServerInstance extends NodeInstance {
                           profiledQueuedMetadata
                               .getQueuedOperationMetadata()
                               .getQueuedOperationDigest())));
-              ByteString queuedOperationBlob =
-                  profiledQueuedMetadata.getQueuedOperation().toByteString();
               build.buildfarm.v1test.Digest queuedOperationDigest =
                   profiledQueuedMetadata.getQueuedOperationMetadata().getQueuedOperationDigest();
+              if (isInlined(queuedOperationDigest)) {
+                // carried in the queue entry
+                return immediateFuture(
+                    profiledQueuedMetadata.setUploadedIn(Durations.ZERO).build());
+              }
+              ByteString queuedOperationBlob =
+                  profiledQueuedMetadata.getQueuedOperation().toByteString();
               long startUploadUSecs = stopwatch.elapsed(MICROSECONDS);
               return transform(
                   retryWriteBlobFuture(
@@ -2858,13 +3290,16 @@ public class ServerInstance extends NodeInstance {
                 profiledQueuedMetadata.getQueuedOperationMetadata();
             Operation queueOperation =
                 operation.toBuilder().setMetadata(Any.pack(queuedOperationMetadata)).build();
-            QueueEntry queueEntry =
+            QueuedOperation queuedOperation = profiledQueuedMetadata.getQueuedOperation();
+            QueueEntry.Builder queueEntryBuilder =
                 QueueEntry.newBuilder()
                     .setExecuteEntry(executeEntry)
                     .setQueuedOperationDigest(queuedOperationMetadata.getQueuedOperationDigest())
-                    .setPlatform(
-                        profiledQueuedMetadata.getQueuedOperation().getCommand().getPlatform())
-                    .build();
+                    .setPlatform(queuedOperation.getCommand().getPlatform());
+            if (isInlined(queuedOperationMetadata.getQueuedOperationDigest())) {
+              queueEntryBuilder.setQueuedOperation(queuedOperation);
+            }
+            QueueEntry queueEntry = queueEntryBuilder.build();
             try {
               ensureCanQueue(stopwatch);
               long startQueueUSecs = stopwatch.elapsed(MICROSECONDS);
@@ -3121,6 +3556,26 @@ public class ServerInstance extends NodeInstance {
     }
   }
 
+  // only operations which are due to be requeued, when they are indexed by deadline
+  private Scannable<DispatchedOperation> overdueDispatchedOperations() {
+    return new Scannable<>() {
+      @Override
+      public String getName() {
+        return "overdueDispatchedOperations";
+      }
+
+      @Override
+      public String scan(
+          int limit, String pageToken, Consumer<DispatchedOperation> onDispatchedOperation)
+          throws IOException {
+        Backplane.ScanResult<DispatchedOperation> scanResult =
+            backplane.scanOverdueDispatchedOperations(pageToken, limit);
+        scanResult.getResult().forEach(onDispatchedOperation);
+        return scanResult.getToken();
+      }
+    };
+  }
+
   private Scannable<Operation> dispatchedOperationsScannable() {
     return new Scannable<>() {
       @Override
@@ -0,0 +1,118 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import build.buildfarm.backplane.Backplane;
+import build.buildfarm.common.BlobFilter;
+import com.google.common.collect.ImmutableMap;
+import io.prometheus.client.Gauge;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import javax.annotation.Nullable;
+import lombok.extern.java.Log;
+
+/**
+ * The latest blob filters published by storage workers.
+ *
+ * <p>A worker's filter describes the blobs it held when the filter was published. Blobs which have
+ * arrived since are not represented, so a negative result from every filter must be confirmed
+ * against the backplane's blob locations before a blob may be considered missing. Where location
+ * writes are batched, a blob is absent from both for up to the batch window after it arrives.
+ *
+ * <p>Every server retains a filter of every worker, at roughly 10 bits per blob for the default
+ * false positive rate. Filters are retained smallest first up to a total size, and the workers
+ * whose filters do not fit are queried without one.
+ */
+@Log
+class WorkerBlobFilters {
+  private static final Gauge filtersGauge =
+      Gauge.build().name("blob_filters").help("Worker blob filters retained.").register();
+  private static final Gauge filterBytesGauge =
+      Gauge.build()
+          .name("blob_filters_bytes")
+          .help("Serialized size of worker blob filters retained.")
+          .register();
+  private static final Gauge skippedFiltersGauge =
+      Gauge.build()
+          .name("blob_filters_skipped")
+          .help("Worker blob filters published but not retained.")
+          .register();
+
+  private final Backplane backplane;
+  private final long maxBytes;
+  private volatile Map<String, BlobFilter> filters = ImmutableMap.of();
+
+  WorkerBlobFilters(Backplane backplane, long maxBytes) {
+    this.backplane = backplane;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Replace the current filters with those published by the active storage workers, up to
+   * maxBytes in total.
+   */
+  void refresh() throws IOException {
+    Map<String, Long> sizes = backplane.getBlobFilterSizes(backplane.getStorageWorkers());
+    // smallest first, to filter as many workers as possible
+    Set<String> workers = new HashSet<>();
+    long selectedBytes = 0;
+    for (Map.Entry<String, Long> entry :
+        sizes.entrySet().stream().sorted(Map.Entry.comparingByValue()).toList()) {
+      if (selectedBytes + entry.getValue() > maxBytes) {
+        break;
+      }
+      workers.add(entry.getKey());
+      selectedBytes += entry.getValue();
+    }
+
+    ImmutableMap.Builder<String, BlobFilter> builder = ImmutableMap.builder();
+    long bytes = 0;
+    for (Map.Entry<String, byte[]> entry : backplane.getBlobFilters(workers).entrySet()) {
+      // a filter may have been republished larger since its size was read
+      if (bytes + entry.getValue().length > maxBytes) {
+        continue;
+      }
+      try {
+        builder.put(entry.getKey(), BlobFilter.parseFrom(entry.getValue()));
+        bytes += entry.getValue().length;
+      } catch (IOException e) {
+        // the worker will be queried without a filter
+        log.log(Level.WARNING, "invalid blob filter from " + entry.getKey(), e);
+      }
+    }
+    Map<String, BlobFilter> refreshed = builder.buildOrThrow();
+    int skipped = sizes.size() - refreshed.size();
+    if (skipped > 0) {
+      log.log(
+          Level.WARNING,
+          String.format(
+              "%d of %d worker blob filters were not retained within %d bytes",
+              skipped, sizes.size(), maxBytes));
+    }
+    filters = refreshed;
+    filtersGauge.set(refreshed.size());
+    filterBytesGauge.set(bytes);
+    skippedFiltersGauge.set(skipped);
+  }
+
+  /** Returns the filter of the worker, or null if it might hold any blob. */
+  @Nullable
+  BlobFilter get(String worker) {
+    return filters.get(worker);
+  }
+}
@@ -564,9 +564,16 @@ public class StubInstance extends InstanceBase {
 
   InputStream newInput(String resourceName, long offset, RequestMetadata requestMetadata)
       throws IOException {
+    return newInput(resourceName, offset, /* limit= */ 0, requestMetadata);
+  }
+
+  InputStream newInput(
+      String resourceName, long offset, long limit, RequestMetadata requestMetadata)
+      throws IOException {
     return ByteStreamHelper.newInput(
         resourceName,
         offset,
+        limit,
         identifier,
         () -> deadlined(bsStub).withInterceptors(attachMetadataInterceptor(requestMetadata)),
         retrier::newBackoff,
@@ -694,6 +701,17 @@ public class StubInstance extends InstanceBase {
     return newInput(readResourceName(compressor, digest), offset, requestMetadata);
   }
 
+  /** Read at most limit bytes of the blob from offset. */
+  public InputStream newBlobRangeInput(
+      Compressor.Value compressor,
+      build.buildfarm.v1test.Digest digest,
+      long offset,
+      long limit,
+      RequestMetadata requestMetadata)
+      throws IOException {
+    return newInput(readResourceName(compressor, digest), offset, limit, requestMetadata);
+  }
+
   @Override
   public ListenableFuture<List<Response>> getAllBlobsFuture(
       Iterable<Digest> digests, DigestFunction.Value digestFunction) {
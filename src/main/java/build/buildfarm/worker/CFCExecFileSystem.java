@@ -210,7 +210,7 @@ public class CFCExecFileSystem implements ExecFileSystem {
         pathResult -> {
           if (digest.getSize() != 0) {
             try {
-              Files.copy(pathResult.path(), path);
+              fileCache.copyEntry(path, pathResult.path(), isExecutable);
             } catch (IOException e) {
               return immediateFailedFuture(e);
             } finally {
@@ -222,6 +222,19 @@ public class CFCExecFileSystem implements ExecFileSystem {
         fetchService);
   }
 
+  @Override
+  public ListenableFuture<Boolean> prefetch(Digest digest, boolean isExecutable) {
+    String key = fileCache.getKey(digest, isExecutable);
+    return transformAsync(
+        fileCache.put(digest, isExecutable, fetchService),
+        pathResult -> {
+          // unreferenced, the entry may expire if it is never used
+          fileCache.decrementReference(key);
+          return immediateFuture(pathResult.isMissed());
+        },
+        fetchService);
+  }
+
   private ListenableFuture<PathResult> catchingPut(
       Digest digest, Path root, Path path, boolean isExecutable) {
     return catching(
@@ -20,6 +20,8 @@ import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static com.google.common.util.concurrent.Futures.transform;
 import static com.google.common.util.concurrent.Futures.transformAsync;
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static java.lang.String.format;
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
 import static java.util.Collections.synchronizedList;
 
 import build.bazel.remote.execution.v2.Action;
@@ -35,24 +37,31 @@ import build.buildfarm.common.io.Directories;
 import build.buildfarm.v1test.Digest;
 import build.buildfarm.v1test.WorkerExecutedMetadata;
 import build.buildfarm.worker.ExecDirException.ViolationException;
+import build.buildfarm.worker.ExecInputManifest.FileInput;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.ListenableFuture;
 import java.io.IOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -60,6 +69,7 @@ import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import lombok.extern.java.Log;
 
 @Log
@@ -75,12 +85,25 @@ public class CFCLinkExecFileSystem extends CFCExecFileSystem {
   private final Map<Path, Iterable<build.bazel.remote.execution.v2.Digest>> rootInputDirectories =
       new ConcurrentHashMap<>();
 
+  // retain this many completed exec dirs, to be updated in place for similar input roots
+  private final int execDirPoolSize;
+
+  private record PooledExecDir(
+      Path path, ExecInputManifest manifest, DigestFunction.Value digestFunction) {}
+
+  // most recently released first, pooled dirs hold references to all of their input files
+  @GuardedBy("execDirPool")
+  private final Deque<PooledExecDir> execDirPool = new ArrayDeque<>();
+
+  private final Map<Path, ExecInputManifest> rootInputManifests = new ConcurrentHashMap<>();
+
   public CFCLinkExecFileSystem(
       Path root,
       CASFileCache fileCache,
       ImmutableMap<String, UserPrincipal> owners,
       boolean linkInputDirectories,
       Iterable<String> linkedInputDirectories,
+      int execDirPoolSize,
       boolean allowSymlinkTargetAbsolute,
       ExecutorService removeDirectoryService,
       ExecutorService accessRecorder,
@@ -95,6 +118,7 @@ public class CFCLinkExecFileSystem extends CFCExecFileSystem {
         fetchService);
     this.linkInputDirectories = linkInputDirectories;
     this.linkedInputDirectories = Iterables.transform(linkedInputDirectories, Pattern::compile);
+    this.execDirPoolSize = execDirPoolSize;
   }
 
   @SuppressWarnings("ConstantConditions")
@@ -118,7 +142,11 @@ public class CFCLinkExecFileSystem extends CFCExecFileSystem {
           onKey.accept(key);
           if (digest.getSize() != 0) {
             try {
-              Files.createLink(path, pathResult.path());
+              if (fileCache.isCompressAtRest()) {
+                fileCache.copyEntry(path, pathResult.path(), isExecutable);
+              } else {
+                Files.createLink(path, pathResult.path());
+              }
             } catch (IOException e) {
               return immediateFailedFuture(e);
             }
@@ -161,6 +189,40 @@ public class CFCLinkExecFileSystem extends CFCExecFileSystem {
     }
   }
 
+  private static void awaitPopulation(Path execDir, Iterable<ListenableFuture<Void>> futures)
+      throws ExecDirException, InterruptedException {
+    InterruptedException exception = null;
+    boolean wasInterrupted = false;
+    ImmutableList.Builder<Throwable> exceptions = ImmutableList.builder();
+    for (ListenableFuture<Void> future : futures) {
+      if (exception != null || wasInterrupted) {
+        future.cancel(true);
+      } else {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          // just to ensure that no other code can react to interrupt status
+          exceptions.add(e.getCause());
+        } catch (InterruptedException e) {
+          future.cancel(true);
+          exception = e;
+        }
+      }
+      wasInterrupted = Thread.interrupted() || wasInterrupted;
+    }
+    if (wasInterrupted) {
+      Thread.currentThread().interrupt();
+      // unlikely, but worth guarding
+      if (exception == null) {
+        exception = new InterruptedException();
+      }
+    }
+    if (exception != null) {
+      throw exception;
+    }
+    checkExecErrors(execDir, exceptions.build());
+  }
+
   private static Iterator<String> directoriesIterator(
       build.bazel.remote.execution.v2.Digest digest,
       Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex) {
@@ -382,7 +444,6 @@ public class CFCLinkExecFileSystem extends CFCExecFileSystem {
     if (Files.exists(execDir)) {
       Directories.remove(execDir, fileStore);
     }
-    Files.createDirectories(execDir);
 
     Set<Path> linkedInputDirectories =
         linkInputDirectories
@@ -392,62 +453,53 @@ public class CFCLinkExecFileSystem extends CFCExecFileSystem {
                     execDir::resolve))
             : ImmutableSet.of(); // does this work on windows with / separators?
 
-    log.log(Level.FINER, operationName + " walking execTree");
-    ExecTree execTree = new ExecTree(directoriesIndex);
-    LinkExecFileVisitor visitor =
-        new LinkExecFileVisitor(
-            workerExecutedMetadata,
-            execDir,
-            linkedInputDirectories,
-            directoriesIndex,
-            digestFunction,
-            outputDirectory);
-    execTree.walk(execDir, inputRootDigest, visitor);
-    Iterable<ListenableFuture<Void>> fetchedFutures = visitor.futures();
-    boolean success = false;
-    try {
-      InterruptedException exception = null;
-      boolean wasInterrupted = false;
-      ImmutableList.Builder<Throwable> exceptions = ImmutableList.builder();
-      for (ListenableFuture<Void> fetchedFuture : fetchedFutures) {
-        if (exception != null || wasInterrupted) {
-          fetchedFuture.cancel(true);
-        } else {
-          try {
-            fetchedFuture.get();
-          } catch (ExecutionException e) {
-            // just to ensure that no other code can react to interrupt status
-            exceptions.add(e.getCause());
-          } catch (InterruptedException e) {
-            fetchedFuture.cancel(true);
-            exception = e;
-          }
-        }
-        wasInterrupted = Thread.interrupted() || wasInterrupted;
-      }
-      if (wasInterrupted) {
-        Thread.currentThread().interrupt();
-        // unlikely, but worth guarding
-        if (exception == null) {
-          exception = new InterruptedException();
+    // linked directories and owned trees are not tracked closely enough to be reused
+    ExecInputManifest manifest = null;
+    Iterable<String> inputFiles = null;
+    Iterable<build.bazel.remote.execution.v2.Digest> inputDirectories = ImmutableList.of();
+    if (execDirPoolSize > 0
+        && owner == null
+        && linkedInputDirectories.isEmpty()
+        && !fileCache.isCompressAtRest()) {
+      manifest = ExecInputManifest.of(directoriesIndex, action.getInputRootDigest());
+      inputFiles = reuseExecDir(execDir, manifest, digestFunction);
+    }
+
+    if (inputFiles == null) {
+      Files.createDirectories(execDir);
+
+      log.log(Level.FINER, operationName + " walking execTree");
+      ExecTree execTree = new ExecTree(directoriesIndex);
+      LinkExecFileVisitor visitor =
+          new LinkExecFileVisitor(
+              workerExecutedMetadata,
+              execDir,
+              linkedInputDirectories,
+              directoriesIndex,
+              digestFunction,
+              outputDirectory);
+      execTree.walk(execDir, inputRootDigest, visitor);
+      boolean success = false;
+      try {
+        awaitPopulation(execDir, visitor.futures());
+        success = true;
+      } finally {
+        if (!success) {
+          fileCache.decrementReferences(
+              visitor.inputFiles(), visitor.inputDirectories(), digestFunction);
+          Directories.remove(execDir, fileStore);
         }
       }
-      if (exception != null) {
-        throw exception;
-      }
-      checkExecErrors(execDir, exceptions.build());
-      success = true;
-    } finally {
-      if (!success) {
-        fileCache.decrementReferences(
-            visitor.inputFiles(), visitor.inputDirectories(), digestFunction);
-        Directories.remove(execDir, fileStore);
-      }
+      inputFiles = visitor.inputFiles();
+      inputDirectories = visitor.inputDirectories();
     }
 
     rootInputDigestFunction.put(execDir, digestFunction);
-    rootInputFiles.put(execDir, visitor.inputFiles());
-    rootInputDirectories.put(execDir, visitor.inputDirectories());
+    rootInputFiles.put(execDir, inputFiles);
+    rootInputDirectories.put(execDir, inputDirectories);
+    if (manifest != null) {
+      rootInputManifests.put(execDir, manifest);
+    }
 
     log.log(Level.FINER, operationName + " stamping output directories");
     boolean stamped = false;
@@ -471,6 +523,11 @@ public class CFCLinkExecFileSystem extends CFCExecFileSystem {
     Iterable<String> inputFiles = rootInputFiles.remove(execDir);
     Iterable<build.bazel.remote.execution.v2.Digest> inputDirectories =
         rootInputDirectories.remove(execDir);
+    ExecInputManifest manifest = rootInputManifests.remove(execDir);
+    if (manifest != null && releaseExecDir(execDir, manifest, digestFunction)) {
+      // the pool has taken over the references of the inputs
+      return;
+    }
     if (inputFiles != null || inputDirectories != null) {
       fileCache.decrementReferences(
           inputFiles == null ? ImmutableList.of() : inputFiles,
@@ -479,4 +536,232 @@ public class CFCLinkExecFileSystem extends CFCExecFileSystem {
     }
     super.destroyExecDir(execDir);
   }
+
+  private static Iterable<String> inputKeys(
+      Map<String, FileInput> files, DigestFunction.Value digestFunction) {
+    ImmutableList.Builder<String> keys = ImmutableList.builder();
+    for (FileInput file : files.values()) {
+      // empty files are created rather than linked, and are not referenced
+      if (file.digest().getSizeBytes() != 0) {
+        keys.add(
+            CASFileCache.getKey(
+                DigestUtil.fromDigest(file.digest(), digestFunction), file.isExecutable()));
+      }
+    }
+    return keys.build();
+  }
+
+  private Path execDirPoolRoot() {
+    return root().resolve(".execdirpool");
+  }
+
+  @Nullable
+  private PooledExecDir takePooledExecDir(
+      ExecInputManifest manifest, DigestFunction.Value digestFunction) {
+    synchronized (execDirPool) {
+      PooledExecDir best = null;
+      int bestSharedDirectories = 0;
+      for (PooledExecDir pooled : execDirPool) {
+        if (pooled.digestFunction() == digestFunction) {
+          int sharedDirectories = pooled.manifest().sharedDirectories(manifest);
+          if (sharedDirectories > bestSharedDirectories) {
+            best = pooled;
+            bestSharedDirectories = sharedDirectories;
+          }
+        }
+      }
+      if (best != null) {
+        execDirPool.remove(best);
+      }
+      return best;
+    }
+  }
+
+  private void removeQuietly(Path path) {
+    try {
+      if (Files.exists(path, NOFOLLOW_LINKS)) {
+        Directories.remove(path, fileStore);
+      }
+    } catch (IOException e) {
+      log.log(Level.SEVERE, "error removing directory " + path, e);
+    }
+  }
+
+  /**
+   * Move the pooled exec dir most similar to manifest to execDir, and change only the inputs which
+   * differ. Returns the referenced input files of execDir, or null if no pooled dir was usable.
+   */
+  @Nullable
+  private Iterable<String> reuseExecDir(
+      Path execDir, ExecInputManifest manifest, DigestFunction.Value digestFunction)
+      throws IOException, InterruptedException {
+    PooledExecDir pooled = takePooledExecDir(manifest, digestFunction);
+    if (pooled == null) {
+      return null;
+    }
+    ExecInputManifest.Diff diff = pooled.manifest().diff(manifest);
+    List<String> acquiredFiles = synchronizedList(new ArrayList<>());
+    boolean success = false;
+    try {
+      Files.move(pooled.path(), execDir);
+      // removed directories have been emptied by the time they are reached
+      for (String path :
+          Iterables.concat(
+              diff.removedFiles().keySet(), diff.removedSymlinks(), diff.removedDirectories())) {
+        Files.delete(execDir.resolve(path));
+      }
+      for (String path : diff.addedDirectories()) {
+        Files.createDirectory(execDir.resolve(path));
+      }
+      List<ListenableFuture<Void>> futures = new ArrayList<>();
+      for (Map.Entry<String, FileInput> entry : diff.addedFiles().entrySet()) {
+        FileInput file = entry.getValue();
+        futures.add(
+            catchingPut(
+                DigestUtil.fromDigest(file.digest(), digestFunction),
+                execDir,
+                execDir.resolve(entry.getKey()),
+                file.isExecutable(),
+                acquiredFiles::add));
+      }
+      for (Map.Entry<String, String> entry : diff.addedSymlinks().entrySet()) {
+        futures.add(putSymlink(execDir.resolve(entry.getKey()), entry.getValue()));
+      }
+      awaitPopulation(execDir, futures);
+      success = true;
+    } catch (IOException e) {
+      log.log(Level.WARNING, format("could not reuse %s for %s", pooled.path(), execDir), e);
+    } finally {
+      if (!success) {
+        fileCache.decrementReferences(
+            Iterables.concat(inputKeys(pooled.manifest().files(), digestFunction), acquiredFiles),
+            ImmutableList.of(),
+            digestFunction);
+        removeQuietly(pooled.path());
+        removeQuietly(execDir);
+      }
+    }
+    if (!success) {
+      return null;
+    }
+    fileCache.decrementReferences(
+        inputKeys(diff.removedFiles(), digestFunction), ImmutableList.of(), digestFunction);
+    return ImmutableList.<String>builder()
+        .addAll(
+            inputKeys(
+                Maps.filterKeys(manifest.files(), path -> !diff.addedFiles().containsKey(path)),
+                digestFunction))
+        .addAll(acquiredFiles)
+        .build();
+  }
+
+  /**
+   * Remove everything from execDir which is not one of its inputs, as linked from the cache.
+   * Returns whether every input of manifest was found intact.
+   */
+  private boolean scrubExecDir(
+      Path execDir, ExecInputManifest manifest, DigestFunction.Value digestFunction)
+      throws IOException {
+    int[] intactInputs = new int[] {0};
+    Files.walkFileTree(
+        execDir,
+        new SimpleFileVisitor<>() {
+          private String relative(Path path) {
+            return execDir.relativize(path).toString();
+          }
+
+          private boolean isIntact(Path file, BasicFileAttributes attrs) throws IOException {
+            String path = relative(file);
+            if (attrs.isSymbolicLink()) {
+              String target = manifest.symlinks().get(path);
+              return target != null
+                  && Files.readSymbolicLink(file).equals(file.getFileSystem().getPath(target));
+            }
+            FileInput input = manifest.files().get(path);
+            if (input == null || !attrs.isRegularFile()) {
+              return false;
+            }
+            if (input.digest().getSizeBytes() == 0) {
+              return attrs.size() == 0;
+            }
+            // only the very same cache entry, which the action could not have written
+            Object fileKey = attrs.fileKey();
+            Path entryPath =
+                fileCache.getPath(
+                    CASFileCache.getKey(
+                        DigestUtil.fromDigest(input.digest(), digestFunction),
+                        input.isExecutable()));
+            try {
+              return fileKey != null
+                  && fileKey.equals(
+                      Files.readAttributes(entryPath, BasicFileAttributes.class, NOFOLLOW_LINKS)
+                          .fileKey());
+            } catch (NoSuchFileException e) {
+              return false;
+            }
+          }
+
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+              throws IOException {
+            if (dir.equals(execDir)) {
+              return FileVisitResult.CONTINUE;
+            }
+            if (manifest.directories().contains(relative(dir))) {
+              intactInputs[0]++;
+              return FileVisitResult.CONTINUE;
+            }
+            Directories.remove(dir, fileStore);
+            return FileVisitResult.SKIP_SUBTREE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            if (isIntact(file, attrs)) {
+              intactInputs[0]++;
+            } else {
+              Files.delete(file);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    return intactInputs[0]
+        == manifest.files().size() + manifest.symlinks().size() + manifest.directories().size();
+  }
+
+  /**
+   * Place execDir into the pool, with only its inputs remaining. Returns false if execDir could
+   * not be pooled, and must be destroyed.
+   */
+  private boolean releaseExecDir(
+      Path execDir, ExecInputManifest manifest, DigestFunction.Value digestFunction)
+      throws IOException, InterruptedException {
+    Path pooledPath = execDirPoolRoot().resolve(UUID.randomUUID().toString());
+    try {
+      if (!scrubExecDir(execDir, manifest, digestFunction)) {
+        return false;
+      }
+      Files.createDirectories(execDirPoolRoot());
+      Files.move(execDir, pooledPath);
+    } catch (IOException e) {
+      log.log(Level.WARNING, "could not pool " + execDir, e);
+      return false;
+    }
+    List<PooledExecDir> evicted = new ArrayList<>();
+    synchronized (execDirPool) {
+      execDirPool.addFirst(new PooledExecDir(pooledPath, manifest, digestFunction));
+      while (execDirPool.size() > execDirPoolSize) {
+        evicted.add(execDirPool.removeLast());
+      }
+    }
+    for (PooledExecDir pooled : evicted) {
+      fileCache.decrementReferences(
+          inputKeys(pooled.manifest().files(), pooled.digestFunction()),
+          ImmutableList.of(),
+          pooled.digestFunction());
+      Directories.remove(pooled.path(), fileStore, removeDirectoryService);
+    }
+    return true;
+  }
 }
@@ -58,6 +58,12 @@ public interface ExecFileSystem extends InputStreamFactory {
 
   void destroyExecDir(Path execDir) throws IOException, InterruptedException;
 
+  /**
+   * Fetch a blob into storage ahead of its use in an exec dir, without retaining it. Resolves to
+   * whether the blob was fetched.
+   */
+  ListenableFuture<Boolean> prefetch(Digest digest, boolean isExecutable);
+
   abstract class ExecBaseAttributes implements BasicFileAttributes {
     private static final FileTime EARLY = FileTime.from(0, TimeUnit.SECONDS);
 
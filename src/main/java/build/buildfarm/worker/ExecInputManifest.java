@@ -0,0 +1,184 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.worker;
+
+import build.bazel.remote.execution.v2.Digest;
+import build.bazel.remote.execution.v2.Directory;
+import build.bazel.remote.execution.v2.DirectoryNode;
+import build.bazel.remote.execution.v2.FileNode;
+import build.bazel.remote.execution.v2.SymlinkNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Ordering;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The inputs of an exec directory, by path relative to the directory.
+ *
+ * <p>The difference between two manifests is the set of changes which turns an exec directory
+ * populated with the inputs of one into that of the other.
+ */
+final class ExecInputManifest {
+  record FileInput(Digest digest, boolean isExecutable) {}
+
+  record Diff(
+      Map<String, FileInput> removedFiles,
+      Set<String> removedSymlinks,
+      // ordered to be removed children first
+      ImmutableList<String> removedDirectories,
+      // ordered to be created parents first
+      ImmutableList<String> addedDirectories,
+      Map<String, FileInput> addedFiles,
+      Map<String, String> addedSymlinks) {}
+
+  private final Map<String, FileInput> files;
+  private final Map<String, String> symlinks;
+  private final Set<String> directories; // excluding the exec directory itself
+  private final Set<Digest> directoryDigests; // including the input root
+
+  ExecInputManifest(
+      Map<String, FileInput> files,
+      Map<String, String> symlinks,
+      Set<String> directories,
+      Set<Digest> directoryDigests) {
+    this.files = files;
+    this.symlinks = symlinks;
+    this.directories = directories;
+    this.directoryDigests = directoryDigests;
+  }
+
+  private record PendingDirectory(String path, Digest digest) {}
+
+  static ExecInputManifest of(Map<Digest, Directory> index, Digest inputRootDigest)
+      throws NoSuchFileException {
+    ImmutableMap.Builder<String, FileInput> files = ImmutableMap.builder();
+    ImmutableMap.Builder<String, String> symlinks = ImmutableMap.builder();
+    ImmutableSet.Builder<String> directories = ImmutableSet.builder();
+    ImmutableSet.Builder<Digest> directoryDigests = ImmutableSet.builder();
+    Deque<PendingDirectory> pending = new ArrayDeque<>();
+    pending.push(new PendingDirectory("", inputRootDigest));
+    while (!pending.isEmpty()) {
+      PendingDirectory next = pending.pop();
+      Directory directory = index.get(next.digest());
+      if (directory == null) {
+        if (next.digest().getSizeBytes() != 0) {
+          throw new NoSuchFileException(next.digest().getHash());
+        }
+        directory = Directory.getDefaultInstance();
+      }
+      directoryDigests.add(next.digest());
+      String prefix = next.path().isEmpty() ? "" : next.path() + "/";
+      for (FileNode fileNode : directory.getFilesList()) {
+        files.put(
+            prefix + fileNode.getName(),
+            new FileInput(fileNode.getDigest(), fileNode.getIsExecutable()));
+      }
+      for (SymlinkNode symlinkNode : directory.getSymlinksList()) {
+        symlinks.put(prefix + symlinkNode.getName(), symlinkNode.getTarget());
+      }
+      for (DirectoryNode directoryNode : directory.getDirectoriesList()) {
+        String path = prefix + directoryNode.getName();
+        directories.add(path);
+        pending.push(new PendingDirectory(path, directoryNode.getDigest()));
+      }
+    }
+    return new ExecInputManifest(
+        files.buildOrThrow(),
+        symlinks.buildOrThrow(),
+        directories.build(),
+        directoryDigests.build());
+  }
+
+  Map<String, FileInput> files() {
+    return files;
+  }
+
+  Map<String, String> symlinks() {
+    return symlinks;
+  }
+
+  Set<String> directories() {
+    return directories;
+  }
+
+  Set<Digest> directoryDigests() {
+    return directoryDigests;
+  }
+
+  /** The number of directories, as identical trees, which this manifest shares with other. */
+  int sharedDirectories(ExecInputManifest other) {
+    int shared = 0;
+    for (Digest digest : directoryDigests) {
+      if (other.directoryDigests.contains(digest)) {
+        shared++;
+      }
+    }
+    return shared;
+  }
+
+  /** The changes which turn an exec directory with these inputs into one with target's. */
+  Diff diff(ExecInputManifest target) {
+    ImmutableMap.Builder<String, FileInput> removedFiles = ImmutableMap.builder();
+    ImmutableMap.Builder<String, FileInput> addedFiles = ImmutableMap.builder();
+    for (Map.Entry<String, FileInput> entry : files.entrySet()) {
+      if (!entry.getValue().equals(target.files.get(entry.getKey()))) {
+        removedFiles.put(entry);
+      }
+    }
+    for (Map.Entry<String, FileInput> entry : target.files.entrySet()) {
+      if (!entry.getValue().equals(files.get(entry.getKey()))) {
+        addedFiles.put(entry);
+      }
+    }
+
+    ImmutableSet.Builder<String> removedSymlinks = ImmutableSet.builder();
+    ImmutableMap.Builder<String, String> addedSymlinks = ImmutableMap.builder();
+    for (Map.Entry<String, String> entry : symlinks.entrySet()) {
+      if (!entry.getValue().equals(target.symlinks.get(entry.getKey()))) {
+        removedSymlinks.add(entry.getKey());
+      }
+    }
+    for (Map.Entry<String, String> entry : target.symlinks.entrySet()) {
+      if (!entry.getValue().equals(symlinks.get(entry.getKey()))) {
+        addedSymlinks.put(entry);
+      }
+    }
+
+    // a child path sorts after its parent, which is a prefix of it
+    ImmutableList<String> removedDirectories =
+        directories.stream()
+            .filter(path -> !target.directories.contains(path))
+            .sorted(Ordering.natural().reverse())
+            .collect(ImmutableList.toImmutableList());
+    ImmutableList<String> addedDirectories =
+        target.directories.stream()
+            .filter(path -> !directories.contains(path))
+            .sorted()
+            .collect(ImmutableList.toImmutableList());
+
+    return new Diff(
+        removedFiles.buildOrThrow(),
+        removedSymlinks.build(),
+        removedDirectories,
+        addedDirectories,
+        addedFiles.buildOrThrow(),
+        addedSymlinks.buildOrThrow());
+  }
+}
@@ -18,6 +18,8 @@ import build.buildfarm.worker.resources.ResourceLimits;
 import io.prometheus.client.Gauge;
 import io.prometheus.client.Histogram;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -36,6 +38,10 @@ public class ExecuteActionStage extends SuperscalarPipelineStage {
           .register();
 
   private final AtomicInteger executorClaims = new AtomicInteger(0);
+  // drains the stdout and stderr of every action, reusing threads across actions
+  private final ExecutorService outputReaderService =
+      Executors.newCachedThreadPool(
+          Thread.ofPlatform().name("ExecuteActionStage.outputReader-", 0).factory());
 
   public ExecuteActionStage(
       WorkerContext workerContext, PipelineStage output, PipelineStage error) {
@@ -111,7 +117,8 @@ public class ExecuteActionStage extends SuperscalarPipelineStage {
     }
     ExecutionContext executionContext = take();
     ResourceLimits limits = workerContext.commandExecutionSettings(executionContext.command);
-    Executor actionExecutor = new Executor(workerContext, executionContext, this, pollerExecutor);
+    Executor actionExecutor =
+        new Executor(workerContext, executionContext, this, pollerExecutor, outputReaderService);
 
     synchronized (this) {
       int slotUsage = executorClaims.addAndGet(limits.cpu.claimed);
@@ -124,6 +131,8 @@ public class ExecuteActionStage extends SuperscalarPipelineStage {
   @Override
   public void close() {
     super.close();
+    // every action has completed with the executor
+    outputReaderService.shutdownNow();
     // might want to move this to actual teardown of the stage
     workerContext.destroyExecutionLimits();
   }
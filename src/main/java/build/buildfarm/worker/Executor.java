@@ -69,6 +69,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.logging.Level;
@@ -82,6 +84,7 @@ class Executor {
   private final ExecutionContext executionContext;
   private final ExecuteActionStage owner;
   private final java.util.concurrent.Executor pollerExecutor;
+  private final ExecutorService outputReaderService;
   private int exitCode = INCOMPLETE_EXIT_CODE;
   private boolean wasErrored = false;
   private boolean polling = false;
@@ -90,11 +93,13 @@ class Executor {
       WorkerContext workerContext,
       ExecutionContext executionContext,
       ExecuteActionStage owner,
-      java.util.concurrent.Executor pollerExecutor) {
+      java.util.concurrent.Executor pollerExecutor,
+      ExecutorService outputReaderService) {
     this.workerContext = workerContext;
     this.executionContext = executionContext;
     this.owner = owner;
     this.pollerExecutor = pollerExecutor;
+    this.outputReaderService = outputReaderService;
   }
 
   // ensure that only one error put attempt occurs
@@ -568,7 +573,10 @@ class Executor {
     long startNanoTime = System.nanoTime();
     Process process;
     try {
-      process = ProcessUtils.threadSafeStart(processBuilder);
+      process =
+          ProcessUtils.start(
+              processBuilder,
+              BuildfarmConfigs.getInstance().getWorker().isConcurrentProcessStarts());
       process.getOutputStream().close();
     } catch (IOException e) {
       log.log(Level.SEVERE, format("error starting process for %s", operationName), e);
@@ -600,10 +608,10 @@ class Executor {
         new ByteStringWriteReader(
             process.getErrorStream(), stderrWrite, (int) workerContext.getStandardErrorLimit());
 
-    Thread stdoutReaderThread = new Thread(stdoutReader, "Executor.stdoutReader");
-    Thread stderrReaderThread = new Thread(stderrReader, "Executor.stderrReader");
-    stdoutReaderThread.start();
-    stderrReaderThread.start();
+    // Pipe reads block in native code, which pins a virtual thread to its carrier, so the readers
+    // run on pooled platform threads shared by every action of the stage.
+    Future<?> stdoutReaderFuture = outputReaderService.submit(stdoutReader);
+    Future<?> stderrReaderFuture = outputReaderService.submit(stderrReader);
 
     Code statusCode = Code.OK;
     boolean processCompleted = false;
@@ -644,8 +652,8 @@ class Executor {
     ByteString stdout = ByteString.EMPTY;
     ByteString stderr = ByteString.EMPTY;
     try {
-      stdoutReaderThread.join();
-      stderrReaderThread.join();
+      stdoutReaderFuture.get();
+      stderrReaderFuture.get();
       stdout = stdoutReader.getData();
       stderr = stderrReader.getData();
 
@@ -0,0 +1,193 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.worker;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import build.bazel.remote.execution.v2.Compressor;
+import build.buildfarm.common.InputStreamFactory;
+import build.buildfarm.v1test.Digest;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import lombok.extern.java.Log;
+
+/**
+ * A bounded cache of fixed size blocks of the blobs read through FuseCAS, held on the heap and
+ * keyed by digest and block index.
+ *
+ * <p>A missing block is fetched from its offset in the blob, rather than from the start of it, and
+ * concurrent reads of a missing block wait for a single fetch. The fetch continues through the
+ * remaining blocks of its read. A sequential read which misses also fetches the blocks which follow
+ * it from the same stream in the background, up to the read ahead limit or the first block which is
+ * already cached or being fetched. A read ahead which the executor rejects closes its stream.
+ */
+@Log
+final class FuseBlockCache {
+  private record BlockKey(Digest digest, long index) {}
+
+  private final InputStreamFactory inputStreamFactory;
+  private final int blockSize;
+  private final int readAheadBlocks;
+  private final Executor readAheadExecutor;
+  private final Cache<BlockKey, byte[]> blocks;
+
+  FuseBlockCache(
+      InputStreamFactory inputStreamFactory,
+      int blockSize,
+      int readAheadBlocks,
+      long maxSizeInBytes,
+      Executor readAheadExecutor) {
+    checkArgument(blockSize > 0, "blockSize must be positive");
+    checkArgument(readAheadBlocks > 0, "readAheadBlocks must be positive");
+    this.inputStreamFactory = inputStreamFactory;
+    this.blockSize = blockSize;
+    this.readAheadBlocks = readAheadBlocks;
+    this.readAheadExecutor = readAheadExecutor;
+    blocks =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxSizeInBytes)
+            .weigher((BlockKey key, byte[] block) -> block.length)
+            .build();
+  }
+
+  /**
+   * Read the content of the blob from offset into data, up to its length or the end of the blob.
+   *
+   * @return the number of bytes read.
+   */
+  int read(Digest digest, long offset, byte[] data, boolean sequential) throws IOException {
+    int length = (int) Math.max(0, Math.min(data.length, digest.getSize() - offset));
+    long lastIndex = (offset + length - 1) / blockSize;
+    int read = 0;
+    while (read < length) {
+      long position = offset + read;
+      long index = position / blockSize;
+      byte[] block = getBlock(digest, index, lastIndex, sequential);
+      int blockOffset = (int) (position - index * blockSize);
+      int n = Math.min(length - read, block.length - blockOffset);
+      System.arraycopy(block, blockOffset, data, read, n);
+      read += n;
+    }
+    return read;
+  }
+
+  private byte[] readBlock(InputStream in, Digest digest, long index) throws IOException {
+    byte[] block = new byte[(int) Math.min(blockSize, digest.getSize() - index * blockSize)];
+    ByteStreams.readFully(in, block);
+    return block;
+  }
+
+  /**
+   * Get a block, fetching it if it is missing. The stream of the fetch continues through the
+   * remaining blocks of the read up to lastIndex, and then through the read ahead in the
+   * background.
+   */
+  private byte[] getBlock(Digest digest, long index, long lastIndex, boolean readAhead)
+      throws IOException {
+    AtomicReference<InputStream> fetch = new AtomicReference<>();
+    byte[] block;
+    try {
+      block =
+          blocks.get(
+              new BlockKey(digest, index),
+              () -> {
+                InputStream in =
+                    inputStreamFactory.newInput(
+                        Compressor.Value.IDENTITY, digest, index * blockSize);
+                try {
+                  byte[] fetched = readBlock(in, digest, index);
+                  fetch.set(in);
+                  return fetched;
+                } catch (IOException e) {
+                  in.close();
+                  throw e;
+                }
+              });
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException(e.getCause());
+    }
+    InputStream in = fetch.get();
+    if (in == null) {
+      return block;
+    }
+    long blockCount = (digest.getSize() + blockSize - 1) / blockSize;
+    long readEnd = Math.min(blockCount, lastIndex + 1);
+    long readAheadEnd =
+        readAhead ? Math.min(blockCount, Math.max(readEnd, index + readAheadBlocks)) : readEnd;
+    boolean complete;
+    try {
+      complete = fetchBlocks(in, digest, index + 1, readEnd);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      // the remaining blocks of the read are fetched again
+      log.log(Level.FINE, "fetch of " + digest.getHash() + " failed", e);
+      complete = false;
+    }
+    if (complete && readEnd < readAheadEnd) {
+      try {
+        readAheadExecutor.execute(() -> readAhead(in, digest, readEnd, readAheadEnd));
+        return block;
+      } catch (RejectedExecutionException e) {
+        // shut down, or too many read aheads are waiting with open streams
+      }
+    }
+    in.close();
+    return block;
+  }
+
+  /**
+   * Fetch blocks from in, which is positioned at startIndex.
+   *
+   * @return false if a block was cached or fetched by another read, where the fetch stopped.
+   */
+  private boolean fetchBlocks(InputStream in, Digest digest, long startIndex, long endIndex)
+      throws ExecutionException {
+    for (long i = startIndex; i < endIndex; i++) {
+      long index = i;
+      AtomicBoolean fetched = new AtomicBoolean();
+      blocks.get(
+          new BlockKey(digest, index),
+          () -> {
+            fetched.set(true);
+            return readBlock(in, digest, index);
+          });
+      if (!fetched.get()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void readAhead(InputStream in, Digest digest, long startIndex, long endIndex) {
+    try (in) {
+      fetchBlocks(in, digest, startIndex, endIndex);
+    } catch (IOException | ExecutionException | UncheckedExecutionException e) {
+      // read ahead is advisory, reads of the blocks will fetch them again
+      log.log(Level.FINE, "read ahead of " + digest.getHash() + " failed", e);
+    }
+  }
+}
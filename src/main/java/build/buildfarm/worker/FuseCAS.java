@@ -14,6 +14,8 @@
 
 package build.buildfarm.worker;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
 import build.bazel.remote.execution.v2.Compressor;
 import build.bazel.remote.execution.v2.Directory;
 import build.bazel.remote.execution.v2.DirectoryNode;
@@ -22,8 +24,8 @@ import build.buildfarm.common.DigestUtil;
 import build.buildfarm.common.InputStreamFactory;
 import build.buildfarm.common.Watchdog;
 import build.buildfarm.v1test.Digest;
-import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Duration;
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -32,7 +34,10 @@ import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -56,11 +61,22 @@ import ru.serce.jnrfuse.struct.Timespec;
 
 @Log
 public class FuseCAS extends FuseStubFS {
+  private static final int BLOCK_SIZE = 1024 * 1024;
+  private static final int READ_AHEAD_BLOCKS = 8;
+  private static final long BLOCK_CACHE_SIZE = 128L * 1024 * 1024;
+  private static final int READ_AHEAD_THREADS = 4;
+  // each queued read ahead holds an open stream, so those beyond this are closed instead
+  private static final int READ_AHEAD_QUEUE_SIZE = 16;
+
   private final Path mountPath;
   private final InputStreamFactory inputStreamFactory;
+  private final ExecutorService readAheadService;
+  private final FuseBlockCache blockCache;
   private final DirectoryEntry root;
   private final AtomicInteger fileHandleCounter = new AtomicInteger(1);
   private final Map<Integer, Entry> fileHandleEntries = new ConcurrentHashMap<>();
+  // the offset following the last read of each file handle, to detect sequential reads
+  private final Map<Integer, Long> fileHandleReadOffsets = new ConcurrentHashMap<>();
   private final Map<Digest, Map<String, Entry>> childrenCache = new ConcurrentHashMap<>();
 
   private transient boolean mounted = false;
@@ -349,8 +365,29 @@ public class FuseCAS extends FuseStubFS {
   }
 
   public FuseCAS(Path mountPath, InputStreamFactory inputStreamFactory) {
+    this(mountPath, inputStreamFactory, BLOCK_CACHE_SIZE);
+  }
+
+  /** Create a FuseCAS holding up to blockCacheSizeBytes of the blobs it has read on the heap. */
+  public FuseCAS(Path mountPath, InputStreamFactory inputStreamFactory, long blockCacheSizeBytes) {
     this.mountPath = mountPath;
     this.inputStreamFactory = inputStreamFactory;
+    // rejects read aheads when its queue is full, which the block cache closes
+    readAheadService =
+        new ThreadPoolExecutor(
+            READ_AHEAD_THREADS,
+            READ_AHEAD_THREADS,
+            0,
+            MILLISECONDS,
+            new ArrayBlockingQueue<>(READ_AHEAD_QUEUE_SIZE),
+            new ThreadFactoryBuilder().setNameFormat("fuse-read-ahead-%d").setDaemon(true).build());
+    blockCache =
+        new FuseBlockCache(
+            inputStreamFactory,
+            BLOCK_SIZE,
+            READ_AHEAD_BLOCKS,
+            blockCacheSizeBytes,
+            readAheadService);
     root = new LocalDirectoryEntry();
   }
 
@@ -359,6 +396,7 @@ public class FuseCAS extends FuseStubFS {
       umount();
       mounts = 0;
     }
+    readAheadService.shutdownNow();
   }
 
   @FunctionalInterface
@@ -827,6 +865,7 @@ public class FuseCAS extends FuseStubFS {
   @Override
   public int release(String path, FuseFileInfo fi) {
     fileHandleEntries.remove(fi.fh.intValue());
+    fileHandleReadOffsets.remove(fi.fh.intValue());
 
     /*
     // Maybe do this, maybe not
@@ -892,28 +931,11 @@ public class FuseCAS extends FuseStubFS {
       return -ErrorCodes.EISDIR();
     }
 
-    ByteString content;
-    if (entry.isWritable()) {
-      WriteFileEntry writeFileEntry = (WriteFileEntry) entry;
-
-      content = writeFileEntry.content;
-    } else {
-      FileEntry fileEntry = (FileEntry) entry;
-
-      try {
-        content =
-            ByteString.readFrom(
-                inputStreamFactory.newInput(Compressor.Value.IDENTITY, fileEntry.digest, 0));
-      } catch (IOException e) {
-        if (e.getCause() != null && e.getCause() instanceof InterruptedException) {
-          return -ErrorCodes.EINTR();
-        }
-        return -ErrorCodes.EIO();
-      }
-
-      Preconditions.checkState(fileEntry.digest.getSize() == content.size());
+    if (!entry.isWritable()) {
+      return readFileEntry((FileEntry) entry, buf, size, offset, fi.fh.intValue());
     }
 
+    ByteString content = ((WriteFileEntry) entry).content;
     int length = content.size();
     if (offset < length) {
       if (offset + size > length) {
@@ -927,6 +949,28 @@ public class FuseCAS extends FuseStubFS {
     return (int) size;
   }
 
+  private int readFileEntry(FileEntry fileEntry, Pointer buf, long size, long offset, int fh) {
+    long length = Math.min(size, fileEntry.digest.getSize() - offset);
+    if (length <= 0) {
+      return 0;
+    }
+    Long readOffset = fileHandleReadOffsets.put(fh, offset + length);
+    boolean sequential = offset == (readOffset == null ? 0 : readOffset);
+    byte[] bytes = new byte[(int) length];
+    int read;
+    try {
+      read = blockCache.read(fileEntry.digest, offset, bytes, sequential);
+    } catch (IOException e) {
+      fileHandleReadOffsets.remove(fh);
+      if (e.getCause() != null && e.getCause() instanceof InterruptedException) {
+        return -ErrorCodes.EINTR();
+      }
+      return -ErrorCodes.EIO();
+    }
+    buf.put(0, bytes, 0, read);
+    return read;
+  }
+
   @Override
   public int mkdir(String path, @mode_t long mode) {
     // FIXME mode validation
@@ -0,0 +1,159 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.worker;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.RateLimiter;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import lombok.extern.java.Log;
+
+/**
+ * Holds matched operations until an input fetch slot is available, fetching their missing inputs
+ * into the CAS in the meantime.
+ *
+ * <p>Prefetched inputs are not retained, so that they may expire if the operation never uses them.
+ * The total size of inputs being prefetched and the rate of prefetching are each limited, with
+ * inputs beyond either limit left for the input fetch stage.
+ */
+@Log
+public class InputPrefetchStage extends SuperscalarPipelineStage {
+  private static final Gauge inputPrefetchSlotUsage =
+      Gauge.build().name("input_prefetch_slot_usage").help("Input prefetch slot Usage.").register();
+  private static final Counter inputPrefetchBlobs =
+      Counter.build()
+          .name("input_prefetch_blobs")
+          .labelNames("result")
+          .help("Prefetched inputs by state when their operation started fetching inputs.")
+          .register();
+  private static final Counter inputPrefetchBytes =
+      Counter.build().name("input_prefetch_bytes").help("Input bytes prefetched.").register();
+  private static final Histogram inputPrefetchSavedTime =
+      Histogram.build()
+          .name("input_prefetch_saved_time_ms")
+          .help("Input fetch time in ms spent prefetching before an input fetch slot was free.")
+          .register();
+
+  private final ConcurrentMap<String, InputPrefetcher> inputPrefetchers = Maps.newConcurrentMap();
+  private final long maxBytes;
+  private final @Nullable RateLimiter rateLimiter;
+
+  @GuardedBy("this")
+  private int slotUsage;
+
+  @GuardedBy("this")
+  private long prefetchingBytes;
+
+  public InputPrefetchStage(
+      WorkerContext workerContext,
+      PipelineStage output,
+      PipelineStage error,
+      int width,
+      long maxBytes,
+      long bytesPerSecond) {
+    super("InputPrefetchStage", "prefetcher", workerContext, output, error, width);
+    this.maxBytes = maxBytes;
+    rateLimiter = bytesPerSecond > 0 ? RateLimiter.create(bytesPerSecond) : null;
+  }
+
+  @Override
+  protected Logger getLogger() {
+    return log;
+  }
+
+  /** Reserve size bytes of the prefetch budget, returns false if they are not available. */
+  boolean reserve(long size) {
+    synchronized (this) {
+      if (prefetchingBytes + size > maxBytes) {
+        return false;
+      }
+      prefetchingBytes += size;
+    }
+    if (rateLimiter != null && !rateLimiter.tryAcquire((int) Math.min(size, Integer.MAX_VALUE))) {
+      unreserve(size);
+      return false;
+    }
+    return true;
+  }
+
+  synchronized void unreserve(long size) {
+    prefetchingBytes -= size;
+  }
+
+  void prefetched(long size) {
+    inputPrefetchBytes.inc(size);
+  }
+
+  void recordHandoff(int hits, int late, int skipped, long savedUSecs) {
+    inputPrefetchBlobs.labels("hit").inc(hits);
+    inputPrefetchBlobs.labels("late").inc(late);
+    inputPrefetchBlobs.labels("skipped").inc(skipped);
+    inputPrefetchSavedTime.observe(savedUSecs / 1000.0);
+  }
+
+  synchronized int removeAndRelease(String operationName) {
+    releaseClaim(operationName, 1);
+    slotUsage--;
+    inputPrefetchSlotUsage.set(slotUsage);
+    return slotUsage;
+  }
+
+  public void releaseInputPrefetcher(
+      String operationName, long usecs, long stallUSecs, boolean success) {
+    int size = removeAndRelease(operationName);
+    inputPrefetchers.remove(operationName);
+    complete(
+        operationName,
+        usecs,
+        stallUSecs,
+        String.format("%s, %s", success ? "Success" : "Failure", getUsage(size)));
+  }
+
+  @Override
+  protected int claimsRequired(ExecutionContext executionContext) {
+    return 1;
+  }
+
+  @Override
+  public boolean isStalled() {
+    // true iff every slot is held by a prefetcher waiting to advance to input fetch
+    return inputPrefetchers.size() >= width
+        && Iterables.all(inputPrefetchers.values(), InputPrefetcher::isStalled);
+  }
+
+  @Override
+  protected void iterate() throws InterruptedException {
+    if (!workerContext.inGracefulShutdown() && isPaused()) {
+      return;
+    }
+    ExecutionContext executionContext = take();
+    InputPrefetcher inputPrefetcher =
+        new InputPrefetcher(workerContext, executionContext, this, pollerExecutor);
+    inputPrefetchers.put(executionContext.operation.getName(), inputPrefetcher);
+
+    synchronized (this) {
+      slotUsage++;
+      inputPrefetchSlotUsage.set(slotUsage);
+      start(executionContext.queueEntry.getExecuteEntry().getOperationName(), getUsage(slotUsage));
+      executor.execute(inputPrefetcher);
+    }
+  }
+}
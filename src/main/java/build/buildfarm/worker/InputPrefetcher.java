@@ -0,0 +1,258 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.worker;
+
+import static build.bazel.remote.execution.v2.ExecutionStage.Value.QUEUED;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import build.bazel.remote.execution.v2.Digest;
+import build.bazel.remote.execution.v2.DigestFunction;
+import build.bazel.remote.execution.v2.Directory;
+import build.bazel.remote.execution.v2.FileNode;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.v1test.QueuedOperation;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.Deadline;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import lombok.extern.java.Log;
+
+@Log
+public class InputPrefetcher implements Runnable {
+  private final WorkerContext workerContext;
+  private final ExecutionContext executionContext;
+  private final InputPrefetchStage owner;
+  private final Executor pollerExecutor;
+  private final List<ListenableFuture<Boolean>> prefetches = new ArrayList<>();
+  // time of the last completed prefetch, relative to the start of the prefetcher
+  private final AtomicLong lastCompletedUSecs = new AtomicLong();
+  private int skipped = 0;
+  private boolean success = false;
+  private volatile boolean stalled = false;
+
+  InputPrefetcher(
+      WorkerContext workerContext,
+      ExecutionContext executionContext,
+      InputPrefetchStage owner,
+      Executor pollerExecutor) {
+    this.workerContext = workerContext;
+    this.executionContext = executionContext;
+    this.owner = owner;
+    this.pollerExecutor = pollerExecutor;
+  }
+
+  public boolean isStalled() {
+    return stalled;
+  }
+
+  private record FileInput(Digest digest, boolean isExecutable) {}
+
+  private static Set<FileInput> inputFiles(QueuedOperation queuedOperation) {
+    ImmutableSet.Builder<FileInput> inputFiles = ImmutableSet.builder();
+    for (Directory directory : queuedOperation.getTree().getDirectoriesMap().values()) {
+      for (FileNode fileNode : directory.getFilesList()) {
+        if (fileNode.getDigest().getSizeBytes() != 0) {
+          inputFiles.add(new FileInput(fileNode.getDigest(), fileNode.getIsExecutable()));
+        }
+      }
+    }
+    return inputFiles.build();
+  }
+
+  /** Start fetching the missing inputs of the operation which fit the budget of the stage. */
+  @VisibleForTesting
+  void prefetch(Stopwatch stopwatch) throws InterruptedException {
+    String executionName = executionContext.queueEntry.getExecuteEntry().getOperationName();
+    QueuedOperation queuedOperation;
+    try {
+      queuedOperation = workerContext.getQueuedOperation(executionContext.queueEntry);
+    } catch (IOException e) {
+      // the input fetch stage will report this
+      log.log(Level.FINE, format("could not get queued operation for %s", executionName), e);
+      return;
+    }
+    if (queuedOperation == null) {
+      return;
+    }
+    DigestFunction.Value digestFunction =
+        executionContext.queueEntry.getExecuteEntry().getActionDigest().getDigestFunction();
+
+    Map<Digest, List<FileInput>> inputFilesByDigest = new HashMap<>();
+    for (FileInput inputFile : inputFiles(queuedOperation)) {
+      inputFilesByDigest.computeIfAbsent(inputFile.digest(), d -> new ArrayList<>()).add(inputFile);
+    }
+    Iterable<Digest> missingDigests =
+        workerContext.findMissingInputs(
+            ImmutableList.copyOf(inputFilesByDigest.keySet()), digestFunction);
+    for (Digest digest : missingDigests) {
+      List<FileInput> inputFiles = inputFilesByDigest.get(digest);
+      if (inputFiles == null) {
+        continue;
+      }
+      // any form of the blob will do, the other is made from it locally
+      FileInput inputFile = inputFiles.getFirst();
+      build.buildfarm.v1test.Digest blobDigest = DigestUtil.fromDigest(digest, digestFunction);
+      long size = blobDigest.getSize();
+      if (!owner.reserve(size)) {
+        skipped++;
+        continue;
+      }
+      ListenableFuture<Boolean> prefetch =
+          workerContext.prefetchInput(blobDigest, inputFile.isExecutable());
+      Futures.addCallback(
+          prefetch,
+          new FutureCallback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean fetched) {
+              owner.unreserve(size);
+              if (fetched) {
+                owner.prefetched(size);
+              }
+              lastCompletedUSecs.accumulateAndGet(stopwatch.elapsed(MICROSECONDS), Math::max);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+              owner.unreserve(size);
+              // the input fetch stage will report this
+              String blob = DigestUtil.toString(blobDigest);
+              log.log(
+                  Level.FINE, format("could not prefetch %s for %s", blob, executionName), t);
+            }
+          },
+          directExecutor());
+      prefetches.add(prefetch);
+    }
+  }
+
+  private void recordHandoff(Stopwatch stopwatch) {
+    int hits = 0;
+    int late = 0;
+    for (ListenableFuture<Boolean> prefetch : prefetches) {
+      if (prefetch.isDone()) {
+        hits++;
+      } else {
+        late++;
+      }
+    }
+    long savedUSecs = stopwatch.elapsed(MICROSECONDS);
+    if (late == 0) {
+      savedUSecs = Math.min(savedUSecs, lastCompletedUSecs.get());
+    }
+    owner.recordHandoff(hits, late, skipped, savedUSecs);
+  }
+
+  private long runInterruptibly(Stopwatch stopwatch) throws InterruptedException {
+    // there is no deadline while waiting for a slot
+    workerContext.resumePoller(
+        executionContext.poller,
+        "InputPrefetcher",
+        executionContext.queueEntry,
+        QUEUED,
+        Thread.currentThread()::interrupt,
+        Deadline.after(10, DAYS),
+        pollerExecutor);
+    boolean polling = true;
+    try {
+      prefetch(stopwatch);
+      long prefetchUSecs = stopwatch.elapsed(MICROSECONDS);
+      boolean claimed;
+      stalled = true;
+      try {
+        claimed = owner.output().claim(executionContext);
+      } finally {
+        stalled = false;
+      }
+      executionContext.poller.pause();
+      polling = false;
+      if (claimed) {
+        recordHandoff(stopwatch);
+        try {
+          owner.output().put(executionContext);
+        } catch (InterruptedException e) {
+          owner.output().release();
+          throw e;
+        }
+        success = true;
+      } else {
+        log.log(
+            Level.FINER,
+            "InputPrefetcher: Execution "
+                + executionContext.queueEntry.getExecuteEntry().getOperationName()
+                + " Failed to claim output");
+        owner.error().put(executionContext);
+      }
+      return stopwatch.elapsed(MICROSECONDS) - prefetchUSecs;
+    } finally {
+      if (polling) {
+        executionContext.poller.pause();
+      }
+    }
+  }
+
+  @Override
+  public void run() {
+    long stallUSecs = 0;
+    String executionName = executionContext.queueEntry.getExecuteEntry().getOperationName();
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    try {
+      stallUSecs = runInterruptibly(stopwatch);
+    } catch (InterruptedException e) {
+      /* we can be interrupted when the poller fails */
+      try {
+        owner.error().put(executionContext);
+      } catch (InterruptedException errorEx) {
+        log.log(Level.SEVERE, format("interrupted while erroring %s", executionName), errorEx);
+      } finally {
+        Thread.currentThread().interrupt();
+      }
+    } catch (Exception e) {
+      log.log(Level.WARNING, format("error while prefetching inputs: %s", executionName), e);
+      try {
+        owner.error().put(executionContext);
+      } catch (InterruptedException errorEx) {
+        log.log(Level.SEVERE, format("interrupted while erroring %s", executionName), errorEx);
+      }
+      throw e;
+    } finally {
+      boolean wasInterrupted = Thread.interrupted();
+      // allow release to occur without interrupted state
+      try {
+        owner.releaseInputPrefetcher(
+            executionName, stopwatch.elapsed(MICROSECONDS), stallUSecs, success);
+      } finally {
+        if (wasInterrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+}
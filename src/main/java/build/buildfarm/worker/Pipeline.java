@@ -86,6 +86,12 @@ public class Pipeline implements Iterable<PipelineStage> {
               String.format("InputFetchStage is not empty with slot usage: %d!", slotUsage));
           return false;
         }
+      } else if (stage instanceof InputPrefetchStage) { // InputPrefetchStage
+        int slotUsage = ((InputPrefetchStage) stage).getSlotUsage();
+        if (slotUsage != 0) {
+          log.log(Level.INFO, String.format("InputPrefetchStage slot usage: %d!", slotUsage));
+          return false;
+        }
       } else if (stage instanceof ExecuteActionStage) { // ExecuteActionStage
         int slotUsage = ((ExecuteActionStage) stage).getSlotUsage();
         if (slotUsage != 0) {
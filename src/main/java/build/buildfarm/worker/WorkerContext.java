@@ -30,6 +30,7 @@ import build.buildfarm.v1test.QueuedOperation;
 import build.buildfarm.v1test.WorkerExecutedMetadata;
 import build.buildfarm.worker.resources.ResourceLimits;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.longrunning.Operation;
 import com.google.protobuf.Duration;
 import io.grpc.Deadline;
@@ -109,6 +110,12 @@ public interface WorkerContext {
 
   void destroyExecDir(Path execDir) throws IOException, InterruptedException;
 
+  Iterable<Digest> findMissingInputs(Iterable<Digest> digests, DigestFunction.Value digestFunction)
+      throws InterruptedException;
+
+  ListenableFuture<Boolean> prefetchInput(
+      build.buildfarm.v1test.Digest digest, boolean isExecutable);
+
   void uploadOutputs(
       build.buildfarm.v1test.Digest actionDigest,
       ActionResult.Builder resultBuilder,
@@ -17,6 +17,7 @@ package build.buildfarm.worker.persistent;
 import static java.nio.file.StandardCopyOption.COPY_ATTRIBUTES;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
+import build.buildfarm.common.io.Utils;
 import com.google.common.collect.ImmutableSet;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -88,6 +89,45 @@ public final class FileAccessUtils {
     }
   }
 
+  /**
+   * Clones a file with a reflink where the file system supports one, creating necessary
+   * directories, replacing existing files, and otherwise copies it. The clone shares the storage of
+   * the original but is a separate file, so writes to it do not reach the original. The resulting
+   * file is set to be writeable. Thread-safe (within a process) against writes to the same path.
+   *
+   * @param from
+   * @param to
+   * @throws IOException
+   */
+  public static void cloneFile(Path from, Path to) throws IOException {
+    Path absTo = to.toAbsolutePath();
+    log.finer("cloneFile: " + from + " to " + absTo);
+    if (!Files.exists(from)) {
+      throw new IOException("cloneFile: source file doesn't exist: " + from);
+    }
+    IOException ioException =
+        writeFileSafe(
+            absTo,
+            () -> {
+              try {
+                Files.deleteIfExists(absTo);
+                if (Utils.reflink(from, absTo)) {
+                  Files.setPosixFilePermissions(absTo, Files.getPosixFilePermissions(from));
+                  Files.setLastModifiedTime(absTo, Files.getLastModifiedTime(from));
+                } else {
+                  Files.copy(from, absTo, COPY_ATTRIBUTES);
+                }
+                addPosixOwnerWrite(absTo);
+                return null;
+              } catch (IOException e) {
+                return new IOException("cloneFile() could not clone: " + absTo, e);
+              }
+            });
+    if (ioException != null) {
+      throw ioException;
+    }
+  }
+
   /**
    * Moves a file, creating necessary directories, replacing existing files. The resulting file is
    * set to be writeable, and we throw if we cannot set that. Thread-safe against writes to the same
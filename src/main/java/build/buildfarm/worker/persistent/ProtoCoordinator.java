@@ -16,18 +16,26 @@ package build.buildfarm.worker.persistent;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.devtools.build.lib.worker.WorkerProtocol.WorkRequest;
 import com.google.devtools.build.lib.worker.WorkerProtocol.WorkResponse;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.util.Durations;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import lombok.extern.java.Log;
+import org.apache.commons.pool2.PooledObject;
 import persistent.bazel.client.CommonsWorkerPool;
 import persistent.bazel.client.PersistentWorker;
 import persistent.bazel.client.WorkCoordinator;
@@ -59,6 +67,34 @@ public class ProtoCoordinator extends WorkCoordinator<RequestCtx, ResponseCtx, C
   private static final ConcurrentHashMap<WorkerKey, WorkerKey> toolInputSyncs =
       new ConcurrentHashMap<>();
 
+  private record StagedInput(ByteString digest, Object fileKey, FileTime lastModifiedTime) {
+    // recorded for an input which may have been partially staged, and must be staged again
+    static final StagedInput PARTIAL =
+        new StagedInput(ByteString.EMPTY, null, FileTime.fromMillis(0));
+
+    boolean isUnchanged(ByteString digest, Path execPath) {
+      if (this == PARTIAL || !this.digest.equals(digest)) {
+        return false;
+      }
+      try {
+        BasicFileAttributes attrs = Files.readAttributes(execPath, BasicFileAttributes.class);
+        return Objects.equals(fileKey, attrs.fileKey())
+            && lastModifiedTime.equals(attrs.lastModifiedTime());
+      } catch (IOException e) {
+        return false;
+      }
+    }
+
+    static StagedInput of(ByteString digest, Path execPath) throws IOException {
+      BasicFileAttributes attrs = Files.readAttributes(execPath, BasicFileAttributes.class);
+      return new StagedInput(digest, attrs.fileKey(), attrs.lastModifiedTime());
+    }
+  }
+
+  // Non-tool inputs staged into each worker exec root, by exec path, retained between requests
+  private static final ConcurrentHashMap<Path, Map<Path, StagedInput>> stagedInputs =
+      new ConcurrentHashMap<>();
+
   // Enforces locking on the same object given the same WorkerKey
   private static WorkerKey keyLock(WorkerKey key) {
     return toolInputSyncs.computeIfAbsent(key, k -> k);
@@ -110,6 +146,12 @@ public class ProtoCoordinator extends WorkCoordinator<RequestCtx, ResponseCtx, C
             }
             return new PersistentWorker(workerKey, workerExecDir);
           }
+
+          @Override
+          public void destroyObject(WorkerKey workerKey, PooledObject<PersistentWorker> p) {
+            stagedInputs.remove(p.getObject().getExecRoot());
+            super.destroyObject(workerKey, p);
+          }
         };
     return new ProtoCoordinator(loadToolsOnCreate, maxWorkersPerKey);
   }
@@ -174,7 +216,7 @@ public class ProtoCoordinator extends WorkCoordinator<RequestCtx, ResponseCtx, C
     timeoutScheduler.schedule(pendingRequest.task, Durations.toMillis(request.timeout));
 
     // Symlinking should hypothetically be faster+leaner than copying inputs, but it's buggy.
-    copyNontoolInputs(request.workerInputs, worker.getExecRoot());
+    stageNontoolInputs(request.workerInputs, worker.getExecRoot());
 
     return request.request;
   }
@@ -196,8 +238,8 @@ public class ProtoCoordinator extends WorkCoordinator<RequestCtx, ResponseCtx, C
     if (response.getExitCode() == 0) {
       try {
         Path workerExecRoot = worker.getExecRoot();
+        // inputs are retained for the next request, see stageNontoolInputs
         moveOutputsToOperationRoot(request.filesContext, workerExecRoot);
-        cleanUpNontoolInputs(request.workerInputs, workerExecRoot);
       } catch (IOException e) {
         throw logBadCleanup(request, e);
       }
@@ -224,12 +266,44 @@ public class ProtoCoordinator extends WorkCoordinator<RequestCtx, ResponseCtx, C
     return new IOException("Response was OK but failed on postWorkCleanup", e);
   }
 
-  private void copyNontoolInputs(WorkerInputs workerInputs, Path workerExecRoot)
-      throws IOException {
-    for (Path opPath : workerInputs.allInputs.keySet()) {
-      if (!workerInputs.allToolInputs.contains(opPath)) {
-        Path execPath = workerInputs.relativizeInput(workerExecRoot, opPath);
-        workerInputs.copyInputFile(opPath, execPath);
+  // Inputs are reflinked from the operation root where the file system supports it and copied
+  // otherwise, and left in place for the next request on the same worker. Inputs unchanged since
+  // the previous request are not touched, and those which are no longer inputs are removed.
+  // Retained inputs are never hard linked, so that they neither hold on to CAS entries after they
+  // are evicted nor allow the worker to write to them. A reflink is a separate inode and does
+  // neither.
+  void stageNontoolInputs(WorkerInputs workerInputs, Path workerExecRoot) throws IOException {
+    Map<Path, StagedInput> previous = stagedInputs.getOrDefault(workerExecRoot, ImmutableMap.of());
+    Map<Path, StagedInput> staged = new HashMap<>();
+    boolean complete = false;
+    try {
+      for (Path opPath : workerInputs.allInputs.keySet()) {
+        if (!workerInputs.allToolInputs.contains(opPath)) {
+          Path execPath = workerInputs.relativizeInput(workerExecRoot, opPath);
+          ByteString digest = workerInputs.digestFor(opPath);
+          StagedInput input = previous.get(execPath);
+          if (input == null || !input.isUnchanged(digest, execPath)) {
+            staged.put(execPath, StagedInput.PARTIAL);
+            workerInputs.cloneInputFile(opPath, execPath);
+            input = StagedInput.of(digest, execPath);
+          }
+          staged.put(execPath, input);
+        }
+      }
+      for (Path execPath : previous.keySet()) {
+        if (!staged.containsKey(execPath)) {
+          FileAccessUtils.deleteFileIfExists(execPath);
+        }
+      }
+      complete = true;
+    } finally {
+      if (complete) {
+        stagedInputs.put(workerExecRoot, staged);
+      } else {
+        // keep every input which may be present, to be restaged or removed by the next request
+        Map<Path, StagedInput> present = new HashMap<>(previous);
+        present.putAll(staged);
+        stagedInputs.put(workerExecRoot, present);
       }
     }
   }
@@ -256,15 +330,6 @@ public class ProtoCoordinator extends WorkCoordinator<RequestCtx, ResponseCtx, C
     }
   }
 
-  private void cleanUpNontoolInputs(WorkerInputs workerInputs, Path workerExecRoot)
-      throws IOException {
-    for (Path opPath : workerInputs.allInputs.keySet()) {
-      if (!workerInputs.allToolInputs.contains(opPath)) {
-        workerInputs.deleteInputFileIfExists(workerExecRoot, opPath);
-      }
-    }
-  }
-
   private final class RequestTimeoutHandler extends TimerTask {
     private final RequestCtx request;
 
@@ -101,4 +101,10 @@ class FuseExecFileSystem implements ExecFileSystem {
     String topdir = root.relativize(actionRoot).toString();
     fuseCAS.destroyInputRoot(topdir);
   }
+
+  @Override
+  public ListenableFuture<Boolean> prefetch(Digest digest, boolean isExecutable) {
+    // inputs are read through storage on demand
+    return immediateFuture(false);
+  }
 }
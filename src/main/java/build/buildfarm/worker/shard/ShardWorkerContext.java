@@ -31,6 +31,7 @@ import build.bazel.remote.execution.v2.ExecutionStage;
 import build.bazel.remote.execution.v2.Platform;
 import build.buildfarm.backplane.Backplane;
 import build.buildfarm.cas.ContentAddressableStorage;
+import build.buildfarm.common.BuildfarmExecutors;
 import build.buildfarm.common.Claim;
 import build.buildfarm.common.CommandUtils;
 import build.buildfarm.common.DigestPath;
@@ -49,6 +50,7 @@ import build.buildfarm.common.Write;
 import build.buildfarm.common.config.BuildfarmConfigs;
 import build.buildfarm.common.config.ExecutionPolicy;
 import build.buildfarm.common.function.IOConsumer;
+import build.buildfarm.common.function.IOFunction;
 import build.buildfarm.common.grpc.Retrier;
 import build.buildfarm.common.grpc.Retrier.Backoff;
 import build.buildfarm.instance.Instance;
@@ -72,11 +74,14 @@ import build.buildfarm.worker.resources.ResourceLimits;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.longrunning.Operation;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Duration;
@@ -89,14 +94,19 @@ import io.prometheus.client.Counter;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.UserPrincipal;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import javax.annotation.Nullable;
@@ -143,6 +153,8 @@ class ShardWorkerContext implements WorkerContext {
   private final LocalResourceSet resourceSet;
   private final boolean errorOperationOutputSizeExceeded;
   private final boolean provideOwnedClaim;
+  private final @Nullable ListeningExecutorService outputUploadService;
+  private final long outputUploadInMemoryLimit;
   private boolean inGracefulShutdown = false;
   private boolean pauseMatch = false;
   private boolean pauseInputFetch = false;
@@ -211,6 +223,14 @@ class ShardWorkerContext implements WorkerContext {
     this.writer = writer;
 
     provideOwnedClaim = this.resourceSet.poolResources.containsKey(EXEC_OWNER_RESOURCE_NAME);
+
+    int outputUploadConcurrency = configs.getWorker().getOutputUploadConcurrency();
+    if (outputUploadConcurrency > 0) {
+      outputUploadService = BuildfarmExecutors.getOutputUploadPool(outputUploadConcurrency);
+    } else {
+      outputUploadService = null;
+    }
+    outputUploadInMemoryLimit = configs.getWorker().getOutputUploadInMemoryLimit();
   }
 
   private static Retrier createBackplaneRetrier() {
@@ -304,10 +324,35 @@ class ShardWorkerContext implements WorkerContext {
   @Override
   public QueuedOperation getQueuedOperation(QueueEntry queueEntry)
       throws IOException, InterruptedException {
+    if (queueEntry.hasQueuedOperation()) {
+      QueuedOperation queuedOperation = queueEntry.getQueuedOperation();
+      seedQueuedOperation(queueEntry.getQueuedOperationDigest(), queuedOperation);
+      return queuedOperation;
+    }
     ByteString queuedOperationBlob = getBlob(queueEntry.getQueuedOperationDigest());
     return ProtoUtils.parseQueuedOperation(queuedOperationBlob, queueEntry);
   }
 
+  /**
+   * Put an inlined queued operation into the local CAS, so that the digest published in its
+   * operation metadata can be read. The blob is only put if it serializes to the same digest as the
+   * server computed.
+   */
+  private void seedQueuedOperation(Digest digest, QueuedOperation queuedOperation)
+      throws InterruptedException {
+    ByteString queuedOperationBlob = queuedOperation.toByteString();
+    DigestUtil digestUtil = new DigestUtil(HashFunction.get(digest.getDigestFunction()));
+    if (!digestUtil.compute(queuedOperationBlob).equals(digest)) {
+      log.log(
+          Level.FINE,
+          format("inlined queued operation %s was not reproduced", DigestUtil.toString(digest)));
+      return;
+    }
+    execFileSystem
+        .getStorage()
+        .put(new ContentAddressableStorage.Blob(queuedOperationBlob, digest));
+  }
+
   // FIXME make OwnedClaim with owner
   // how will this play out with persistent workers, should we have one per user?
   private @Nullable Claim acquireClaim(Platform platform) {
@@ -560,6 +605,101 @@ class ShardWorkerContext implements WorkerContext {
     writer.write(digest, file);
   }
 
+  private record OutputUpload(Digest digest, @Nullable EntryLimitException entryLimitException) {}
+
+  private OutputUpload insertOutputFile(Digest digest, Path file)
+      throws IOException, InterruptedException {
+    try {
+      insertFile(digest, file);
+    } catch (EntryLimitException e) {
+      return new OutputUpload(digest, e);
+    }
+    return new OutputUpload(digest, null);
+  }
+
+  // files which fit within the in-memory limit are read exactly once, with the digest computed
+  // over the same content that is inserted. Larger files are hashed and then streamed separately.
+  private OutputUpload uploadOutputFileContent(DigestUtil digestUtil, Path file)
+      throws IOException, InterruptedException {
+    if (Files.size(file) > outputUploadInMemoryLimit) {
+      return insertOutputFile(digestUtil.compute(file), file);
+    }
+    ByteString content;
+    try (InputStream in = Files.newInputStream(file)) {
+      content = ByteString.readFrom(in);
+    }
+    Digest digest = digestUtil.compute(content);
+    try {
+      insertBlob(digest, content);
+    } catch (EntryLimitException e) {
+      return new OutputUpload(digest, e);
+    }
+    return new OutputUpload(digest, null);
+  }
+
+  private static OutputUpload getOutputUpload(ListenableFuture<OutputUpload> pendingUpload)
+      throws IOException, InterruptedException {
+    try {
+      return pendingUpload.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      Throwables.throwIfInstanceOf(cause, IOException.class);
+      Throwables.throwIfInstanceOf(cause, InterruptedException.class);
+      Throwables.throwIfUnchecked(cause);
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Begin uploading every file that would be visited by the serial output upload on the output
+   * upload pool. Outputs which will be rejected by the serial pass are not started, and the serial
+   * pass remains responsible for reporting them, so that the ActionResult and any violations are
+   * assembled in exactly the same order either way.
+   */
+  private Map<Path, ListenableFuture<OutputUpload>> startOutputUploads(
+      DigestUtil digestUtil, List<Path> outputPaths) throws IOException {
+    boolean createSymlinkOutputs = configs.getWorker().isCreateSymlinkOutputs();
+    long maxEntrySize = execFileSystem.getStorage().maxEntrySize();
+    Map<Path, ListenableFuture<OutputUpload>> pendingUploads = new HashMap<>();
+    IOConsumer<Path> startUpload =
+        file ->
+            pendingUploads.computeIfAbsent(
+                file,
+                key -> outputUploadService.submit(() -> uploadOutputFileContent(digestUtil, key)));
+    for (Path outputPath : outputPaths) {
+      if (Files.isDirectory(outputPath)) {
+        Files.walkFileTree(
+            outputPath,
+            new SimpleFileVisitor<Path>() {
+              @Override
+              public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                  throws IOException {
+                if (TreeWalker.isFileNode(createSymlinkOutputs, attrs)) {
+                  startUpload.accept(file);
+                }
+                return FileVisitResult.CONTINUE;
+              }
+
+              @Override
+              public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                // left to the serial walk to report
+                return FileVisitResult.CONTINUE;
+              }
+            });
+      } else if (Files.exists(outputPath)) {
+        try {
+          long size = Files.size(outputPath);
+          if (maxEntrySize == UNLIMITED_ENTRY_SIZE_MAX || size <= maxEntrySize) {
+            startUpload.accept(outputPath);
+          }
+        } catch (NoSuchFileException e) {
+          // left to the serial pass to ignore
+        }
+      }
+    }
+    return pendingUploads;
+  }
+
   private void updateActionResultStdOutputs(
       ActionResult.Builder resultBuilder, DigestUtil digestUtil)
       throws IOException, InterruptedException {
@@ -597,7 +737,8 @@ class ShardWorkerContext implements WorkerContext {
       Path outputPath,
       Path workingDirectory,
       String entrySizeViolationType,
-      PreconditionFailure.Builder preconditionFailure)
+      PreconditionFailure.Builder preconditionFailure,
+      Map<Path, ListenableFuture<OutputUpload>> pendingUploads)
       throws IOException, InterruptedException {
     String outputFile = toREOutputPath(workingDirectory.relativize(outputPath).toString());
 
@@ -639,12 +780,24 @@ class ShardWorkerContext implements WorkerContext {
     // want to decrement input references *before* this to ensure that we cannot
     // cause an internal deadlock
 
-    Digest digest;
-    try {
-      digest = digestUtil.compute(outputPath);
-    } catch (NoSuchFileException e) {
-      return;
+    OutputUpload upload;
+    ListenableFuture<OutputUpload> pendingUpload = pendingUploads.get(outputPath);
+    if (pendingUpload != null) {
+      try {
+        upload = getOutputUpload(pendingUpload);
+      } catch (NoSuchFileException e) {
+        return;
+      }
+    } else {
+      Digest computedDigest;
+      try {
+        computedDigest = digestUtil.compute(outputPath);
+      } catch (NoSuchFileException e) {
+        return;
+      }
+      upload = insertOutputFile(computedDigest, outputPath);
     }
+    Digest digest = upload.digest();
 
     resultBuilder
         .addOutputFilesBuilder()
@@ -652,9 +805,7 @@ class ShardWorkerContext implements WorkerContext {
         .setDigest(DigestUtil.toDigest(digest))
         .setIsExecutable(Files.isExecutable(outputPath));
 
-    try {
-      insertFile(digest, outputPath);
-    } catch (EntryLimitException e) {
+    if (upload.entryLimitException() != null) {
       preconditionFailure
           .addViolationsBuilder()
           .setType(entrySizeViolationType)
@@ -670,7 +821,8 @@ class ShardWorkerContext implements WorkerContext {
       Path outputDirPath,
       Path workingDirectory,
       String entrySizeViolationType,
-      PreconditionFailure.Builder preconditionFailure)
+      PreconditionFailure.Builder preconditionFailure,
+      Map<Path, ListenableFuture<OutputUpload>> pendingUploads)
       throws IOException, InterruptedException {
     String outputDir = toREOutputPath(workingDirectory.relativize(outputDirPath).toString());
 
@@ -689,11 +841,32 @@ class ShardWorkerContext implements WorkerContext {
       return;
     }
 
+    IOFunction<Path, Digest> fileDigester =
+        file -> {
+          ListenableFuture<OutputUpload> pendingUpload = pendingUploads.get(file);
+          if (pendingUpload == null) {
+            return digestUtil.compute(file);
+          }
+          try {
+            return getOutputUpload(pendingUpload).digest();
+          } catch (InterruptedException e) {
+            throw new IOException(e);
+          }
+        };
     IOConsumer<DigestPath> fileObserver =
         digestPath -> {
           Digest digest = digestPath.digest();
           try {
-            insertFile(digest, digestPath.path());
+            ListenableFuture<OutputUpload> pendingUpload = pendingUploads.get(digestPath.path());
+            if (pendingUpload == null) {
+              insertFile(digest, digestPath.path());
+            } else {
+              EntryLimitException entryLimitException =
+                  getOutputUpload(pendingUpload).entryLimitException();
+              if (entryLimitException != null) {
+                throw entryLimitException;
+              }
+            }
           } catch (InterruptedException e) {
             throw new IOException(e);
           } catch (EntryLimitException e) {
@@ -707,7 +880,8 @@ class ShardWorkerContext implements WorkerContext {
           }
         };
     TreeWalker treeWalker =
-        new TreeWalker(configs.getWorker().isCreateSymlinkOutputs(), digestUtil, fileObserver);
+        new TreeWalker(
+            configs.getWorker().isCreateSymlinkOutputs(), digestUtil, fileDigester, fileObserver);
     Files.walkFileTree(outputDirPath, treeWalker);
     ByteString treeBlob = treeWalker.getTree().toByteString();
     Digest treeDigest = digestUtil.compute(treeBlob);
@@ -730,23 +904,36 @@ class ShardWorkerContext implements WorkerContext {
     Path workingDirectory = actionRoot.resolve(command.getWorkingDirectory());
     List<Path> outputPaths = CommandUtils.getResolvedOutputPaths(command, workingDirectory);
     DigestUtil digestUtil = new DigestUtil(HashFunction.get(actionDigest.getDigestFunction()));
-    for (Path outputPath : outputPaths) {
-      if (Files.isDirectory(outputPath)) {
-        uploadOutputDirectory(
-            resultBuilder,
-            digestUtil,
-            outputPath,
-            workingDirectory,
-            entrySizeViolationType,
-            preconditionFailure);
-      } else {
-        uploadOutputFile(
-            resultBuilder,
-            digestUtil,
-            outputPath,
-            workingDirectory,
-            entrySizeViolationType,
-            preconditionFailure);
+    Map<Path, ListenableFuture<OutputUpload>> pendingUploads = ImmutableMap.of();
+    if (outputUploadService != null) {
+      pendingUploads = startOutputUploads(digestUtil, outputPaths);
+    }
+    try {
+      for (Path outputPath : outputPaths) {
+        if (Files.isDirectory(outputPath)) {
+          uploadOutputDirectory(
+              resultBuilder,
+              digestUtil,
+              outputPath,
+              workingDirectory,
+              entrySizeViolationType,
+              preconditionFailure,
+              pendingUploads);
+        } else {
+          uploadOutputFile(
+              resultBuilder,
+              digestUtil,
+              outputPath,
+              workingDirectory,
+              entrySizeViolationType,
+              preconditionFailure,
+              pendingUploads);
+        }
+      }
+    } finally {
+      // abandon any uploads remaining after a failure, no effect on those already complete
+      for (ListenableFuture<OutputUpload> pendingUpload : pendingUploads.values()) {
+        pendingUpload.cancel(false);
       }
     }
     checkPreconditionFailure(actionDigest, preconditionFailure.build());
@@ -807,6 +994,19 @@ class ShardWorkerContext implements WorkerContext {
     execFileSystem.destroyExecDir(execDir);
   }
 
+  @Override
+  public Iterable<build.bazel.remote.execution.v2.Digest> findMissingInputs(
+      Iterable<build.bazel.remote.execution.v2.Digest> digests,
+      DigestFunction.Value digestFunction)
+      throws InterruptedException {
+    return execFileSystem.getStorage().findMissingBlobs(digests, digestFunction);
+  }
+
+  @Override
+  public ListenableFuture<Boolean> prefetchInput(Digest digest, boolean isExecutable) {
+    return execFileSystem.prefetch(digest, isExecutable);
+  }
+
   @Override
   public void blacklistAction(String actionId) throws IOException, InterruptedException {
     createBackplaneRetrier()
@@ -25,6 +25,7 @@ import build.bazel.remote.execution.v2.Tree;
 import build.buildfarm.common.DigestPath;
 import build.buildfarm.common.DigestUtil;
 import build.buildfarm.common.function.IOConsumer;
+import build.buildfarm.common.function.IOFunction;
 import build.buildfarm.v1test.Digest;
 import java.io.IOException;
 import java.nio.file.FileVisitResult;
@@ -75,6 +76,7 @@ class TreeWalker extends SimpleFileVisitor<Path> {
   private final Stack<OutputDirectoryContext> path = new Stack<>();
   private final boolean createSymlinkOutputs;
   private final DigestUtil digestUtil;
+  private final IOFunction<Path, Digest> fileDigester;
   private final IOConsumer<DigestPath> fileObserver;
   private Tree.Builder treeBuilder = null;
   private OutputDirectoryContext currentDirectory = null;
@@ -83,11 +85,30 @@ class TreeWalker extends SimpleFileVisitor<Path> {
 
   TreeWalker(
       boolean createSymlinkOutputs, DigestUtil digestUtil, IOConsumer<DigestPath> fileObserver) {
+    this(createSymlinkOutputs, digestUtil, digestUtil::compute, fileObserver);
+  }
+
+  /**
+   * The fileDigester is consulted for every regular file visited, and may provide digests which
+   * were computed elsewhere, i.e. concurrently with the walk. It may throw NoSuchFileException to
+   * indicate that the file should be omitted from the tree.
+   */
+  TreeWalker(
+      boolean createSymlinkOutputs,
+      DigestUtil digestUtil,
+      IOFunction<Path, Digest> fileDigester,
+      IOConsumer<DigestPath> fileObserver) {
     this.createSymlinkOutputs = createSymlinkOutputs;
     this.digestUtil = digestUtil;
+    this.fileDigester = fileDigester;
     this.fileObserver = fileObserver;
   }
 
+  /** Indicates whether a file visited during a walk would be represented as a FileNode. */
+  static boolean isFileNode(boolean createSymlinkOutputs, BasicFileAttributes attrs) {
+    return !(createSymlinkOutputs && attrs.isSymbolicLink());
+  }
+
   Tree getTree() {
     // only valid after peforming a walk
     return checkNotNull(tree);
@@ -95,10 +116,10 @@ class TreeWalker extends SimpleFileVisitor<Path> {
 
   @Override
   public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-    if (createSymlinkOutputs && attrs.isSymbolicLink()) {
-      visitSymbolicLink(file);
-    } else {
+    if (isFileNode(createSymlinkOutputs, attrs)) {
       visitRegularFile(file);
+    } else {
+      visitSymbolicLink(file);
     }
     return FileVisitResult.CONTINUE;
   }
@@ -119,7 +140,7 @@ class TreeWalker extends SimpleFileVisitor<Path> {
       // is buildstream trying to execute in a specific container??
       // can get to NSFE for nonexistent symlinks
       // can fail outright for a symlink to a directory
-      digest = digestUtil.compute(file);
+      digest = fileDigester.apply(file);
     } catch (NoSuchFileException e) {
       log.log(
           Level.SEVERE,
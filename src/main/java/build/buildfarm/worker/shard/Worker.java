@@ -35,6 +35,7 @@ import build.buildfarm.cas.MemoryCAS;
 import build.buildfarm.cas.cfc.CASFileCache;
 import build.buildfarm.cas.cfc.DirectoryEntryCFC;
 import build.buildfarm.cas.cfc.LegacyDirectoryCFC;
+import build.buildfarm.common.BlobFilter;
 import build.buildfarm.common.BuildfarmExecutors;
 import build.buildfarm.common.DigestUtil;
 import build.buildfarm.common.DigestUtil.HashFunction;
@@ -69,6 +70,7 @@ import build.buildfarm.worker.ExecuteActionStage;
 import build.buildfarm.worker.ExecutionContext;
 import build.buildfarm.worker.FuseCAS;
 import build.buildfarm.worker.InputFetchStage;
+import build.buildfarm.worker.InputPrefetchStage;
 import build.buildfarm.worker.MatchStage;
 import build.buildfarm.worker.Pipeline;
 import build.buildfarm.worker.PipelineStage;
@@ -151,6 +153,8 @@ public final class Worker extends LoggingMain {
           .register();
 
   private static final int shutdownWaitTimeInSeconds = 10;
+  // a published blob filter outlives this many missed publishes before it expires
+  private static final int blobFilterExpireIntervals = 3;
 
   private static BuildfarmConfigs configs = BuildfarmConfigs.getInstance();
 
@@ -168,6 +172,7 @@ public final class Worker extends LoggingMain {
   private ShardWorkerContext context;
   private Backplane backplane;
   private LoadingCache<String, StubInstance> workerStubs;
+  private RemoteInputStreamFactory remoteInputStreamFactory;
   private AtomicBoolean released = new AtomicBoolean(true);
   private AtomicBoolean shutdownInitiated = new AtomicBoolean(false);
   private boolean startWritable = true;
@@ -297,7 +302,8 @@ public final class Worker extends LoggingMain {
             root,
             new EmptyInputStreamFactory(
                 new FailoverInputStreamFactory(
-                    storageInputStreamFactory, localPopulatingInputStreamFactory))),
+                    storageInputStreamFactory, localPopulatingInputStreamFactory)),
+            configs.getWorker().getStorages().getFirst().getFuseBlockCacheSizeBytes()),
         storage);
   }
 
@@ -442,6 +448,9 @@ public final class Worker extends LoggingMain {
           cas.getMaxSizeBytes(),
           maxEntrySizeInBytes, // TODO make this a configurable value for each cas
           cas.getHexBucketLevels(),
+          cas.getLruSegments(),
+          cas.isTrustLruSnapshot(),
+          cas.isCompressAtRest(),
           cas.isFileDirectoriesIndexInMemory(),
           cas.isExecRootCopyFallback(),
           expireService,
@@ -460,6 +469,9 @@ public final class Worker extends LoggingMain {
         cas.getMaxSizeBytes(),
         maxEntrySizeInBytes,
         cas.getHexBucketLevels(),
+        cas.getLruSegments(),
+        cas.isTrustLruSnapshot(),
+        cas.isCompressAtRest(),
         expireService,
         accessRecorder,
         storage,
@@ -484,6 +496,7 @@ public final class Worker extends LoggingMain {
           owners,
           configs.getWorker().isLinkInputDirectories(),
           configs.getWorker().getLinkedInputDirectories(),
+          configs.getWorker().getExecDirPoolSize(),
           configs.isAllowSymlinkTargetAbsolute(),
           removeDirectoryService,
           accessRecorder,
@@ -628,6 +641,38 @@ public final class Worker extends LoggingMain {
         .start();
   }
 
+  private void startBlobFilterPublisher(CASFileCache fileCache) {
+    int publishIntervalSeconds = configs.getWorker().getBlobFilterPublishIntervalSeconds();
+    if (publishIntervalSeconds <= 0 || !configs.getWorker().getCapabilities().isCas()) {
+      return;
+    }
+    String name = configs.getWorker().getPublicName();
+    double falsePositiveRate = configs.getWorker().getBlobFilterFalsePositiveRate();
+    int expireSeconds = publishIntervalSeconds * blobFilterExpireIntervals;
+    new Thread(
+            () -> {
+              try {
+                while (server != null && !server.isShutdown()) {
+                  BlobFilter filter = fileCache.newBlobFilter(falsePositiveRate);
+                  if (filter == null) {
+                    log.log(INFO, "blob filters are not available for delegated storage");
+                    return;
+                  }
+                  try {
+                    backplane.putBlobFilter(name, filter.toByteArray(), expireSeconds);
+                  } catch (IOException e) {
+                    log.log(Level.WARNING, "could not publish blob filter", e);
+                  }
+                  SECONDS.sleep(publishIntervalSeconds);
+                }
+              } catch (InterruptedException e) {
+                // ignore
+              }
+            },
+            "Worker.blobFilterPublisher")
+        .start();
+  }
+
   private long loadWorkerStartTimeInMillis() {
     try {
       File cache = new File(configs.getWorker().getRoot() + "/cache");
@@ -694,13 +739,18 @@ public final class Worker extends LoggingMain {
           "execOwners is not large enough to fill requested stage widths");
     }
 
-    InputStreamFactory remoteInputStreamFactory =
+    remoteInputStreamFactory =
         new RemoteInputStreamFactory(
             configs.getWorker().getPublicName(),
             backplane,
             new Random(),
             workerStubs,
-            (worker, t, context) -> {});
+            (worker, t, context) -> {},
+            configs.getWorker().getPeerFetchChunkSize(),
+            configs.getWorker().getPeerFetchMaxSources(),
+            configs.getWorker().getPeerFetchChunkSize() > 0
+                ? BuildfarmExecutors.getPeerFetchPool()
+                : null);
     ContentAddressableStorage storage =
         createStorages(
             remoteInputStreamFactory,
@@ -775,9 +825,22 @@ public final class Worker extends LoggingMain {
       PipelineStage releaseClaimAndRequeueStage = new ReleaseClaimStage(context::requeue);
       inputFetchStage =
           new InputFetchStage(context, executeActionStage, releaseClaimAndRequeueStage);
-      matchStage = new MatchStage(context, inputFetchStage, releaseClaimAndRequeueStage);
+      PipelineStage matchOutput = inputFetchStage;
+      if (configs.getWorker().getInputPrefetchDepth() > 0) {
+        InputPrefetchStage inputPrefetchStage =
+            new InputPrefetchStage(
+                context,
+                inputFetchStage,
+                releaseClaimAndRequeueStage,
+                configs.getWorker().getInputPrefetchDepth(),
+                configs.getWorker().getInputPrefetchMaxBytes(),
+                configs.getWorker().getInputPrefetchBytesPerSecond());
+        pipeline.add(inputPrefetchStage, 4);
+        matchOutput = inputPrefetchStage;
+      }
+      matchStage = new MatchStage(context, matchOutput, releaseClaimAndRequeueStage);
 
-      pipeline.add(matchStage, 4);
+      pipeline.add(matchStage, 5);
       pipeline.add(inputFetchStage, 3);
       pipeline.add(executeActionStage, 2);
       pipeline.add(reportResultStage, 1);
@@ -815,6 +878,10 @@ public final class Worker extends LoggingMain {
             healthStatusManager.setStatus(
                 HealthStatusManager.SERVICE_NAME_ALL_SERVICES, ServingStatus.SERVING);
             PrometheusPublisher.startHttpServer(configs.getPrometheusPort());
+            if (storage instanceof CASFileCache fileCache) {
+              // filters may only be published once the cache has loaded its entries
+              startBlobFilterPublisher(fileCache);
+            }
           }
 
           @Override
@@ -941,6 +1008,10 @@ public final class Worker extends LoggingMain {
       }
       execFileSystem = null;
     }
+    if (remoteInputStreamFactory != null) {
+      remoteInputStreamFactory.stop();
+      remoteInputStreamFactory = null;
+    }
     if (server != null) {
       log.info("Shutting down the server");
       server.shutdown();
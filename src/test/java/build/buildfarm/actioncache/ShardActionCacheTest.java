@@ -0,0 +1,147 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.actioncache;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import build.bazel.remote.execution.v2.ActionResult;
+import build.buildfarm.backplane.Backplane;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.ActionKey;
+import build.buildfarm.v1test.Digest;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import io.grpc.Status;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+@RunWith(JUnit4.class)
+public class ShardActionCacheTest {
+  private final Backplane backplane = mock(Backplane.class);
+  private final ListeningExecutorService service = listeningDecorator(newSingleThreadExecutor());
+
+  @After
+  public void tearDown() {
+    service.shutdownNow();
+  }
+
+  private static ActionKey actionKey(String hash) {
+    return DigestUtil.asActionKey(Digest.newBuilder().setHash(hash).setSize(1).build());
+  }
+
+  private static ActionResult actionResult(int exitCode) {
+    return ActionResult.newBuilder().setExitCode(exitCode).build();
+  }
+
+  @Test
+  public void concurrentMissesShareFetch() throws Exception {
+    ActionKey actionKey = actionKey("shared");
+    CountDownLatch release = new CountDownLatch(1);
+    when(backplane.getActionResult(actionKey))
+        .thenAnswer(
+            invocation -> {
+              release.await();
+              return actionResult(1);
+            });
+    ShardActionCache actionCache = new ShardActionCache(1024 * 1024, backplane, service);
+
+    ListenableFuture<ActionResult> first = actionCache.get(actionKey);
+    ListenableFuture<ActionResult> second = actionCache.get(actionKey);
+    release.countDown();
+
+    assertThat(first.get(10, SECONDS)).isEqualTo(actionResult(1));
+    assertThat(second.get(10, SECONDS)).isEqualTo(actionResult(1));
+    verify(backplane, times(1)).getActionResult(actionKey);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void missesDuringFetchAreBatched() throws Exception {
+    ActionKey blocking = actionKey("blocking");
+    ActionKey found = actionKey("found");
+    ActionKey missing = actionKey("missing");
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(backplane.getActionResult(blocking))
+        .thenAnswer(
+            invocation -> {
+              started.countDown();
+              release.await();
+              return actionResult(0);
+            });
+    when(backplane.getActionResults(any(Iterable.class)))
+        .thenReturn(ImmutableMap.of(found, actionResult(2)));
+    ShardActionCache actionCache = new ShardActionCache(1024 * 1024, backplane, service);
+
+    ListenableFuture<ActionResult> blockingResult = actionCache.get(blocking);
+    started.await();
+    ListenableFuture<ActionResult> foundResult = actionCache.get(found);
+    ListenableFuture<ActionResult> missingResult = actionCache.get(missing);
+    release.countDown();
+
+    assertThat(blockingResult.get(10, SECONDS)).isEqualTo(actionResult(0));
+    assertThat(foundResult.get(10, SECONDS)).isEqualTo(actionResult(2));
+    assertThat(missingResult.get(10, SECONDS)).isNull();
+    ArgumentCaptor<Iterable<ActionKey>> batch = ArgumentCaptor.forClass(Iterable.class);
+    verify(backplane, times(1)).getActionResults(batch.capture());
+    assertThat(ImmutableList.copyOf(batch.getValue())).containsExactly(found, missing).inOrder();
+    verify(backplane, never()).getActionResult(found);
+  }
+
+  @Test
+  public void fetchErrorsAreStatuses() throws Exception {
+    ActionKey actionKey = actionKey("error");
+    when(backplane.getActionResult(actionKey))
+        .thenThrow(new IOException(Status.UNAVAILABLE.asException()));
+    ShardActionCache actionCache =
+        new ShardActionCache(1024 * 1024, backplane, newDirectExecutorService());
+
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> actionCache.get(actionKey).get());
+
+    assertThat(Status.fromThrowable(e.getCause()).getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+  }
+
+  @Test
+  public void readThroughIsServedLocally() throws Exception {
+    ActionKey actionKey = actionKey("local");
+    ShardActionCache actionCache =
+        new ShardActionCache(1024 * 1024, backplane, newDirectExecutorService());
+
+    actionCache.readThrough(actionKey, actionResult(3));
+
+    assertThat(actionCache.get(actionKey).get()).isEqualTo(actionResult(3));
+    verify(backplane, never()).getActionResult(actionKey);
+  }
+}
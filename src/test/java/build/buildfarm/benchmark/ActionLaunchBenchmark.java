@@ -0,0 +1,102 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.benchmark;
+
+import build.buildfarm.common.ProcessUtils;
+import build.buildfarm.common.Write.NullWrite;
+import build.buildfarm.worker.ByteStringWriteReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Launches trivial actions as the Executor does, capturing their stdout and stderr, from many
+ * threads at once. The score is the number of actions launched and completed per second.
+ *
+ * <p>The Executor serializes starts behind a global lock unless concurrentProcessStarts is set, and
+ * reads the output of each action on a cached pool of platform threads shared by the stage. The
+ * readers param selects between new platform threads for each action, the pooled threads, and
+ * virtual threads, which pin their carriers in pipe reads and so are not used by the Executor.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ActionLaunchBenchmark {
+  private static final int OUTPUT_LIMIT = 1024 * 1024;
+
+  @Param({"false", "true"})
+  public boolean concurrentStarts;
+
+  @Param({"thread", "pooled", "virtual"})
+  public String readers;
+
+  private ExecutorService readerService;
+
+  @Setup
+  public void setUp() {
+    readerService =
+        switch (readers) {
+          case "thread" ->
+              Executors.newThreadPerTaskExecutor(
+                  Thread.ofPlatform().name("Executor.outputReader").factory());
+          case "pooled" ->
+              Executors.newCachedThreadPool(
+                  Thread.ofPlatform().name("Executor.outputReader-", 0).factory());
+          case "virtual" ->
+              Executors.newThreadPerTaskExecutor(
+                  Thread.ofVirtual().name("Executor.outputReader").factory());
+          default -> throw new IllegalArgumentException("unknown readers: " + readers);
+        };
+  }
+
+  @TearDown
+  public void tearDown() {
+    readerService.shutdownNow();
+  }
+
+  @Benchmark
+  @Threads(32)
+  public int launch() throws Exception {
+    Process process = ProcessUtils.start(new ProcessBuilder("true"), concurrentStarts);
+    process.getOutputStream().close();
+    ByteStringWriteReader stdoutReader =
+        new ByteStringWriteReader(process.getInputStream(), new NullWrite(), OUTPUT_LIMIT);
+    ByteStringWriteReader stderrReader =
+        new ByteStringWriteReader(process.getErrorStream(), new NullWrite(), OUTPUT_LIMIT);
+    Future<?> stdoutReaderFuture = readerService.submit(stdoutReader);
+    Future<?> stderrReaderFuture = readerService.submit(stderrReader);
+    int exitCode = process.waitFor();
+    stdoutReaderFuture.get();
+    stderrReaderFuture.get();
+    return exitCode + stdoutReader.getData().size() + stderrReader.getData().size();
+  }
+}
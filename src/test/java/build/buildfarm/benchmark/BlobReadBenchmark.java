@@ -0,0 +1,184 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.benchmark;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import build.bazel.remote.execution.v2.Compressor;
+import build.bazel.remote.execution.v2.RequestMetadata;
+import build.buildfarm.cas.cfc.CASFileCache;
+import build.buildfarm.cas.cfc.DirectoryEntryCFC;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.common.io.Directories;
+import build.buildfarm.v1test.Digest;
+import com.google.common.collect.Maps;
+import com.google.protobuf.ByteString;
+import io.grpc.stub.ServerCallStreamObserver;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serves a blob held in a CASFileCache through get, as a worker does for ByteStream reads, to an
+ * observer which is always ready. The bytes counter reports the read rate of a single thread, in
+ * order to compare MB/s per core across revisions.
+ *
+ * <p>Uncompressed entries are served from a file channel. Entries compressed at rest are served
+ * through a decompressing stream, so the rate for them includes the cost of decompression.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlobReadBenchmark {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+
+  @Param({"1048576", "67108864"})
+  public int blobSize;
+
+  @Param({"false", "true"})
+  public boolean compressAtRest;
+
+  private Path root;
+  private ExecutorService expireService;
+  private CASFileCache fileCache;
+  private Digest digest;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+    public long bytes;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    byte[] data = new byte[blobSize];
+    ThreadLocalRandom.current().nextBytes(data);
+    ByteString content = ByteString.copyFrom(data);
+    digest = DIGEST_UTIL.compute(content);
+
+    root = Files.createTempDirectory("blob-read");
+    expireService = Executors.newCachedThreadPool();
+    fileCache =
+        new DirectoryEntryCFC(
+            root,
+            /* maxSizeInBytes= */ (long) blobSize * 2,
+            /* maxEntrySizeInBytes= */ blobSize,
+            /* hexBucketLevels= */ 0,
+            /* lruSegments= */ 1,
+            /* trustLruSnapshot= */ false,
+            compressAtRest,
+            expireService,
+            /* accessRecorder= */ directExecutor(),
+            /* storage= */ Maps.newConcurrentMap(),
+            /* zstdBufferPool= */ null,
+            /* onPut= */ d -> {},
+            /* onExpire= */ expiredDigests -> {},
+            /* delegate= */ null,
+            /* delegateSkipLoad= */ false,
+            (compressor, d, offset) -> {
+              if (!d.equals(digest)) {
+                throw new NoSuchFileException(DigestUtil.toString(d));
+              }
+              return content.substring((int) offset).newInput();
+            });
+    fileCache.start(/* skipLoad= */ true).get();
+    fileCache.put(digest, /* isExecutable= */ false);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    fileCache.stop();
+    expireService.shutdownNow();
+    Directories.remove(root, Files.getFileStore(root));
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void read(Counters counters) {
+    fileCache.get(
+        Compressor.Value.IDENTITY,
+        digest,
+        /* offset= */ 0,
+        /* count= */ blobSize,
+        new ServerCallStreamObserver<ByteString>() {
+          @Override
+          public boolean isCancelled() {
+            return false;
+          }
+
+          @Override
+          public void setCompression(String compression) {}
+
+          @Override
+          public void setOnCancelHandler(Runnable onCancelHandler) {}
+
+          @Override
+          public void disableAutoInboundFlowControl() {}
+
+          @Override
+          public boolean isReady() {
+            return true;
+          }
+
+          @Override
+          public void request(int count) {}
+
+          @Override
+          public void setMessageCompression(boolean enable) {}
+
+          @Override
+          public void setOnReadyHandler(Runnable onReadyHandler) {
+            onReadyHandler.run();
+          }
+
+          @Override
+          public void onNext(ByteString chunk) {
+            counters.bytes += chunk.size();
+          }
+
+          @Override
+          public void onCompleted() {}
+
+          @Override
+          public void onError(Throwable t) {
+            throw new RuntimeException(t);
+          }
+        },
+        RequestMetadata.getDefaultInstance());
+  }
+}
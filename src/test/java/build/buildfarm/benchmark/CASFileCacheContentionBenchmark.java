@@ -0,0 +1,153 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.benchmark;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import build.bazel.remote.execution.v2.Compressor;
+import build.buildfarm.cas.cfc.CASFileCache;
+import build.buildfarm.cas.cfc.DirectoryEntryCFC;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.common.io.Directories;
+import build.buildfarm.v1test.Digest;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Drives concurrent input fetch cycles against a CASFileCache: each operation references a blob
+ * with put, reads it, and releases it with decrementReferences. The cache is sized below the blob
+ * working set so that expiration runs throughout.
+ *
+ * <p>A single LRU segment places all reference counting and recency ordering under one lock, as
+ * the cache did before it was partitioned, and is the baseline for the segmented configurations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CASFileCacheContentionBenchmark {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+
+  @Param({"1", "16", "64"})
+  public int lruSegments;
+
+  @Param({"4096"})
+  public int blobCount;
+
+  @Param({"1024", "65536"})
+  public int blobSize;
+
+  private Path root;
+  private ExecutorService expireService;
+  private CASFileCache fileCache;
+  private Digest[] digests;
+  private String[] keys;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    Map<Digest, ByteString> blobs = Maps.newHashMap();
+    digests = new Digest[blobCount];
+    keys = new String[blobCount];
+    for (int i = 0; i < blobCount; i++) {
+      byte[] data = new byte[blobSize];
+      ThreadLocalRandom.current().nextBytes(data);
+      ByteString content = ByteString.copyFrom(data);
+      Digest digest = DIGEST_UTIL.compute(content);
+      blobs.put(digest, content);
+      digests[i] = digest;
+      keys[i] = CASFileCache.getKey(digest, /* isExecutable= */ false);
+    }
+
+    root = Files.createTempDirectory("cas-contention");
+    expireService = Executors.newCachedThreadPool();
+    fileCache =
+        new DirectoryEntryCFC(
+            root,
+            /* maxSizeInBytes= */ (long) blobCount * blobSize * 3 / 4,
+            /* maxEntrySizeInBytes= */ blobSize,
+            /* hexBucketLevels= */ 0,
+            lruSegments,
+            /* trustLruSnapshot= */ false,
+            /* compressAtRest= */ false,
+            expireService,
+            /* accessRecorder= */ directExecutor(),
+            /* storage= */ Maps.newConcurrentMap(),
+            /* zstdBufferPool= */ null,
+            /* onPut= */ digest -> {},
+            /* onExpire= */ expiredDigests -> {},
+            /* delegate= */ null,
+            /* delegateSkipLoad= */ false,
+            (compressor, digest, offset) -> {
+              ByteString content = blobs.get(digest);
+              if (content == null) {
+                throw new NoSuchFileException(DigestUtil.toString(digest));
+              }
+              return content.substring((int) offset).newInput();
+            });
+    fileCache.start(/* skipLoad= */ true).get();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    fileCache.stop();
+    expireService.shutdownNow();
+    Directories.remove(root, Files.getFileStore(root));
+  }
+
+  @Benchmark
+  @Threads(64)
+  public long fetchInput() throws IOException, InterruptedException {
+    int index = ThreadLocalRandom.current().nextInt(blobCount);
+    Digest digest = digests[index];
+    fileCache.put(digest, /* isExecutable= */ false);
+    long read;
+    try (InputStream in = fileCache.newInput(Compressor.Value.IDENTITY, digest, /* offset= */ 0)) {
+      read = in.transferTo(OutputStream.nullOutputStream());
+    } finally {
+      fileCache.decrementReferences(
+          ImmutableList.of(keys[index]), ImmutableList.of(), DIGEST_UTIL.getDigestFunction());
+    }
+    return read;
+  }
+}
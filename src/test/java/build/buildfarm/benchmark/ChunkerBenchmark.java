@@ -0,0 +1,66 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.benchmark;
+
+import build.buildfarm.instance.stub.Chunker;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures splitting an in-memory blob into upload chunks with Chunker. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChunkerBenchmark {
+  @Param({"1048576", "16777216"})
+  public int blobSize;
+
+  @Param({"16384", "1048576"})
+  public int chunkSize;
+
+  private ByteString blob;
+
+  @Setup
+  public void setUp() {
+    byte[] data = new byte[blobSize];
+    ThreadLocalRandom.current().nextBytes(data);
+    blob = ByteString.copyFrom(data);
+  }
+
+  @Benchmark
+  public long chunk() throws IOException {
+    Chunker chunker = Chunker.builder().setInput(blob).setChunkSize(chunkSize).build();
+    long size = 0;
+    while (chunker.hasNext()) {
+      size += chunker.next().getData().size();
+    }
+    return size;
+  }
+}
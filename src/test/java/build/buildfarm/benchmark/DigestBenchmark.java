@@ -0,0 +1,74 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.benchmark;
+
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.v1test.Digest;
+import com.google.protobuf.ByteString;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures digest computation for each supported hash function over in-memory blobs, both alone
+ * and with concurrent hashing threads competing for memory bandwidth.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DigestBenchmark {
+  @Param({"SHA256", "BLAKE3"})
+  public HashFunction hashFunction;
+
+  @Param({"1024", "1048576", "16777216"})
+  public int blobSize;
+
+  private DigestUtil digestUtil;
+  private ByteString blob;
+
+  @Setup
+  public void setUp() {
+    digestUtil = new DigestUtil(hashFunction);
+    byte[] data = new byte[blobSize];
+    ThreadLocalRandom.current().nextBytes(data);
+    blob = ByteString.copyFrom(data);
+  }
+
+  @Benchmark
+  public Digest compute() {
+    return digestUtil.compute(blob);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Digest computeConcurrently() {
+    return digestUtil.compute(blob);
+  }
+}
@@ -0,0 +1,148 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.benchmark;
+
+import build.bazel.remote.execution.v2.Directory;
+import build.bazel.remote.execution.v2.FileNode;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.v1test.Digest;
+import build.buildfarm.worker.FuseCAS;
+import com.google.protobuf.ByteString;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import jnr.ffi.Memory;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.serce.jnrfuse.struct.FuseFileInfo;
+
+/**
+ * Reads a file of an input root from FuseCAS in 128 KiB requests, as the kernel does for reads
+ * through the mount, sequentially and at random offsets. The bytes counter reports the read rate.
+ *
+ * <p>The callbacks are invoked directly, without mounting, so that the rate reflects FuseCAS and
+ * not the kernel. Blobs larger than the block cache of FuseCAS cannot be served from it entirely.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FuseCASReadBenchmark {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+  private static final int READ_SIZE = 128 * 1024;
+  private static final String FILE_PATH = "/root/file";
+
+  @Param({"67108864", "268435456"})
+  public int blobSize;
+
+  private FuseCAS fuseCAS;
+
+  static class SystemFuseFileInfo extends FuseFileInfo {
+    SystemFuseFileInfo() {
+      super(Runtime.getSystemRuntime());
+    }
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+    public long bytes;
+  }
+
+  @State(Scope.Thread)
+  public static class Reader {
+    final Pointer buf = Memory.allocateDirect(Runtime.getSystemRuntime(), READ_SIZE);
+    final FuseFileInfo fi = new SystemFuseFileInfo();
+    long offset = 0;
+
+    @Setup(Level.Trial)
+    public void setUp(FuseCASReadBenchmark benchmark) {
+      fi.flags.set(0);
+      if (benchmark.fuseCAS.open(FILE_PATH, fi) != 0) {
+        throw new IllegalStateException("could not open " + FILE_PATH);
+      }
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    byte[] data = new byte[blobSize];
+    ThreadLocalRandom.current().nextBytes(data);
+    ByteString content = ByteString.copyFrom(data);
+    Digest fileDigest = DIGEST_UTIL.compute(content);
+    ByteString directory =
+        Directory.newBuilder()
+            .addFiles(
+                FileNode.newBuilder().setName("file").setDigest(DigestUtil.toDigest(fileDigest)))
+            .build()
+            .toByteString();
+    Digest directoryDigest = DIGEST_UTIL.compute(directory);
+    fuseCAS =
+        new FuseCAS(
+            /* mountPath= */ null,
+            (compressor, digest, offset) -> {
+              if (digest.equals(fileDigest)) {
+                return content.substring((int) offset).newInput();
+              }
+              if (digest.equals(directoryDigest)) {
+                return directory.substring((int) offset).newInput();
+              }
+              throw new NoSuchFileException(DigestUtil.toString(digest));
+            });
+    fuseCAS.createInputRoot("root", directoryDigest);
+  }
+
+  private void read(Reader reader, Counters counters, long offset) {
+    int read = fuseCAS.read(FILE_PATH, reader.buf, READ_SIZE, offset, reader.fi);
+    if (read < 0) {
+      throw new IllegalStateException("read failed: " + read);
+    }
+    counters.bytes += read;
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void sequential(Reader reader, Counters counters) {
+    read(reader, counters, reader.offset);
+    reader.offset += READ_SIZE;
+    if (reader.offset >= blobSize) {
+      reader.offset = 0;
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void random(Reader reader, Counters counters) {
+    long offset = ThreadLocalRandom.current().nextInt(blobSize / READ_SIZE) * (long) READ_SIZE;
+    read(reader, counters, offset);
+  }
+}
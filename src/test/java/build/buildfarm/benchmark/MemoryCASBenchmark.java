@@ -0,0 +1,98 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.benchmark;
+
+import build.buildfarm.cas.ContentAddressableStorage.Blob;
+import build.buildfarm.cas.MemoryCAS;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.v1test.Digest;
+import com.google.protobuf.ByteString;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures lookups and insertions against a MemoryCAS holding a fixed working set of blobs. The
+ * cache is sized to hold every blob, so puts refresh existing entries and nothing is expired.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MemoryCASBenchmark {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+
+  @Param({"4096"})
+  public int blobCount;
+
+  @Param({"1024", "65536"})
+  public int blobSize;
+
+  private MemoryCAS cas;
+  private Blob[] blobs;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    cas = new MemoryCAS((long) blobCount * blobSize * 2);
+    blobs = new Blob[blobCount];
+    for (int i = 0; i < blobCount; i++) {
+      byte[] data = new byte[blobSize];
+      ThreadLocalRandom.current().nextBytes(data);
+      blobs[i] = new Blob(ByteString.copyFrom(data), DIGEST_UTIL);
+      cas.put(blobs[i]);
+    }
+  }
+
+  private Digest randomDigest() {
+    return blobs[ThreadLocalRandom.current().nextInt(blobCount)].getDigest();
+  }
+
+  @Benchmark
+  public Blob get() {
+    return cas.get(randomDigest());
+  }
+
+  @Benchmark
+  @Threads(16)
+  public Blob getConcurrently() {
+    return cas.get(randomDigest());
+  }
+
+  @Benchmark
+  public void put() {
+    cas.put(blobs[ThreadLocalRandom.current().nextInt(blobCount)]);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void putConcurrently() {
+    cas.put(blobs[ThreadLocalRandom.current().nextInt(blobCount)]);
+  }
+}
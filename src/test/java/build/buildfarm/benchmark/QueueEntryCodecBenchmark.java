@@ -0,0 +1,162 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.benchmark;
+
+import build.bazel.remote.execution.v2.ExecutionPolicy;
+import build.bazel.remote.execution.v2.Platform;
+import build.bazel.remote.execution.v2.RequestMetadata;
+import build.bazel.remote.execution.v2.ToolDetails;
+import build.buildfarm.common.config.Backplane.QUEUE_ENTRY_ENCODING;
+import build.buildfarm.instance.shard.QueueEntryCodec;
+import build.buildfarm.v1test.Digest;
+import build.buildfarm.v1test.ExecuteEntry;
+import build.buildfarm.v1test.QueueEntry;
+import com.github.fppt.jedismock.RedisServer;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Timestamp;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import redis.clients.jedis.JedisPooled;
+
+/**
+ * Compares the cost of encoding and decoding execution queue entries in each supported encoding,
+ * along with the size of the value that is stored in redis for each entry.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueEntryCodecBenchmark {
+  static QueueEntry createQueueEntry() {
+    String invocationId = UUID.randomUUID().toString();
+    return QueueEntry.newBuilder()
+        .setExecuteEntry(
+            ExecuteEntry.newBuilder()
+                .setOperationName("shard/executions/" + UUID.randomUUID())
+                .setActionDigest(
+                    Digest.newBuilder()
+                        .setHash(
+                            "1f2e3d4c5b6a79880f1e2d3c4b5a69788f9e0d1c2b3a49586f7e8d9c0b1a2938")
+                        .setSize(142))
+                .setRequestMetadata(
+                    RequestMetadata.newBuilder()
+                        .setToolDetails(
+                            ToolDetails.newBuilder().setToolName("bazel").setToolVersion("8.4.1"))
+                        .setActionId(
+                            "0a1b2c3d4e5f60718293a4b5c6d7e8f90a1b2c3d4e5f60718293a4b5c6d7e8f9")
+                        .setToolInvocationId(invocationId)
+                        .setCorrelatedInvocationsId(invocationId)
+                        .setActionMnemonic("CppCompile")
+                        .setTargetId("//src/main/cc/foo:bar"))
+                .setExecutionPolicy(ExecutionPolicy.newBuilder().setPriority(1))
+                .setStdoutStreamName("shard/executions/" + invocationId + "/streams/stdout")
+                .setStderrStreamName("shard/executions/" + invocationId + "/streams/stderr")
+                .setQueuedTimestamp(Timestamp.newBuilder().setSeconds(1760000000).setNanos(1)))
+        .setQueuedOperationDigest(
+            Digest.newBuilder()
+                .setHash("9f8e7d6c5b4a39281f0e9d8c7b6a59483f2e1d0c9b8a79685f4e3d2c1b0a9988")
+                .setSize(4096))
+        .setPlatform(
+            Platform.newBuilder()
+                .addProperties(Platform.Property.newBuilder().setName("OSFamily").setValue("Linux"))
+                .addProperties(
+                    Platform.Property.newBuilder()
+                        .setName("container-image")
+                        .setValue("docker://gcr.io/example/rbe-ubuntu:latest")))
+        .build();
+  }
+
+  @State(Scope.Benchmark)
+  public static class Entries {
+    @Param({"JSON", "BINARY"})
+    public QUEUE_ENTRY_ENCODING encoding;
+
+    QueueEntry queueEntry;
+    String value;
+
+    @Setup
+    public void setup() throws InvalidProtocolBufferException {
+      queueEntry = createQueueEntry();
+      value = QueueEntryCodec.encode(queueEntry, encoding);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Redis {
+    RedisServer server;
+    JedisPooled jedis;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+      server = RedisServer.newRedisServer(0, InetAddress.getByName("localhost")).start();
+      jedis = new JedisPooled(server.getHost(), server.getBindPort());
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() {
+      jedis.del("queue");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      jedis.close();
+      server.stop();
+    }
+  }
+
+  /** Reports the redis list element payload for each entry, the dominant per-entry memory cost. */
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class StoredSize {
+    public long valueBytes;
+  }
+
+  @Benchmark
+  public String encode(Entries entries) throws InvalidProtocolBufferException {
+    return QueueEntryCodec.encode(entries.queueEntry, entries.encoding);
+  }
+
+  @Benchmark
+  public QueueEntry decode(Entries entries) throws InvalidProtocolBufferException {
+    return QueueEntryCodec.decode(entries.value);
+  }
+
+  @Benchmark
+  public QueueEntry offerAndTake(Entries entries, Redis redis, StoredSize storedSize)
+      throws InvalidProtocolBufferException {
+    String value = QueueEntryCodec.encode(entries.queueEntry, entries.encoding);
+    redis.jedis.lpush("queue", value);
+    storedSize.valueBytes = value.getBytes(StandardCharsets.UTF_8).length;
+    return QueueEntryCodec.decode(redis.jedis.rpop("queue"));
+  }
+}
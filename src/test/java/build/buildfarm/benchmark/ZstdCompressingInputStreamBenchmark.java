@@ -0,0 +1,94 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import build.buildfarm.common.ZstdCompressingInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures compressing blobs through ZstdCompressingInputStream, as is done for compressed reads
+ * from the CAS. Random content is incompressible, while repetitive content stands in for typical
+ * build outputs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ZstdCompressingInputStreamBenchmark {
+  public enum Content {
+    RANDOM,
+    REPETITIVE
+  }
+
+  @Param({"RANDOM", "REPETITIVE"})
+  public Content content;
+
+  @Param({"1024", "1048576", "16777216"})
+  public int blobSize;
+
+  private byte[] blob;
+
+  @Setup
+  public void setUp() {
+    blob = new byte[blobSize];
+    if (content == Content.RANDOM) {
+      ThreadLocalRandom.current().nextBytes(blob);
+    } else {
+      byte[] line = "cc -c -o bazel-out/k8-fastbuild/bin/src/main.o src/main.c\n".getBytes(UTF_8);
+      for (int i = 0; i < blobSize; i++) {
+        blob[i] = line[i % line.length];
+      }
+    }
+  }
+
+  private long compress() throws IOException {
+    try (InputStream in = new ZstdCompressingInputStream(new ByteArrayInputStream(blob))) {
+      return in.transferTo(OutputStream.nullOutputStream());
+    }
+  }
+
+  /** Returns the compressed size. */
+  @Benchmark
+  public long compressBlob() throws IOException {
+    return compress();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public long compressBlobConcurrently() throws IOException {
+    return compress();
+  }
+}
@@ -0,0 +1,128 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.cas.cfc;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import build.buildfarm.cas.cfc.LRUDB.SizeEntry;
+import build.buildfarm.cas.cfc.LRUDB.Snapshot;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.v1test.Digest;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BinaryLRUDBTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final LRUDB db = new BinaryLRUDB();
+  private Path path;
+
+  @Before
+  public void setUp() throws IOException {
+    path = temporaryFolder.getRoot().toPath().resolve("lru.bin");
+  }
+
+  private static Digest compute(HashFunction hashFunction, String content) {
+    return new DigestUtil(hashFunction).compute(ByteString.copyFromUtf8(content));
+  }
+
+  private static List<SizeEntry> sampleEntries() {
+    Digest file = compute(HashFunction.SHA256, "file");
+    Digest executable = compute(HashFunction.SHA256, "executable");
+    Digest directory = compute(HashFunction.SHA256, "directory");
+    Digest wide = compute(HashFunction.SHA384, "wide");
+    return ImmutableList.of(
+        new SizeEntry(CASFileCache.getKey(file, /* isExecutable= */ false), file.getSize()),
+        new SizeEntry(
+            CASFileCache.getKey(executable, /* isExecutable= */ true), executable.getSize()),
+        new SizeEntry(CASFileCache.digestFilename(directory) + "_dir", 4096),
+        new SizeEntry(CASFileCache.getKey(wide, /* isExecutable= */ false), wide.getSize()));
+  }
+
+  @Test
+  public void savedEntriesAreOpenedInOrder() throws IOException {
+    List<SizeEntry> entries = sampleEntries();
+    db.save(entries, path, /* complete= */ true);
+
+    try (Snapshot snapshot = db.open(path)) {
+      assertThat(snapshot.isComplete()).isTrue();
+      assertThat(snapshot).containsExactlyElementsIn(entries).inOrder();
+      // snapshots may be iterated more than once
+      assertThat(snapshot).containsExactlyElementsIn(entries).inOrder();
+    }
+  }
+
+  @Test
+  public void unrepresentableKeyMakesSnapshotIncomplete() throws IOException {
+    List<SizeEntry> entries = sampleEntries();
+    db.save(
+        ImmutableList.<SizeEntry>builder()
+            .addAll(entries)
+            .add(new SizeEntry("not_a_cache_key", 1))
+            .build(),
+        path,
+        /* complete= */ true);
+
+    try (Snapshot snapshot = db.open(path)) {
+      assertThat(snapshot.isComplete()).isFalse();
+      assertThat(snapshot).containsExactlyElementsIn(entries).inOrder();
+    }
+  }
+
+  @Test
+  public void invalidateMarksSnapshotIncomplete() throws IOException {
+    List<SizeEntry> entries = sampleEntries();
+    db.save(entries, path, /* complete= */ true);
+    db.invalidate(path);
+
+    try (Snapshot snapshot = db.open(path)) {
+      assertThat(snapshot.isComplete()).isFalse();
+      assertThat(snapshot).containsExactlyElementsIn(entries).inOrder();
+    }
+  }
+
+  @Test
+  public void corruptSnapshotIsRejected() throws IOException {
+    db.save(sampleEntries(), path, /* complete= */ true);
+    byte[] content = Files.readAllBytes(path);
+    content[content.length - 12] ^= 1;
+    Files.write(path, content);
+
+    assertThrows(IOException.class, () -> db.open(path));
+  }
+
+  @Test
+  public void truncatedSnapshotIsRejected() throws IOException {
+    db.save(sampleEntries(), path, /* complete= */ true);
+    byte[] content = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(content, content.length - 1));
+
+    assertThrows(IOException.class, () -> db.open(path));
+  }
+}
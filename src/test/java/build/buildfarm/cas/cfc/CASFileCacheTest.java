@@ -56,6 +56,7 @@ import build.buildfarm.common.io.Directories;
 import build.buildfarm.common.io.EvenMoreFiles;
 import build.buildfarm.common.io.FeedbackOutputStream;
 import build.buildfarm.v1test.Digest;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
@@ -69,6 +70,7 @@ import com.google.common.util.concurrent.SettableFuture;
 import com.google.protobuf.ByteString;
 import io.grpc.Deadline;
 import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -153,6 +155,9 @@ class CASFileCacheTest {
             /* maxSizeInBytes= */ 1024,
             /* maxEntrySizeInBytes= */ 1024,
             /* hexBucketLevels= */ 1,
+            /* lruSegmentCount= */ 1,
+            /* trustLruSnapshot= */ false,
+            /* compressAtRest= */ false,
             storeFileDirsIndexInMemory,
             /* execRootFallback= */ false,
             expireService,
@@ -200,6 +205,79 @@ class CASFileCacheTest {
     assertThat(Files.exists(path)).isTrue();
   }
 
+  private static ByteString get(
+      CASFileCache cas, Compressor.Value compressor, Digest digest, long offset, long count)
+      throws Exception {
+    SettableFuture<ByteString> content = SettableFuture.create();
+    cas.get(
+        compressor,
+        digest,
+        offset,
+        count,
+        new ServerCallStreamObserver<ByteString>() {
+          ByteString received = ByteString.EMPTY;
+
+          @Override
+          public boolean isCancelled() {
+            return false;
+          }
+
+          @Override
+          public void setCompression(String compression) {}
+
+          @Override
+          public void setOnCancelHandler(Runnable onCancelHandler) {}
+
+          @Override
+          public void disableAutoInboundFlowControl() {}
+
+          @Override
+          public boolean isReady() {
+            return true;
+          }
+
+          @Override
+          public void request(int count) {}
+
+          @Override
+          public void setMessageCompression(boolean enable) {}
+
+          @Override
+          public void setOnReadyHandler(Runnable onReadyHandler) {
+            onReadyHandler.run();
+          }
+
+          @Override
+          public void onNext(ByteString chunk) {
+            received = received.concat(chunk);
+          }
+
+          @Override
+          public void onCompleted() {
+            content.set(received);
+          }
+
+          @Override
+          public void onError(Throwable t) {
+            content.setException(t);
+          }
+        },
+        RequestMetadata.getDefaultInstance());
+    return content.get();
+  }
+
+  @Test
+  public void getServesRangeOfLocalBlob() throws Exception {
+    ByteString blob = ByteString.copyFromUtf8("Hello, World");
+    Digest blobDigest = DIGEST_UTIL.compute(blob);
+    blobs.put(blobDigest, blob);
+    fileCache.put(blobDigest, false);
+
+    ByteString content =
+        get(fileCache, Compressor.Value.IDENTITY, blobDigest, /* offset= */ 7, /* count= */ 3);
+    assertThat(content).isEqualTo(blob.substring(7, 10));
+  }
+
   @Test(expected = IllegalStateException.class)
   public void putEmptyFileThrowsIllegalStateException() throws IOException, InterruptedException {
     InputStreamFactory mockInputStreamFactory = mock(InputStreamFactory.class);
@@ -1143,6 +1221,9 @@ class CASFileCacheTest {
             /* maxSizeInBytes= */ 1024,
             /* maxEntrySizeInBytes= */ 1024,
             /* hexBucketLevels= */ 1,
+            /* lruSegmentCount= */ 1,
+            /* trustLruSnapshot= */ false,
+            /* compressAtRest= */ false,
             storeFileDirsIndexInMemory,
             /* execRootFallback= */ false,
             expireService,
@@ -1207,6 +1288,9 @@ class CASFileCacheTest {
             /* maxSizeInBytes= */ 1024,
             /* maxEntrySizeInBytes= */ 1024,
             /* hexBucketLevels= */ 1,
+            /* lruSegmentCount= */ 1,
+            /* trustLruSnapshot= */ false,
+            /* compressAtRest= */ false,
             storeFileDirsIndexInMemory,
             /* execRootFallback= */ false,
             expireService,
@@ -1233,6 +1317,79 @@ class CASFileCacheTest {
         () -> undelegatedCAS.newInput(Compressor.Value.IDENTITY, blobDigest, /* offset= */ 0));
   }
 
+  private CASFileCache newCompressedCAS() throws IOException {
+    CASFileCache compressedCAS =
+        new LegacyDirectoryCFC(
+            root,
+            /* maxSizeInBytes= */ 1024,
+            /* maxEntrySizeInBytes= */ 1024,
+            /* hexBucketLevels= */ 1,
+            /* lruSegmentCount= */ 1,
+            /* trustLruSnapshot= */ false,
+            /* compressAtRest= */ true,
+            storeFileDirsIndexInMemory,
+            /* execRootFallback= */ false,
+            expireService,
+            /* accessRecorder= */ directExecutor(),
+            storage,
+            /* directoriesIndexDbName= */ ":memory:",
+            /* zstdBufferPool= */ null,
+            /* onPut= */ digest -> {},
+            /* onExpire= */ digests -> {},
+            /* delegate= */ null,
+            /* delegateSkipLoad= */ false,
+            (compressor, digest, offset) -> {
+              checkArgument(compressor == Compressor.Value.IDENTITY);
+              return blobs.get(digest).substring((int) offset).newInput();
+            });
+    compressedCAS.initializeRootDirectory();
+    return compressedCAS;
+  }
+
+  @Test
+  public void compressedEntriesAreStoredCompressed() throws Exception {
+    CASFileCache compressedCAS = newCompressedCAS();
+    ByteString blob = ByteString.copyFromUtf8(Strings.repeat("Compressible Entry ", 20));
+    Digest blobDigest = DIGEST_UTIL.compute(blob);
+    blobs.put(blobDigest, blob);
+
+    Path path = compressedCAS.put(blobDigest, false).path();
+
+    // the entry is accounted by its content size
+    assertThat(compressedCAS.size()).isEqualTo(blob.size());
+    assertThat(Files.size(path)).isLessThan(blob.size());
+    ByteString stored = ByteString.readFrom(Files.newInputStream(path));
+    try (InputStream in =
+        compressedCAS.newInput(Compressor.Value.ZSTD, blobDigest, /* offset= */ 0)) {
+      assertThat(ByteString.readFrom(in)).isEqualTo(stored);
+    }
+    try (InputStream in =
+        compressedCAS.newInput(Compressor.Value.IDENTITY, blobDigest, /* offset= */ 0)) {
+      assertThat(ByteString.readFrom(in)).isEqualTo(blob);
+    }
+    Path copy = root.resolve("copy");
+    compressedCAS.copyEntry(copy, path, /* isExecutable= */ false);
+    assertThat(ByteString.readFrom(Files.newInputStream(copy))).isEqualTo(blob);
+  }
+
+  @Test
+  public void getServesRangeOfCompressedEntry() throws Exception {
+    CASFileCache compressedCAS = newCompressedCAS();
+    ByteString blob = ByteString.copyFromUtf8(Strings.repeat("Compressible Entry ", 20));
+    Digest blobDigest = DIGEST_UTIL.compute(blob);
+    blobs.put(blobDigest, blob);
+    compressedCAS.put(blobDigest, false);
+
+    ByteString content =
+        get(
+            compressedCAS,
+            Compressor.Value.IDENTITY,
+            blobDigest,
+            /* offset= */ 19,
+            /* count= */ 12);
+    assertThat(content).isEqualTo(blob.substring(19, 31));
+  }
+
   @Test
   public void testConcurrentWrites() throws Exception {
     ByteString blob = ByteString.copyFromUtf8("concurrent write");
@@ -0,0 +1,105 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.cas.cfc;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import build.buildfarm.cas.cfc.CASFileCache.Entry;
+import build.buildfarm.cas.cfc.LRUDB.SizeEntry;
+import io.grpc.Deadline;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SegmentedLRUTest {
+  private static List<Entry> newEntries(int count) {
+    List<Entry> entries = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      entries.add(new Entry("entry-" + i, i + 1, Deadline.after(10, SECONDS)));
+    }
+    return entries;
+  }
+
+  @Test
+  public void claimOldestFollowsAccessOrderAcrossSegments() {
+    SegmentedLRU lru = new SegmentedLRU(8);
+    List<Entry> entries = newEntries(32);
+    for (Entry e : entries) {
+      assertThat(lru.dereference(e)).isTrue();
+    }
+    assertThat(lru.unreferencedCount()).isEqualTo(32);
+
+    // move the first entry to the most recently accessed position
+    lru.recordAccess(entries.getFirst());
+
+    for (Entry e : entries.subList(1, entries.size())) {
+      assertThat(lru.claimOldest()).isSameInstanceAs(e);
+    }
+    assertThat(lru.claimOldest()).isSameInstanceAs(entries.getFirst());
+    assertThat(lru.claimOldest()).isNull();
+    assertThat(lru.unreferencedCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void referencedEntriesAreNotClaimed() {
+    SegmentedLRU lru = new SegmentedLRU(4);
+    List<Entry> entries = newEntries(2);
+    Entry referenced = entries.get(0);
+    Entry unreferenced = entries.get(1);
+    lru.dereference(referenced);
+    lru.dereference(unreferenced);
+
+    assertThat(lru.reference(referenced)).isTrue();
+    assertThat(lru.unreferencedCount()).isEqualTo(1);
+    assertThat(lru.claimOldest()).isSameInstanceAs(unreferenced);
+    assertThat(lru.claimOldest()).isNull();
+  }
+
+  @Test
+  public void claimedEntryCannotBeReferenced() {
+    SegmentedLRU lru = new SegmentedLRU(4);
+    Entry e = newEntries(1).getFirst();
+    lru.dereference(e);
+
+    assertThat(lru.claimOldest()).isSameInstanceAs(e);
+    assertThat(lru.reference(e)).isFalse();
+    // access of a claimed entry is ignored
+    lru.recordAccess(e);
+    assertThat(lru.claimOldest()).isNull();
+  }
+
+  @Test
+  public void sizeEntriesAreOrderedByAccess() {
+    SegmentedLRU lru = new SegmentedLRU(4);
+    List<Entry> entries = newEntries(8);
+    for (Entry e : entries) {
+      lru.dereference(e);
+    }
+    lru.recordAccess(entries.get(3));
+
+    List<SizeEntry> expected = new ArrayList<>();
+    for (Entry e : entries) {
+      if (e != entries.get(3)) {
+        expected.add(new SizeEntry(e.key, e.size));
+      }
+    }
+    expected.add(new SizeEntry(entries.get(3).key, entries.get(3).size));
+    assertThat(lru.sizeEntries()).containsExactlyElementsIn(expected).inOrder();
+  }
+}
@@ -0,0 +1,103 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.common;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertThrows;
+
+import build.buildfarm.common.DigestUtil.HashFunction;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.protobuf.ByteString;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BlobFilterTest {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+
+  private static List<String> hashes(String prefix, int count) {
+    List<String> hashes = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      hashes.add(DIGEST_UTIL.compute(ByteString.copyFromUtf8(prefix + i)).getHash());
+    }
+    return hashes;
+  }
+
+  @Test
+  public void parsedFilterContainsEveryPutHash() throws IOException {
+    List<String> present = hashes("present", 1000);
+    BlobFilter filter = BlobFilter.create(present.size(), 0.01);
+    for (String hash : present) {
+      filter.put(hash);
+    }
+
+    BlobFilter parsed = BlobFilter.parseFrom(filter.toByteArray());
+
+    for (String hash : present) {
+      assertThat(parsed.mightContain(hash)).isTrue();
+    }
+  }
+
+  @Test
+  public void absentHashesAreMostlyExcluded() {
+    List<String> present = hashes("present", 1000);
+    BlobFilter filter = BlobFilter.create(present.size(), 0.01);
+    for (String hash : present) {
+      filter.put(hash);
+    }
+
+    int falsePositives = 0;
+    for (String hash : hashes("absent", 1000)) {
+      if (filter.mightContain(hash)) {
+        falsePositives++;
+      }
+    }
+    // generous bound over the 1% target
+    assertThat(falsePositives).isLessThan(50);
+  }
+
+  @Test
+  public void filtersAreCompatibleWithGuava() throws IOException {
+    List<String> present = hashes("present", 1000);
+    Funnel<CharSequence> funnel = (hash, into) -> into.putString(hash, US_ASCII);
+    BloomFilter<CharSequence> guavaFilter = BloomFilter.create(funnel, present.size(), 0.01);
+    BlobFilter filter = BlobFilter.create(present.size(), 0.01);
+    for (String hash : present) {
+      guavaFilter.put(hash);
+      filter.put(hash);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    guavaFilter.writeTo(out);
+
+    assertThat(filter.toByteArray()).isEqualTo(out.toByteArray());
+    BlobFilter parsed = BlobFilter.parseFrom(out.toByteArray());
+    for (String hash : hashes("absent", 1000)) {
+      assertThat(parsed.mightContain(BlobFilter.key(hash)))
+          .isEqualTo(guavaFilter.mightContain(hash));
+    }
+  }
+
+  @Test
+  public void invalidFilterIsRejected() {
+    assertThrows(IOException.class, () -> BlobFilter.parseFrom(new byte[] {1, 2, 3}));
+  }
+}
@@ -0,0 +1,100 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.common;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ProcessUtilsTest {
+  private static final int PROCESSES = 64;
+  private static final int OUTPUT_SIZE = 1024 * 1024;
+
+  private static Thread drain(InputStream input, AtomicLong count) {
+    Thread thread =
+        new Thread(
+            () -> {
+              byte[] buffer = new byte[16 * 1024];
+              try {
+                for (int len = input.read(buffer); len != -1; len = input.read(buffer)) {
+                  count.addAndGet(len);
+                }
+              } catch (IOException e) {
+                throw new RuntimeException(e);
+              }
+            });
+    thread.start();
+    return thread;
+  }
+
+  // runs an action which fills both of its pipes, as the Executor does
+  private static long run(boolean concurrent) throws Exception {
+    ProcessBuilder builder =
+        new ProcessBuilder(
+            "sh",
+            "-c",
+            String.format(
+                "head -c %d /dev/zero; head -c %d /dev/zero >&2", OUTPUT_SIZE, OUTPUT_SIZE));
+    Process process = ProcessUtils.start(builder, concurrent);
+    process.getOutputStream().close();
+    AtomicLong stdout = new AtomicLong();
+    AtomicLong stderr = new AtomicLong();
+    Thread stdoutReader = drain(process.getInputStream(), stdout);
+    Thread stderrReader = drain(process.getErrorStream(), stderr);
+    assertThat(process.waitFor(60, TimeUnit.SECONDS)).isTrue();
+    stdoutReader.join();
+    stderrReader.join();
+    assertThat(process.exitValue()).isEqualTo(0);
+    assertThat(stderr.get()).isEqualTo(OUTPUT_SIZE);
+    return stdout.get();
+  }
+
+  private static void runConcurrently(boolean concurrent) throws Exception {
+    ExecutorService service = Executors.newFixedThreadPool(PROCESSES);
+    try {
+      List<Future<Long>> outputs = new ArrayList<>();
+      for (int i = 0; i < PROCESSES; i++) {
+        outputs.add(service.submit(() -> run(concurrent)));
+      }
+      for (Future<Long> output : outputs) {
+        assertThat(output.get()).isEqualTo(OUTPUT_SIZE);
+      }
+    } finally {
+      service.shutdownNow();
+    }
+  }
+
+  @Test
+  public void serializedStartsCaptureLargeOutputs() throws Exception {
+    runConcurrently(/* concurrent= */ false);
+  }
+
+  @Test
+  public void concurrentStartsCaptureLargeOutputs() throws Exception {
+    runConcurrently(/* concurrent= */ true);
+  }
+}
@@ -0,0 +1,67 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.common;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.github.fppt.jedismock.RedisServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import redis.clients.jedis.JedisPooled;
+
+@RunWith(JUnit4.class)
+public class WorkerIndexerTest {
+  private RedisServer redisServer;
+  private JedisPooled jedis;
+
+  @Before
+  public void setUp() throws IOException {
+    redisServer = RedisServer.newRedisServer(0, InetAddress.getByName("localhost")).start();
+    jedis = new JedisPooled(redisServer.getHost(), redisServer.getBindPort());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    jedis.close();
+    redisServer.stop();
+  }
+
+  @Test
+  public void removeWorkerIndexesFromCasRemovesAllInactiveWorkers() {
+    jedis.hset("Workers", "worker1", "{}");
+    jedis.sadd("ContentAddressableStorage:a", "worker1", "worker2");
+    jedis.sadd("ContentAddressableStorage:b", "worker2", "worker3");
+    jedis.sadd("ContentAddressableStorage:c", "worker1");
+    jedis.sadd("ActionCache:d", "worker2");
+    CasIndexSettings settings = new CasIndexSettings();
+    settings.casQuery = "ContentAddressableStorage:*";
+    settings.scanAmount = 2;
+
+    CasIndexResults results = WorkerIndexer.removeWorkerIndexesFromCas(jedis, settings);
+
+    assertThat(results.totalKeys).isEqualTo(3);
+    assertThat(results.removedHosts).isEqualTo(3);
+    assertThat(results.removedKeys).isEqualTo(1);
+    assertThat(jedis.smembers("ContentAddressableStorage:a")).containsExactly("worker1");
+    assertThat(jedis.exists("ContentAddressableStorage:b")).isFalse();
+    assertThat(jedis.smembers("ContentAddressableStorage:c")).containsExactly("worker1");
+    assertThat(jedis.smembers("ActionCache:d")).containsExactly("worker2");
+  }
+}
@@ -66,6 +66,22 @@ public class UtilsTest {
     assertThat(firstKey).isEqualTo(secondKey);
   }
 
+  @Test
+  public void reflinkClonesToSeparateFileOrLeavesNone() throws IOException {
+    Path source = root.resolve("a");
+    Files.writeString(source, "content for a");
+    Path target = root.resolve("b");
+
+    if (Utils.reflink(source, target)) {
+      assertThat(Files.readString(target)).isEqualTo("content for a");
+      assertThat(Files.isSameFile(source, target)).isFalse();
+      Files.writeString(target, "content for b");
+      assertThat(Files.readString(source)).isEqualTo("content for a");
+    } else {
+      assertThat(Files.exists(target)).isFalse();
+    }
+  }
+
   @Test
   public void fileKeysVerifyDifferentFiles() throws IOException {
     Path pathA = root.resolve("a");
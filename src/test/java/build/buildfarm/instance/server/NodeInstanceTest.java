@@ -35,6 +35,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import build.bazel.remote.execution.v2.Action;
 import build.bazel.remote.execution.v2.ActionResult;
 import build.bazel.remote.execution.v2.Command;
 import build.bazel.remote.execution.v2.Compressor;
@@ -83,6 +84,8 @@ import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Stack;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
@@ -669,6 +672,65 @@ public class NodeInstanceTest {
     assertThat(violation.getDescription()).isEqualTo(String.format(missingFmt, "foo/quux"));
   }
 
+  /*-
+   * / -> valid dir
+   *   sub/ -> valid dir, validated once and then absent from the index
+   *     file
+   */
+  @Test
+  public void validatedDirectoryMissingFromIndexIsPreconditionFailure() {
+    NodeInstance instance = new DummyServerInstance();
+    Digest fileDigest = DIGEST_UTIL.compute(ByteString.copyFromUtf8("file"));
+    Directory sub =
+        Directory.newBuilder()
+            .addFiles(
+                FileNode.newBuilder().setName("file").setDigest(DigestUtil.toDigest(fileDigest)))
+            .build();
+    Digest subDigest = DIGEST_UTIL.compute(sub);
+    Directory root =
+        Directory.newBuilder()
+            .addDirectories(
+                DirectoryNode.newBuilder().setName("sub").setDigest(DigestUtil.toDigest(subDigest)))
+            .build();
+    Digest rootDigest = DIGEST_UTIL.compute(root);
+    Action action =
+        Action.newBuilder()
+            .setInputRootDigest(DigestUtil.toDigest(rootDigest))
+            .setCommandDigest(DigestUtil.toDigest(DIGEST_UTIL.empty()))
+            .build();
+    Command command = Command.newBuilder().addArguments("foo").build();
+    Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex = new HashMap<>();
+    directoriesIndex.put(DigestUtil.toDigest(rootDigest), root);
+    directoriesIndex.put(DigestUtil.toDigest(subDigest), sub);
+
+    PreconditionFailure.Builder preconditionFailure = PreconditionFailure.newBuilder();
+    instance.validateAction(
+        DIGEST_UTIL.getDigestFunction(),
+        action,
+        command,
+        directoriesIndex,
+        /* onInputDigest= */ digest -> {},
+        preconditionFailure);
+    assertThat(preconditionFailure.getViolationsCount()).isEqualTo(0);
+
+    // the validated input root is no longer spliced once sub/ has left the index
+    directoriesIndex.remove(DigestUtil.toDigest(subDigest));
+    instance.validateAction(
+        DIGEST_UTIL.getDigestFunction(),
+        action,
+        command,
+        directoriesIndex,
+        /* onInputDigest= */ digest -> {},
+        preconditionFailure);
+
+    assertThat(preconditionFailure.getViolationsCount()).isEqualTo(1);
+    Violation violation = preconditionFailure.getViolationsList().getFirst();
+    assertThat(violation.getType()).isEqualTo(VIOLATION_TYPE_MISSING);
+    assertThat(violation.getSubject()).isEqualTo("blobs/" + DigestUtil.toString(subDigest));
+    assertThat(violation.getDescription())
+        .isEqualTo("The directory `/sub` was not found in the CAS.");
+  }
+
   @SuppressWarnings("unchecked")
   private static void doBlob(
       ContentAddressableStorage contentAddressableStorage,
@@ -0,0 +1,164 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.server;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import build.bazel.remote.execution.v2.Directory;
+import build.bazel.remote.execution.v2.DirectoryNode;
+import build.bazel.remote.execution.v2.FileNode;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.v1test.Digest;
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ValidatedDirectoriesTest {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+
+  private final ValidatedDirectories validatedDirectories =
+      new ValidatedDirectories(/* maxEntries= */ 1024);
+  private final List<String> inputFiles = new ArrayList<>();
+  private final List<String> inputDirectories = new ArrayList<>();
+  private final List<build.bazel.remote.execution.v2.Digest> inputDigests = new ArrayList<>();
+  private final Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex =
+      new HashMap<>();
+
+  private boolean splice(ValidatedDirectories.Key key, String directoryPath) {
+    return validatedDirectories.splice(
+        key,
+        directoryPath,
+        directoriesIndex,
+        inputFiles::add,
+        inputDirectories::add,
+        inputDigests::add);
+  }
+
+  private ValidatedDirectories.Key index(Directory directory) {
+    Digest digest = DIGEST_UTIL.compute(directory);
+    directoriesIndex.put(DigestUtil.toDigest(digest), directory);
+    return new ValidatedDirectories.Key(digest, /* allowSymlinkTargetAbsolute= */ false);
+  }
+
+  @Test
+  public void validatedDirectoryIsSplicedBelowAnotherPath() {
+    build.bazel.remote.execution.v2.Digest fileDigest =
+        DigestUtil.toDigest(DIGEST_UTIL.compute(ByteString.copyFromUtf8("file")));
+    FileNode file = FileNode.newBuilder().setName("file").setDigest(fileDigest).build();
+    Directory subDirectory = Directory.newBuilder().addFiles(file).build();
+    ValidatedDirectories.Key subKey = index(subDirectory);
+    Directory directory =
+        Directory.newBuilder()
+            .addFiles(file)
+            .addDirectories(
+                DirectoryNode.newBuilder()
+                    .setName("sub")
+                    .setDigest(DigestUtil.toDigest(subKey.directoryDigest())))
+            .build();
+    ValidatedDirectories.Key key = index(directory);
+    assertThat(splice(key, "a")).isFalse();
+
+    validatedDirectories.put(subKey, subDirectory, /* validationNanos= */ 0);
+    validatedDirectories.put(key, directory, /* validationNanos= */ 0);
+
+    assertThat(splice(key, "b/c")).isTrue();
+    assertThat(inputFiles).containsExactly("b/c/file", "b/c/sub/file");
+    assertThat(inputDirectories).containsExactly("b/c/sub");
+    assertThat(inputDigests).containsExactly(fileDigest, fileDigest);
+  }
+
+  @Test
+  public void directoryIsNotSplicedWithoutItsChildren() {
+    Directory subDirectory =
+        Directory.newBuilder()
+            .addDirectories(
+                DirectoryNode.newBuilder()
+                    .setName("leaf")
+                    .setDigest(DigestUtil.toDigest(DIGEST_UTIL.empty())))
+            .build();
+    ValidatedDirectories.Key subKey = index(subDirectory);
+    Directory directory =
+        Directory.newBuilder()
+            .addDirectories(
+                DirectoryNode.newBuilder()
+                    .setName("sub")
+                    .setDigest(DigestUtil.toDigest(subKey.directoryDigest())))
+            .build();
+    ValidatedDirectories.Key key = index(directory);
+    validatedDirectories.put(key, directory, /* validationNanos= */ 0);
+
+    // the child was not validated, as when it had violations
+    assertThat(splice(key, "")).isFalse();
+    assertThat(inputFiles).isEmpty();
+    assertThat(inputDirectories).isEmpty();
+  }
+
+  @Test
+  public void directoryIsValidatedPerOptions() {
+    Digest directoryDigest = DIGEST_UTIL.compute(ByteString.copyFromUtf8("directory"));
+    validatedDirectories.put(
+        new ValidatedDirectories.Key(directoryDigest, /* allowSymlinkTargetAbsolute= */ true),
+        Directory.getDefaultInstance(),
+        /* validationNanos= */ 0);
+
+    assertThat(
+            splice(
+                new ValidatedDirectories.Key(
+                    directoryDigest, /* allowSymlinkTargetAbsolute= */ false),
+                ""))
+        .isFalse();
+  }
+
+  @Test
+  public void directoryMissingFromIndexIsNotSpliced() {
+    Directory leaf = Directory.getDefaultInstance();
+    ValidatedDirectories.Key leafKey =
+        new ValidatedDirectories.Key(DIGEST_UTIL.empty(), /* allowSymlinkTargetAbsolute= */ false);
+    Directory subDirectory =
+        Directory.newBuilder()
+            .addDirectories(
+                DirectoryNode.newBuilder()
+                    .setName("leaf")
+                    .setDigest(DigestUtil.toDigest(DIGEST_UTIL.empty())))
+            .build();
+    ValidatedDirectories.Key subKey = index(subDirectory);
+    build.bazel.remote.execution.v2.Digest subDirectoryDigest =
+        DigestUtil.toDigest(subKey.directoryDigest());
+    Directory directory =
+        Directory.newBuilder()
+            .addDirectories(
+                DirectoryNode.newBuilder().setName("sub").setDigest(subDirectoryDigest))
+            .build();
+    ValidatedDirectories.Key key = index(directory);
+    validatedDirectories.put(leafKey, leaf, /* validationNanos= */ 0);
+    validatedDirectories.put(subKey, subDirectory, /* validationNanos= */ 0);
+    validatedDirectories.put(key, directory, /* validationNanos= */ 0);
+    assertThat(splice(key, "")).isTrue();
+
+    directoriesIndex.remove(subDirectoryDigest);
+
+    assertThat(splice(key, "")).isFalse();
+    // the entry is invalidated, and is not spliced once the directory returns
+    index(subDirectory);
+    assertThat(splice(key, "")).isFalse();
+  }
+}
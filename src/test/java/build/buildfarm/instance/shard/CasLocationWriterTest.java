@@ -0,0 +1,176 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import build.buildfarm.instance.shard.CasWorkerMap.Adjustment;
+import build.buildfarm.v1test.Digest;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CasLocationWriterTest {
+  private static final Digest DIGEST1 = Digest.newBuilder().setHash("abc").setSize(1).build();
+  private static final Digest DIGEST2 = Digest.newBuilder().setHash("xyz").setSize(2).build();
+  private static final Digest DIGEST3 = Digest.newBuilder().setHash("def").setSize(3).build();
+
+  private final List<Map<Digest, Adjustment>> batches = new ArrayList<>();
+
+  private CasLocationWriter newWriter(int maxPending) {
+    // window is unused without start()
+    return new CasLocationWriter(batches::add, 1000, maxPending);
+  }
+
+  @Test
+  public void changesAreCoalescedByBlobAndWorker() throws IOException {
+    CasLocationWriter writer = newWriter(100);
+    writer.add(ImmutableList.of(DIGEST1, DIGEST2), "worker1");
+    writer.add(ImmutableList.of(DIGEST1), "worker2");
+    writer.remove(ImmutableList.of(DIGEST1), "worker1");
+
+    writer.flush();
+
+    assertThat(batches).hasSize(1);
+    Map<Digest, Adjustment> batch = batches.get(0);
+    assertThat(batch.get(DIGEST1))
+        .isEqualTo(new Adjustment(ImmutableSet.of("worker2"), ImmutableSet.of("worker1")));
+    assertThat(batch.get(DIGEST2))
+        .isEqualTo(new Adjustment(ImmutableSet.of("worker1"), ImmutableSet.of()));
+  }
+
+  @Test
+  public void emptyBufferIsNotWritten() throws IOException {
+    newWriter(100).flush();
+
+    assertThat(batches).isEmpty();
+  }
+
+  @Test
+  public void fullBufferIsWrittenByCaller() throws IOException {
+    CasLocationWriter writer = newWriter(2);
+    writer.add(ImmutableList.of(DIGEST1, DIGEST2), "worker1");
+    assertThat(batches).isEmpty();
+
+    writer.add(ImmutableList.of(DIGEST3), "worker1");
+
+    // written before the changes of the caller are buffered
+    assertThat(batches).hasSize(1);
+    assertThat(batches.get(0).keySet()).containsExactly(DIGEST1, DIGEST2);
+  }
+
+  @Test
+  public void failingWritesBoundBufferAndRejectOnlyUnbufferedChanges() throws IOException {
+    List<Map<Digest, Adjustment>> attempts = new ArrayList<>();
+    CasLocationWriter writer =
+        new CasLocationWriter(
+            adjustments -> {
+              attempts.add(adjustments);
+              throw new IOException("unavailable");
+            },
+            1000,
+            2);
+    // accepted without a write
+    writer.add(ImmutableList.of(DIGEST1, DIGEST2), "worker1");
+    assertThat(attempts).isEmpty();
+
+    // the full buffer cannot be written, so these are not accepted
+    assertThrows(IOException.class, () -> writer.add(ImmutableList.of(DIGEST3), "worker1"));
+    assertThrows(IOException.class, () -> writer.add(ImmutableList.of(DIGEST3), "worker2"));
+
+    assertThat(attempts).hasSize(2);
+    for (Map<Digest, Adjustment> attempt : attempts) {
+      assertThat(attempt.keySet()).containsExactly(DIGEST1, DIGEST2);
+    }
+  }
+
+  @Test
+  public void failedBatchIsDroppedBeyondBufferLimit() throws IOException {
+    List<Map<Digest, Adjustment>> attempts = new ArrayList<>();
+    AtomicReference<CasLocationWriter> writerRef = new AtomicReference<>();
+    CasLocationWriter writer =
+        new CasLocationWriter(
+            adjustments -> {
+              attempts.add(adjustments);
+              if (attempts.size() == 1) {
+                // changes accepted while the batch is written fill the buffer
+                writerRef.get().add(ImmutableList.of(DIGEST3), "worker1");
+                writerRef.get().add(ImmutableList.of(DIGEST1), "worker2");
+                throw new IOException("unavailable");
+              }
+            },
+            1000,
+            2);
+    writerRef.set(writer);
+    writer.add(ImmutableList.of(DIGEST1, DIGEST2), "worker1");
+    assertThrows(IOException.class, writer::flush);
+
+    writer.flush();
+
+    assertThat(attempts).hasSize(2);
+    Map<Digest, Adjustment> retry = attempts.get(1);
+    assertThat(retry.keySet()).containsExactly(DIGEST1, DIGEST3);
+    assertThat(retry.get(DIGEST1))
+        .isEqualTo(new Adjustment(ImmutableSet.of("worker2"), ImmutableSet.of()));
+  }
+
+  @Test
+  public void failedBatchIsRetriedWithoutOverridingLaterChanges() throws IOException {
+    List<Map<Digest, Adjustment>> attempts = new ArrayList<>();
+    CasLocationWriter writer =
+        new CasLocationWriter(
+            adjustments -> {
+              attempts.add(adjustments);
+              if (attempts.size() == 1) {
+                throw new IOException("unavailable");
+              }
+            },
+            1000,
+            100);
+    writer.add(ImmutableList.of(DIGEST1, DIGEST2), "worker1");
+    assertThrows(IOException.class, writer::flush);
+
+    writer.remove(ImmutableList.of(DIGEST1), "worker1");
+    writer.flush();
+
+    assertThat(attempts).hasSize(2);
+    Map<Digest, Adjustment> retry = attempts.get(1);
+    assertThat(retry.get(DIGEST1))
+        .isEqualTo(new Adjustment(ImmutableSet.of(), ImmutableSet.of("worker1")));
+    assertThat(retry.get(DIGEST2))
+        .isEqualTo(new Adjustment(ImmutableSet.of("worker1"), ImmutableSet.of()));
+  }
+
+  @Test
+  public void stopWritesBufferedChanges() throws IOException, InterruptedException {
+    CasLocationWriter writer = newWriter(100);
+    writer.start();
+    writer.add(ImmutableList.of(DIGEST1), "worker1");
+
+    writer.stop();
+
+    assertThat(batches).hasSize(1);
+    assertThat(batches.get(0).keySet()).containsExactly(DIGEST1);
+  }
+}
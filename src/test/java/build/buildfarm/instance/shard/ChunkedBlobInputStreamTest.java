@@ -0,0 +1,181 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertThrows;
+
+import build.buildfarm.instance.shard.ChunkedBlobInputStream.RangeReader;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ChunkedBlobInputStreamTest {
+  private static final ByteString CONTENT = ByteString.copyFromUtf8("0123456789abcdefghijklmnopq");
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final CountDownLatch released = new CountDownLatch(1);
+
+  @After
+  public void tearDown() {
+    released.countDown();
+    executor.shutdownNow();
+  }
+
+  private static InputStream range(long offset, long limit) {
+    return CONTENT.substring((int) offset, (int) (offset + limit)).newInput();
+  }
+
+  private byte[] readAll(RangeReader reader, Iterable<String> sources, long offset)
+      throws IOException {
+    try (InputStream in =
+        new ChunkedBlobInputStream(
+            reader,
+            sources,
+            offset,
+            CONTENT.size() - offset,
+            /* chunkSize= */ 4,
+            /* window= */ 2,
+            executor)) {
+      return in.readAllBytes();
+    }
+  }
+
+  @Test
+  public void chunksAreReassembledInOrder() throws IOException {
+    Set<String> usedSources = ConcurrentHashMap.newKeySet();
+    RangeReader reader =
+        (source, offset, limit) -> {
+          usedSources.add(source);
+          return range(offset, limit);
+        };
+
+    byte[] content = readAll(reader, ImmutableList.of("a", "b", "c"), /* offset= */ 3);
+
+    assertThat(ByteString.copyFrom(content)).isEqualTo(CONTENT.substring(3));
+    assertThat(usedSources).isNotEmpty();
+  }
+
+  @Test
+  public void chunksOfFailedSourceAreFetchedByOthers() throws IOException {
+    RangeReader reader =
+        (source, offset, limit) -> {
+          if (source.equals("failing")) {
+            throw new IOException("unavailable");
+          }
+          return range(offset, limit);
+        };
+
+    byte[] content = readAll(reader, ImmutableList.of("failing", "ok"), /* offset= */ 0);
+
+    assertThat(ByteString.copyFrom(content)).isEqualTo(CONTENT);
+  }
+
+  @Test
+  public void chunksOfStalledSourceAreStolen() throws IOException {
+    RangeReader reader =
+        (source, offset, limit) -> {
+          if (source.equals("stalled")) {
+            try {
+              released.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            throw new IOException("released");
+          }
+          return range(offset, limit);
+        };
+
+    byte[] content = readAll(reader, ImmutableList.of("stalled", "fast"), /* offset= */ 0);
+
+    assertThat(ByteString.copyFrom(content)).isEqualTo(CONTENT);
+  }
+
+  @Test
+  public void slowerInputOfStolenChunkIsClosed() throws Exception {
+    CountDownLatch stalledOpened = new CountDownLatch(1);
+    CountDownLatch stalledClosed = new CountDownLatch(1);
+    RangeReader reader =
+        (source, offset, limit) -> {
+          if (source.equals("stalled")) {
+            stalledOpened.countDown();
+            CountDownLatch closed = new CountDownLatch(1);
+            return new InputStream() {
+              @Override
+              public int read() throws IOException {
+                try {
+                  closed.await();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+                throw new IOException("closed");
+              }
+
+              @Override
+              public void close() {
+                closed.countDown();
+                stalledClosed.countDown();
+              }
+            };
+          }
+          // ensure that the stalled source is fetching a chunk
+          try {
+            stalledOpened.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return range(offset, limit);
+        };
+
+    try (InputStream in =
+        new ChunkedBlobInputStream(
+            reader,
+            ImmutableList.of("stalled", "fast"),
+            /* offset= */ 0,
+            CONTENT.size(),
+            /* chunkSize= */ 4,
+            /* window= */ 2,
+            executor)) {
+      byte[] content = in.readNBytes(CONTENT.size());
+
+      assertThat(ByteString.copyFrom(content)).isEqualTo(CONTENT);
+      // closed by the completion of the stolen chunk, before the stream is closed
+      assertThat(stalledClosed.await(10, SECONDS)).isTrue();
+    }
+  }
+
+  @Test
+  public void readFailsWhenEverySourceFails() {
+    RangeReader reader =
+        (source, offset, limit) -> {
+          throw new IOException("unavailable");
+        };
+
+    assertThrows(
+        IOException.class, () -> readAll(reader, ImmutableList.of("a", "b"), /* offset= */ 0));
+  }
+}
@@ -0,0 +1,329 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import build.buildfarm.common.config.Backplane.QUEUE_ENTRY_ENCODING;
+import build.buildfarm.common.redis.RedisHashMap;
+import build.buildfarm.v1test.DispatchedOperation;
+import build.buildfarm.v1test.ExecuteEntry;
+import build.buildfarm.v1test.QueueEntry;
+import com.github.fppt.jedismock.RedisServer;
+import com.google.common.collect.ImmutableList;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.protobuf.util.JsonFormat;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaInteger;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.OneArgFunction;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.luaj.vm2.lib.jse.JsePlatform;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.Protocol;
+
+/**
+ * The script is evaluated here with luaj against jedis-mock, whose own scripting does not provide
+ * cjson, with cjson implemented by gson.
+ */
+@RunWith(JUnit4.class)
+public class DispatchScriptTest {
+  private static final String QUEUE = "ExecutionQueue";
+  private static final String DEQUEUE = QUEUE + "_dequeue";
+  private static final String DISPATCHED = "DispatchedOperations";
+  private static final long REQUEUE_AT = 123;
+  private static final String RESET_MESSAGE =
+      "{\"operation\":{\"name\":\"" + DispatchScript.EXECUTION_NAME_PLACEHOLDER + "\"}}";
+
+  private final List<List<String>> published = new ArrayList<>();
+  private RedisServer redisServer;
+  private JedisPooled jedis;
+  private DispatchedDeadlines dispatchedDeadlines;
+  private DispatchScript dispatchScript;
+
+  @Before
+  public void setUp() throws IOException {
+    redisServer = RedisServer.newRedisServer(0, InetAddress.getByName("localhost")).start();
+    jedis = new JedisPooled(redisServer.getHost(), redisServer.getBindPort());
+    dispatchedDeadlines = new DispatchedDeadlines("DispatchedDeadlines", /* slices= */ 4);
+    dispatchScript = newDispatchScript(dispatchedDeadlines);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    jedis.close();
+    redisServer.stop();
+  }
+
+  private static DispatchScript newDispatchScript(DispatchedDeadlines dispatchedDeadlines) {
+    return new DispatchScript(
+        new RedisHashMap(DISPATCHED),
+        DISPATCHED,
+        "Dispatching:",
+        "OperationChannel:",
+        () -> REQUEUE_AT,
+        () -> RESET_MESSAGE,
+        dispatchedDeadlines);
+  }
+
+  private static QueueEntry queueEntry(String executionName) {
+    return QueueEntry.newBuilder()
+        .setExecuteEntry(ExecuteEntry.newBuilder().setOperationName(executionName))
+        .build();
+  }
+
+  private static LuaTable table(List<String> values) {
+    LuaTable table = new LuaTable();
+    for (int i = 0; i < values.size(); i++) {
+      table.set(i + 1, LuaValue.valueOf(values.get(i)));
+    }
+    return table;
+  }
+
+  private static LuaValue fromReply(Object reply) {
+    if (reply == null) {
+      return LuaValue.FALSE;
+    }
+    if (reply instanceof Long) {
+      return LuaInteger.valueOf((long) (Long) reply);
+    }
+    if (reply instanceof byte[]) {
+      return LuaValue.valueOf((byte[]) reply);
+    }
+    if (reply instanceof List) {
+      LuaTable table = new LuaTable();
+      int i = 1;
+      for (Object element : (List<?>) reply) {
+        table.set(i++, fromReply(element));
+      }
+      return table;
+    }
+    return LuaValue.valueOf(reply.toString());
+  }
+
+  private static LuaValue fromJson(JsonElement element) {
+    if (element.isJsonObject()) {
+      LuaTable table = new LuaTable();
+      for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+        table.set(entry.getKey(), fromJson(entry.getValue()));
+      }
+      return table;
+    }
+    if (element.isJsonArray()) {
+      LuaTable table = new LuaTable();
+      int i = 1;
+      for (JsonElement child : element.getAsJsonArray()) {
+        table.set(i++, fromJson(child));
+      }
+      return table;
+    }
+    if (element.isJsonNull()) {
+      return LuaValue.NIL;
+    }
+    JsonPrimitive primitive = element.getAsJsonPrimitive();
+    if (primitive.isBoolean()) {
+      return LuaValue.valueOf(primitive.getAsBoolean());
+    }
+    if (primitive.isNumber()) {
+      return LuaValue.valueOf(primitive.getAsDouble());
+    }
+    return LuaValue.valueOf(primitive.getAsString());
+  }
+
+  private LuaValue redisCall(Varargs varargs) {
+    String command = varargs.checkjstring(1).toUpperCase(Locale.ROOT);
+    String[] args = new String[varargs.narg() - 1];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = varargs.checkjstring(i + 2);
+    }
+    if (command.equals("PUBLISH")) {
+      published.add(ImmutableList.copyOf(args));
+    }
+    return fromReply(jedis.sendCommand(Protocol.Command.valueOf(command), args));
+  }
+
+  private Globals newGlobals(List<String> keys, List<String> args) {
+    Globals globals = JsePlatform.standardGlobals();
+    globals.set("KEYS", table(keys));
+    globals.set("ARGV", table(args));
+    LuaTable redis = new LuaTable();
+    redis.set(
+        "call",
+        new VarArgFunction() {
+          @Override
+          public Varargs invoke(Varargs varargs) {
+            return redisCall(varargs);
+          }
+        });
+    globals.set("redis", redis);
+    LuaTable cjson = new LuaTable();
+    cjson.set(
+        "decode",
+        new OneArgFunction() {
+          @Override
+          public LuaValue call(LuaValue value) {
+            try {
+              return fromJson(JsonParser.parseString(value.checkjstring()));
+            } catch (JsonParseException e) {
+              throw new LuaError(e.getMessage());
+            }
+          }
+        });
+    cjson.set(
+        "encode",
+        new OneArgFunction() {
+          @Override
+          public LuaValue call(LuaValue value) {
+            // redis' cjson escapes forward slashes
+            return LuaValue.valueOf(new Gson().toJson(value.checkjstring()).replace("/", "\\/"));
+          }
+        });
+    globals.set("cjson", cjson);
+    return globals;
+  }
+
+  /** Evaluate the script for QUEUE as redis would, returning its value and name, or null. */
+  private List<String> eval(DispatchScript script) {
+    LuaValue result =
+        newGlobals(script.keys(QUEUE), script.args()).load(DispatchScript.SCRIPT).call();
+    if (!result.istable()) {
+      return null;
+    }
+    return ImmutableList.of(result.get(1).tojstring(), result.get(2).tojstring());
+  }
+
+  private Double deadline(String executionName) {
+    return jedis.zscore(
+        dispatchedDeadlines.getSlicePrefix() + dispatchedDeadlines.slice(executionName),
+        executionName);
+  }
+
+  @Test
+  public void jsonEntryIsDispatched() throws Exception {
+    QueueEntry queueEntry = queueEntry("operations/a");
+    String value = QueueEntryCodec.encode(queueEntry, QUEUE_ENTRY_ENCODING.JSON);
+    jedis.lpush(QUEUE, value);
+    jedis.set("Dispatching:operations/a", "");
+
+    assertThat(eval(dispatchScript)).containsExactly(value, "operations/a").inOrder();
+
+    assertThat(jedis.llen(QUEUE)).isEqualTo(0);
+    assertThat(jedis.llen(DEQUEUE)).isEqualTo(0);
+    DispatchedOperation.Builder dispatchedOperation = DispatchedOperation.newBuilder();
+    JsonFormat.parser().merge(jedis.hget(DISPATCHED, "operations/a"), dispatchedOperation);
+    assertThat(dispatchedOperation.build())
+        .isEqualTo(
+            DispatchedOperation.newBuilder()
+                .setQueueEntry(queueEntry)
+                .setRequeueAt(REQUEUE_AT)
+                .build());
+    assertThat(jedis.exists("Dispatching:operations/a")).isFalse();
+    assertThat(deadline("operations/a")).isEqualTo((double) REQUEUE_AT);
+    assertThat(published).hasSize(1);
+    assertThat(published.get(0).get(0)).isEqualTo("OperationChannel:operations/a");
+    JsonObject message = JsonParser.parseString(published.get(0).get(1)).getAsJsonObject();
+    assertThat(message.getAsJsonObject("operation").get("name").getAsString())
+        .isEqualTo("operations/a");
+  }
+
+  @Test
+  public void dispatchedRecordIsNotReplaced() throws Exception {
+    jedis.lpush(
+        QUEUE, QueueEntryCodec.encode(queueEntry("operations/a"), QUEUE_ENTRY_ENCODING.JSON));
+    jedis.hset(DISPATCHED, "operations/a", "dispatched");
+
+    assertThat(eval(dispatchScript).get(1)).isEqualTo("operations/a");
+
+    assertThat(jedis.hget(DISPATCHED, "operations/a")).isEqualTo("dispatched");
+  }
+
+  @Test
+  public void binaryEntryIsMovedToDequeue() throws Exception {
+    String value = QueueEntryCodec.encode(queueEntry("operations/a"), QUEUE_ENTRY_ENCODING.BINARY);
+    jedis.lpush(QUEUE, value);
+
+    assertThat(eval(dispatchScript)).containsExactly(value, "").inOrder();
+
+    assertThat(jedis.llen(QUEUE)).isEqualTo(0);
+    assertThat(jedis.lrange(DEQUEUE, 0, -1)).containsExactly(value);
+    assertThat(jedis.hlen(DISPATCHED)).isEqualTo(0);
+    assertThat(deadline("operations/a")).isNull();
+    assertThat(published).isEmpty();
+  }
+
+  @Test
+  public void entryWithoutNameIsMovedToDequeue() throws Exception {
+    String value = QueueEntryCodec.encode(queueEntry(""), QUEUE_ENTRY_ENCODING.JSON);
+    jedis.lpush(QUEUE, value);
+
+    assertThat(eval(dispatchScript)).containsExactly(value, "").inOrder();
+
+    assertThat(jedis.lrange(DEQUEUE, 0, -1)).containsExactly(value);
+    assertThat(jedis.hlen(DISPATCHED)).isEqualTo(0);
+  }
+
+  @Test
+  public void emptyQueueDispatchesNothing() {
+    assertThat(eval(dispatchScript)).isNull();
+
+    assertThat(jedis.hlen(DISPATCHED)).isEqualTo(0);
+    assertThat(published).isEmpty();
+  }
+
+  @Test
+  public void earlierDeadlineIsKept() throws Exception {
+    jedis.zadd(
+        dispatchedDeadlines.getSlicePrefix() + dispatchedDeadlines.slice("operations/a"),
+        REQUEUE_AT - 100,
+        "operations/a");
+    jedis.lpush(
+        QUEUE, QueueEntryCodec.encode(queueEntry("operations/a"), QUEUE_ENTRY_ENCODING.JSON));
+
+    eval(dispatchScript);
+
+    assertThat(deadline("operations/a")).isEqualTo((double) (REQUEUE_AT - 100));
+  }
+
+  @Test
+  public void deadlinesAreOptional() throws Exception {
+    jedis.lpush(
+        QUEUE, QueueEntryCodec.encode(queueEntry("operations/a"), QUEUE_ENTRY_ENCODING.JSON));
+
+    assertThat(eval(newDispatchScript(/* dispatchedDeadlines= */ null)).get(1))
+        .isEqualTo("operations/a");
+
+    assertThat(jedis.hexists(DISPATCHED, "operations/a")).isTrue();
+    assertThat(jedis.keys(dispatchedDeadlines.getSlicePrefix() + "*")).isEmpty();
+  }
+}
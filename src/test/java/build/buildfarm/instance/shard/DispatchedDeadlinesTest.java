@@ -0,0 +1,97 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.google.common.collect.Iterables;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.resps.Tuple;
+
+@RunWith(JUnit4.class)
+public class DispatchedDeadlinesTest {
+  private RedisServer redisServer;
+  private JedisPooled jedis;
+  private DispatchedDeadlines dispatchedDeadlines;
+
+  @Before
+  public void setUp() throws IOException {
+    redisServer = RedisServer.newRedisServer(0, InetAddress.getByName("localhost")).start();
+    jedis = new JedisPooled(redisServer.getHost(), redisServer.getBindPort());
+    dispatchedDeadlines = new DispatchedDeadlines("DispatchedDeadlines", /* slices= */ 1);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    jedis.close();
+    redisServer.stop();
+  }
+
+  @Test
+  public void overdueReturnsEarliestDeadlines() {
+    dispatchedDeadlines.add(jedis, "a", 30);
+    dispatchedDeadlines.add(jedis, "b", 10);
+    dispatchedDeadlines.add(jedis, "c", 50);
+    // a later deadline does not replace an earlier one
+    dispatchedDeadlines.add(jedis, "b", 40);
+
+    List<Tuple> overdue = dispatchedDeadlines.overdue(jedis, 0, /* now= */ 40, /* count= */ 10);
+
+    assertThat(Iterables.transform(overdue, Tuple::getElement)).containsExactly("b", "a").inOrder();
+  }
+
+  @Test
+  public void updateIgnoresChangedEntries() {
+    dispatchedDeadlines.add(jedis, "a", 10);
+    dispatchedDeadlines.add(jedis, "b", 10);
+    List<Tuple> overdue = dispatchedDeadlines.overdue(jedis, 0, /* now= */ 10, /* count= */ 10);
+    // dispatched again since it was found
+    dispatchedDeadlines.add(jedis, "b", 5);
+
+    try (AbstractPipeline pipeline = jedis.pipelined()) {
+      for (Tuple entry : overdue) {
+        dispatchedDeadlines.update(pipeline, 0, entry, /* requeueAt= */ null);
+      }
+    }
+
+    List<Tuple> remaining = dispatchedDeadlines.overdue(jedis, 0, /* now= */ 10, /* count= */ 10);
+    assertThat(Iterables.transform(remaining, Tuple::getElement)).containsExactly("b");
+  }
+
+  @Test
+  public void claimIsHeldByOneOwner() {
+    assertThat(dispatchedDeadlines.claim(jedis, 0, "server1", 60000)).isTrue();
+    assertThat(dispatchedDeadlines.claim(jedis, 0, "server1", 60000)).isTrue();
+    assertThat(dispatchedDeadlines.claim(jedis, 0, "server2", 60000)).isFalse();
+  }
+
+  @Test
+  public void scanIsClaimedOncePerPeriod() {
+    assertThat(dispatchedDeadlines.claimScan(jedis, "server1", 60000)).isTrue();
+    // even by the same owner, so that it scans once in the period
+    assertThat(dispatchedDeadlines.claimScan(jedis, "server1", 60000)).isFalse();
+    assertThat(dispatchedDeadlines.claimScan(jedis, "server2", 60000)).isFalse();
+  }
+}
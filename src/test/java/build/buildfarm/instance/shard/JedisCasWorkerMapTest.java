@@ -6,10 +6,14 @@ import build.buildfarm.common.DigestUtil;
 import build.buildfarm.v1test.Digest;
 import com.github.fppt.jedismock.RedisServer;
 import com.github.fppt.jedismock.server.ServiceOptions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Map;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -54,6 +58,47 @@ public class JedisCasWorkerMapTest {
     assertThat(jedis.ttl(casKey2)).isEqualTo(-2);
   }
 
+  @Test
+  public void testAdjustAll() throws IOException {
+    Digest testDigest1 = Digest.newBuilder().setHash("abc").build();
+    Digest testDigest2 = Digest.newBuilder().setHash("xyz").build();
+
+    String casKey1 = CAS_PREFIX + ":" + DigestUtil.toString(testDigest1);
+    String casKey2 = CAS_PREFIX + ":" + DigestUtil.toString(testDigest2);
+
+    jedis.sadd(casKey1, "worker1");
+    jedisCasWorkerMap.adjustAll(
+        ImmutableMap.of(
+            testDigest1,
+            new CasWorkerMap.Adjustment(ImmutableSet.of("worker2"), ImmutableSet.of("worker1")),
+            testDigest2,
+            new CasWorkerMap.Adjustment(ImmutableSet.of("worker1"), ImmutableSet.of())));
+
+    assertThat(jedis.smembers(casKey1)).containsExactly("worker2");
+    assertThat(jedis.smembers(casKey2)).containsExactly("worker1");
+    assertThat(jedis.ttl(casKey2)).isGreaterThan(0);
+  }
+
+  @Test
+  public void testGetMapAndInsertTimes() throws IOException {
+    Digest testDigest1 = Digest.newBuilder().setHash("abc").build();
+    Digest testDigest2 = Digest.newBuilder().setHash("xyz").build();
+
+    String casKey1 = CAS_PREFIX + ":" + DigestUtil.toString(testDigest1);
+
+    jedis.sadd(casKey1, "worker1", "worker2");
+    jedis.expire(casKey1, 30);
+    long insertedAfter = Instant.now().getEpochSecond() - 30 - 1;
+
+    assertThat(jedisCasWorkerMap.getMap(Arrays.asList(testDigest1, testDigest2)))
+        .containsExactly(testDigest1, ImmutableSet.of("worker1", "worker2"));
+    Map<Digest, Long> insertTimes =
+        jedisCasWorkerMap.insertTimes(Arrays.asList(testDigest1, testDigest2));
+    assertThat(insertTimes.keySet()).containsExactly(testDigest1, testDigest2);
+    assertThat(insertTimes.get(testDigest1)).isAtLeast(insertedAfter);
+    assertThat(insertTimes.get(testDigest1)).isGreaterThan(insertTimes.get(testDigest2));
+  }
+
   @After
   public void tearDown() throws IOException {
     redisServer.stop();
@@ -0,0 +1,70 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import build.bazel.remote.execution.v2.Platform;
+import build.buildfarm.common.config.Backplane.QUEUE_ENTRY_ENCODING;
+import build.buildfarm.v1test.Digest;
+import build.buildfarm.v1test.ExecuteEntry;
+import build.buildfarm.v1test.QueueEntry;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.util.JsonFormat;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class QueueEntryCodecTest {
+  private static final QueueEntry QUEUE_ENTRY =
+      QueueEntry.newBuilder()
+          .setExecuteEntry(
+              ExecuteEntry.newBuilder()
+                  .setOperationName("operation")
+                  .setActionDigest(Digest.newBuilder().setHash("action").setSize(1)))
+          .setQueuedOperationDigest(Digest.newBuilder().setHash("queued-operation").setSize(2))
+          .setPlatform(
+              Platform.newBuilder()
+                  .addProperties(Platform.Property.newBuilder().setName("os").setValue("linux")))
+          .setRequeueAttempts(3)
+          .build();
+
+  @Test
+  public void jsonEncodingRoundTrips() throws InvalidProtocolBufferException {
+    String value = QueueEntryCodec.encode(QUEUE_ENTRY, QUEUE_ENTRY_ENCODING.JSON);
+
+    assertThat(value).isEqualTo(JsonFormat.printer().print(QUEUE_ENTRY));
+    assertThat(QueueEntryCodec.decode(value)).isEqualTo(QUEUE_ENTRY);
+  }
+
+  @Test
+  public void binaryEncodingRoundTrips() throws InvalidProtocolBufferException {
+    String value = QueueEntryCodec.encode(QUEUE_ENTRY, QUEUE_ENTRY_ENCODING.BINARY);
+
+    assertThat(value).startsWith(QueueEntryCodec.BINARY_V1_PREFIX);
+    assertThat(value.length())
+        .isLessThan(QueueEntryCodec.encode(QUEUE_ENTRY, QUEUE_ENTRY_ENCODING.JSON).length());
+    assertThat(QueueEntryCodec.decode(value)).isEqualTo(QUEUE_ENTRY);
+  }
+
+  @Test
+  public void invalidBinaryEncodingThrows() {
+    assertThrows(
+        InvalidProtocolBufferException.class,
+        () -> QueueEntryCodec.decode(QueueEntryCodec.BINARY_V1_PREFIX + "not base64!"));
+  }
+}
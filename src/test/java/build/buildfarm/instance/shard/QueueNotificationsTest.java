@@ -0,0 +1,65 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.time.Duration;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class QueueNotificationsTest {
+  private final QueueNotifications notifications = new QueueNotifications();
+  private final List<String> queueNames = ImmutableList.of("cpu", "gpu");
+
+  @Test
+  public void awaitTimesOutWithoutSignal() throws InterruptedException {
+    long generation = notifications.generation(queueNames);
+    notifications.signal("other");
+
+    assertThat(notifications.await(queueNames, generation, Duration.ofMillis(10))).isFalse();
+  }
+
+  @Test
+  public void signalBeforeAwaitIsNotLost() throws InterruptedException {
+    long generation = notifications.generation(queueNames);
+    notifications.signal("gpu");
+
+    assertThat(notifications.await(queueNames, generation, Duration.ZERO)).isTrue();
+  }
+
+  @Test
+  public void signalWakesWaiter() throws InterruptedException {
+    long generation = notifications.generation(queueNames);
+    Thread signaller =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(10);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              notifications.signal("cpu");
+            });
+    signaller.start();
+
+    assertThat(notifications.await(queueNames, generation, Duration.ofMinutes(1))).isTrue();
+    signaller.join();
+  }
+}
@@ -19,7 +19,9 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.isNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -37,6 +39,7 @@ import build.buildfarm.common.config.Queue;
 import build.buildfarm.common.redis.BalancedRedisQueue;
 import build.buildfarm.common.redis.Cluster;
 import build.buildfarm.common.redis.ClusterPipeline;
+import build.buildfarm.common.redis.Pooled;
 import build.buildfarm.common.redis.RedisClient;
 import build.buildfarm.common.redis.RedisHashMap;
 import build.buildfarm.common.redis.RedisMap;
@@ -222,6 +225,43 @@ public class RedisShardBackplaneTest {
     assertThat(opChange.getReset().getOperation().getName()).isEqualTo(opName);
   }
 
+  @Test
+  public void rejectOperationRequeuesAndNotifies() throws IOException {
+    configs.getBackplane().setQueueNotifications(true);
+    try {
+      UnifiedJedis jedis = mock(UnifiedJedis.class);
+      RedisClient client = new RedisClient(jedis);
+      DistributedState state = new DistributedState();
+      state.dispatchedExecutions = mock(RedisHashMap.class);
+      state.executionQueue = mock(ExecutionQueue.class);
+      state.executions = mock(Executions.class);
+      RedisShardBackplane backplane = createBackplane("reject-operation-test");
+      backplane.start(client, state, "startTime/test:0000", name -> {});
+      final String opName = "op";
+      QueueEntry queueEntry =
+          QueueEntry.newBuilder()
+              .setExecuteEntry(ExecuteEntry.newBuilder().setOperationName(opName).build())
+              .build();
+      when(state.executions.get(jedis, opName))
+          .thenReturn(Operation.newBuilder().setName(opName).build());
+      when(state.dispatchedExecutions.remove(jedis, opName)).thenReturn(true);
+      when(state.executionQueue.getName(queueEntry.getPlatform().getPropertiesList()))
+          .thenReturn("queue");
+
+      backplane.rejectOperation(queueEntry);
+
+      verify(state.executionQueue, times(1))
+          .push(
+              jedis,
+              queueEntry.getPlatform().getPropertiesList(),
+              JsonFormat.printer().print(queueEntry),
+              queueEntry.getExecuteEntry().getExecutionPolicy().getPriority());
+      verify(jedis, times(1)).publish(configs.getBackplane().getQueueChannel(), "queue");
+    } finally {
+      configs.getBackplane().setQueueNotifications(false);
+    }
+  }
+
   @Test
   public void dispatchedOperationsShowProperRequeueAmount0to1()
       throws IOException, InterruptedException {
@@ -255,7 +295,11 @@ public class RedisShardBackplaneTest {
     ExecutionQueueEntry executionQueueEntry =
         new ExecutionQueueEntry(subQueue, /* balancedQueueEntry= */ null, queueEntry);
     when(state.executionQueue.dequeue(
-            eq(jedis), any(List.class), any(LocalResourceSet.class), any(ExecutorService.class)))
+            eq(jedis),
+            any(List.class),
+            any(LocalResourceSet.class),
+            any(ExecutorService.class),
+            isNull()))
         .thenReturn(executionQueueEntry);
     when(subQueue.removeFromDequeue(jedis, null)).thenReturn(true);
     // PRE-ASSERT
@@ -291,7 +335,11 @@ public class RedisShardBackplaneTest {
         .isEqualTo(REQUEUE_AMOUNT_WHEN_READY_TO_REQUEUE);
     verify(state.executionQueue, times(1))
         .dequeue(
-            eq(jedis), any(List.class), any(LocalResourceSet.class), any(ExecutorService.class));
+            eq(jedis),
+            any(List.class),
+            any(LocalResourceSet.class),
+            any(ExecutorService.class),
+            isNull());
     verifyNoMoreInteractions(state.executionQueue);
     verify(subQueue, times(1)).removeFromDequeue(pipeline, null);
     verifyNoMoreInteractions(subQueue);
@@ -337,7 +385,11 @@ public class RedisShardBackplaneTest {
     ExecutionQueueEntry executionQueueEntry =
         new ExecutionQueueEntry(subQueue, /* balancedQueueEntry= */ null, queueEntry);
     when(state.executionQueue.dequeue(
-            eq(jedis), any(List.class), any(LocalResourceSet.class), any(ExecutorService.class)))
+            eq(jedis),
+            any(List.class),
+            any(LocalResourceSet.class),
+            any(ExecutorService.class),
+            isNull()))
         .thenReturn(executionQueueEntry);
     when(state.executionQueue.removeFromDequeue(jedis, executionQueueEntry)).thenReturn(true);
     // PRE-ASSERT
@@ -373,7 +425,11 @@ public class RedisShardBackplaneTest {
         .isEqualTo(REQUEUE_AMOUNT_WHEN_READY_TO_REQUEUE);
     verify(state.executionQueue, times(1))
         .dequeue(
-            eq(jedis), any(List.class), any(LocalResourceSet.class), any(ExecutorService.class));
+            eq(jedis),
+            any(List.class),
+            any(LocalResourceSet.class),
+            any(ExecutorService.class),
+            isNull());
     verifyNoMoreInteractions(state.executionQueue);
     verify(subQueue, times(1)).removeFromDequeue(pipeline, null);
     verifyNoMoreInteractions(subQueue);
@@ -386,6 +442,50 @@ public class RedisShardBackplaneTest {
     verifyNoMoreInteractions(state.dispatchingExecutions);
   }
 
+  @Test
+  public void scriptedDispatchSkipsDispatchPipeline() throws IOException, InterruptedException {
+    configs.getBackplane().setScriptedDispatch(true);
+    try {
+      Pooled jedis = mock(Pooled.class);
+      RedisClient client = new RedisClient(jedis);
+      DistributedState state = new DistributedState();
+      state.dispatchedExecutions = mock(RedisHashMap.class);
+      state.dispatchingExecutions = mock(RedisMap.class);
+      state.executionQueue = mock(ExecutionQueue.class);
+      RedisShardBackplane backplane = createBackplane("scripted-dispatch-test");
+      backplane.start(client, state, "startTime/test:0000", name -> {});
+      QueueEntry queueEntry =
+          QueueEntry.newBuilder()
+              .setExecuteEntry(ExecuteEntry.newBuilder().setOperationName("op").build())
+              .setRequeueAttempts(1)
+              .build();
+      BalancedRedisQueue subQueue = mock(BalancedRedisQueue.class);
+      // the script has recorded the entry as dispatched and published its reset
+      ExecutionQueueEntry executionQueueEntry =
+          new ExecutionQueueEntry(
+              subQueue, /* balancedQueueEntry= */ null, queueEntry, /* dispatched= */ true);
+      when(state.executionQueue.dequeue(
+              eq(jedis),
+              any(List.class),
+              any(LocalResourceSet.class),
+              any(ExecutorService.class),
+              isNull(),
+              any(DispatchScript.class)))
+          .thenReturn(executionQueueEntry);
+
+      QueueEntry readyForRequeue =
+          backplane.dispatchOperation(ImmutableList.of(), new LocalResourceSet());
+
+      assertThat(readyForRequeue.getRequeueAttempts()).isEqualTo(2);
+      verify(jedis, never()).pipelined(any(Executor.class));
+      verifyNoMoreInteractions(subQueue);
+      verifyNoMoreInteractions(state.dispatchedExecutions);
+      verifyNoMoreInteractions(state.dispatchingExecutions);
+    } finally {
+      configs.getBackplane().setScriptedDispatch(false);
+    }
+  }
+
   @Test
   public void completeOperationUndispatches() throws IOException {
     UnifiedJedis jedis = mock(UnifiedJedis.class);
@@ -65,6 +65,7 @@ import build.bazel.remote.execution.v2.ToolDetails;
 import build.buildfarm.actioncache.ActionCache;
 import build.buildfarm.actioncache.ShardActionCache;
 import build.buildfarm.backplane.Backplane;
+import build.buildfarm.common.BlobFilter;
 import build.buildfarm.common.DigestUtil;
 import build.buildfarm.common.DigestUtil.ActionKey;
 import build.buildfarm.common.DigestUtil.HashFunction;
@@ -77,11 +78,13 @@ import build.buildfarm.v1test.ExecuteEntry;
 import build.buildfarm.v1test.QueueEntry;
 import build.buildfarm.v1test.QueuedOperation;
 import build.buildfarm.v1test.QueuedOperationMetadata;
+import build.buildfarm.v1test.Tree;
 import com.github.benmanes.caffeine.cache.AsyncCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
@@ -151,7 +154,8 @@ public class ServerInstanceTest {
   public void setUp() throws IOException, InterruptedException {
     MockitoAnnotations.initMocks(this);
     blobDigests = Maps.newHashMap();
-    ActionCache actionCache = new ShardActionCache(10, mockBackplane, newDirectExecutorService());
+    ActionCache actionCache =
+        new ShardActionCache(64 * 1024, mockBackplane, newDirectExecutorService());
     instance =
         new ServerInstance(
             "shard",
@@ -1275,14 +1279,14 @@ public class ServerInstanceTest {
     when(mockBackplane.getWorkersStartTimeInEpochSecs(activeAndImposterWorkers))
         .thenReturn(workersStartTime);
     long oneDay = 86400L;
+    Map<build.buildfarm.v1test.Digest, Long> insertTimes = new HashMap<>();
     for (Digest digest : availableDigests) {
-      when(mockBackplane.getDigestInsertTime(DigestUtil.fromDigest(digest, digestFunction)))
-          .thenReturn(serverStartTime + oneDay);
+      insertTimes.put(DigestUtil.fromDigest(digest, digestFunction), serverStartTime + oneDay);
     }
     for (Digest digest : digestAvailableOnImposters) {
-      when(mockBackplane.getDigestInsertTime(DigestUtil.fromDigest(digest, digestFunction)))
-          .thenReturn(serverStartTime - oneDay);
+      insertTimes.put(DigestUtil.fromDigest(digest, digestFunction), serverStartTime - oneDay);
     }
+    when(mockBackplane.getDigestsInsertTimes(any(Iterable.class))).thenReturn(insertTimes);
 
     Iterable<Digest> actualMissingDigests =
         instance
@@ -1309,6 +1313,165 @@ public class ServerInstanceTest {
     buildfarmConfigs.getServer().setFindMissingBlobsViaBackplane(false);
   }
 
+  private static StubInstance workerHolding(Set<Digest> heldDigests) {
+    StubInstance worker = mock(StubInstance.class);
+    doAnswer(
+            (Answer<ListenableFuture<Iterable<Digest>>>)
+                invocation -> {
+                  Iterable<Digest> digests = (Iterable<Digest>) invocation.getArguments()[0];
+                  return immediateFuture(
+                      StreamSupport.stream(digests.spliterator(), false)
+                          .filter(digest -> !heldDigests.contains(digest))
+                          .collect(Collectors.toList()));
+                })
+        .when(worker)
+        .findMissingBlobs(
+            anyIterable(), any(DigestFunction.Value.class), any(RequestMetadata.class));
+    return worker;
+  }
+
+  private ServerInstance newBlobFilteringInstance() throws Exception {
+    BuildfarmConfigs buildfarmConfigs = instance.getBuildFarmConfigs();
+    buildfarmConfigs.getServer().setBlobFilterRefreshIntervalSeconds(3600);
+    ServerInstance filteringInstance =
+        new ServerInstance(
+            "shard",
+            mockBackplane,
+            new ShardActionCache(64 * 1024, mockBackplane, newDirectExecutorService()),
+            /* runDispatchedMonitor= */ false,
+            /* dispatchedMonitorIntervalSeconds= */ 0,
+            /* runOperationQueuer= */ false,
+            /* maxBlobSize= */ 0,
+            /* maxCpu= */ 1,
+            /* maxRequeueAttempts= */ 1,
+            /* maxActionTimeout= */ Duration.getDefaultInstance(),
+            /* useDenyList= */ false,
+            /* mergeExecutions= */ true,
+            mockOnStop,
+            CacheBuilder.newBuilder().build(mockInstanceLoader),
+            /* actionCacheFetchService= */ listeningDecorator(newSingleThreadExecutor()),
+            false);
+    buildfarmConfigs.getServer().setBlobFilterRefreshIntervalSeconds(0);
+    return filteringInstance;
+  }
+
+  private void publishBlobFilters(Set<String> workers, Map<String, BlobFilter> filters)
+      throws IOException {
+    Map<String, byte[]> serializedFilters = Maps.transformValues(filters, BlobFilter::toByteArray);
+    when(mockBackplane.getStorageWorkers()).thenReturn(workers);
+    when(mockBackplane.getBlobFilterSizes(workers))
+        .thenReturn(Maps.transformValues(serializedFilters, filter -> (long) filter.length));
+    when(mockBackplane.getBlobFilters(filters.keySet())).thenReturn(serializedFilters);
+  }
+
+  @Test
+  public void findMissingBlobsSkipsWorkersExcludedByBlobFilters() throws Exception {
+    ServerInstance filteringInstance = newBlobFilteringInstance();
+
+    DigestFunction.Value digestFunction = DIGEST_UTIL.getDigestFunction();
+    Digest filtered = DigestUtil.toDigest(DIGEST_UTIL.compute(ByteString.copyFromUtf8("filtered")));
+    Digest located = DigestUtil.toDigest(DIGEST_UTIL.compute(ByteString.copyFromUtf8("located")));
+    Digest missing = DigestUtil.toDigest(DIGEST_UTIL.compute(ByteString.copyFromUtf8("missing")));
+
+    BlobFilter filteredWorkerFilter = BlobFilter.create(16, 0.0001);
+    filteredWorkerFilter.put(filtered.getHash());
+    BlobFilter emptyFilter = BlobFilter.create(16, 0.0001);
+    publishBlobFilters(
+        ImmutableSet.of("filtered", "located", "unused"),
+        ImmutableMap.of(
+            "filtered", filteredWorkerFilter,
+            "located", emptyFilter,
+            "unused", emptyFilter));
+    // arrived on a worker after its filter was published
+    when(mockBackplane.getBlobDigestsWorkers(any(Iterable.class)))
+        .thenReturn(
+            ImmutableMap.of(
+                DigestUtil.fromDigest(located, digestFunction), ImmutableSet.of("located")));
+    StubInstance filteredWorker = workerHolding(ImmutableSet.of(filtered));
+    StubInstance locatedWorker = workerHolding(ImmutableSet.of(located));
+    StubInstance unusedWorker = workerHolding(ImmutableSet.of());
+    when(mockInstanceLoader.load(eq("filtered"))).thenReturn(filteredWorker);
+    when(mockInstanceLoader.load(eq("located"))).thenReturn(locatedWorker);
+    when(mockInstanceLoader.load(eq("unused"))).thenReturn(unusedWorker);
+
+    filteringInstance.refreshBlobFilters();
+    Iterable<Digest> missingDigests =
+        filteringInstance
+            .findMissingBlobs(
+                ImmutableList.of(filtered, located, missing),
+                digestFunction,
+                RequestMetadata.getDefaultInstance())
+            .get();
+
+    assertThat(missingDigests).containsExactly(missing);
+    verify(unusedWorker, never())
+        .findMissingBlobs(
+            anyIterable(), any(DigestFunction.Value.class), any(RequestMetadata.class));
+    // each worker is asked only about the blobs admitted for it
+    verify(filteredWorker, times(1))
+        .findMissingBlobs(
+            eq(ImmutableList.of(filtered)),
+            any(DigestFunction.Value.class),
+            any(RequestMetadata.class));
+    verify(locatedWorker, times(1))
+        .findMissingBlobs(
+            eq(ImmutableList.of(located)),
+            any(DigestFunction.Value.class),
+            any(RequestMetadata.class));
+  }
+
+  @Test
+  public void findMissingBlobsQueriesFilteredWorkersConcurrently() throws Exception {
+    ServerInstance filteringInstance = newBlobFilteringInstance();
+
+    DigestFunction.Value digestFunction = DIGEST_UTIL.getDigestFunction();
+    Digest first = DigestUtil.toDigest(DIGEST_UTIL.compute(ByteString.copyFromUtf8("first")));
+    Digest second = DigestUtil.toDigest(DIGEST_UTIL.compute(ByteString.copyFromUtf8("second")));
+    BlobFilter firstFilter = BlobFilter.create(16, 0.0001);
+    firstFilter.put(first.getHash());
+    firstFilter.put(second.getHash());
+    BlobFilter secondFilter = BlobFilter.create(16, 0.0001);
+    secondFilter.put(second.getHash());
+    publishBlobFilters(
+        ImmutableSet.of("first", "second"),
+        ImmutableMap.of("first", firstFilter, "second", secondFilter));
+    StubInstance firstWorker = mock(StubInstance.class);
+    StubInstance secondWorker = mock(StubInstance.class);
+    SettableFuture<Iterable<Digest>> firstMissing = SettableFuture.create();
+    SettableFuture<Iterable<Digest>> secondMissing = SettableFuture.create();
+    when(firstWorker.findMissingBlobs(
+            anyIterable(), any(DigestFunction.Value.class), any(RequestMetadata.class)))
+        .thenReturn(firstMissing);
+    when(secondWorker.findMissingBlobs(
+            anyIterable(), any(DigestFunction.Value.class), any(RequestMetadata.class)))
+        .thenReturn(secondMissing);
+    when(mockInstanceLoader.load(eq("first"))).thenReturn(firstWorker);
+    when(mockInstanceLoader.load(eq("second"))).thenReturn(secondWorker);
+
+    filteringInstance.refreshBlobFilters();
+    ListenableFuture<Iterable<Digest>> missingDigests =
+        filteringInstance.findMissingBlobs(
+            ImmutableList.of(first, second), digestFunction, RequestMetadata.getDefaultInstance());
+
+    // both workers are asked before either responds
+    verify(firstWorker, times(1))
+        .findMissingBlobs(
+            eq(ImmutableList.of(first, second)),
+            any(DigestFunction.Value.class),
+            any(RequestMetadata.class));
+    verify(secondWorker, times(1))
+        .findMissingBlobs(
+            eq(ImmutableList.of(second)),
+            any(DigestFunction.Value.class),
+            any(RequestMetadata.class));
+    assertThat(missingDigests.isDone()).isFalse();
+    firstMissing.set(ImmutableList.of(second));
+    assertThat(missingDigests.isDone()).isFalse();
+    // the first worker's blob is found, and the second's is held by neither
+    secondMissing.set(ImmutableList.of(second));
+    assertThat(missingDigests.get()).containsExactly(second);
+  }
+
   private Set<String> getRandomSubset(Set<String> input) {
     Random random = new Random();
     int end = random.nextInt(input.size()) + 1;
@@ -1341,4 +1504,84 @@ public class ServerInstanceTest {
         instance.indexCorrelatedInvocations(new java.net.URI("https://" + uuid));
     assertThat(correlatedInvocationsId).isEqualTo("https://" + uuid);
   }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void getTreeFutureCachesOnlyCompleteTrees() throws Exception {
+    BuildfarmConfigs buildfarmConfigs = instance.getBuildFarmConfigs();
+    buildfarmConfigs.getServer().getCaches().setTreeCacheMaxBytes(64 * 1024 * 1024);
+    instance.initializeCaches();
+    String workerName = "worker";
+    ImmutableSet<String> workers = ImmutableSet.of(workerName);
+    when(mockInstanceLoader.load(eq(workerName))).thenReturn(mockWorkerInstance);
+    when(mockBackplane.getStorageWorkers()).thenReturn(workers);
+    doAnswer(
+            (Answer<ListenableFuture<Iterable<Digest>>>)
+                invocation -> {
+                  Iterable<Digest> digests = (Iterable<Digest>) invocation.getArguments()[0];
+                  return immediateFuture(
+                      StreamSupport.stream(digests.spliterator(), false)
+                          .filter((digest) -> !blobDigests.containsKey(digest.getHash()))
+                          .collect(Collectors.toList()));
+                })
+        .when(mockWorkerInstance)
+        .findMissingBlobs(
+            any(Iterable.class), any(DigestFunction.Value.class), any(RequestMetadata.class));
+
+    Directory child =
+        Directory.newBuilder()
+            .addDirectories(DirectoryNode.newBuilder().setName("empty").build())
+            .build();
+    ByteString childBlob = child.toByteString();
+    build.buildfarm.v1test.Digest childDigest = DIGEST_UTIL.compute(childBlob);
+    Directory root =
+        Directory.newBuilder()
+            .addDirectories(
+                DirectoryNode.newBuilder()
+                    .setName("child")
+                    .setDigest(DigestUtil.toDigest(childDigest))
+                    .build())
+            .build();
+    ByteString rootBlob = root.toByteString();
+    build.buildfarm.v1test.Digest rootDigest = DIGEST_UTIL.compute(rootBlob);
+    provideBlob(rootDigest, rootBlob);
+    when(mockBackplane.getBlobLocationSet(eq(rootDigest))).thenReturn(workers);
+
+    Tree incompleteTree =
+        instance
+            .getTreeFuture(
+                "test",
+                rootDigest,
+                newDirectExecutorService(),
+                RequestMetadata.getDefaultInstance())
+            .get();
+    assertThat(incompleteTree.getDirectoriesMap().keySet())
+        .containsExactly(rootDigest.getHash());
+
+    provideBlob(childDigest, childBlob);
+    when(mockBackplane.getBlobLocationSet(eq(childDigest))).thenReturn(workers);
+
+    Tree tree =
+        instance
+            .getTreeFuture(
+                "test",
+                rootDigest,
+                newDirectExecutorService(),
+                RequestMetadata.getDefaultInstance())
+            .get();
+    assertThat(tree.getDirectoriesMap().keySet())
+        .containsExactly(rootDigest.getHash(), childDigest.getHash());
+    assertThat(
+            instance
+                .getTreeFuture(
+                    "test",
+                    rootDigest,
+                    newDirectExecutorService(),
+                    RequestMetadata.getDefaultInstance())
+                .get())
+        .isSameInstanceAs(tree);
+
+    // reset BuildfarmConfigs
+    buildfarmConfigs.getServer().getCaches().setTreeCacheMaxBytes(0);
+  }
 }
@@ -0,0 +1,69 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import build.buildfarm.backplane.Backplane;
+import build.buildfarm.common.BlobFilter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class WorkerBlobFiltersTest {
+  @Test
+  public void filtersAreRetainedSmallestFirstWithinMaxBytes() throws Exception {
+    BlobFilter small = BlobFilter.create(16, 0.0001);
+    BlobFilter large = BlobFilter.create(16 * 1024, 0.0001);
+    byte[] smallBytes = small.toByteArray();
+    byte[] largeBytes = large.toByteArray();
+    Set<String> workers = ImmutableSet.of("small", "large");
+    Backplane backplane = mock(Backplane.class);
+    when(backplane.getStorageWorkers()).thenReturn(workers);
+    when(backplane.getBlobFilterSizes(workers))
+        .thenReturn(
+            ImmutableMap.of("small", (long) smallBytes.length, "large", (long) largeBytes.length));
+    when(backplane.getBlobFilters(ImmutableSet.of("small")))
+        .thenReturn(ImmutableMap.of("small", smallBytes));
+    WorkerBlobFilters filters =
+        new WorkerBlobFilters(backplane, smallBytes.length + largeBytes.length - 1);
+
+    filters.refresh();
+
+    // the small filter excludes the hash, while the large worker is queried without a filter
+    assertThat(filters.get("small").mightContain("hash")).isFalse();
+    assertThat(filters.get("large")).isNull();
+  }
+
+  @Test
+  public void workersWithoutFiltersMightContainAnything() throws Exception {
+    Set<String> workers = ImmutableSet.of("worker");
+    Backplane backplane = mock(Backplane.class);
+    when(backplane.getStorageWorkers()).thenReturn(workers);
+    when(backplane.getBlobFilterSizes(workers)).thenReturn(ImmutableMap.of());
+    when(backplane.getBlobFilters(ImmutableSet.of())).thenReturn(ImmutableMap.of());
+    WorkerBlobFilters filters = new WorkerBlobFilters(backplane, 1024);
+
+    filters.refresh();
+
+    assertThat(filters.get("worker")).isNull();
+  }
+}
@@ -0,0 +1,277 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.worker;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import build.bazel.remote.execution.v2.Action;
+import build.bazel.remote.execution.v2.Command;
+import build.bazel.remote.execution.v2.Directory;
+import build.bazel.remote.execution.v2.DirectoryNode;
+import build.bazel.remote.execution.v2.FileNode;
+import build.buildfarm.cas.cfc.CASFileCache;
+import build.buildfarm.cas.cfc.CASFileCache.PathResult;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.common.io.Directories;
+import build.buildfarm.v1test.Digest;
+import build.buildfarm.v1test.WorkerExecutedMetadata;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.stubbing.Answer;
+
+@RunWith(JUnit4.class)
+public class CFCLinkExecFileSystemTest {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+
+  private final Map<Digest, ByteString> blobs = new HashMap<>();
+  private final Map<build.bazel.remote.execution.v2.Digest, Directory> index = new HashMap<>();
+  private final Map<String, Integer> references = new HashMap<>();
+  private final Command command = Command.newBuilder().addArguments("true").build();
+  private Path root;
+  private Path cacheRoot;
+  private CASFileCache fileCache;
+  private CFCLinkExecFileSystem execFileSystem;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setUp() throws Exception {
+    root = Files.createTempDirectory("CFCLinkExecFileSystemTest");
+    cacheRoot = Files.createDirectory(root.resolve("cache"));
+    fileCache = mock(CASFileCache.class);
+    when(fileCache.put(any(Digest.class), anyBoolean(), any(Executor.class)))
+        .thenAnswer(
+            (Answer<Object>)
+                invocation -> {
+                  Digest digest = (Digest) invocation.getArguments()[0];
+                  boolean isExecutable = (boolean) invocation.getArguments()[1];
+                  String key = CASFileCache.getKey(digest, isExecutable);
+                  Path path = cacheRoot.resolve(key);
+                  boolean isMissed = !Files.exists(path);
+                  if (isMissed) {
+                    Files.write(path, blobs.get(digest).toByteArray());
+                  }
+                  synchronized (references) {
+                    references.merge(key, 1, Integer::sum);
+                  }
+                  return immediateFuture(new PathResult(path, isMissed));
+                });
+    when(fileCache.getPath(anyString()))
+        .thenAnswer(invocation -> cacheRoot.resolve((String) invocation.getArguments()[0]));
+    doAnswer(
+            invocation -> {
+              synchronized (references) {
+                for (String key : (Iterable<String>) invocation.getArguments()[0]) {
+                  references.merge(key, -1, Integer::sum);
+                }
+              }
+              return null;
+            })
+        .when(fileCache)
+        .decrementReferences(any(Iterable.class), any(Iterable.class), any());
+    execFileSystem =
+        new CFCLinkExecFileSystem(
+            root,
+            fileCache,
+            /* owners= */ ImmutableMap.of(),
+            /* linkInputDirectories= */ false,
+            /* linkedInputDirectories= */ ImmutableList.of(),
+            /* execDirPoolSize= */ 1,
+            /* allowSymlinkTargetAbsolute= */ false,
+            /* removeDirectoryService= */ newDirectExecutorService(),
+            /* accessRecorder= */ newDirectExecutorService(),
+            /* fetchService= */ newDirectExecutorService());
+    // normally initialized with start
+    execFileSystem.fileStore = Files.getFileStore(root);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Directories.remove(root, execFileSystem.fileStore);
+  }
+
+  private FileNode file(String name, String content) {
+    ByteString blob = ByteString.copyFromUtf8(content);
+    Digest digest = DIGEST_UTIL.compute(blob);
+    blobs.put(digest, blob);
+    return FileNode.newBuilder().setName(name).setDigest(DigestUtil.toDigest(digest)).build();
+  }
+
+  private build.bazel.remote.execution.v2.Digest put(Directory directory) {
+    build.bazel.remote.execution.v2.Digest digest =
+        DigestUtil.toDigest(DIGEST_UTIL.compute(directory));
+    index.put(digest, directory);
+    return digest;
+  }
+
+  private static DirectoryNode directory(
+      String name, build.bazel.remote.execution.v2.Digest digest) {
+    return DirectoryNode.newBuilder().setName(name).setDigest(digest).build();
+  }
+
+  /* / -> lib/lib.c, src/a.c */
+  private build.bazel.remote.execution.v2.Digest inputRoot(String source) {
+    build.bazel.remote.execution.v2.Digest lib =
+        put(Directory.newBuilder().addFiles(file("lib.c", "int lib;")).build());
+    build.bazel.remote.execution.v2.Digest src =
+        put(Directory.newBuilder().addFiles(file("a.c", source)).build());
+    return put(
+        Directory.newBuilder()
+            .addDirectories(directory("lib", lib))
+            .addDirectories(directory("src", src))
+            .build());
+  }
+
+  private Path createExecDir(String operationName, build.bazel.remote.execution.v2.Digest root)
+      throws Exception {
+    return execFileSystem.createExecDir(
+        operationName,
+        index,
+        DIGEST_UTIL.getDigestFunction(),
+        Action.newBuilder().setInputRootDigest(root).build(),
+        command,
+        /* owner= */ null,
+        WorkerExecutedMetadata.newBuilder());
+  }
+
+  private Object fileKey(Path path) throws IOException {
+    return Files.readAttributes(path, BasicFileAttributes.class, NOFOLLOW_LINKS).fileKey();
+  }
+
+  private int references(String content) {
+    Digest digest = DIGEST_UTIL.compute(ByteString.copyFromUtf8(content));
+    return references.getOrDefault(CASFileCache.getKey(digest, false), 0);
+  }
+
+  private Path pooled() {
+    return root.resolve(".execdirpool");
+  }
+
+  private static long count(Path directory) throws IOException {
+    if (!Files.exists(directory)) {
+      return 0;
+    }
+    try (var children = Files.list(directory)) {
+      return children.count();
+    }
+  }
+
+  @Test
+  public void outputsAreRemovedBeforeReuse() throws Exception {
+    build.bazel.remote.execution.v2.Digest inputRoot = inputRoot("int a;");
+    Path execDirA = createExecDir("a", inputRoot);
+    Object libKey = fileKey(execDirA.resolve("lib/lib.c"));
+    Files.writeString(execDirA.resolve("out"), "output");
+    Files.writeString(execDirA.resolve("src/a.o"), "object");
+    Files.createDirectories(execDirA.resolve("tmp/nested"));
+    execFileSystem.destroyExecDir(execDirA);
+    assertThat(count(pooled())).isEqualTo(1);
+
+    Path execDirB = createExecDir("b", inputRoot);
+
+    assertThat(count(pooled())).isEqualTo(0);
+    assertThat(Files.exists(execDirB.resolve("out"))).isFalse();
+    assertThat(Files.exists(execDirB.resolve("src/a.o"))).isFalse();
+    assertThat(Files.exists(execDirB.resolve("tmp"))).isFalse();
+    assertThat(Files.readString(execDirB.resolve("src/a.c"))).isEqualTo("int a;");
+    // the input was moved into place rather than linked again
+    assertThat(fileKey(execDirB.resolve("lib/lib.c"))).isEqualTo(libKey);
+    verify(fileCache, times(2)).put(any(Digest.class), anyBoolean(), any(Executor.class));
+    assertThat(references("int lib;")).isEqualTo(1);
+    assertThat(references("int a;")).isEqualTo(1);
+  }
+
+  @Test
+  public void replacedInputIsNotPooled() throws Exception {
+    build.bazel.remote.execution.v2.Digest inputRoot = inputRoot("int a;");
+    Path execDirA = createExecDir("a", inputRoot);
+    // the same content, but no longer the cache entry
+    Path source = execDirA.resolve("src/a.c");
+    Files.delete(source);
+    Files.writeString(source, "int a;");
+    execFileSystem.destroyExecDir(execDirA);
+
+    assertThat(Files.exists(execDirA)).isFalse();
+    assertThat(count(pooled())).isEqualTo(0);
+    assertThat(references("int lib;")).isEqualTo(0);
+    assertThat(references("int a;")).isEqualTo(0);
+
+    Path execDirB = createExecDir("b", inputRoot);
+
+    Digest sourceDigest = DIGEST_UTIL.compute(ByteString.copyFromUtf8("int a;"));
+    assertThat(fileKey(execDirB.resolve("src/a.c")))
+        .isEqualTo(fileKey(cacheRoot.resolve(CASFileCache.getKey(sourceDigest, false))));
+    verify(fileCache, times(2)).put(eq(sourceDigest), eq(false), any(Executor.class));
+  }
+
+  @Test
+  public void changedDirectoryIsRebuiltOnReuse() throws Exception {
+    Path execDirA = createExecDir("a", inputRoot("int a;"));
+    Object libKey = fileKey(execDirA.resolve("lib/lib.c"));
+    execFileSystem.destroyExecDir(execDirA);
+
+    Path execDirB = createExecDir("b", inputRoot("int b;"));
+
+    assertThat(count(pooled())).isEqualTo(0);
+    assertThat(Files.readString(execDirB.resolve("src/a.c"))).isEqualTo("int b;");
+    assertThat(fileKey(execDirB.resolve("lib/lib.c"))).isEqualTo(libKey);
+    assertThat(references("int lib;")).isEqualTo(1);
+    assertThat(references("int a;")).isEqualTo(0);
+    assertThat(references("int b;")).isEqualTo(1);
+
+    execFileSystem.destroyExecDir(execDirB);
+    // the pooled dir retains the references of its inputs
+    assertThat(count(pooled())).isEqualTo(1);
+    assertThat(references("int b;")).isEqualTo(1);
+  }
+
+  @Test
+  public void pooledDirsBeyondPoolSizeReleaseReferences() throws Exception {
+    Path execDirA = createExecDir("a", inputRoot("int a;"));
+    Path execDirB = createExecDir("b", inputRoot("int b;"));
+    execFileSystem.destroyExecDir(execDirA);
+    execFileSystem.destroyExecDir(execDirB);
+
+    assertThat(count(pooled())).isEqualTo(1);
+    assertThat(references("int a;")).isEqualTo(0);
+    assertThat(references("int b;")).isEqualTo(1);
+    assertThat(references("int lib;")).isEqualTo(1);
+  }
+}
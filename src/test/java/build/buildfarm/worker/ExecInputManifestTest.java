@@ -0,0 +1,152 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.worker;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import build.bazel.remote.execution.v2.Digest;
+import build.bazel.remote.execution.v2.Directory;
+import build.bazel.remote.execution.v2.DirectoryNode;
+import build.bazel.remote.execution.v2.FileNode;
+import build.bazel.remote.execution.v2.SymlinkNode;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.worker.ExecInputManifest.Diff;
+import build.buildfarm.worker.ExecInputManifest.FileInput;
+import com.google.protobuf.ByteString;
+import java.nio.file.NoSuchFileException;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ExecInputManifestTest {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+
+  private final Map<Digest, Directory> index = new HashMap<>();
+
+  private Digest put(Directory directory) {
+    Digest digest = DigestUtil.toDigest(DIGEST_UTIL.compute(directory));
+    index.put(digest, directory);
+    return digest;
+  }
+
+  private static FileNode file(String name, String content, boolean isExecutable) {
+    return FileNode.newBuilder()
+        .setName(name)
+        .setDigest(DigestUtil.toDigest(DIGEST_UTIL.compute(ByteString.copyFromUtf8(content))))
+        .setIsExecutable(isExecutable)
+        .build();
+  }
+
+  private static DirectoryNode directory(String name, Digest digest) {
+    return DirectoryNode.newBuilder().setName(name).setDigest(digest).build();
+  }
+
+  private Digest sources(String content) {
+    return put(Directory.newBuilder().addFiles(file("a.c", content, false)).build());
+  }
+
+  private Digest root(Digest src, FileNode tool, String link) {
+    return put(
+        Directory.newBuilder()
+            .addFiles(tool)
+            .addDirectories(directory("src", src))
+            .addSymlinks(SymlinkNode.newBuilder().setName("link").setTarget(link))
+            .build());
+  }
+
+  @Test
+  public void manifestFlattensTree() throws NoSuchFileException {
+    Digest src = sources("int a;");
+    FileNode tool = file("tool", "#!/bin/sh", true);
+    Digest root = root(src, tool, "src/a.c");
+
+    ExecInputManifest manifest = ExecInputManifest.of(index, root);
+
+    assertThat(manifest.files())
+        .containsExactly(
+            "tool",
+            new FileInput(tool.getDigest(), true),
+            "src/a.c",
+            new FileInput(file("a.c", "int a;", false).getDigest(), false));
+    assertThat(manifest.symlinks()).containsExactly("link", "src/a.c");
+    assertThat(manifest.directories()).containsExactly("src");
+    assertThat(manifest.directoryDigests()).containsExactly(root, src);
+  }
+
+  @Test
+  public void missingDirectoryIsNotFound() {
+    Digest missing = DigestUtil.toDigest(DIGEST_UTIL.compute(ByteString.copyFromUtf8("missing")));
+    Digest root = put(Directory.newBuilder().addDirectories(directory("dir", missing)).build());
+
+    assertThrows(NoSuchFileException.class, () -> ExecInputManifest.of(index, root));
+  }
+
+  @Test
+  public void diffContainsOnlyChanges() throws NoSuchFileException {
+    FileNode tool = file("tool", "#!/bin/sh", true);
+    ExecInputManifest source =
+        ExecInputManifest.of(index, root(sources("int a;"), tool, "src/a.c"));
+    Digest changedSrc = sources("int b;");
+    ExecInputManifest target = ExecInputManifest.of(index, root(changedSrc, tool, "tool"));
+
+    Diff diff = source.diff(target);
+
+    assertThat(diff.removedFiles().keySet()).containsExactly("src/a.c");
+    assertThat(diff.addedFiles())
+        .containsExactly("src/a.c", new FileInput(file("a.c", "int b;", false).getDigest(), false));
+    assertThat(diff.removedSymlinks()).containsExactly("link");
+    assertThat(diff.addedSymlinks()).containsExactly("link", "tool");
+    assertThat(diff.removedDirectories()).isEmpty();
+    assertThat(diff.addedDirectories()).isEmpty();
+    assertThat(source.sharedDirectories(target)).isEqualTo(0);
+  }
+
+  @Test
+  public void diffOrdersDirectoriesForRemovalAndCreation() throws NoSuchFileException {
+    Digest empty = put(Directory.getDefaultInstance());
+    Digest inner = put(Directory.newBuilder().addDirectories(directory("c", empty)).build());
+    Digest nested = put(Directory.newBuilder().addDirectories(directory("b", inner)).build());
+    ExecInputManifest shallow = ExecInputManifest.of(index, empty);
+    Digest deepRoot = put(Directory.newBuilder().addDirectories(directory("a", nested)).build());
+    ExecInputManifest deep = ExecInputManifest.of(index, deepRoot);
+
+    assertThat(shallow.diff(deep).addedDirectories())
+        .containsExactly("a", "a/b", "a/b/c")
+        .inOrder();
+    assertThat(deep.diff(shallow).removedDirectories())
+        .containsExactly("a/b/c", "a/b", "a")
+        .inOrder();
+    assertThat(shallow.sharedDirectories(deep)).isEqualTo(1);
+  }
+
+  @Test
+  public void identicalManifestsHaveNoDiff() throws NoSuchFileException {
+    Digest root = root(sources("int a;"), file("tool", "#!/bin/sh", true), "src/a.c");
+    ExecInputManifest manifest = ExecInputManifest.of(index, root);
+
+    Diff diff = manifest.diff(ExecInputManifest.of(index, root));
+
+    assertThat(diff.removedFiles()).isEmpty();
+    assertThat(diff.addedFiles()).isEmpty();
+    assertThat(diff.removedSymlinks()).isEmpty();
+    assertThat(diff.addedSymlinks()).isEmpty();
+    assertThat(manifest.sharedDirectories(manifest)).isEqualTo(2);
+  }
+}
@@ -0,0 +1,194 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.worker;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.v1test.Digest;
+import com.google.protobuf.ByteString;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class FuseBlockCacheTest {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+
+  private final ByteString content =
+      ByteString.copyFromUtf8("0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ");
+  private final Digest digest = DIGEST_UTIL.compute(content);
+  private final List<Long> fetchOffsets = Collections.synchronizedList(new ArrayList<>());
+  private final List<Runnable> readAheads = new ArrayList<>();
+  private FuseBlockCache blockCache;
+
+  @Before
+  public void setUp() {
+    blockCache =
+        new FuseBlockCache(
+            (compressor, blobDigest, offset) -> {
+              fetchOffsets.add(offset);
+              return content.substring((int) offset).newInput();
+            },
+            /* blockSize= */ 8,
+            /* readAheadBlocks= */ 4,
+            /* maxSizeInBytes= */ 1024,
+            /* readAheadExecutor= */ readAheads::add);
+  }
+
+  private void runReadAheads() {
+    while (!readAheads.isEmpty()) {
+      readAheads.remove(0).run();
+    }
+  }
+
+  private String read(long offset, int length, boolean sequential) throws IOException {
+    byte[] data = new byte[length];
+    int read = blockCache.read(digest, offset, data, sequential);
+    return new String(data, 0, read, UTF_8);
+  }
+
+  @Test
+  public void randomReadFetchesOnlyItsBlocks() throws IOException {
+    assertThat(read(/* offset= */ 20, /* length= */ 6, /* sequential= */ false))
+        .isEqualTo("klmnop");
+    // the blocks of a read are fetched with one stream
+    assertThat(fetchOffsets).containsExactly(16L);
+    assertThat(readAheads).isEmpty();
+
+    // cached blocks are not fetched again
+    assertThat(read(/* offset= */ 17, /* length= */ 4, /* sequential= */ false))
+        .isEqualTo("hijk");
+    assertThat(fetchOffsets).hasSize(1);
+  }
+
+  @Test
+  public void sequentialReadFetchesAhead() throws IOException {
+    assertThat(read(/* offset= */ 0, /* length= */ 4, /* sequential= */ true)).isEqualTo("0123");
+    // the read does not wait for its read ahead
+    assertThat(readAheads).hasSize(1);
+    runReadAheads();
+    assertThat(read(/* offset= */ 4, /* length= */ 28, /* sequential= */ true))
+        .isEqualTo("456789abcdefghijklmnopqrstuv");
+    assertThat(fetchOffsets).containsExactly(0L);
+    assertThat(readAheads).isEmpty();
+
+    assertThat(read(/* offset= */ 32, /* length= */ 64, /* sequential= */ true))
+        .isEqualTo("wxyzABCDEFGHIJKLMNOPQRSTUVWXYZ");
+    runReadAheads();
+    assertThat(fetchOffsets).containsExactly(0L, 32L).inOrder();
+  }
+
+  @Test
+  public void readBeforeReadAheadFetchesItsBlock() throws IOException {
+    assertThat(read(/* offset= */ 0, /* length= */ 4, /* sequential= */ true)).isEqualTo("0123");
+    assertThat(read(/* offset= */ 8, /* length= */ 4, /* sequential= */ false)).isEqualTo("89ab");
+    assertThat(fetchOffsets).containsExactly(0L, 8L).inOrder();
+
+    // the read ahead stops at the block which was fetched
+    runReadAheads();
+    assertThat(read(/* offset= */ 16, /* length= */ 4, /* sequential= */ false))
+        .isEqualTo("ghij");
+    assertThat(fetchOffsets).containsExactly(0L, 8L, 16L).inOrder();
+  }
+
+  @Test
+  public void concurrentMissesFetchOnce() throws Exception {
+    CountDownLatch fetching = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    FuseBlockCache blockingCache =
+        new FuseBlockCache(
+            (compressor, blobDigest, offset) -> {
+              fetchOffsets.add(offset);
+              fetching.countDown();
+              try {
+                release.await();
+              } catch (InterruptedException e) {
+                throw new IOException(e);
+              }
+              return content.substring((int) offset).newInput();
+            },
+            /* blockSize= */ 8,
+            /* readAheadBlocks= */ 4,
+            /* maxSizeInBytes= */ 1024,
+            /* readAheadExecutor= */ readAheads::add);
+    ExecutorService service = Executors.newFixedThreadPool(2);
+    try {
+      Callable<String> read =
+          () -> {
+            byte[] data = new byte[4];
+            int n = blockingCache.read(digest, 0, data, /* sequential= */ false);
+            return new String(data, 0, n, UTF_8);
+          };
+      Future<String> first = service.submit(read);
+      fetching.await();
+      Future<String> second = service.submit(read);
+      release.countDown();
+
+      assertThat(first.get()).isEqualTo("0123");
+      assertThat(second.get()).isEqualTo("0123");
+      assertThat(fetchOffsets).containsExactly(0L);
+    } finally {
+      service.shutdownNow();
+    }
+  }
+
+  @Test
+  public void rejectedReadAheadClosesStream() throws IOException {
+    AtomicBoolean closed = new AtomicBoolean();
+    FuseBlockCache rejectingCache =
+        new FuseBlockCache(
+            (compressor, blobDigest, offset) ->
+                new FilterInputStream(content.substring((int) offset).newInput()) {
+                  @Override
+                  public void close() throws IOException {
+                    closed.set(true);
+                    super.close();
+                  }
+                },
+            /* blockSize= */ 8,
+            /* readAheadBlocks= */ 4,
+            /* maxSizeInBytes= */ 1024,
+            /* readAheadExecutor= */ command -> {
+              throw new RejectedExecutionException();
+            });
+
+    byte[] data = new byte[4];
+    assertThat(rejectingCache.read(digest, 0, data, /* sequential= */ true)).isEqualTo(4);
+    assertThat(closed.get()).isTrue();
+  }
+
+  @Test
+  public void readPastEndIsEmpty() throws IOException {
+    assertThat(read(/* offset= */ content.size(), /* length= */ 8, /* sequential= */ true))
+        .isEmpty();
+    assertThat(fetchOffsets).isEmpty();
+  }
+}
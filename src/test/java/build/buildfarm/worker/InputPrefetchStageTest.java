@@ -0,0 +1,129 @@
+// Copyright 2025 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.worker;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static org.mockito.Mockito.mock;
+
+import build.bazel.remote.execution.v2.Digest;
+import build.bazel.remote.execution.v2.DigestFunction;
+import build.bazel.remote.execution.v2.Directory;
+import build.bazel.remote.execution.v2.FileNode;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.v1test.ExecuteEntry;
+import build.buildfarm.v1test.QueueEntry;
+import build.buildfarm.v1test.QueuedOperation;
+import build.buildfarm.v1test.Tree;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.longrunning.Operation;
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class InputPrefetchStageTest {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+
+  private static Digest blob(int size) {
+    return DigestUtil.toDigest(DIGEST_UTIL.compute(ByteString.copyFrom(new byte[size])));
+  }
+
+  private static ExecutionContext executionContext(Directory root) {
+    Digest rootDigest = DigestUtil.toDigest(DIGEST_UTIL.compute(root));
+    Operation operation = Operation.newBuilder().setName("prefetch").build();
+    ExecuteEntry executeEntry =
+        ExecuteEntry.newBuilder()
+            .setOperationName(operation.getName())
+            .setActionDigest(DIGEST_UTIL.compute(ByteString.copyFromUtf8("action")))
+            .build();
+    return ExecutionContext.newBuilder()
+        .setOperation(operation)
+        .setQueueEntry(QueueEntry.newBuilder().setExecuteEntry(executeEntry).build())
+        .setTree(
+            Tree.newBuilder()
+                .setRootDigest(DigestUtil.fromDigest(rootDigest, DigestFunction.Value.SHA256))
+                .putDirectories(rootDigest.getHash(), root)
+                .build())
+        .build();
+  }
+
+  @Test
+  public void onlyMissingInputsWithinBudgetArePrefetched() throws Exception {
+    Digest present = blob(10);
+    Digest missing = blob(20);
+    Digest missingTooLarge = blob(200);
+    Directory root =
+        Directory.newBuilder()
+            .addFiles(FileNode.newBuilder().setName("present").setDigest(present))
+            .addFiles(FileNode.newBuilder().setName("missing").setDigest(missing))
+            .addFiles(FileNode.newBuilder().setName("large").setDigest(missingTooLarge))
+            .addFiles(FileNode.newBuilder().setName("empty").setDigest(blob(0)))
+            .build();
+    ExecutionContext executionContext = executionContext(root);
+    QueuedOperation queuedOperation =
+        QueuedOperation.newBuilder().setTree(executionContext.tree).build();
+    List<build.buildfarm.v1test.Digest> prefetched = new ArrayList<>();
+    SettableFuture<Boolean> prefetchFuture = SettableFuture.create();
+    WorkerContext workerContext =
+        new StubWorkerContext() {
+          @Override
+          public QueuedOperation getQueuedOperation(QueueEntry queueEntry) {
+            return queuedOperation;
+          }
+
+          @Override
+          public Iterable<Digest> findMissingInputs(
+              Iterable<Digest> digests, DigestFunction.Value digestFunction) {
+            assertThat(digests).containsExactly(present, missing, missingTooLarge);
+            return ImmutableList.of(missing, missingTooLarge);
+          }
+
+          @Override
+          public ListenableFuture<Boolean> prefetchInput(
+              build.buildfarm.v1test.Digest digest, boolean isExecutable) {
+            prefetched.add(digest);
+            return prefetchFuture;
+          }
+        };
+    InputPrefetchStage owner =
+        new InputPrefetchStage(
+            workerContext,
+            /* output= */ null,
+            /* error= */ null,
+            /* width= */ 1,
+            /* maxBytes= */ 100,
+            /* bytesPerSecond= */ 0);
+    InputPrefetcher inputPrefetcher =
+        new InputPrefetcher(workerContext, executionContext, owner, mock(Executor.class));
+
+    inputPrefetcher.prefetch(Stopwatch.createStarted());
+
+    assertThat(Iterables.transform(prefetched, DigestUtil::toDigest)).containsExactly(missing);
+    // the budget is held until the prefetch completes
+    assertThat(owner.reserve(90)).isFalse();
+    prefetchFuture.set(true);
+    assertThat(owner.reserve(90)).isTrue();
+  }
+}
@@ -30,6 +30,7 @@ import build.buildfarm.v1test.QueuedOperation;
 import build.buildfarm.v1test.WorkerExecutedMetadata;
 import build.buildfarm.worker.resources.ResourceLimits;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.longrunning.Operation;
 import com.google.protobuf.Duration;
 import io.grpc.Deadline;
@@ -157,6 +158,18 @@ class StubWorkerContext implements WorkerContext {
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public Iterable<Digest> findMissingInputs(
+      Iterable<Digest> digests, DigestFunction.Value digestFunction) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public ListenableFuture<Boolean> prefetchInput(
+      build.buildfarm.v1test.Digest digest, boolean isExecutable) {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public void uploadOutputs(
       build.buildfarm.v1test.Digest actionDigest,
@@ -15,6 +15,7 @@
 package build.buildfarm.worker.persistent;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
 
 import build.bazel.remote.execution.v2.Command;
 import build.buildfarm.v1test.Tree;
@@ -25,8 +26,10 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.jimfs.Configuration;
 import com.google.common.jimfs.Jimfs;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -135,4 +138,92 @@ public class ProtoCoordinatorTest {
     assertThat(workRootPaths).containsAtLeastElementsIn(expectedToolInputs);
     assertThat(workRootPaths).containsNoneIn(expectedOpRootFiles);
   }
+
+  private WorkerInputs makeOpRoot(Path opRoot, List<TreeFile> fileInputs) throws Exception {
+    Files.createDirectories(opRoot);
+    Tree tree = WorkerTestUtils.makeTree(opRoot.toString(), fileInputs);
+    WorkFilesContext ctx =
+        WorkFilesContext.fromContext(opRoot, tree, WorkerTestUtils.makeCommand());
+    for (TreeFile file : fileInputs) {
+      Path path = opRoot.resolve(file.path);
+      Files.createDirectories(path.getParent());
+      Files.writeString(path, file.content);
+    }
+    return WorkerInputs.from(ctx, ImmutableList.of());
+  }
+
+  private static Object fileKey(Path path) throws Exception {
+    return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+  }
+
+  @Test
+  public void stagedInputsAreCopiedAndReused() throws Exception {
+    ProtoCoordinator pc = ProtoCoordinator.ofCommonsPool(1);
+    Path fsRoot = jimFsRoot();
+    Path workerExecRoot = fsRoot.resolve("workerExecRoot");
+
+    Path firstOpRoot = fsRoot.resolve("firstOpRoot");
+    WorkerInputs firstInputs =
+        makeOpRoot(
+            firstOpRoot,
+            ImmutableList.of(
+                new TreeFile("file_1", "file contents 1"),
+                new TreeFile("subdir/subdir_file_2", "file contents 2")));
+    pc.stageNontoolInputs(firstInputs, workerExecRoot);
+
+    Path stagedFile = workerExecRoot.resolve("file_1");
+    Path removedFile = workerExecRoot.resolve("subdir/subdir_file_2");
+    Object stagedFileKey = fileKey(stagedFile);
+    // retained inputs are never links to the operation root
+    assertThat(stagedFileKey).isNotEqualTo(fileKey(firstOpRoot.resolve("file_1")));
+    assertThat(Files.readString(stagedFile)).isEqualTo("file contents 1");
+    assertThat(Files.exists(removedFile)).isTrue();
+
+    Path secondOpRoot = fsRoot.resolve("secondOpRoot");
+    WorkerInputs secondInputs =
+        makeOpRoot(
+            secondOpRoot,
+            ImmutableList.of(
+                new TreeFile("file_1", "file contents 1"),
+                new TreeFile("file_3", "file contents 3")));
+    pc.stageNontoolInputs(secondInputs, workerExecRoot);
+
+    // the unchanged input remains staged from the first request
+    assertThat(fileKey(stagedFile)).isEqualTo(stagedFileKey);
+    assertThat(Files.readString(workerExecRoot.resolve("file_3"))).isEqualTo("file contents 3");
+    assertThat(Files.exists(removedFile)).isFalse();
+  }
+
+  @Test
+  public void failedStagingRemovesInputsOnNextRequest() throws Exception {
+    ProtoCoordinator pc = ProtoCoordinator.ofCommonsPool(1);
+    Path fsRoot = jimFsRoot();
+    Path workerExecRoot = fsRoot.resolve("workerExecRoot");
+
+    WorkerInputs firstInputs =
+        makeOpRoot(
+            fsRoot.resolve("firstOpRoot"),
+            ImmutableList.of(new TreeFile("file_1", "file contents 1")));
+    pc.stageNontoolInputs(firstInputs, workerExecRoot);
+
+    Path secondOpRoot = fsRoot.resolve("secondOpRoot");
+    WorkerInputs secondInputs =
+        makeOpRoot(
+            secondOpRoot,
+            ImmutableList.of(
+                new TreeFile("file_2", "file contents 2"),
+                new TreeFile("file_3", "file contents 3")));
+    Files.delete(secondOpRoot.resolve("file_3"));
+    assertThrows(IOException.class, () -> pc.stageNontoolInputs(secondInputs, workerExecRoot));
+
+    WorkerInputs thirdInputs =
+        makeOpRoot(
+            fsRoot.resolve("thirdOpRoot"),
+            ImmutableList.of(new TreeFile("file_4", "file contents 4")));
+    pc.stageNontoolInputs(thirdInputs, workerExecRoot);
+
+    // inputs of both the first and failed requests are removed
+    assertThat(WorkerTestUtils.listFilesRec(workerExecRoot))
+        .containsExactly(workerExecRoot.resolve("file_4"));
+  }
 }
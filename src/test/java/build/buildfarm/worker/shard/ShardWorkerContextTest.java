@@ -14,6 +14,7 @@
 
 package build.buildfarm.worker.shard;
 
+import static build.buildfarm.cas.ContentAddressableStorage.UNLIMITED_ENTRY_SIZE_MAX;
 import static build.buildfarm.common.Claim.Stage.REPORT_RESULT_STAGE;
 import static build.buildfarm.common.config.Server.INSTANCE_TYPE.SHARD;
 import static com.google.common.truth.Truth.assertThat;
@@ -34,6 +35,8 @@ import build.bazel.remote.execution.v2.Platform.Property;
 import build.buildfarm.backplane.Backplane;
 import build.buildfarm.cas.ContentAddressableStorage;
 import build.buildfarm.common.Claim;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
 import build.buildfarm.common.Dispenser;
 import build.buildfarm.common.InputStreamFactory;
 import build.buildfarm.common.config.BuildfarmConfigs;
@@ -42,6 +45,7 @@ import build.buildfarm.common.config.Queue;
 import build.buildfarm.instance.Instance;
 import build.buildfarm.v1test.Digest;
 import build.buildfarm.v1test.QueueEntry;
+import build.buildfarm.v1test.QueuedOperation;
 import build.buildfarm.worker.ExecFileSystem;
 import build.buildfarm.worker.MatchListener;
 import build.buildfarm.worker.WorkerContext;
@@ -51,6 +55,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.jimfs.Jimfs;
 import com.google.protobuf.Duration;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -59,11 +64,14 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 @RunWith(JUnit4.class)
 public class ShardWorkerContextTest {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+
   private BuildfarmConfigs configs = BuildfarmConfigs.getInstance();
 
   @Mock private Backplane backplane;
@@ -230,6 +238,79 @@ public class ShardWorkerContextTest {
     assertThat(outputFile.getPath()).isEqualTo("baz/quux");
   }
 
+  @Test
+  public void inlinedQueuedOperationIsSeededWithoutFetch() throws Exception {
+    WorkerContext context = createTestContext();
+    ContentAddressableStorage storage = mock(ContentAddressableStorage.class);
+    when(execFileSystem.getStorage()).thenReturn(storage);
+    QueuedOperation queuedOperation =
+        QueuedOperation.newBuilder()
+            .setCommand(Command.newBuilder().addArguments("true").build())
+            .build();
+    Digest queuedOperationDigest = DIGEST_UTIL.compute(queuedOperation);
+    QueueEntry queueEntry =
+        QueueEntry.newBuilder()
+            .setQueuedOperationDigest(queuedOperationDigest)
+            .setQueuedOperation(queuedOperation)
+            .build();
+
+    assertThat(context.getQueuedOperation(queueEntry)).isEqualTo(queuedOperation);
+
+    ArgumentCaptor<ContentAddressableStorage.Blob> blobCaptor =
+        ArgumentCaptor.forClass(ContentAddressableStorage.Blob.class);
+    verify(storage, times(1)).put(blobCaptor.capture());
+    assertThat(blobCaptor.getValue().getDigest()).isEqualTo(queuedOperationDigest);
+    assertThat(blobCaptor.getValue().getData()).isEqualTo(queuedOperation.toByteString());
+    verifyNoMoreInteractions(inputStreamFactory);
+  }
+
+  private ActionResult uploadOutputs(Path actionRoot, Command command) throws Exception {
+    WorkerContext context = createTestContext();
+    ActionResult.Builder resultBuilder = ActionResult.newBuilder();
+    Digest actionDigest =
+        Digest.newBuilder().setDigestFunction(DigestFunction.Value.SHA256).build();
+    context.uploadOutputs(actionDigest, resultBuilder, actionRoot, command);
+    return resultBuilder.build();
+  }
+
+  @Test
+  public void concurrentUploadOutputsMatchesSerial() throws Exception {
+    Command command =
+        Command.newBuilder()
+            .addOutputPaths("out/b")
+            .addOutputPaths("out/dir")
+            .addOutputPaths("out/a")
+            .addOutputPaths("out/missing")
+            .build();
+    ContentAddressableStorage storage = mock(ContentAddressableStorage.class);
+    when(storage.maxEntrySize()).thenReturn(UNLIMITED_ENTRY_SIZE_MAX);
+    when(execFileSystem.getStorage()).thenReturn(storage);
+    Path actionRoot = Iterables.getFirst(Jimfs.newFileSystem().getRootDirectories(), null);
+    Files.createDirectories(actionRoot.resolve("out/dir/sub"));
+    Files.write(actionRoot.resolve("out/a"), "a".getBytes(StandardCharsets.UTF_8));
+    Files.write(actionRoot.resolve("out/b"), "bb".getBytes(StandardCharsets.UTF_8));
+    Files.write(actionRoot.resolve("out/dir/c"), "ccc".getBytes(StandardCharsets.UTF_8));
+    Files.write(actionRoot.resolve("out/dir/sub/d"), "dddd".getBytes(StandardCharsets.UTF_8));
+    Files.createFile(actionRoot.resolve("out/dir/sub/empty"));
+
+    ActionResult serialResult = uploadOutputs(actionRoot, command);
+
+    configs.getWorker().setOutputUploadConcurrency(4);
+    // force one of the outputs through the read-twice path
+    configs.getWorker().setOutputUploadInMemoryLimit(2);
+    ActionResult concurrentResult;
+    try {
+      concurrentResult = uploadOutputs(actionRoot, command);
+    } finally {
+      configs.getWorker().setOutputUploadConcurrency(0);
+      configs.getWorker().setOutputUploadInMemoryLimit(4 * 1024 * 1024);
+    }
+
+    assertThat(serialResult.getOutputFilesCount()).isEqualTo(2);
+    assertThat(serialResult.getOutputDirectoriesCount()).isEqualTo(1);
+    assertThat(concurrentResult).isEqualTo(serialResult);
+  }
+
   @Test
   public void resourceExhaustedIgnoresEntryWithExecOwner() throws Exception {
     LocalResourceSet resourceSet = new LocalResourceSet();